@@ -0,0 +1,58 @@
+package com.university.transformer.oversight.controller;
+
+import com.university.transformer.oversight.dto.DetectionJobDTO;
+import com.university.transformer.oversight.model.AnomalyDetectionResult;
+import com.university.transformer.oversight.service.AnomalyDetectionService;
+import com.university.transformer.oversight.service.DetectionJobService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Optional;
+
+/**
+ * Status polling, result retrieval and cancellation for asynchronous detection jobs.
+ * Jobs are submitted through POST /api/inspections/{inspectionId}/detection-jobs.
+ */
+@RestController
+@RequestMapping("/api/detection-jobs")
+public class DetectionJobController {
+
+    @Autowired
+    private DetectionJobService detectionJobService;
+    @Autowired
+    private AnomalyDetectionService anomalyDetectionService;
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<DetectionJobDTO> getJob(@PathVariable String jobId) {
+        return detectionJobService.getJob(jobId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/{jobId}/result")
+    public ResponseEntity<AnomalyDetectionResult> getJobResult(@PathVariable String jobId) {
+        Optional<DetectionJobDTO> job = detectionJobService.getJob(jobId);
+        if (job.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!"SUCCEEDED".equals(job.get().getStatus())) {
+            // Not ready (or failed): the caller should keep polling the job status
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        return anomalyDetectionService.getDetectionResultByInspectionId(job.get().getInspectionId())
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @DeleteMapping("/{jobId}")
+    public ResponseEntity<Void> cancelJob(@PathVariable String jobId) {
+        if (detectionJobService.cancel(jobId)) {
+            return ResponseEntity.noContent().build();
+        }
+        return detectionJobService.getJob(jobId).isPresent()
+                ? ResponseEntity.status(HttpStatus.CONFLICT).build()
+                : ResponseEntity.notFound().build();
+    }
+}
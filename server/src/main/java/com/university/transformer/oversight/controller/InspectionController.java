@@ -1,16 +1,27 @@
 package com.university.transformer.oversight.controller;
 
 import com.university.transformer.oversight.dto.AnnotationDTO;
+import com.university.transformer.oversight.dto.AnnotationHistoryPageDTO;
+import com.university.transformer.oversight.dto.AnnotationPatchRequest;
+import com.university.transformer.oversight.exception.AnnotationConflictException;
+import com.university.transformer.oversight.dto.BatchDetectionRequest;
+import com.university.transformer.oversight.dto.BatchDetectionResponse;
+import com.university.transformer.oversight.dto.BoxOverlapDTO;
+import com.university.transformer.oversight.dto.DetectionJobDTO;
 import com.university.transformer.oversight.dto.DetectionRequest;
 import com.university.transformer.oversight.dto.InspectionDTO;
 import com.university.transformer.oversight.model.AnomalyDetectionResult;
 import com.university.transformer.oversight.model.Inspection;
+import com.university.transformer.oversight.model.ModelVariant;
 import com.university.transformer.oversight.service.AnnotationService;
+import com.university.transformer.oversight.service.AnnotationSpatialService;
 import com.university.transformer.oversight.service.AnomalyDetectionService;
+import com.university.transformer.oversight.service.DetectionJobService;
 import com.university.transformer.oversight.service.FineTuningService;
 import com.university.transformer.oversight.service.InspectionService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.Resource;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -19,6 +30,7 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import com.university.transformer.oversight.dto.AnnotationSaveRequest;
 import java.io.IOException;
+import java.net.URI;
 import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,7 +46,11 @@ public class InspectionController {
     @Autowired
     private AnnotationService annotationService;
     @Autowired
+    private AnnotationSpatialService annotationSpatialService;
+    @Autowired
     private FineTuningService fineTuningService;
+    @Autowired
+    private DetectionJobService detectionJobService;
     // --- Inspection CRUD Endpoints ---
 
     @GetMapping
@@ -159,14 +175,64 @@ public class InspectionController {
             AnomalyDetectionResult result = anomalyDetectionService.runDetection(
                     inspectionId,
                     request.getBaselineFileName(),
-                    request.getTempThresholdPercentage()
+                    request.getTempThresholdPercentage(),
+                    ModelVariant.fromRequest(request.getVariant())
             );
             return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(null);
+        } catch (IllegalStateException e) {
+            // The image or result changed while the model was running; nothing was written
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(null);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
         }
     }
 
+    // Re-applies a different tempThresholdPercentage to the stored raw detections; no inference is run
+    @PostMapping("/{inspectionId}/rethreshold")
+    public ResponseEntity<AnomalyDetectionResult> rethreshold(@PathVariable Long inspectionId, @RequestBody DetectionRequest request) {
+        try {
+            return ResponseEntity.ok(anomalyDetectionService.rethreshold(inspectionId, request.getTempThresholdPercentage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (IOException e) {
+            logger.error("Re-thresholding inspection {} failed.", inspectionId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @PostMapping("/detect-anomalies/batch")
+    public ResponseEntity<BatchDetectionResponse> detectAnomaliesBatch(@RequestBody BatchDetectionRequest request) {
+        try {
+            return ResponseEntity.ok(anomalyDetectionService.runBatchDetection(request));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            logger.error("Batch detection failed.", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    // Asynchronous variant: returns a job id right away, poll /api/detection-jobs/{jobId} for progress.
+    // A full queue is reported as 503 by DetectionQueueFullException.
+    @PostMapping("/{inspectionId}/detection-jobs")
+    public ResponseEntity<DetectionJobDTO> submitDetectionJob(@PathVariable Long inspectionId, @RequestBody DetectionRequest request) {
+        DetectionJobDTO job;
+        try {
+            job = detectionJobService.submit(inspectionId, request);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/detection-jobs/" + job.getJobId()))
+                .body(job);
+    }
+
     @GetMapping("/{inspectionId}/anomalies")
     public ResponseEntity<AnomalyDetectionResult> getAnomalyResultByInspectionId(@PathVariable Long inspectionId) {
         return anomalyDetectionService.getDetectionResultByInspectionId(inspectionId)
@@ -194,16 +260,90 @@ public class InspectionController {
         return ResponseEntity.ok(annotations);
     }
 
+    // Full save of the editor's boxes. A box sent with a stale version, or an incremental save committing in between,
+    // gives 409 with the current boxes and nothing saved
     @PostMapping("/{inspectionId}/annotations")
-    public ResponseEntity<Void> saveAnnotationsForInspection(@PathVariable Long inspectionId, @RequestBody AnnotationSaveRequest request) {
+    public ResponseEntity<List<AnnotationDTO>> saveAnnotationsForInspection(@PathVariable Long inspectionId, @RequestBody AnnotationSaveRequest request) {
         // Pass ONLY the final annotations list to the service
-        annotationService.saveAnnotations(
-                inspectionId,
-                request.getFinalAnnotations()
-        );
+        try {
+            annotationService.saveAnnotations(
+                    inspectionId,
+                    request.getFinalAnnotations()
+            );
+        } catch (AnnotationConflictException | OptimisticLockingFailureException e) {
+            logger.info("Annotation save conflict for inspection {}: {}", inspectionId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(annotationService.getAnnotationsByInspectionId(inspectionId));
+        }
         return ResponseEntity.ok().build();
     }
 
+    // Incremental save for editor autosave: only the changed boxes go over the wire and are written.
+    // Returns the changed boxes with their new versions; on a version conflict nothing is saved and the
+    // 409 body carries the current boxes so the editor can reload them.
+    @PatchMapping("/{inspectionId}/annotations")
+    public ResponseEntity<List<AnnotationDTO>> patchAnnotationsForInspection(@PathVariable Long inspectionId, @RequestBody AnnotationPatchRequest request) {
+        try {
+            return ResponseEntity.ok(annotationService.applyAnnotationChanges(inspectionId, request.getChanges()));
+        } catch (AnnotationConflictException | OptimisticLockingFailureException e) {
+            logger.info("Annotation save conflict for inspection {}: {}", inspectionId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(annotationService.getAnnotationsByInspectionId(inspectionId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // Audit trail of the inspection's boxes; pass the returned nextCursor as 'after' to read the next page
+    @GetMapping("/{inspectionId}/annotations/history")
+    public ResponseEntity<AnnotationHistoryPageDTO> getAnnotationHistory(@PathVariable Long inspectionId,
+                                                                         @RequestParam(required = false) Long after,
+                                                                         @RequestParam(defaultValue = "100") int limit) {
+        try {
+            return ResponseEntity.ok(annotationService.getAnnotationHistory(inspectionId, after, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // The boxes as they were right after history event 'at' (the latest state when omitted)
+    @GetMapping("/{inspectionId}/annotations/history/state")
+    public ResponseEntity<List<AnnotationDTO>> getAnnotationsAtEvent(@PathVariable Long inspectionId,
+                                                                     @RequestParam(required = false) Long at) {
+        return ResponseEntity.ok(annotationService.getAnnotationsAt(inspectionId, at));
+    }
+
+    // --- Spatial queries over the active boxes (image pixel coordinates) ---
+
+    @GetMapping("/{inspectionId}/annotations/intersecting")
+    public ResponseEntity<List<AnnotationDTO>> getAnnotationsIntersecting(@PathVariable Long inspectionId,
+                                                                          @RequestParam double x, @RequestParam double y,
+                                                                          @RequestParam double width, @RequestParam double height) {
+        return ResponseEntity.ok(annotationSpatialService.findIntersecting(inspectionId, x, y, width, height));
+    }
+
+    // Hit-testing: the box under (or closest to) a point
+    @GetMapping("/{inspectionId}/annotations/nearest")
+    public ResponseEntity<List<AnnotationDTO>> getNearestAnnotations(@PathVariable Long inspectionId,
+                                                                     @RequestParam double x, @RequestParam double y,
+                                                                     @RequestParam(defaultValue = "1") int count) {
+        try {
+            return ResponseEntity.ok(annotationSpatialService.findNearest(inspectionId, x, y, count));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // Duplicate boxes, or AI boxes matched to user boxes with crossSource=true
+    @GetMapping("/{inspectionId}/annotations/overlaps")
+    public ResponseEntity<List<BoxOverlapDTO>> getOverlappingAnnotations(@PathVariable Long inspectionId,
+                                                                         @RequestParam(defaultValue = "0.5") double minIou,
+                                                                         @RequestParam(defaultValue = "false") boolean crossSource) {
+        try {
+            return ResponseEntity.ok(annotationSpatialService.findOverlappingPairs(inspectionId, minIou, crossSource));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @GetMapping("/{inspectionId}/annotations/all-for-display")
     public ResponseEntity<List<AnnotationDTO>> getAllAnnotationsForDisplay(@PathVariable Long inspectionId) {
         List<AnnotationDTO> annotations = annotationService.getAllAnnotationsForDisplay(inspectionId);
@@ -0,0 +1,103 @@
+package com.university.transformer.oversight.controller;
+
+import com.university.transformer.oversight.dto.ShadowReportDTO;
+import com.university.transformer.oversight.exception.ResourceNotFoundException;
+import com.university.transformer.oversight.model.ModelVariant;
+import com.university.transformer.oversight.model.ModelVersion;
+import com.university.transformer.oversight.service.ModelRegistryService;
+import com.university.transformer.oversight.service.ShadowEvaluationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Model registry: lists the registered YOLO model versions and switches the production model.
+ * Promotion and rollback return only after every inference backend has loaded the model.
+ */
+@RestController
+@RequestMapping("/api/models")
+@CrossOrigin(origins = "http://localhost:5173")
+public class ModelController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModelController.class);
+
+    @Autowired
+    private ModelRegistryService modelRegistryService;
+    @Autowired
+    private ShadowEvaluationService shadowEvaluationService;
+
+    @GetMapping
+    public List<ModelVersion> listVersions() {
+        return modelRegistryService.listVersions();
+    }
+
+    @PostMapping("/{versionId}/promote")
+    public ResponseEntity<ModelVersion> promote(@PathVariable Long versionId) {
+        try {
+            return ResponseEntity.ok(modelRegistryService.promote(versionId));
+        } catch (ResourceNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IllegalStateException e) {
+            logger.warn("Promotion of model version {} refused: {}", versionId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (RuntimeException e) {
+            logger.error("Promotion of model version {} failed; production model unchanged.", versionId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @PostMapping("/rollback")
+    public ResponseEntity<ModelVersion> rollback() {
+        try {
+            return ResponseEntity.ok(modelRegistryService.rollback());
+        } catch (IllegalStateException e) {
+            logger.warn("Model rollback refused: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (RuntimeException e) {
+            logger.error("Model rollback failed; production model unchanged.", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    // Starts mirroring live detections to this version without showing its output to users
+    @PostMapping("/{versionId}/shadow")
+    public ResponseEntity<Map<String, String>> startShadow(@PathVariable Long versionId) {
+        try {
+            return ResponseEntity.ok(Map.of("candidateModel", shadowEvaluationService.startShadow(versionId)));
+        } catch (ResourceNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @DeleteMapping("/shadow")
+    public ResponseEntity<Void> stopShadow() {
+        shadowEvaluationService.stopShadow();
+        return ResponseEntity.noContent().build();
+    }
+
+    // Agreement and latency of a model's INT8 "fast" variant against the model itself (production by default),
+    // from the sampled comparisons shadow evaluation runs (ml.shadow.variant-comparison-rate)
+    @GetMapping("/variants/report")
+    public ResponseEntity<ShadowReportDTO> variantReport(@RequestParam(required = false) String modelName) {
+        String accurate = modelName != null ? modelName : modelRegistryService.getProductionModelName();
+        return ResponseEntity.ok(shadowEvaluationService.report(ModelVariant.FAST.modelName(accurate)));
+    }
+
+    // Agreement rates and latency of the current (or the named) shadow candidate against production
+    @GetMapping("/shadow/report")
+    public ResponseEntity<ShadowReportDTO> shadowReport(@RequestParam(required = false) String candidateModel) {
+        try {
+            return ResponseEntity.ok(shadowEvaluationService.report(candidateModel));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+}
@@ -19,6 +19,7 @@ public class AnnotationDTO {
     private String faultType;
     private String userId; // User who last modified/created
     private LocalDateTime timestamp; // Last modification time
+    private Long version; // Row version; incremental saves send back the version they edited
 
     // Transient fields for the frontend/save logic
     private String boxSessionId; // The temporary ID
@@ -0,0 +1,14 @@
+package com.university.transformer.oversight.dto;
+
+import com.university.transformer.oversight.model.AnnotationLog;
+import lombok.Data;
+import java.util.List;
+
+/**
+ * One page of an inspection's annotation history, oldest event first.
+ */
+@Data
+public class AnnotationHistoryPageDTO {
+    private List<AnnotationLog> events;
+    private Long nextCursor; // Pass as 'after' for the next page; null once the end of the history was reached
+}
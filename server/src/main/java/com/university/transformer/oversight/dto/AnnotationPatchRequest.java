@@ -0,0 +1,13 @@
+package com.university.transformer.oversight.dto;
+
+import lombok.Data;
+import java.util.List;
+
+/**
+ * Only the boxes the user changed since the last save. Each change carries its actionType: 'ADDED' (no id),
+ * or 'EDITED' / 'DELETED' with the id and the version the edit was based on.
+ */
+@Data
+public class AnnotationPatchRequest {
+    private List<AnnotationDTO> changes;
+}
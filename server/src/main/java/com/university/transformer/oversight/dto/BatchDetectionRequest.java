@@ -0,0 +1,17 @@
+package com.university.transformer.oversight.dto;
+
+import lombok.Data;
+import java.util.List;
+
+/**
+ * Selects the inspections for a batch detection run. Either list the inspection ids explicitly,
+ * or filter by transformer and/or region. The transformer's current baseline image is used for each inspection.
+ */
+@Data
+public class BatchDetectionRequest {
+    private List<Long> inspectionIds;
+    private Long transformerId;
+    private String region;
+    private Double tempThresholdPercentage;
+    private String variant; // "fast" for quick triage over many inspections, "accurate" (default) otherwise
+}
@@ -0,0 +1,33 @@
+package com.university.transformer.oversight.dto;
+
+import lombok.Data;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class BatchDetectionResponse {
+    private int requested;
+    private int succeeded;
+    private int failed;
+    private List<ItemResult> results = new ArrayList<>();
+
+    /**
+     * Outcome for a single inspection in the batch.
+     */
+    @Data
+    public static class ItemResult {
+        private Long inspectionId;
+        private boolean success;
+        private String overallStatus;
+        private Long resultId;
+        private String errorMessage;
+
+        public static ItemResult failure(Long inspectionId, String errorMessage) {
+            ItemResult item = new ItemResult();
+            item.setInspectionId(inspectionId);
+            item.setSuccess(false);
+            item.setErrorMessage(errorMessage);
+            return item;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.university.transformer.oversight.dto;
+
+import lombok.Data;
+
+/**
+ * Two annotation boxes of the same image that overlap, with their intersection over union.
+ */
+@Data
+public class BoxOverlapDTO {
+    private AnnotationDTO first;
+    private AnnotationDTO second;
+    private double iou;
+}
@@ -0,0 +1,23 @@
+package com.university.transformer.oversight.dto;
+
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * Status view of an asynchronous detection job, returned by the job endpoints.
+ */
+@Data
+public class DetectionJobDTO {
+    private String jobId;
+    private Long inspectionId;
+    private String status; // QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED
+    private Integer queuePosition; // 1-based, only while QUEUED
+    private LocalDateTime submittedAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private String errorMessage;
+
+    // Filled in once the job has succeeded
+    private Long resultId;
+    private String overallStatus;
+}
@@ -4,6 +4,7 @@ package com.university.transformer.oversight.dto;
 public class DetectionRequest {
     private String baselineFileName;
     private Double tempThresholdPercentage;
+    private String variant; // "fast" (INT8 model) or "accurate" (default)
 
     // Getters and Setters
 
@@ -22,4 +23,12 @@ public class DetectionRequest {
     public void setTempThresholdPercentage(Double tempThresholdPercentage) {
         this.tempThresholdPercentage = tempThresholdPercentage;
     }
+
+    public String getVariant() {
+        return variant;
+    }
+
+    public void setVariant(String variant) {
+        this.variant = variant;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,24 @@
+package com.university.transformer.oversight.dto;
+
+import lombok.Data;
+
+/**
+ * Agreement and latency of a shadow candidate compared with the production model.
+ */
+@Data
+public class ShadowReportDTO {
+    private String candidateModel;
+    private String productionModel; // Production model of the most recent comparison
+    private boolean active; // Whether the candidate is still receiving shadow traffic
+
+    private long comparisons;
+    private long shedRequests; // Shadow runs skipped because production was busy (since start-up)
+    private double statusAgreementRate; // Share of comparisons with the same overall_status
+    private double boxAgreementRate; // 2 * matched / (production boxes + candidate boxes) over all comparisons
+
+    // Production latency only covers requests where the production model actually ran
+    private Double productionLatencyP50Ms;
+    private Double productionLatencyP95Ms;
+    private Double candidateLatencyP50Ms;
+    private Double candidateLatencyP95Ms;
+}
@@ -0,0 +1,14 @@
+package com.university.transformer.oversight.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * An annotation save was based on a box version that is no longer current.
+ */
+@ResponseStatus(HttpStatus.CONFLICT)
+public class AnnotationConflictException extends RuntimeException {
+    public AnnotationConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.university.transformer.oversight.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class DetectionQueueFullException extends RuntimeException {
+    public DetectionQueueFullException(String message) {
+        super(message);
+    }
+}
@@ -14,8 +14,13 @@ import org.hibernate.annotations.UpdateTimestamp;
 @Table(name = "annotations")
 public class Annotation {
 
+    // Ids come from a pooled table generator (one id_generators round trip per 50 rows) instead of IDENTITY,
+    // which makes Hibernate insert row by row; this way saveAll of many boxes goes out as JDBC batches.
+    // The id_generators row is seeded in data.sql above the seeded annotation ids
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "annotation_ids")
+    @TableGenerator(name = "annotation_ids", table = "id_generators", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "annotations", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -52,4 +57,9 @@ public class Annotation {
     @Column(name = "fault_type")
     private String faultType;
 
+    // Optimistic lock: a save naming the version it edited (every incremental save, full saves whose boxes carry it)
+    // is rejected once the box has moved on; concurrent transactions cannot overwrite each other either way
+    @Version
+    private Long version;
+
 }
\ No newline at end of file
@@ -0,0 +1,92 @@
+package com.university.transformer.oversight.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import java.time.LocalDateTime;
+
+/**
+ * One change to an annotation box, never updated once written: the box as it was before the change
+ * (empty for ADDED) and after it (empty for DELETED). The annotations table holds the current state;
+ * this is the audit trail behind it.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "annotation_logs", indexes = @Index(name = "idx_annotation_logs_inspection", columnList = "inspection_id, id"))
+public class AnnotationLog {
+
+    public enum Action {
+        ADDED,
+        EDITED,
+        DELETED
+    }
+
+    // IDENTITY rather than pooled ids: the history is paged by id, so ids must follow insertion order across nodes
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "inspection_id", nullable = false)
+    @JsonIgnore
+    private Inspection inspection;
+
+    // Not a foreign key: the log outlives boxes that a new detection replaces
+    @Column(name = "annotation_id", nullable = false)
+    private Long annotationId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Action action;
+
+    @Column(nullable = false, length = 32)
+    private String cause; // 'USER', 'DETECTION' or 'RETHRESHOLD'
+
+    @Column(name = "user_id")
+    private String userId;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    // Provenance of the box (the same on every event of a box)
+    @Column(name = "original_source")
+    private String originalSource;
+
+    @Column(name = "ai_confidence")
+    private Double aiConfidence;
+
+    @Column(name = "ai_severity_score")
+    private Integer aiSeverityScore;
+
+    @Column(name = "old_x")
+    private Double oldX;
+    @Column(name = "old_y")
+    private Double oldY;
+    @Column(name = "old_width")
+    private Double oldWidth;
+    @Column(name = "old_height")
+    private Double oldHeight;
+    @Column(name = "old_fault_type")
+    private String oldFaultType;
+    @Column(name = "old_status")
+    private String oldStatus;
+    @Column(name = "old_comments", columnDefinition = "TEXT")
+    private String oldComments;
+
+    @Column(name = "new_x")
+    private Double newX;
+    @Column(name = "new_y")
+    private Double newY;
+    @Column(name = "new_width")
+    private Double newWidth;
+    @Column(name = "new_height")
+    private Double newHeight;
+    @Column(name = "new_fault_type")
+    private String newFaultType;
+    @Column(name = "new_status")
+    private String newStatus;
+    @Column(name = "new_comments", columnDefinition = "TEXT")
+    private String newComments;
+}
@@ -0,0 +1,39 @@
+package com.university.transformer.oversight.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import java.time.LocalDateTime;
+
+/**
+ * The active boxes of an inspection right after annotation_logs event lastLogId, written every few events so
+ * that rebuilding a past state replays only the events after the nearest snapshot.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "annotation_snapshots", indexes = @Index(name = "idx_annotation_snapshots_inspection", columnList = "inspection_id, last_log_id"))
+public class AnnotationSnapshot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "inspection_id", nullable = false)
+    @JsonIgnore
+    private Inspection inspection;
+
+    @Column(name = "last_log_id", nullable = false)
+    private Long lastLogId;
+
+    @Column(name = "box_count", nullable = false)
+    private int boxCount;
+
+    @Column(name = "boxes_json", columnDefinition = "MEDIUMTEXT", nullable = false)
+    private String boxesJson; // AnnotationDTO array
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
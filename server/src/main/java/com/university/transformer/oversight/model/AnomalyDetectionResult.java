@@ -23,6 +23,25 @@ public class AnomalyDetectionResult {
     @Column(name = "output_image_name")
     private String outputImageName; // Name/Relative Path of the annotated image
 
+    @Column(name = "threshold_percentage")
+    private Double thresholdPercentage; // Threshold the stored anomalies were filtered with
+
+    @Column(name = "baseline_intensity")
+    private Integer baselineIntensity; // Baseline intensity proxy the raw detections are compared against
+
+    @Column(name = "inference_skipped", nullable = false)
+    private boolean inferenceSkipped; // True when the change-detection gate answered without running the model
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "model_variant", length = 16)
+    private ModelVariant modelVariant; // Variant that produced the result; null for results stored before variants existed
+
+    @Column(name = "model_name")
+    private String modelName; // Model file that produced the result
+
+    @Column(name = "inference_ms")
+    private Long inferenceMs; // Inference call time; null when the model did not run (gate, cache hit) or ran as part of a batch run
+
     @OneToOne
     @JoinColumn(name = "inspection_id", referencedColumnName = "id", unique = true)
     private Inspection inspection;
@@ -41,6 +60,18 @@ public class AnomalyDetectionResult {
     public void setDetectedTimestamp(LocalDateTime detectedTimestamp) { this.detectedTimestamp = detectedTimestamp; }
     public String getOutputImageName() { return outputImageName; }
     public void setOutputImageName(String outputImageName) { this.outputImageName = outputImageName; }
+    public Double getThresholdPercentage() { return thresholdPercentage; }
+    public void setThresholdPercentage(Double thresholdPercentage) { this.thresholdPercentage = thresholdPercentage; }
+    public Integer getBaselineIntensity() { return baselineIntensity; }
+    public void setBaselineIntensity(Integer baselineIntensity) { this.baselineIntensity = baselineIntensity; }
+    public boolean isInferenceSkipped() { return inferenceSkipped; }
+    public void setInferenceSkipped(boolean inferenceSkipped) { this.inferenceSkipped = inferenceSkipped; }
+    public ModelVariant getModelVariant() { return modelVariant; }
+    public void setModelVariant(ModelVariant modelVariant) { this.modelVariant = modelVariant; }
+    public String getModelName() { return modelName; }
+    public void setModelName(String modelName) { this.modelName = modelName; }
+    public Long getInferenceMs() { return inferenceMs; }
+    public void setInferenceMs(Long inferenceMs) { this.inferenceMs = inferenceMs; }
     public Inspection getInspection() { return inspection; }
     public void setInspection(Inspection inspection) { this.inspection = inspection; }
 }
\ No newline at end of file
@@ -0,0 +1,52 @@
+package com.university.transformer.oversight.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import java.time.LocalDateTime;
+
+/**
+ * Baseline statistics computed once when a baseline image is uploaded,
+ * so detection does not have to decode the baseline image again.
+ * A transformer holds at most one profile per environmental condition.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "baseline_profile",
+        uniqueConstraints = @UniqueConstraint(name = "UK_baseline_profile_condition", columnNames = {"transformer_id", "environmental_condition"}))
+public class BaselineProfile {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "transformer_id", nullable = false)
+    @JsonIgnore
+    private Transformer transformer;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "environmental_condition", nullable = false)
+    private ThermalImage.EnvironmentalCondition environmentalCondition;
+
+    @Column(name = "image_name", nullable = false)
+    private String imageName; // File under uploads/baseline-images
+
+    @Column(name = "image_sha256", length = 64, nullable = false)
+    private String imageSha256;
+
+    // Same intensity proxy detector.py derives from the baseline (median of the LAB L channel, floored at 50)
+    @Column(name = "median_intensity", nullable = false)
+    private int medianIntensity;
+
+    @Column(name = "histogram_json", columnDefinition = "TEXT")
+    private String histogramJson; // 256-bin histogram of the LAB L channel
+
+    private int width;
+    private int height;
+
+    @Column(name = "computed_at")
+    private LocalDateTime computedAt;
+}
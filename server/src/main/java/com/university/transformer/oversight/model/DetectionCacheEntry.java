@@ -0,0 +1,55 @@
+package com.university.transformer.oversight.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import java.time.LocalDateTime;
+
+/**
+ * Stored detector output keyed by SHA-256(maintenance) + SHA-256(baseline) + threshold + model version.
+ * Lets a repeated detection on identical inputs skip inference entirely.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "detection_cache", indexes = @Index(name = "idx_detection_cache_last_accessed", columnList = "last_accessed_at"))
+public class DetectionCacheEntry {
+
+    @Id
+    @Column(name = "cache_key", length = 64)
+    private String cacheKey;
+
+    @Column(name = "maintenance_sha256", length = 64, nullable = false)
+    private String maintenanceSha256;
+
+    @Column(name = "baseline_sha256", length = 64, nullable = false)
+    private String baselineSha256;
+
+    @Column(name = "threshold_percentage", nullable = false)
+    private Double thresholdPercentage;
+
+    @Column(name = "model_version", nullable = false)
+    private String modelVersion;
+
+    @Column(name = "overall_status")
+    private String overallStatus;
+
+    @Column(name = "output_image_name")
+    private String outputImageName;
+
+    @Column(name = "detector_output", columnDefinition = "MEDIUMTEXT", nullable = false)
+    private String detectorOutput; // Full JSON returned by detector.py
+
+    // Approximate footprint (JSON + overlay image) used for size-based eviction
+    @Column(name = "size_bytes", nullable = false)
+    private long sizeBytes;
+
+    @Column(name = "hit_count", nullable = false)
+    private long hitCount;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "last_accessed_at", nullable = false)
+    private LocalDateTime lastAccessedAt;
+}
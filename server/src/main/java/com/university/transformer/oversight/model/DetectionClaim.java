@@ -0,0 +1,35 @@
+package com.university.transformer.oversight.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Marks an inspection whose detection is running on some node, so other nodes wait for that run
+ * instead of starting a second one. Rows are deleted when the run ends; an expired row belongs to a node that died.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "detection_claims")
+public class DetectionClaim {
+
+    @Id
+    @Column(name = "inspection_id")
+    private Long inspectionId;
+
+    @Column(name = "node_id", nullable = false)
+    private String nodeId;
+
+    // Baseline and threshold of the claimed run; only a waiter asking for the same may reuse its result
+    @Column(name = "request_key", nullable = false, length = 512)
+    private String requestKey;
+
+    @Column(name = "claimed_at", nullable = false)
+    private LocalDateTime claimedAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,38 @@
+package com.university.transformer.oversight.model;
+
+/**
+ * Precision a detection runs at. ACCURATE is the trained model itself; FAST is its INT8-quantized ONNX export
+ * (best.pt -> best.int8.onnx, written by finetune_yolo.py), for CPU-bound triage where latency matters more than
+ * the last bit of agreement.
+ */
+public enum ModelVariant {
+    ACCURATE,
+    FAST;
+
+    private static final String FAST_SUFFIX = ".int8.onnx";
+
+    // "fast" or "accurate" in any case; missing means ACCURATE
+    public static ModelVariant fromRequest(String value) {
+        if (value == null || value.isBlank()) {
+            return ACCURATE;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown model variant '" + value + "'; use 'fast' or 'accurate'.");
+        }
+    }
+
+    public static ModelVariant ofModelName(String modelName) {
+        return modelName != null && modelName.endsWith(FAST_SUFFIX) ? FAST : ACCURATE;
+    }
+
+    // File name of this variant of a trained model, next to it in the model directory
+    public String modelName(String accurateModelName) {
+        if (this == ACCURATE || accurateModelName.endsWith(FAST_SUFFIX)) {
+            return accurateModelName;
+        }
+        int dot = accurateModelName.lastIndexOf('.');
+        return (dot > 0 ? accurateModelName.substring(0, dot) : accurateModelName) + FAST_SUFFIX;
+    }
+}
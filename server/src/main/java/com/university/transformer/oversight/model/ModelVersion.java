@@ -0,0 +1,62 @@
+package com.university.transformer.oversight.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import java.time.LocalDateTime;
+
+/**
+ * A YOLO model file in ml.model-output-dir together with its training metrics and promotion state.
+ * Exactly one version is PRODUCTION at a time.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "model_versions")
+public class ModelVersion {
+
+    public enum Status {
+        CANDIDATE, PRODUCTION, RETIRED, ROLLED_BACK
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "model_name", nullable = false, unique = true)
+    private String modelName; // File name inside ml.model-output-dir, e.g. ft_model_1760966023389.pt
+
+    @Column(name = "sha256", length = 64)
+    private String sha256;
+
+    @Column(name = "size_bytes")
+    private Long sizeBytes;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status;
+
+    // Best epoch of the training run's results.csv (the epoch Ultralytics keeps as best.pt)
+    private Integer epochs;
+    @Column(name = "metric_precision")
+    private Double precision;
+    @Column(name = "metric_recall")
+    private Double recall;
+    @Column(name = "map50")
+    private Double map50;
+    @Column(name = "map50_95")
+    private Double map5095;
+
+    // Production version this one replaced; rollback returns to it
+    @Column(name = "previous_version_id")
+    private Long previousVersionId;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "promoted_at")
+    private LocalDateTime promotedAt;
+
+    @Column(name = "retired_at")
+    private LocalDateTime retiredAt;
+}
@@ -0,0 +1,53 @@
+package com.university.transformer.oversight.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * One box exactly as the model produced it, before the temperature threshold was applied,
+ * together with the intensity metric the threshold is evaluated on.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "raw_detections", indexes = @Index(name = "idx_raw_detections_inspection", columnList = "inspection_id"))
+public class RawDetection {
+
+    // Pooled table ids like Annotation, so the boxes of a detection are inserted in JDBC batches
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "raw_detection_ids")
+    @TableGenerator(name = "raw_detection_ids", table = "id_generators", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "raw_detections", allocationSize = 50)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "inspection_id", nullable = false)
+    @JsonIgnore
+    private Inspection inspection;
+
+    @Column(name = "box_index", nullable = false)
+    private int boxIndex; // Display id of the box in the detector output (1-based)
+
+    @Column(name = "class_label", nullable = false)
+    private String classLabel;
+
+    @Column(name = "severity_score")
+    private Integer severityScore;
+
+    private double confidence;
+
+    @Column(name = "x_min")
+    private int xMin;
+    @Column(name = "y_min")
+    private int yMin;
+    @Column(name = "x_max")
+    private int xMax;
+    @Column(name = "y_max")
+    private int yMax;
+
+    // 95th percentile of the LAB b channel inside the box (detector.py's max_intensity_M)
+    @Column(name = "hot_intensity", nullable = false)
+    private double hotIntensity;
+}
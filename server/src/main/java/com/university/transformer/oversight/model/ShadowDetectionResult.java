@@ -0,0 +1,65 @@
+package com.university.transformer.oversight.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import java.time.LocalDateTime;
+
+/**
+ * What a candidate model detected for an inspection while running in shadow mode, next to what
+ * the production model reported for the same request. Never turned into annotations.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "shadow_detection_results", indexes = @Index(name = "idx_shadow_candidate_model", columnList = "candidate_model"))
+public class ShadowDetectionResult {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "inspection_id", nullable = false)
+    @JsonIgnore
+    private Inspection inspection;
+
+    @Column(name = "production_model", nullable = false)
+    private String productionModel;
+
+    @Column(name = "candidate_model", nullable = false)
+    private String candidateModel;
+
+    @Column(name = "production_status")
+    private String productionStatus;
+
+    @Column(name = "candidate_status")
+    private String candidateStatus;
+
+    @Column(name = "candidate_json_output", columnDefinition = "TEXT")
+    private String candidateJsonOutput; // Candidate's "anomalies" array
+
+    @Column(name = "production_boxes", nullable = false)
+    private int productionBoxes;
+
+    @Column(name = "candidate_boxes", nullable = false)
+    private int candidateBoxes;
+
+    // Boxes of the same type overlapping with IoU >= 0.5, matched one-to-one
+    @Column(name = "matched_boxes", nullable = false)
+    private int matchedBoxes;
+
+    @Column(name = "status_agrees", nullable = false)
+    private boolean statusAgrees;
+
+    // Null when production did not run the model (cache hit or change-detection gate)
+    @Column(name = "production_latency_ms")
+    private Long productionLatencyMs;
+
+    @Column(name = "candidate_latency_ms", nullable = false)
+    private long candidateLatencyMs;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -1,10 +1,14 @@
 package com.university.transformer.oversight.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import jakarta.persistence.*;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
 @Entity
@@ -33,4 +37,11 @@ public class Transformer {
     @JsonManagedReference
     private List<Inspection> inspections;
 
+    // Precomputed baseline statistics, one per environmental condition
+    @OneToMany(mappedBy = "transformer", cascade = CascadeType.ALL, fetch = FetchType.LAZY, orphanRemoval = true)
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private List<BaselineProfile> baselineProfiles = new ArrayList<>();
+
 }
@@ -0,0 +1,19 @@
+package com.university.transformer.oversight.repository;
+
+import com.university.transformer.oversight.model.AnnotationLog;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import java.util.List;
+
+public interface AnnotationLogRepository extends JpaRepository<AnnotationLog, Long> {
+    // One history page: the events after the cursor, oldest first
+    List<AnnotationLog> findByInspectionIdAndIdGreaterThanOrderByIdAsc(Long inspectionId, Long afterId, Limit limit);
+
+    // The tail replayed on top of a snapshot
+    List<AnnotationLog> findByInspectionIdAndIdGreaterThanAndIdLessThanEqualOrderByIdAsc(Long inspectionId, Long afterId, Long upToId);
+
+    long countByInspectionIdAndIdGreaterThan(Long inspectionId, Long afterId);
+
+    // Grows with every committed change to the inspection's boxes (the log is append-only)
+    long countByInspectionId(Long inspectionId);
+}
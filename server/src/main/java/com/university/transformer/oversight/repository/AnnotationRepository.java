@@ -2,16 +2,26 @@ package com.university.transformer.oversight.repository;
 
 import com.university.transformer.oversight.model.Annotation;
 import org.springframework.data.jpa.repository.JpaRepository;
+import java.util.Collection;
 import java.util.List;
 import com.university.transformer.oversight.dto.AnnotationExportDTO;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface AnnotationRepository extends JpaRepository<Annotation, Long> {
     List<Annotation> findByInspectionId(Long inspectionId);
     List<Annotation> findByInspectionIdAndIsDeletedFalse(Long inspectionId);
+    List<Annotation> findByInspectionIdInAndIsDeletedFalse(Collection<Long> inspectionIds);
+    List<Annotation> findByInspectionIdAndIdIn(Long inspectionId, Collection<Long> ids);
 
     void deleteByInspectionId(Long inspectionId);
 
+    // Single bulk DELETE instead of loading and removing every row
+    @Modifying
+    @Query("DELETE FROM Annotation a WHERE a.inspection.id IN :inspectionIds")
+    void deleteByInspectionIdIn(@Param("inspectionIds") Collection<Long> inspectionIds);
+
     @Query("SELECT new com.university.transformer.oversight.dto.AnnotationExportDTO(" +
             // Inspection/Context Data
             "i.id, i.inspectionNo, ti.fileName, " +
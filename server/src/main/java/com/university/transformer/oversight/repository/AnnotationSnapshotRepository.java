@@ -0,0 +1,11 @@
+package com.university.transformer.oversight.repository;
+
+import com.university.transformer.oversight.model.AnnotationSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import java.util.Optional;
+
+public interface AnnotationSnapshotRepository extends JpaRepository<AnnotationSnapshot, Long> {
+    Optional<AnnotationSnapshot> findFirstByInspectionIdOrderByLastLogIdDesc(Long inspectionId);
+
+    Optional<AnnotationSnapshot> findFirstByInspectionIdAndLastLogIdLessThanEqualOrderByLastLogIdDesc(Long inspectionId, Long lastLogId);
+}
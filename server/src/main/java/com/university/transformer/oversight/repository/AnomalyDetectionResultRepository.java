@@ -2,8 +2,13 @@ package com.university.transformer.oversight.repository;
 
 import com.university.transformer.oversight.model.AnomalyDetectionResult;
 import org.springframework.data.jpa.repository.JpaRepository;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface AnomalyDetectionResultRepository extends JpaRepository<AnomalyDetectionResult, Long> {
     Optional<AnomalyDetectionResult> findByInspectionId(Long inspectionId);
+    List<AnomalyDetectionResult> findByInspectionIdIn(Collection<Long> inspectionIds);
+    boolean existsByOutputImageName(String outputImageName);
+    long countByOutputImageName(String outputImageName);
 }
\ No newline at end of file
@@ -0,0 +1,15 @@
+package com.university.transformer.oversight.repository;
+
+import com.university.transformer.oversight.model.BaselineProfile;
+import com.university.transformer.oversight.model.ThermalImage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface BaselineProfileRepository extends JpaRepository<BaselineProfile, Long> {
+    Optional<BaselineProfile> findByTransformer_IdAndEnvironmentalCondition(Long transformerId, ThermalImage.EnvironmentalCondition condition);
+    List<BaselineProfile> findByTransformer_Id(Long transformerId);
+    List<BaselineProfile> findByTransformer_IdIn(Collection<Long> transformerIds);
+    void deleteByTransformer_IdAndImageName(Long transformerId, String imageName);
+}
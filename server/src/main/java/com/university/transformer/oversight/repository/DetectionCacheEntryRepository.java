@@ -0,0 +1,35 @@
+package com.university.transformer.oversight.repository;
+
+import com.university.transformer.oversight.model.DetectionCacheEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface DetectionCacheEntryRepository extends JpaRepository<DetectionCacheEntry, String> {
+
+    @Query("SELECT COALESCE(SUM(e.sizeBytes), 0) FROM DetectionCacheEntry e")
+    long sumSizeBytes();
+
+    // Least recently used entries first, for eviction
+    List<DetectionCacheEntry> findTop100ByOrderByLastAccessedAtAsc();
+
+    boolean existsByOutputImageName(String outputImageName);
+
+    // Two detections that missed on the same inputs both store their output; the first entry is kept and the
+    // second insert does nothing, instead of failing on the primary key after its inference already succeeded
+    @Modifying
+    @Query(value = "INSERT INTO detection_cache (cache_key, maintenance_sha256, baseline_sha256, threshold_percentage, " +
+            "model_version, overall_status, output_image_name, detector_output, size_bytes, hit_count, created_at, last_accessed_at) " +
+            "VALUES (:cacheKey, :maintenanceSha256, :baselineSha256, :thresholdPercentage, :modelVersion, :overallStatus, " +
+            ":outputImageName, :detectorOutput, :sizeBytes, 0, :createdAt, :createdAt) " +
+            "ON DUPLICATE KEY UPDATE cache_key = cache_key", nativeQuery = true)
+    int insertIfAbsent(@Param("cacheKey") String cacheKey, @Param("maintenanceSha256") String maintenanceSha256,
+                       @Param("baselineSha256") String baselineSha256, @Param("thresholdPercentage") Double thresholdPercentage,
+                       @Param("modelVersion") String modelVersion, @Param("overallStatus") String overallStatus,
+                       @Param("outputImageName") String outputImageName, @Param("detectorOutput") String detectorOutput,
+                       @Param("sizeBytes") long sizeBytes, @Param("createdAt") LocalDateTime createdAt);
+}
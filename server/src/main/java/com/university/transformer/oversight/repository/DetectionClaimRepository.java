@@ -0,0 +1,29 @@
+package com.university.transformer.oversight.repository;
+
+import com.university.transformer.oversight.model.DetectionClaim;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+
+public interface DetectionClaimRepository extends JpaRepository<DetectionClaim, Long> {
+
+    // Plain INSERT so a concurrent claim fails on the primary key instead of being merged into an update
+    @Modifying
+    @Query(value = "INSERT INTO detection_claims (inspection_id, node_id, request_key, claimed_at, expires_at) " +
+            "VALUES (:inspectionId, :nodeId, :requestKey, :claimedAt, :expiresAt)", nativeQuery = true)
+    int insertClaim(@Param("inspectionId") Long inspectionId, @Param("nodeId") String nodeId, @Param("requestKey") String requestKey,
+                    @Param("claimedAt") LocalDateTime claimedAt, @Param("expiresAt") LocalDateTime expiresAt);
+
+    @Modifying
+    @Query("UPDATE DetectionClaim c SET c.nodeId = :nodeId, c.requestKey = :requestKey, c.claimedAt = :claimedAt, " +
+            "c.expiresAt = :expiresAt WHERE c.inspectionId = :inspectionId AND c.expiresAt < :claimedAt")
+    int takeOverExpired(@Param("inspectionId") Long inspectionId, @Param("nodeId") String nodeId, @Param("requestKey") String requestKey,
+                        @Param("claimedAt") LocalDateTime claimedAt, @Param("expiresAt") LocalDateTime expiresAt);
+
+    @Modifying
+    @Query("DELETE FROM DetectionClaim c WHERE c.inspectionId = :inspectionId AND c.nodeId = :nodeId")
+    int release(@Param("inspectionId") Long inspectionId, @Param("nodeId") String nodeId);
+}
@@ -13,6 +13,7 @@ public interface InspectionRepository extends JpaRepository<Inspection, Long> {
 
 
     List<Inspection> findByTransformer_Id(Long transformerId);
+    List<Inspection> findByTransformer_Region(String region);
     @Query("SELECT i FROM Inspection i JOIN FETCH i.transformer")
     List<Inspection> findAllWithTransformers();
     @Modifying
@@ -0,0 +1,16 @@
+package com.university.transformer.oversight.repository;
+
+import com.university.transformer.oversight.model.ModelVersion;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface ModelVersionRepository extends JpaRepository<ModelVersion, Long> {
+
+    Optional<ModelVersion> findByModelName(String modelName);
+
+    Optional<ModelVersion> findFirstByStatus(ModelVersion.Status status);
+
+    List<ModelVersion> findAllByOrderByCreatedAtDesc();
+}
@@ -0,0 +1,17 @@
+package com.university.transformer.oversight.repository;
+
+import com.university.transformer.oversight.model.RawDetection;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.util.Collection;
+import java.util.List;
+
+public interface RawDetectionRepository extends JpaRepository<RawDetection, Long> {
+    List<RawDetection> findByInspectionIdOrderByBoxIndex(Long inspectionId);
+
+    @Modifying
+    @Query("DELETE FROM RawDetection r WHERE r.inspection.id IN :inspectionIds")
+    void deleteByInspectionIdIn(@Param("inspectionIds") Collection<Long> inspectionIds);
+}
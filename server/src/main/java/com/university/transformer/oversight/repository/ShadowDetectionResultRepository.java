@@ -0,0 +1,9 @@
+package com.university.transformer.oversight.repository;
+
+import com.university.transformer.oversight.model.ShadowDetectionResult;
+import org.springframework.data.jpa.repository.JpaRepository;
+import java.util.List;
+
+public interface ShadowDetectionResultRepository extends JpaRepository<ShadowDetectionResult, Long> {
+    List<ShadowDetectionResult> findByCandidateModel(String candidateModel);
+}
@@ -3,9 +3,12 @@ package com.university.transformer.oversight.repository;
 import com.university.transformer.oversight.model.ThermalImage;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface ThermalImageRepository extends JpaRepository<ThermalImage, Long> {
     Optional<ThermalImage> findByInspectionId(Long inspectionId);
     ThermalImage findByInspectionIdAndImageType(Long inspectionId, ThermalImage.ImageType imageType);
+    List<ThermalImage> findByInspectionIdIn(Collection<Long> inspectionIds);
 }
\ No newline at end of file
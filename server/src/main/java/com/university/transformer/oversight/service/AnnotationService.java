@@ -1,6 +1,7 @@
 package com.university.transformer.oversight.service;
 
 import com.university.transformer.oversight.dto.AnnotationDTO;
+import com.university.transformer.oversight.dto.AnnotationHistoryPageDTO;
 import java.io.IOException;
 import java.util.List;
 
@@ -8,6 +9,26 @@ public interface AnnotationService {
     List<AnnotationDTO> getAnnotationsByInspectionId(Long inspectionId);
     List<AnnotationDTO> getAllAnnotationsForDisplay(Long inspectionId);
     void saveInitialAiAnnotations(Long inspectionId, String detectionJsonOutput);
+    // Replaces the inspection's boxes with the list. Boxes carrying a version must still be at it (else
+    // AnnotationConflictException); boxes without one, and boxes left out of the list, are last writer wins
     void saveAnnotations(Long inspectionId, List<AnnotationDTO> finalAnnotations);
+
+    /**
+     * Applies only the given changes (actionType ADDED, EDITED or DELETED) and returns the changed boxes with
+     * their new versions. Throws AnnotationConflictException, saving nothing, when an edited or deleted box is
+     * no longer at the version the change names.
+     */
+    List<AnnotationDTO> applyAnnotationChanges(Long inspectionId, List<AnnotationDTO> changes);
     byte[] exportAllAnnotationsAsJson() throws IOException;
+
+    /**
+     * Changes to the inspection's boxes after the cursor (an event id, null for the beginning), oldest first.
+     */
+    AnnotationHistoryPageDTO getAnnotationHistory(Long inspectionId, Long after, int limit);
+
+    /**
+     * The inspection's boxes as they were right after the given history event (null for the latest event),
+     * rebuilt from the history rather than read from the current annotations.
+     */
+    List<AnnotationDTO> getAnnotationsAt(Long inspectionId, Long eventId);
 }
\ No newline at end of file
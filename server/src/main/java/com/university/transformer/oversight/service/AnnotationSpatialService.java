@@ -0,0 +1,21 @@
+package com.university.transformer.oversight.service;
+
+import com.university.transformer.oversight.dto.AnnotationDTO;
+import com.university.transformer.oversight.dto.BoxOverlapDTO;
+import java.util.List;
+
+/**
+ * Geometric queries over the active annotation boxes of an inspection's thermal image, answered from an
+ * in-memory spatial index instead of loading and comparing every box.
+ */
+public interface AnnotationSpatialService {
+
+    /** Boxes that share at least one point with the rectangle (image pixels, top-left corner plus size). */
+    List<AnnotationDTO> findIntersecting(Long inspectionId, double x, double y, double width, double height);
+
+    /** Up to count boxes closest to the point, nearest first; boxes containing the point are at distance 0. */
+    List<AnnotationDTO> findNearest(Long inspectionId, double x, double y, int count);
+
+    /** Pairs of boxes with an IoU above minIou; with crossSourceOnly only pairs of an AI box and a user box. */
+    List<BoxOverlapDTO> findOverlappingPairs(Long inspectionId, double minIou, boolean crossSourceOnly);
+}
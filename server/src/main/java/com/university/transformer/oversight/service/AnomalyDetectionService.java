@@ -1,13 +1,25 @@
 package com.university.transformer.oversight.service;
 
+import com.university.transformer.oversight.dto.BatchDetectionRequest;
+import com.university.transformer.oversight.dto.BatchDetectionResponse;
 import com.university.transformer.oversight.model.AnomalyDetectionResult;
+import com.university.transformer.oversight.model.ModelVariant;
 import org.springframework.core.io.Resource;
 import java.io.IOException;
 import java.util.Optional;
 
 public interface AnomalyDetectionService {
-    // Core method to run the python detection script
-    AnomalyDetectionResult runDetection(Long inspectionId, String baselineFileName, Double tempThresholdPercentage) throws Exception;
+    // Core method to run the python detection script; FAST falls back to ACCURATE when the model has no INT8 export
+    AnomalyDetectionResult runDetection(Long inspectionId, String baselineFileName, Double tempThresholdPercentage, ModelVariant variant) throws Exception;
+
+    // Same as runDetection for work nobody is waiting on (auto-detection of uploads): inference yields to interactive requests
+    AnomalyDetectionResult runBackgroundDetection(Long inspectionId, String baselineFileName, Double tempThresholdPercentage, ModelVariant variant) throws Exception;
+
+    // Runs detection over many inspections as batched inference and persists all results in bulk
+    BatchDetectionResponse runBatchDetection(BatchDetectionRequest request) throws Exception;
+
+    // Re-applies a new temperature threshold to the stored raw detections without running the model again
+    AnomalyDetectionResult rethreshold(Long inspectionId, Double tempThresholdPercentage) throws IOException;
 
     // Method to fetch the stored anomaly results
     Optional<AnomalyDetectionResult> getDetectionResultByInspectionId(Long inspectionId);
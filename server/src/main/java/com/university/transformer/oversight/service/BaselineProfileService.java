@@ -0,0 +1,21 @@
+package com.university.transformer.oversight.service;
+
+import com.university.transformer.oversight.model.BaselineProfile;
+import com.university.transformer.oversight.model.ThermalImage.EnvironmentalCondition;
+import com.university.transformer.oversight.model.Transformer;
+
+import java.util.Optional;
+
+public interface BaselineProfileService {
+
+    // Analyzes the stored baseline image and creates or replaces the transformer's profile for that condition
+    BaselineProfile computeProfile(Transformer transformer, EnvironmentalCondition condition, String imageName);
+
+    /**
+     * Picks the baseline for a detection: the profile matching the maintenance image's condition,
+     * then the profile of the requested baseline file, and finally a profile computed from that file.
+     */
+    Optional<BaselineProfile> resolveForDetection(Transformer transformer, EnvironmentalCondition maintenanceCondition, String baselineFileName);
+
+    void deleteProfilesForImage(Long transformerId, String imageName);
+}
@@ -0,0 +1,35 @@
+package com.university.transformer.oversight.service;
+
+import com.university.transformer.oversight.model.DetectionCacheEntry;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Content-hash keyed cache of detector output, persisted so it survives restarts.
+ */
+public interface DetectionCacheService {
+
+    boolean isEnabled();
+
+    // Hashes the maintenance image (memoized by path, size and modification time) and builds the cache key
+    CacheKey buildKey(Path maintenanceImage, String baselineSha256, Double thresholdPercentage, String modelVersion) throws IOException;
+
+    // Returns the cached entry on a hit; entries whose overlay image has gone missing count as a miss
+    Optional<DetectionCacheEntry> lookup(CacheKey key);
+
+    void store(CacheKey key, String detectorOutputJson, String overallStatus, String outputImageName);
+
+    @Getter
+    @AllArgsConstructor
+    class CacheKey {
+        private final String value;
+        private final String maintenanceSha256;
+        private final String baselineSha256;
+        private final Double thresholdPercentage;
+        private final String modelVersion;
+    }
+}
@@ -0,0 +1,34 @@
+package com.university.transformer.oversight.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.List;
+
+/**
+ * Runs the YOLO anomaly model. The implementation is chosen with ml.detector.backend
+ * ("python" for the detector.py worker pool, "onnx" for in-process ONNX Runtime,
+ * "socket" for detector.py servers on Unix domain sockets).
+ * All implementations return detector.py's JSON shape: overall_status, output_image_name, anomalies,
+ * raw_detections, baseline_intensity and metadata.
+ */
+public interface DetectionEngine {
+
+    // Runs one detection; failures are thrown as RuntimeException
+    JsonNode detect(String maintenancePath, int baselineIntensity, String outputDir, Double thresholdPercentage, String modelPath);
+
+    // Items carry "key", "maintenance", "baseline_intensity" and "threshold"; returns one output per item tagged with its key,
+    // per-item failures are reported in the item's "error" field
+    JsonNode detectBatch(List<ObjectNode> items, String outputDir, String modelPath);
+
+    // Loads the model ahead of traffic and makes it the one (re)started workers load; throws when it cannot be loaded
+    void warmUp(String modelPath);
+
+    // False when taking on optional work (shadow evaluation) would make production requests wait
+    boolean hasSpareCapacity();
+
+    // True when detectBatch runs its items through the model together, so batching single requests pays off
+    default boolean batchesInference() {
+        return false;
+    }
+}
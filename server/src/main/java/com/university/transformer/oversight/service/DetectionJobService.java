@@ -0,0 +1,32 @@
+package com.university.transformer.oversight.service;
+
+import com.university.transformer.oversight.dto.DetectionJobDTO;
+import com.university.transformer.oversight.dto.DetectionRequest;
+import java.util.Optional;
+
+/**
+ * Runs anomaly detection in the background so request threads are not held for the whole inference.
+ */
+public interface DetectionJobService {
+
+    // Queues a detection and returns immediately; throws DetectionQueueFullException when the queue is full
+    DetectionJobDTO submit(Long inspectionId, DetectionRequest request);
+
+    // Queues a detection nobody is waiting on on a separate, smaller queue; it runs as background inference and
+    // never delays jobs from submit. Throws DetectionQueueFullException when that queue is full
+    DetectionJobDTO submitBackground(Long inspectionId, DetectionRequest request);
+
+    Optional<DetectionJobDTO> getJob(String jobId);
+
+    // Returns false if the job is unknown or already finished
+    boolean cancel(String jobId);
+
+    int getQueueDepth();
+
+    // Jobs the queue can hold in total, waiting ones included
+    int getQueueCapacity();
+
+    int getBackgroundQueueDepth();
+
+    int getBackgroundQueueCapacity();
+}
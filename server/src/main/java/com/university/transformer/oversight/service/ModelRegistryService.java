@@ -0,0 +1,38 @@
+package com.university.transformer.oversight.service;
+
+import com.university.transformer.oversight.model.ModelVariant;
+import com.university.transformer.oversight.model.ModelVersion;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Registry of the YOLO model versions in ml.model-output-dir and the single production version.
+ */
+public interface ModelRegistryService {
+
+    // File name of the production model; read once per detection so a swap never mixes models within a request
+    String getProductionModelName();
+
+    // Absolute path of the production model file
+    String getProductionModelPath();
+
+    String resolveModelPath(String modelName);
+
+    // The variant's model file name when that file exists (FAST needs the INT8 export); empty otherwise
+    Optional<String> resolveVariant(String modelName, ModelVariant variant);
+
+    List<ModelVersion> listVersions();
+
+    // Records a freshly trained model as a CANDIDATE with its results.csv metrics and checksum
+    ModelVersion registerModel(String modelName);
+
+    /**
+     * Verifies the file checksum, loads the model on every inference backend and only then
+     * switches production to it, so the first request after the swap does not pay for loading.
+     */
+    ModelVersion promote(Long versionId);
+
+    // Returns production to the version the current one replaced
+    ModelVersion rollback();
+}
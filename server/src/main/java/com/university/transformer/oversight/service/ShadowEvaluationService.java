@@ -0,0 +1,32 @@
+package com.university.transformer.oversight.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.university.transformer.oversight.dto.ShadowReportDTO;
+
+import java.util.Optional;
+
+/**
+ * Runs a candidate model on live detection traffic in the background and records how it compares
+ * with production. Shadow work is dropped whenever production is busy.
+ */
+public interface ShadowEvaluationService {
+
+    // Starts mirroring detections to the given registered model version; returns its model name
+    String startShadow(Long versionId);
+
+    void stopShadow();
+
+    Optional<String> getCandidateModelName();
+
+    /**
+     * Queues the candidate run for a detection production just completed, and for a sample of full-precision
+     * detections a run of the production model's INT8 variant (reported with the variant as candidate). Returns immediately; the request is
+     * dropped when no candidate is set, production is busy or the shadow queue is full.
+     * productionLatencyMs is null when production did not run the model (cache hit or gate).
+     */
+    void submit(Long inspectionId, String maintenancePath, int baselineIntensity, Double thresholdPercentage,
+                String productionModel, JsonNode productionOutput, Long productionLatencyMs);
+
+    // Report for a candidate model; the current candidate when candidateModel is null
+    ShadowReportDTO report(String candidateModel);
+}
@@ -0,0 +1,269 @@
+package com.university.transformer.oversight.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.university.transformer.oversight.dto.AnnotationDTO;
+import com.university.transformer.oversight.model.Annotation;
+import com.university.transformer.oversight.model.AnnotationLog;
+import com.university.transformer.oversight.model.AnnotationSnapshot;
+import com.university.transformer.oversight.model.Inspection;
+import com.university.transformer.oversight.repository.AnnotationLogRepository;
+import com.university.transformer.oversight.repository.AnnotationRepository;
+import com.university.transformer.oversight.repository.AnnotationSnapshotRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Append-only history of annotation changes. Every add, edit and delete of a box is written to annotation_logs
+ * next to the change itself (same transaction); the annotations table stays the compacted current state that the
+ * editor reads. Every annotations.history.snapshot-interval events the current boxes are also stored as a snapshot,
+ * so any past state is rebuilt from the nearest snapshot plus the events after it rather than the whole history.
+ */
+@Component
+public class AnnotationHistory {
+
+    public static final String CAUSE_USER = "USER";
+    public static final String CAUSE_DETECTION = "DETECTION";
+    public static final String CAUSE_RETHRESHOLD = "RETHRESHOLD";
+
+    private static final TypeReference<List<AnnotationDTO>> BOX_LIST = new TypeReference<>() {};
+
+    private final AnnotationLogRepository logRepository;
+    private final AnnotationSnapshotRepository snapshotRepository;
+    private final AnnotationRepository annotationRepository;
+    private final ObjectMapper objectMapper;
+    private final int snapshotInterval;
+
+    public AnnotationHistory(AnnotationLogRepository logRepository,
+                             AnnotationSnapshotRepository snapshotRepository,
+                             AnnotationRepository annotationRepository,
+                             ObjectMapper objectMapper,
+                             @Value("${annotations.history.snapshot-interval:50}") int snapshotInterval) {
+        this.logRepository = logRepository;
+        this.snapshotRepository = snapshotRepository;
+        this.annotationRepository = annotationRepository;
+        this.objectMapper = objectMapper;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    /** Event for a box that now exists; call after it was saved so it has its id. */
+    public AnnotationLog added(Annotation annotation, String cause) {
+        AnnotationLog event = event(AnnotationLog.Action.ADDED, annotation, cause, annotation.getUserId());
+        recordNew(event, annotation);
+        return event;
+    }
+
+    /** Event for a box that is being removed, holding its last state. */
+    public AnnotationLog deleted(Annotation annotation, String cause, String userId) {
+        AnnotationLog event = event(AnnotationLog.Action.DELETED, annotation, cause, userId);
+        recordOld(event, annotation);
+        return event;
+    }
+
+    /** Starts an edit event from the box as it is now; complete it with {@link #edited} once the box was changed. */
+    public AnnotationLog editing(Annotation annotation) {
+        AnnotationLog event = event(AnnotationLog.Action.EDITED, annotation, CAUSE_USER, annotation.getUserId());
+        recordOld(event, annotation);
+        return event;
+    }
+
+    public void edited(AnnotationLog event, Annotation annotation) {
+        event.setUserId(annotation.getUserId());
+        recordNew(event, annotation);
+    }
+
+    /**
+     * Appends the events of one change to an inspection's boxes. activeAnnotations must supply the inspection's
+     * non-deleted boxes after the change; they become the next snapshot when one is due (and only then are asked for).
+     */
+    public void append(Inspection inspection, List<AnnotationLog> events, Supplier<List<Annotation>> activeAnnotations) {
+        if (events.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        for (AnnotationLog event : events) {
+            event.setInspection(inspection);
+            event.setCreatedAt(now);
+        }
+        long lastLogId = logRepository.saveAll(events).stream().mapToLong(AnnotationLog::getId).max().getAsLong();
+
+        if (snapshotInterval <= 0) {
+            return;
+        }
+        long snapshotLogId = snapshotRepository.findFirstByInspectionIdOrderByLastLogIdDesc(inspection.getId())
+                .map(AnnotationSnapshot::getLastLogId)
+                .orElse(0L);
+        if (logRepository.countByInspectionIdAndIdGreaterThan(inspection.getId(), snapshotLogId) < snapshotInterval) {
+            return;
+        }
+        // Box timestamps (@UpdateTimestamp) are only filled in when the boxes are flushed
+        annotationRepository.flush();
+        List<AnnotationDTO> boxes = activeAnnotations.get().stream().map(AnnotationHistory::snapshotDTO).collect(Collectors.toList());
+        AnnotationSnapshot snapshot = new AnnotationSnapshot();
+        snapshot.setInspection(inspection);
+        snapshot.setLastLogId(lastLogId);
+        snapshot.setBoxCount(boxes.size());
+        snapshot.setBoxesJson(writeBoxes(boxes));
+        snapshot.setCreatedAt(now);
+        snapshotRepository.save(snapshot);
+    }
+
+    /**
+     * Records that a detection replaced an inspection's boxes: previous are the boxes that were active before,
+     * current the saved replacements.
+     */
+    public void replaced(Inspection inspection, List<Annotation> previous, List<Annotation> current, String cause) {
+        List<AnnotationLog> events = new ArrayList<>();
+        previous.forEach(annotation -> events.add(deleted(annotation, cause, null)));
+        current.forEach(annotation -> events.add(added(annotation, cause)));
+        append(inspection, events, () -> current);
+    }
+
+    /** {@link #replaced} for several inspections at once, as batch detection replaces them. */
+    public void replacedAll(Collection<Inspection> inspections, List<Annotation> previous, List<Annotation> current, String cause) {
+        Map<Long, List<Annotation>> previousByInspection = previous.stream()
+                .collect(Collectors.groupingBy(annotation -> annotation.getInspection().getId()));
+        Map<Long, List<Annotation>> currentByInspection = current.stream()
+                .collect(Collectors.groupingBy(annotation -> annotation.getInspection().getId()));
+        for (Inspection inspection : inspections) {
+            replaced(inspection, previousByInspection.getOrDefault(inspection.getId(), List.of()),
+                    currentByInspection.getOrDefault(inspection.getId(), List.of()), cause);
+        }
+    }
+
+    /** Up to limit events after the cursor (an event id; null for the start), oldest first. */
+    public List<AnnotationLog> page(Long inspectionId, Long afterLogId, int limit) {
+        return logRepository.findByInspectionIdAndIdGreaterThanOrderByIdAsc(inspectionId,
+                afterLogId != null ? afterLogId : 0L, Limit.of(limit));
+    }
+
+    /**
+     * The inspection's active boxes right after event upToLogId (null for the latest state), ordered by id:
+     * the nearest snapshot at or before that event with the later events replayed on top. The boxes carry no
+     * version: they are past states, not rows a save could target, and events do not record one.
+     */
+    public List<AnnotationDTO> rebuild(Long inspectionId, Long upToLogId) {
+        long upTo = upToLogId != null ? upToLogId : Long.MAX_VALUE;
+        Map<Long, AnnotationDTO> boxes = new TreeMap<>();
+        long replayFrom = 0L;
+        Optional<AnnotationSnapshot> snapshot = snapshotRepository
+                .findFirstByInspectionIdAndLastLogIdLessThanEqualOrderByLastLogIdDesc(inspectionId, upTo);
+        if (snapshot.isPresent()) {
+            readBoxes(snapshot.get()).forEach(box -> boxes.put(box.getId(), box));
+            replayFrom = snapshot.get().getLastLogId();
+        }
+        for (AnnotationLog event : logRepository.findByInspectionIdAndIdGreaterThanAndIdLessThanEqualOrderByIdAsc(inspectionId, replayFrom, upTo)) {
+            if (event.getAction() == AnnotationLog.Action.DELETED) {
+                boxes.remove(event.getAnnotationId());
+            } else {
+                boxes.put(event.getAnnotationId(), toDTO(event));
+            }
+        }
+        return new ArrayList<>(boxes.values());
+    }
+
+    static AnnotationDTO toDTO(Annotation annotation) {
+        AnnotationDTO dto = new AnnotationDTO();
+        dto.setId(annotation.getId());
+        dto.setCurrentStatus(annotation.getCurrentStatus());
+        dto.setOriginalSource(annotation.getOriginalSource());
+        dto.setX(annotation.getX());
+        dto.setY(annotation.getY());
+        dto.setWidth(annotation.getWidth());
+        dto.setHeight(annotation.getHeight());
+        dto.setComments(annotation.getComments());
+        dto.setUserId(annotation.getUserId());
+        dto.setTimestamp(annotation.getTimestamp());
+        dto.setAiConfidence(annotation.getAiConfidence());
+        dto.setAiSeverityScore(annotation.getAiSeverityScore());
+        dto.setFaultType(annotation.getFaultType());
+        dto.setVersion(annotation.getVersion());
+        return dto;
+    }
+
+    // The box as a snapshot keeps it: the same fields a replayed event yields, so rebuilds look alike either way
+    private static AnnotationDTO snapshotDTO(Annotation annotation) {
+        AnnotationDTO dto = toDTO(annotation);
+        dto.setVersion(null);
+        return dto;
+    }
+
+    // The box as an ADDED or EDITED event left it
+    private static AnnotationDTO toDTO(AnnotationLog event) {
+        AnnotationDTO dto = new AnnotationDTO();
+        dto.setId(event.getAnnotationId());
+        dto.setCurrentStatus(event.getNewStatus());
+        dto.setOriginalSource(event.getOriginalSource());
+        dto.setX(event.getNewX());
+        dto.setY(event.getNewY());
+        dto.setWidth(event.getNewWidth());
+        dto.setHeight(event.getNewHeight());
+        dto.setComments(event.getNewComments());
+        dto.setUserId(event.getUserId());
+        dto.setTimestamp(event.getCreatedAt());
+        dto.setAiConfidence(event.getAiConfidence());
+        dto.setAiSeverityScore(event.getAiSeverityScore());
+        dto.setFaultType(event.getNewFaultType());
+        return dto;
+    }
+
+    private static AnnotationLog event(AnnotationLog.Action action, Annotation annotation, String cause, String userId) {
+        AnnotationLog event = new AnnotationLog();
+        event.setAnnotationId(annotation.getId());
+        event.setAction(action);
+        event.setCause(cause);
+        event.setUserId(userId);
+        event.setOriginalSource(annotation.getOriginalSource());
+        event.setAiConfidence(annotation.getAiConfidence());
+        event.setAiSeverityScore(annotation.getAiSeverityScore());
+        return event;
+    }
+
+    private static void recordOld(AnnotationLog event, Annotation annotation) {
+        event.setOldX(annotation.getX());
+        event.setOldY(annotation.getY());
+        event.setOldWidth(annotation.getWidth());
+        event.setOldHeight(annotation.getHeight());
+        event.setOldFaultType(annotation.getFaultType());
+        event.setOldStatus(annotation.getCurrentStatus());
+        event.setOldComments(annotation.getComments());
+    }
+
+    private static void recordNew(AnnotationLog event, Annotation annotation) {
+        event.setNewX(annotation.getX());
+        event.setNewY(annotation.getY());
+        event.setNewWidth(annotation.getWidth());
+        event.setNewHeight(annotation.getHeight());
+        event.setNewFaultType(annotation.getFaultType());
+        event.setNewStatus(annotation.getCurrentStatus());
+        event.setNewComments(annotation.getComments());
+    }
+
+    private String writeBoxes(List<AnnotationDTO> boxes) {
+        try {
+            return objectMapper.writeValueAsString(boxes);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize an annotation snapshot.", e);
+        }
+    }
+
+    private List<AnnotationDTO> readBoxes(AnnotationSnapshot snapshot) {
+        try {
+            return objectMapper.readValue(snapshot.getBoxesJson(), BOX_LIST);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable annotation snapshot " + snapshot.getId() + ".", e);
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.university.transformer.oversight.service.impl;
+
+import com.university.transformer.oversight.dto.AnnotationDTO;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Immutable R-tree over the boxes of one image, bulk loaded with Sort-Tile-Recursive packing: the boxes are
+ * sorted into vertical slices by centre x, each slice is sorted by centre y and cut into full nodes, and the same
+ * is repeated on the nodes until one root is left. Every node but the last of a slice is full and siblings barely
+ * overlap, so a query visits O(log n + matches) nodes. Changes are handled by building a new tree, which for a few
+ * hundred boxes costs about as much as a handful of queries.
+ * <p>
+ * Boxes are closed rectangles [x, x + width] x [y, y + height]; a negative width or height is taken as drawn.
+ */
+final class AnnotationRTree {
+
+    static final int NODE_CAPACITY = 16;
+
+    private static final AnnotationRTree EMPTY = new AnnotationRTree(null, 0);
+
+    // Bounds of a subtree, or of one box when box is set (then children is null)
+    private static final class Node {
+        private final double minX;
+        private final double minY;
+        private final double maxX;
+        private final double maxY;
+        private final Node[] children;
+        private final AnnotationDTO box;
+        private final int ordinal; // Position of the box in the input list
+
+        private Node(AnnotationDTO box, int ordinal) {
+            this.minX = Math.min(box.getX(), box.getX() + box.getWidth());
+            this.maxX = Math.max(box.getX(), box.getX() + box.getWidth());
+            this.minY = Math.min(box.getY(), box.getY() + box.getHeight());
+            this.maxY = Math.max(box.getY(), box.getY() + box.getHeight());
+            this.children = null;
+            this.box = box;
+            this.ordinal = ordinal;
+        }
+
+        private Node(Node[] children) {
+            double minX = Double.POSITIVE_INFINITY;
+            double minY = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY;
+            double maxY = Double.NEGATIVE_INFINITY;
+            for (Node child : children) {
+                minX = Math.min(minX, child.minX);
+                minY = Math.min(minY, child.minY);
+                maxX = Math.max(maxX, child.maxX);
+                maxY = Math.max(maxY, child.maxY);
+            }
+            this.minX = minX;
+            this.minY = minY;
+            this.maxX = maxX;
+            this.maxY = maxY;
+            this.children = children;
+            this.box = null;
+            this.ordinal = -1;
+        }
+
+        private boolean intersects(double otherMinX, double otherMinY, double otherMaxX, double otherMaxY) {
+            return minX <= otherMaxX && otherMinX <= maxX && minY <= otherMaxY && otherMinY <= maxY;
+        }
+
+        // Euclidean distance from the point to the rectangle, 0 inside it
+        private double distanceTo(double x, double y) {
+            double dx = Math.max(Math.max(minX - x, 0), x - maxX);
+            double dy = Math.max(Math.max(minY - y, 0), y - maxY);
+            return Math.hypot(dx, dy);
+        }
+
+        private double area() {
+            return (maxX - minX) * (maxY - minY);
+        }
+    }
+
+    private static final class Candidate {
+        private final Node node;
+        private final double distance;
+
+        private Candidate(Node node, double distance) {
+            this.node = node;
+            this.distance = distance;
+        }
+    }
+
+    /**
+     * Two boxes of the tree and their intersection over union.
+     */
+    static final class Overlap {
+        private final AnnotationDTO first;
+        private final AnnotationDTO second;
+        private final double iou;
+
+        private Overlap(AnnotationDTO first, AnnotationDTO second, double iou) {
+            this.first = first;
+            this.second = second;
+            this.iou = iou;
+        }
+
+        AnnotationDTO getFirst() {
+            return first;
+        }
+
+        AnnotationDTO getSecond() {
+            return second;
+        }
+
+        double getIou() {
+            return iou;
+        }
+    }
+
+    private final Node root;
+    private final int size;
+
+    private AnnotationRTree(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    static AnnotationRTree build(List<AnnotationDTO> boxes) {
+        if (boxes.isEmpty()) {
+            return EMPTY;
+        }
+        List<Node> level = new ArrayList<>(boxes.size());
+        for (int i = 0; i < boxes.size(); i++) {
+            level.add(new Node(boxes.get(i), i));
+        }
+        do {
+            level = pack(level);
+        } while (level.size() > 1);
+        return new AnnotationRTree(level.get(0), boxes.size());
+    }
+
+    // One STR pass: groups the nodes of a level into parents of up to NODE_CAPACITY children
+    private static List<Node> pack(List<Node> nodes) {
+        int parentCount = (nodes.size() + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        int sliceCount = (int) Math.ceil(Math.sqrt(parentCount));
+        int sliceSize = sliceCount * NODE_CAPACITY;
+
+        nodes.sort(Comparator.comparingDouble(node -> node.minX + node.maxX));
+        List<Node> parents = new ArrayList<>(parentCount);
+        for (int sliceStart = 0; sliceStart < nodes.size(); sliceStart += sliceSize) {
+            List<Node> slice = nodes.subList(sliceStart, Math.min(sliceStart + sliceSize, nodes.size()));
+            slice.sort(Comparator.comparingDouble(node -> node.minY + node.maxY));
+            for (int start = 0; start < slice.size(); start += NODE_CAPACITY) {
+                parents.add(new Node(slice.subList(start, Math.min(start + NODE_CAPACITY, slice.size())).toArray(new Node[0])));
+            }
+        }
+        return parents;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /** Boxes sharing at least one point with the rectangle. */
+    List<AnnotationDTO> intersecting(double x, double y, double width, double height) {
+        List<AnnotationDTO> result = new ArrayList<>();
+        for (Node node : intersectingNodes(Math.min(x, x + width), Math.min(y, y + height),
+                Math.max(x, x + width), Math.max(y, y + height))) {
+            result.add(node.box);
+        }
+        return result;
+    }
+
+    /** Up to count boxes closest to the point (distance 0 for boxes containing it), nearest first. */
+    List<AnnotationDTO> nearest(double x, double y, int count) {
+        List<AnnotationDTO> result = new ArrayList<>(Math.min(count, size));
+        if (root == null) {
+            return result;
+        }
+        // Best-first search: a box popped from the queue is closer than anything still queued
+        PriorityQueue<Candidate> queue = new PriorityQueue<>(Comparator.comparingDouble(candidate -> candidate.distance));
+        queue.add(new Candidate(root, root.distanceTo(x, y)));
+        while (!queue.isEmpty() && result.size() < count) {
+            Node node = queue.poll().node;
+            if (node.box != null) {
+                result.add(node.box);
+                continue;
+            }
+            for (Node child : node.children) {
+                queue.add(new Candidate(child, child.distanceTo(x, y)));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Every pair of boxes whose intersection over union exceeds minIou (each pair once), found by querying the
+     * tree with each box instead of comparing all pairs. With crossSourceOnly, only pairs of an AI box and a
+     * user box are returned.
+     */
+    List<Overlap> overlapping(double minIou, boolean crossSourceOnly) {
+        List<Overlap> result = new ArrayList<>();
+        if (root == null) {
+            return result;
+        }
+        List<Node> leaves = intersectingNodes(root.minX, root.minY, root.maxX, root.maxY);
+        for (Node a : leaves) {
+            for (Node b : intersectingNodes(a.minX, a.minY, a.maxX, a.maxY)) {
+                // Report each pair once, from the box that came first in the input
+                if (b.ordinal <= a.ordinal) {
+                    continue;
+                }
+                if (crossSourceOnly && sameSource(a.box, b.box)) {
+                    continue;
+                }
+                double iou = iou(a, b);
+                if (iou > minIou) {
+                    result.add(new Overlap(a.box, b.box, iou));
+                }
+            }
+        }
+        return result;
+    }
+
+    private List<Node> intersectingNodes(double minX, double minY, double maxX, double maxY) {
+        List<Node> result = new ArrayList<>();
+        if (root == null || !root.intersects(minX, minY, maxX, maxY)) {
+            return result;
+        }
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            if (node.box != null) {
+                result.add(node);
+                continue;
+            }
+            for (Node child : node.children) {
+                if (child.intersects(minX, minY, maxX, maxY)) {
+                    stack.push(child);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static boolean sameSource(AnnotationDTO a, AnnotationDTO b) {
+        return "AI".equals(a.getOriginalSource()) == "AI".equals(b.getOriginalSource());
+    }
+
+    private static double iou(Node a, Node b) {
+        double width = Math.min(a.maxX, b.maxX) - Math.max(a.minX, b.minX);
+        double height = Math.min(a.maxY, b.maxY) - Math.max(a.minY, b.minY);
+        if (width <= 0 || height <= 0) {
+            return 0;
+        }
+        double intersection = width * height;
+        return intersection / (a.area() + b.area() - intersection);
+    }
+}
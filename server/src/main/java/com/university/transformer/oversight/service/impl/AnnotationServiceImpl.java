@@ -2,8 +2,11 @@ package com.university.transformer.oversight.service.impl;
 
 import com.university.transformer.oversight.dto.AnnotationDTO;
 import com.university.transformer.oversight.dto.AnnotationExportDTO;
+import com.university.transformer.oversight.dto.AnnotationHistoryPageDTO;
+import com.university.transformer.oversight.exception.AnnotationConflictException;
 import com.university.transformer.oversight.exception.ResourceNotFoundException;
 import com.university.transformer.oversight.model.Annotation;
+import com.university.transformer.oversight.model.AnnotationLog;
 import com.university.transformer.oversight.model.Inspection;
 import com.university.transformer.oversight.repository.AnnotationRepository;
 import com.university.transformer.oversight.repository.InspectionRepository;
@@ -11,11 +14,15 @@ import com.university.transformer.oversight.service.AnnotationService;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.JsonNode;
 import java.io.IOException;
+import java.io.StringReader;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -26,11 +33,19 @@ public class AnnotationServiceImpl implements AnnotationService {
     private final InspectionRepository inspectionRepository;
 
     private final ObjectMapper objectMapper;
+    private final DetectionAnnotationMapper detectionAnnotationMapper;
+    private final AnnotationHistory annotationHistory;
 
-    public AnnotationServiceImpl(AnnotationRepository annotationRepository, InspectionRepository inspectionRepository, ObjectMapper objectMapper) {
+    // Largest history page served at once
+    private static final int MAX_HISTORY_PAGE = 500;
+
+    public AnnotationServiceImpl(AnnotationRepository annotationRepository, InspectionRepository inspectionRepository, ObjectMapper objectMapper,
+                                 DetectionAnnotationMapper detectionAnnotationMapper, AnnotationHistory annotationHistory) {
         this.annotationRepository = annotationRepository;
         this.inspectionRepository = inspectionRepository;
         this.objectMapper = objectMapper;
+        this.detectionAnnotationMapper = detectionAnnotationMapper;
+        this.annotationHistory = annotationHistory;
     }
 
     @Override
@@ -61,48 +76,10 @@ public class AnnotationServiceImpl implements AnnotationService {
                 .orElseThrow(() -> new ResourceNotFoundException("Inspection not found with id: " + inspectionId));
 
         try {
-            // Parse the JSON string into a Jackson array node
-            JsonNode detections = objectMapper.readTree(detectionJsonOutput);
-            if (!detections.isArray()) return;
-
-            List<Annotation> newAnnotations = new ArrayList<>();
-
-            for (JsonNode node : detections) {
-
-                Annotation annotation = new Annotation();
-                annotation.setInspection(inspection);
-
-                // Map AI-specific fields
-                annotation.setCurrentStatus(node.has("type") ? node.get("type").asText() : "FAULTY");
-                annotation.setOriginalSource("AI");
-                annotation.setAiConfidence(node.has("confidence") ? node.get("confidence").asDouble() : null);
-                annotation.setAiSeverityScore(node.has("severity_score") ? node.get("severity_score").asInt() : null);
-                annotation.setFaultType(node.has("type") ? node.get("type").asText() : "FAULTY");
-                // Map Bounding Box Coordinates
-                if (node.has("location")) {
-                    JsonNode loc = node.get("location");
-                    double xMin = loc.has("x_min") ? loc.get("x_min").asDouble() : 0;
-                    double yMin = loc.has("y_min") ? loc.get("y_min").asDouble() : 0;
-                    double xMax = loc.has("x_max") ? loc.get("x_max").asDouble() : 0;
-                    double yMax = loc.has("y_max") ? loc.get("y_max").asDouble() : 0;
-
-                    annotation.setX(xMin);
-                    annotation.setY(yMin);
-                    annotation.setWidth(xMax - xMin);
-                    annotation.setHeight(yMax - yMin);
-                }
-
-                // Set default/required fields
-                annotation.setComments(null);
-                annotation.setUserId("AI");
-                // timestamp is set automatically by @UpdateTimestamp
-                annotation.setDeleted(false);
-
-                newAnnotations.add(annotation);
-            }
-
+            // Stream the stored JSON straight into annotation entities
+            List<Annotation> newAnnotations = detectionAnnotationMapper.toAnnotations(inspection, new StringReader(detectionJsonOutput));
             annotationRepository.saveAll(newAnnotations);
-
+            annotationHistory.replaced(inspection, List.of(), newAnnotations, AnnotationHistory.CAUSE_DETECTION);
 
         } catch (IOException e) {
             System.err.println("Error parsing AI detection JSON: " + e.getMessage());
@@ -149,8 +126,24 @@ public class AnnotationServiceImpl implements AnnotationService {
                 .map(AnnotationDTO::getId)
                 .collect(Collectors.toSet());
 
+        // A box sent with the version it was loaded at must still be at that version, or a stale editor would
+        // overwrite a change saved in between; checked before anything is written
+        for (AnnotationDTO dto : finalAnnotations) {
+            Annotation annotation = dto.getId() == null ? null : currentMap.get(dto.getId());
+            if (annotation != null && dto.getVersion() != null && !dto.getVersion().equals(annotation.getVersion())) {
+                throw new AnnotationConflictException("Annotation " + dto.getId() + " was changed since version "
+                        + dto.getVersion() + " was loaded.");
+            }
+        }
+
+        // One history event per box that is added, edited or deleted by this save
+        List<AnnotationLog> events = new ArrayList<>();
+
         // Process Deletions
         // Any box in the DB but NOT in the incoming list was deleted by the user.
+        // An empty list deletes every box; the deletion is then attributed to nobody.
+        String deletedBy = finalAnnotations.isEmpty() ? null : finalAnnotations.get(0).getUserId();
+        LocalDateTime deletedAt = finalAnnotations.isEmpty() ? LocalDateTime.now() : finalAnnotations.get(0).getTimestamp();
         List<Annotation> deletedAnnotations = currentAnnotations.stream()
                 .filter(existingAnn -> !incomingIds.contains(existingAnn.getId()))
                 .map(existingAnn -> {
@@ -159,8 +152,9 @@ public class AnnotationServiceImpl implements AnnotationService {
                     existingAnn.setCurrentStatus("USER_DELETED");
 
                     // Use the user/timestamp
-                    existingAnn.setUserId(finalAnnotations.get(0).getUserId());
-                    existingAnn.setTimestamp(finalAnnotations.get(0).getTimestamp());
+                    existingAnn.setUserId(deletedBy);
+                    existingAnn.setTimestamp(deletedAt);
+                    events.add(annotationHistory.deleted(existingAnn, AnnotationHistory.CAUSE_USER, existingAnn.getUserId()));
                     return existingAnn;
                 })
                 .collect(Collectors.toList());
@@ -170,6 +164,8 @@ public class AnnotationServiceImpl implements AnnotationService {
         annotationRepository.flush();
 
         // Process Additions and Edits
+        List<Annotation> added = new ArrayList<>();
+        Map<Annotation, AnnotationLog> edits = new LinkedHashMap<>();
         List<Annotation> toSave = finalAnnotations.stream()
                 .map(dto -> {
                     Annotation annotation;
@@ -178,39 +174,9 @@ public class AnnotationServiceImpl implements AnnotationService {
                     if (dto.getId() == null) {
 
                         annotation = new Annotation();
+                        added.add(annotation);
 
-                        if (dto.getAiConfidence() != null || dto.getAiSeverityScore() != null) {
-                            // This is an AI-detected box being saved for the first time
-                            annotation.setOriginalSource("AI");
-
-                            // Map the AI details for persistence
-                            annotation.setAiConfidence(dto.getAiConfidence());
-                            annotation.setAiSeverityScore(dto.getAiSeverityScore());
-                            boolean isModified =
-                                    (dto.getOriginalX() != null && Math.abs(dto.getX() - dto.getOriginalX()) > 0.001) ||
-                                            (dto.getOriginalY() != null && Math.abs(dto.getY() - dto.getOriginalY()) > 0.001) ||
-                                            (dto.getOriginalWidth() != null && Math.abs(dto.getWidth() - dto.getOriginalWidth()) > 0.001) ||
-                                            (dto.getOriginalHeight() != null && Math.abs(dto.getHeight() - dto.getOriginalHeight()) > 0.001) ||
-                                            (dto.getFaultType() != null && !dto.getFaultType().equals(annotation.getFaultType())) || // Check if faultType was changed on first save
-                                            (dto.getComments() != null && !dto.getComments().isEmpty()); // Check if comments were added
-
-                            // Check if the coordinates in the DTO match the original AI coordinates.
-                            if (isModified) {
-                                newStatus = "USER_EDITED";
-                            } else {
-                                // No edit detected, set status to the AI's original status
-
-                                newStatus = dto.getCurrentStatus() != null ? dto.getCurrentStatus() : "FAULTY";
-                            }
-                        } else {
-                            // This is a  new User Added box
-                            annotation.setOriginalSource("USER");
-                            newStatus = "USER_ADDED";
-
-                            // Clear AI details for user added boxes
-                            annotation.setAiConfidence(null);
-                            annotation.setAiSeverityScore(null);
-                        }
+                        newStatus = newBoxStatus(annotation, dto);
                     } else {
 
                         annotation = currentMap.get(dto.getId());
@@ -219,15 +185,8 @@ public class AnnotationServiceImpl implements AnnotationService {
                             throw new ResourceNotFoundException("Cannot find active annotation with ID: " + dto.getId() + " for update. Data mismatch.");
                         }
 
-                        boolean isEdited =
-                                Math.abs(annotation.getX() - dto.getX()) > 0.001 ||
-                                        Math.abs(annotation.getY() - dto.getY()) > 0.001 ||
-                                        Math.abs(annotation.getWidth() - dto.getWidth()) > 0.001 ||
-                                        Math.abs(annotation.getHeight() - dto.getHeight()) > 0.001 ||
-                                        (annotation.getFaultType() != null ? !annotation.getFaultType().equals(dto.getFaultType()) : dto.getFaultType() != null) ||
-                                        (annotation.getComments() != null ? !annotation.getComments().equals(dto.getComments()) : dto.getComments() != null);
-
-                        if (isEdited) {
+                        if (isEdited(annotation, dto)) {
+                            edits.put(annotation, annotationHistory.editing(annotation));
                             newStatus = "USER_EDITED";
                         } else {
                             // Keep the original status
@@ -235,17 +194,7 @@ public class AnnotationServiceImpl implements AnnotationService {
                         }
                     }
 
-                    // Map DTO fields to Entity
-                    annotation.setInspection(inspection);
-                    annotation.setX(dto.getX());
-                    annotation.setY(dto.getY());
-                    annotation.setWidth(dto.getWidth());
-                    annotation.setHeight(dto.getHeight());
-                    annotation.setComments(dto.getComments());
-                    annotation.setUserId(dto.getUserId());
-                    annotation.setCurrentStatus(newStatus);
-                    annotation.setDeleted(false); // Ensure new/edited boxes are not deleted
-                    annotation.setFaultType(dto.getFaultType());
+                    applyFields(annotation, dto, inspection, newStatus);
                     return annotation;
                 })
                 .collect(Collectors.toList());
@@ -254,23 +203,166 @@ public class AnnotationServiceImpl implements AnnotationService {
             annotationRepository.saveAll(toSave);
             annotationRepository.flush();
         }
+
+        // New boxes only have their ids once saved
+        edits.forEach((annotation, event) -> annotationHistory.edited(event, annotation));
+        events.addAll(edits.values());
+        added.forEach(annotation -> events.add(annotationHistory.added(annotation, AnnotationHistory.CAUSE_USER)));
+        annotationHistory.append(inspection, events, () -> toSave);
+    }
+
+    @Override
+    @Transactional
+    public List<AnnotationDTO> applyAnnotationChanges(Long inspectionId, List<AnnotationDTO> changes) {
+        Inspection inspection = inspectionRepository.findById(inspectionId)
+                .orElseThrow(() -> new ResourceNotFoundException("Inspection not found with id: " + inspectionId));
+        if (changes == null || changes.isEmpty()) {
+            return List.of();
+        }
+
+        // Only the boxes named by the changes are read, not the whole inspection
+        Set<Long> ids = new HashSet<>();
+        for (AnnotationDTO change : changes) {
+            boolean isAdd = "ADDED".equals(change.getActionType());
+            if (!isAdd && !"EDITED".equals(change.getActionType()) && !"DELETED".equals(change.getActionType())) {
+                throw new IllegalArgumentException("actionType must be ADDED, EDITED or DELETED, got: " + change.getActionType());
+            }
+            if (isAdd != (change.getId() == null)) {
+                throw new IllegalArgumentException(isAdd ? "An added box cannot have an id." : "EDITED and DELETED changes need the box id.");
+            }
+            if (!isAdd && !ids.add(change.getId())) {
+                throw new IllegalArgumentException("Annotation " + change.getId() + " is changed twice in one request.");
+            }
+        }
+        Map<Long, Annotation> existing = annotationRepository.findByInspectionIdAndIdIn(inspectionId, ids).stream()
+                .collect(Collectors.toMap(Annotation::getId, a -> a));
+
+        List<Annotation> changed = new ArrayList<>();
+        List<AnnotationLog> events = new ArrayList<>();
+        List<Annotation> added = new ArrayList<>();
+        Map<Annotation, AnnotationLog> edits = new LinkedHashMap<>();
+        for (AnnotationDTO change : changes) {
+            if ("ADDED".equals(change.getActionType())) {
+                Annotation annotation = new Annotation();
+                applyFields(annotation, change, inspection, newBoxStatus(annotation, change));
+                added.add(annotation);
+                changed.add(annotation);
+                continue;
+            }
+            Annotation annotation = existing.get(change.getId());
+            if (annotation == null || annotation.isDeleted() || !Objects.equals(annotation.getVersion(), change.getVersion())) {
+                throw new AnnotationConflictException("Annotation " + change.getId() + " was changed or deleted since version "
+                        + change.getVersion() + " was loaded.");
+            }
+            if ("DELETED".equals(change.getActionType())) {
+                annotation.setDeleted(true);
+                annotation.setCurrentStatus("USER_DELETED");
+                annotation.setUserId(change.getUserId());
+                events.add(annotationHistory.deleted(annotation, AnnotationHistory.CAUSE_USER, change.getUserId()));
+                changed.add(annotation);
+            } else if (isEdited(annotation, change)) {
+                edits.put(annotation, annotationHistory.editing(annotation));
+                applyFields(annotation, change, inspection, "USER_EDITED");
+                changed.add(annotation);
+            }
+        }
+
+        annotationRepository.saveAll(added);
+        // Assigns the new versions (and timestamps) that are returned to the editor
+        annotationRepository.flush();
+
+        edits.forEach((annotation, event) -> annotationHistory.edited(event, annotation));
+        events.addAll(edits.values());
+        added.forEach(annotation -> events.add(annotationHistory.added(annotation, AnnotationHistory.CAUSE_USER)));
+        annotationHistory.append(inspection, events, () -> annotationRepository.findByInspectionIdAndIsDeletedFalse(inspectionId));
+
+        return changed.stream().map(this::convertToDTO).collect(Collectors.toList());
+    }
+
+    @Override
+    public AnnotationHistoryPageDTO getAnnotationHistory(Long inspectionId, Long after, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be at least 1.");
+        }
+        if (!inspectionRepository.existsById(inspectionId)) {
+            throw new ResourceNotFoundException("Inspection not found with id: " + inspectionId);
+        }
+        int pageSize = Math.min(limit, MAX_HISTORY_PAGE);
+        List<AnnotationLog> events = annotationHistory.page(inspectionId, after, pageSize);
+        AnnotationHistoryPageDTO page = new AnnotationHistoryPageDTO();
+        page.setEvents(events);
+        page.setNextCursor(events.size() < pageSize ? null : events.get(events.size() - 1).getId());
+        return page;
     }
+
+    @Override
+    public List<AnnotationDTO> getAnnotationsAt(Long inspectionId, Long eventId) {
+        if (!inspectionRepository.existsById(inspectionId)) {
+            throw new ResourceNotFoundException("Inspection not found with id: " + inspectionId);
+        }
+        return annotationHistory.rebuild(inspectionId, eventId);
+    }
+
+    // Provenance and status of a box saved for the first time; sets its source and AI details
+    private String newBoxStatus(Annotation annotation, AnnotationDTO dto) {
+        if (dto.getAiConfidence() != null || dto.getAiSeverityScore() != null) {
+            // This is an AI-detected box being saved for the first time
+            annotation.setOriginalSource("AI");
+
+            // Map the AI details for persistence
+            annotation.setAiConfidence(dto.getAiConfidence());
+            annotation.setAiSeverityScore(dto.getAiSeverityScore());
+            boolean isModified =
+                    (dto.getOriginalX() != null && Math.abs(dto.getX() - dto.getOriginalX()) > 0.001) ||
+                            (dto.getOriginalY() != null && Math.abs(dto.getY() - dto.getOriginalY()) > 0.001) ||
+                            (dto.getOriginalWidth() != null && Math.abs(dto.getWidth() - dto.getOriginalWidth()) > 0.001) ||
+                            (dto.getOriginalHeight() != null && Math.abs(dto.getHeight() - dto.getOriginalHeight()) > 0.001) ||
+                            (dto.getFaultType() != null && !dto.getFaultType().equals(annotation.getFaultType())) || // Check if faultType was changed on first save
+                            (dto.getComments() != null && !dto.getComments().isEmpty()); // Check if comments were added
+
+            // Check if the coordinates in the DTO match the original AI coordinates.
+            if (isModified) {
+                return "USER_EDITED";
+            } else {
+                // No edit detected, set status to the AI's original status
+                return dto.getCurrentStatus() != null ? dto.getCurrentStatus() : "FAULTY";
+            }
+        } else {
+            // This is a  new User Added box
+            annotation.setOriginalSource("USER");
+
+            // Clear AI details for user added boxes
+            annotation.setAiConfidence(null);
+            annotation.setAiSeverityScore(null);
+            return "USER_ADDED";
+        }
+    }
+
+    private boolean isEdited(Annotation annotation, AnnotationDTO dto) {
+        return Math.abs(annotation.getX() - dto.getX()) > 0.001 ||
+                Math.abs(annotation.getY() - dto.getY()) > 0.001 ||
+                Math.abs(annotation.getWidth() - dto.getWidth()) > 0.001 ||
+                Math.abs(annotation.getHeight() - dto.getHeight()) > 0.001 ||
+                (annotation.getFaultType() != null ? !annotation.getFaultType().equals(dto.getFaultType()) : dto.getFaultType() != null) ||
+                (annotation.getComments() != null ? !annotation.getComments().equals(dto.getComments()) : dto.getComments() != null);
+    }
+
+    // Map DTO fields to Entity
+    private void applyFields(Annotation annotation, AnnotationDTO dto, Inspection inspection, String newStatus) {
+        annotation.setInspection(inspection);
+        annotation.setX(dto.getX());
+        annotation.setY(dto.getY());
+        annotation.setWidth(dto.getWidth());
+        annotation.setHeight(dto.getHeight());
+        annotation.setComments(dto.getComments());
+        annotation.setUserId(dto.getUserId());
+        annotation.setCurrentStatus(newStatus);
+        annotation.setDeleted(false); // Ensure new/edited boxes are not deleted
+        annotation.setFaultType(dto.getFaultType());
+    }
+
     // Helper method to convert Entity to DTO
     private AnnotationDTO convertToDTO(Annotation annotation) {
-        AnnotationDTO dto = new AnnotationDTO();
-        dto.setId(annotation.getId());
-        dto.setCurrentStatus(annotation.getCurrentStatus());
-        dto.setOriginalSource(annotation.getOriginalSource());
-        dto.setX(annotation.getX());
-        dto.setY(annotation.getY());
-        dto.setWidth(annotation.getWidth());
-        dto.setHeight(annotation.getHeight());
-        dto.setComments(annotation.getComments());
-        dto.setUserId(annotation.getUserId());
-        dto.setTimestamp(annotation.getTimestamp());
-        dto.setAiConfidence(annotation.getAiConfidence());
-        dto.setAiSeverityScore(annotation.getAiSeverityScore());
-        dto.setFaultType(annotation.getFaultType());
-        return dto;
+        return AnnotationHistory.toDTO(annotation);
     }
 }
\ No newline at end of file
@@ -0,0 +1,133 @@
+package com.university.transformer.oversight.service.impl;
+
+import com.university.transformer.oversight.dto.AnnotationDTO;
+import com.university.transformer.oversight.dto.BoxOverlapDTO;
+import com.university.transformer.oversight.exception.ResourceNotFoundException;
+import com.university.transformer.oversight.repository.AnnotationLogRepository;
+import com.university.transformer.oversight.repository.AnnotationRepository;
+import com.university.transformer.oversight.repository.InspectionRepository;
+import com.university.transformer.oversight.service.AnnotationSpatialService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps one STR-packed R-tree per inspection image (an inspection has a single thermal image) over its active boxes.
+ * Every annotation write, on any node, appends to annotation_logs, so the number of log rows of an inspection
+ * identifies the state a tree was built from: a query first reads that count (an index range count) and rebuilds the
+ * tree from the annotations table only when it moved. The trees of the most recently queried images are kept.
+ */
+@Service
+public class AnnotationSpatialServiceImpl implements AnnotationSpatialService {
+
+    private final AnnotationRepository annotationRepository;
+    private final AnnotationLogRepository logRepository;
+    private final InspectionRepository inspectionRepository;
+    private final int maxImages;
+
+    private final Timer buildTimer;
+    private final Counter rebuilds;
+    private final Counter reuses;
+
+    private final Map<Long, IndexedImage> indexes = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, IndexedImage> eldest) {
+            return size() > maxImages;
+        }
+    };
+
+    public AnnotationSpatialServiceImpl(AnnotationRepository annotationRepository,
+                                        AnnotationLogRepository logRepository,
+                                        InspectionRepository inspectionRepository,
+                                        MeterRegistry meterRegistry,
+                                        @Value("${annotations.spatial-index.max-images:200}") int maxImages) {
+        this.annotationRepository = annotationRepository;
+        this.logRepository = logRepository;
+        this.inspectionRepository = inspectionRepository;
+        this.maxImages = Math.max(1, maxImages);
+        this.buildTimer = Timer.builder("annotations.spatial-index.build")
+                .description("Time to load an image's boxes and bulk load their R-tree")
+                .register(meterRegistry);
+        this.rebuilds = Counter.builder("annotations.spatial-index.lookups").tag("result", "rebuilt")
+                .description("Spatial queries that had to rebuild the image's R-tree").register(meterRegistry);
+        this.reuses = Counter.builder("annotations.spatial-index.lookups").tag("result", "reused")
+                .description("Spatial queries answered from an up-to-date R-tree").register(meterRegistry);
+    }
+
+    @Override
+    public List<AnnotationDTO> findIntersecting(Long inspectionId, double x, double y, double width, double height) {
+        return index(inspectionId).intersecting(x, y, width, height);
+    }
+
+    @Override
+    public List<AnnotationDTO> findNearest(Long inspectionId, double x, double y, int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("count must be at least 1.");
+        }
+        return index(inspectionId).nearest(x, y, count);
+    }
+
+    @Override
+    public List<BoxOverlapDTO> findOverlappingPairs(Long inspectionId, double minIou, boolean crossSourceOnly) {
+        if (minIou < 0 || minIou >= 1) {
+            throw new IllegalArgumentException("minIou must be in [0, 1).");
+        }
+        return index(inspectionId).overlapping(minIou, crossSourceOnly).stream()
+                .map(overlap -> {
+                    BoxOverlapDTO dto = new BoxOverlapDTO();
+                    dto.setFirst(overlap.getFirst());
+                    dto.setSecond(overlap.getSecond());
+                    dto.setIou(overlap.getIou());
+                    return dto;
+                })
+                .collect(Collectors.toList());
+    }
+
+    private AnnotationRTree index(Long inspectionId) {
+        // Read before the boxes: a write committing in between leaves a stale stamp, so the next query rebuilds
+        long stamp = logRepository.countByInspectionId(inspectionId);
+        synchronized (indexes) {
+            IndexedImage indexed = indexes.get(inspectionId);
+            if (indexed != null && indexed.stamp == stamp) {
+                reuses.increment();
+                return indexed.tree;
+            }
+        }
+        if (!inspectionRepository.existsById(inspectionId)) {
+            synchronized (indexes) {
+                indexes.remove(inspectionId);
+            }
+            throw new ResourceNotFoundException("Inspection not found with id: " + inspectionId);
+        }
+        rebuilds.increment();
+        AnnotationRTree tree = buildTimer.record(() -> AnnotationRTree.build(
+                annotationRepository.findByInspectionIdAndIsDeletedFalse(inspectionId).stream()
+                        .map(AnnotationHistory::toDTO)
+                        .collect(Collectors.toList())));
+        synchronized (indexes) {
+            IndexedImage current = indexes.get(inspectionId);
+            // A concurrent query may already have indexed a newer state
+            if (current == null || current.stamp <= stamp) {
+                indexes.put(inspectionId, new IndexedImage(stamp, tree));
+            }
+        }
+        return tree;
+    }
+
+    private static class IndexedImage {
+        private final long stamp;
+        private final AnnotationRTree tree;
+
+        IndexedImage(long stamp, AnnotationRTree tree) {
+            this.stamp = stamp;
+            this.tree = tree;
+        }
+    }
+}
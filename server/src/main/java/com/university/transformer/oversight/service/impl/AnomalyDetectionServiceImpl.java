@@ -1,17 +1,35 @@
 package com.university.transformer.oversight.service.impl;
 
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.university.transformer.oversight.dto.BatchDetectionRequest;
+import com.university.transformer.oversight.dto.BatchDetectionResponse;
 import com.university.transformer.oversight.model.Annotation;
 import com.university.transformer.oversight.model.AnomalyDetectionResult;
+import com.university.transformer.oversight.model.BaselineProfile;
+import com.university.transformer.oversight.model.DetectionCacheEntry;
 import com.university.transformer.oversight.model.Inspection;
+import com.university.transformer.oversight.model.ModelVariant;
+import com.university.transformer.oversight.model.RawDetection;
 import com.university.transformer.oversight.model.ThermalImage;
+import com.university.transformer.oversight.model.Transformer;
 import com.university.transformer.oversight.repository.AnnotationRepository;
 import com.university.transformer.oversight.repository.AnomalyDetectionResultRepository;
+import com.university.transformer.oversight.repository.BaselineProfileRepository;
+import com.university.transformer.oversight.repository.DetectionCacheEntryRepository;
 import com.university.transformer.oversight.repository.InspectionRepository;
+import com.university.transformer.oversight.repository.RawDetectionRepository;
 import com.university.transformer.oversight.repository.ThermalImageRepository;
+import com.university.transformer.oversight.repository.TransformerRepository;
 import com.university.transformer.oversight.service.AnomalyDetectionService;
+import com.university.transformer.oversight.service.BaselineProfileService;
+import com.university.transformer.oversight.service.DetectionCacheService;
+import com.university.transformer.oversight.service.DetectionEngine;
 import com.university.transformer.oversight.service.FileStorageService;
+import com.university.transformer.oversight.service.ModelRegistryService;
+import com.university.transformer.oversight.service.ShadowEvaluationService;
 import com.fasterxml.jackson.databind.JsonNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -25,26 +43,28 @@ import jakarta.transaction.Transactional;
 import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.net.MalformedURLException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.ArrayList;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 public class AnomalyDetectionServiceImpl implements AnomalyDetectionService {
 
     private static final Logger logger = LoggerFactory.getLogger(AnomalyDetectionServiceImpl.class);
-    private static final String PYTHON_SCRIPT_PATH = new File("server/src/main/resources/detector.py").getAbsolutePath();
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     private final InspectionRepository inspectionRepository;
@@ -52,166 +72,628 @@ public class AnomalyDetectionServiceImpl implements AnomalyDetectionService {
     private final AnomalyDetectionResultRepository resultRepository;
     private final FileStorageService fileStorageService;
     private final AnnotationRepository annotationRepository;
-
-    private static String currentProductionModelName;
-
-    @Value("${ml.model-output-dir}")
-    private String modelOutputDir;
-
-
-    private static final String DETECTOR_SCRIPT_PATH = "./scripts/detector.py";
-
-
-    public static void setCurrentProductionModelName(String newModelName) {
-        currentProductionModelName = newModelName;
-        logger.info("Production model updated to: {}", newModelName);
-    }
+    private final DetectionEngine detectionEngine;
+    private final TransformerRepository transformerRepository;
+    private final DetectionCacheService detectionCacheService;
+    private final BaselineProfileService baselineProfileService;
+    private final BaselineProfileRepository baselineProfileRepository;
+    private final ChangeDetectionGate changeDetectionGate;
+    private final RawDetectionRepository rawDetectionRepository;
+    private final DetectionCacheEntryRepository detectionCacheEntryRepository;
+    private final AnomalyThresholdFilter anomalyThresholdFilter;
+    private final OverlayRenderer overlayRenderer;
+    private final ModelRegistryService modelRegistryService;
+    private final ShadowEvaluationService shadowEvaluationService;
+    private final DetectionAnnotationMapper detectionAnnotationMapper;
+    private final DecodedFrameCache decodedFrameCache;
+    private final DetectionScheduler detectionScheduler;
+    private final DetectionMicroBatcher detectionMicroBatcher;
+    private final DetectionSingleFlight detectionSingleFlight;
+    private final TransactionPhases transactionPhases;
+    private final AnnotationHistory annotationHistory;
+    private final int batchChunkSize;
+
+    private static final double DEFAULT_BATCH_THRESHOLD = 0.5;
 
     @Autowired
     public AnomalyDetectionServiceImpl(
-            @Value("${ml.production-model-name}") String initialModelName,
             InspectionRepository inspectionRepository,
             ThermalImageRepository thermalImageRepository,
             AnomalyDetectionResultRepository resultRepository,
             FileStorageService fileStorageService,
-            AnnotationRepository annotationRepository
+            AnnotationRepository annotationRepository,
+            DetectionEngine detectionEngine,
+            TransformerRepository transformerRepository,
+            DetectionCacheService detectionCacheService,
+            BaselineProfileService baselineProfileService,
+            BaselineProfileRepository baselineProfileRepository,
+            ChangeDetectionGate changeDetectionGate,
+            RawDetectionRepository rawDetectionRepository,
+            DetectionCacheEntryRepository detectionCacheEntryRepository,
+            AnomalyThresholdFilter anomalyThresholdFilter,
+            OverlayRenderer overlayRenderer,
+            ModelRegistryService modelRegistryService,
+            ShadowEvaluationService shadowEvaluationService,
+            DetectionAnnotationMapper detectionAnnotationMapper,
+            DecodedFrameCache decodedFrameCache,
+            DetectionScheduler detectionScheduler,
+            DetectionMicroBatcher detectionMicroBatcher,
+            DetectionSingleFlight detectionSingleFlight,
+            TransactionPhases transactionPhases,
+            AnnotationHistory annotationHistory,
+            @Value("${ml.detector.batch-size:8}") int batchChunkSize
              ) {
-        if (currentProductionModelName == null) {
-            currentProductionModelName = initialModelName;
-        }
         this.inspectionRepository = inspectionRepository;
         this.thermalImageRepository = thermalImageRepository;
         this.resultRepository = resultRepository;
         this.fileStorageService = fileStorageService;
         this.annotationRepository = annotationRepository;
+        this.detectionEngine = detectionEngine;
+        this.transformerRepository = transformerRepository;
+        this.detectionCacheService = detectionCacheService;
+        this.baselineProfileService = baselineProfileService;
+        this.baselineProfileRepository = baselineProfileRepository;
+        this.changeDetectionGate = changeDetectionGate;
+        this.rawDetectionRepository = rawDetectionRepository;
+        this.detectionCacheEntryRepository = detectionCacheEntryRepository;
+        this.anomalyThresholdFilter = anomalyThresholdFilter;
+        this.overlayRenderer = overlayRenderer;
+        this.modelRegistryService = modelRegistryService;
+        this.shadowEvaluationService = shadowEvaluationService;
+        this.detectionAnnotationMapper = detectionAnnotationMapper;
+        this.decodedFrameCache = decodedFrameCache;
+        this.detectionScheduler = detectionScheduler;
+        this.detectionMicroBatcher = detectionMicroBatcher;
+        this.detectionSingleFlight = detectionSingleFlight;
+        this.transactionPhases = transactionPhases;
+        this.annotationHistory = annotationHistory;
+        this.batchChunkSize = Math.max(1, batchChunkSize);
     }
 
+    /**
+     * Concurrent requests for the same inspection (double clicks, several tabs, other nodes) share one run.
+     * The run commits before it completes, so requests that attached to it read the committed result.
+     */
     @Override
-    @Transactional
-    public AnomalyDetectionResult runDetection(Long inspectionId, String baselineFileName, Double tempThresholdPercentage) throws Exception {
+    public AnomalyDetectionResult runDetection(Long inspectionId, String baselineFileName, Double tempThresholdPercentage,
+                                               ModelVariant variant) throws Exception {
+        return runDetection(inspectionId, baselineFileName, tempThresholdPercentage, variant, DetectionScheduler.Priority.INTERACTIVE);
+    }
+
+    @Override
+    public AnomalyDetectionResult runBackgroundDetection(Long inspectionId, String baselineFileName, Double tempThresholdPercentage,
+                                                         ModelVariant variant) throws Exception {
+        return runDetection(inspectionId, baselineFileName, tempThresholdPercentage, variant, DetectionScheduler.Priority.BACKGROUND);
+    }
+
+    // A request attaching to a run shares it at the priority the run was started with
+    private AnomalyDetectionResult runDetection(Long inspectionId, String baselineFileName, Double tempThresholdPercentage,
+                                                ModelVariant variant, DetectionScheduler.Priority priority) throws Exception {
+        String requestKey = baselineFileName + "@" + tempThresholdPercentage + "/" + variant;
+        return detectionSingleFlight.run(inspectionId, requestKey,
+                () -> detect(inspectionId, baselineFileName, tempThresholdPercentage, variant, priority));
+    }
+
+    /**
+     * Three phases, so no JDBC connection is held while the model runs:
+     * a short transaction resolving the inputs, inference without a transaction, and a short transaction
+     * writing the result after checking nothing it depends on changed in between.
+     */
+    private AnomalyDetectionResult detect(Long inspectionId, String baselineFileName, Double tempThresholdPercentage,
+                                          ModelVariant variant, DetectionScheduler.Priority priority) throws Exception {
+        DetectionPlan plan = transactionPhases.run("detection", "read", () -> planDetection(inspectionId, baselineFileName, variant));
+
+        logger.info("Running detection with maintenance image: {}", plan.maintenancePath);
+        logger.info("With baseline profile from {}, intensity {}", plan.baselineImageName, plan.baselineIntensity);
+
+        // Identical images, threshold and model always give the same anomalies, so reuse a previous run when we have one
+        DetectionCacheService.CacheKey cacheKey = null;
+        JsonNode output = null;
+        Long inferenceMillis = null;
+        Path maintenanceImagePath = Paths.get(plan.maintenancePath);
+        if (changeDetectionGate.canSkipInference(maintenanceImagePath, plan.baselineIntensity, tempThresholdPercentage)) {
+            output = gatedNormalOutput(plan.thermalImageFileName, plan.baselineIntensity);
+            logger.info("Inspection ID {} is NORMAL by the change-detection gate; inference skipped.", inspectionId);
+        } else if (detectionCacheService.isEnabled()) {
+            cacheKey = detectionCacheService.buildKey(maintenanceImagePath, plan.baselineSha256, tempThresholdPercentage, plan.modelName);
+            Optional<DetectionCacheEntry> cached = detectionCacheService.lookup(cacheKey);
+            if (cached.isPresent()) {
+                JsonNode cachedOutput = objectMapper.readTree(cached.get().getDetectorOutput());
+                // Entries written before raw detections were recorded cannot support re-thresholding
+                if (cachedOutput.has("raw_detections")) {
+                    output = cachedOutput;
+                    logger.info("Detection cache hit for inspection ID: {}", inspectionId);
+                }
+            }
+        }
+
+        if (output == null) {
+            // Inference runs on the configured backend, ahead of any batch work waiting for the same capacity,
+            // batched with other inspectors' detections arriving at the same moment
+            String pythonOutputPath = toPythonPath(fileStorageService.getRootLocation().toAbsolutePath());
+            DetectionMicroBatcher.Detection detection = detectionMicroBatcher.detect(priority, plan.maintenancePath,
+                    plan.baselineIntensity, pythonOutputPath, tempThresholdPercentage, plan.modelPath);
+            output = detection.getOutput();
+            inferenceMillis = detection.getInferenceMillis();
+            logger.info("Detection finished successfully. Output: {}", output);
+            if (cacheKey != null) {
+                detectionCacheService.store(cacheKey, objectMapper.writeValueAsString(output),
+                        output.path("overall_status").asText(null), output.path("output_image_name").asText(null));
+            }
+        }
+
+        JsonNode detectorOutput = output;
+        Long detectorInferenceMillis = inferenceMillis;
+        AnomalyDetectionResult saved = transactionPhases.run("detection", "write",
+                () -> saveDetection(plan, detectorOutput, tempThresholdPercentage, detectorInferenceMillis));
+
+        // Mirrors the request to the shadow candidate model, if any; never waits for it
+        shadowEvaluationService.submit(inspectionId, plan.maintenancePath, plan.baselineIntensity, tempThresholdPercentage,
+                plan.modelName, output, inferenceMillis);
+        return saved;
+    }
+
+    private DetectionPlan planDetection(Long inspectionId, String baselineFileName, ModelVariant variant) {
         ThermalImage thermalImage = thermalImageRepository.findByInspectionId(inspectionId)
                 .orElseThrow(() -> new RuntimeException("Thermal (Maintenance) Image not found for inspection ID: " + inspectionId));
+        Inspection inspection = inspectionRepository.findById(inspectionId).orElseThrow(() -> new RuntimeException("Inspection not found."));
+        // Prefer the precomputed baseline profile matching the maintenance image's environmental condition
+        BaselineProfile baseline = baselineProfileService
+                .resolveForDetection(inspection.getTransformer(), thermalImage.getEnvironmentalCondition(), baselineFileName)
+                .orElseThrow(() -> new RuntimeException("No baseline image available; a baseline image is required for deference check."));
+
+        DetectionPlan plan = new DetectionPlan();
+        plan.inspectionId = inspectionId;
+        plan.thermalImageFileName = thermalImage.getFileName();
+        // Normalized separators for Python
+        plan.maintenancePath = toPythonPath(fileStorageService.getRootLocation().resolve(thermalImage.getFileName()).toAbsolutePath());
+        plan.baselineImageName = baseline.getImageName() + " (" + baseline.getEnvironmentalCondition() + ")";
+        plan.baselineIntensity = baseline.getMedianIntensity();
+        plan.baselineSha256 = baseline.getImageSha256();
+        // Read the production model once so a concurrent promotion cannot mix models within this request
+        String productionModel = modelRegistryService.getProductionModelName();
+        plan.modelName = modelRegistryService.resolveVariant(productionModel, variant).orElseGet(() -> {
+            logger.warn("Model {} has no {} variant; detecting with the model itself.", productionModel, variant);
+            return productionModel;
+        });
+        plan.variant = ModelVariant.ofModelName(plan.modelName);
+        plan.modelPath = modelRegistryService.resolveModelPath(plan.modelName);
+        plan.previousDetectedAt = resultRepository.findByInspectionId(inspectionId)
+                .map(AnomalyDetectionResult::getDetectedTimestamp).orElse(null);
+        return plan;
+    }
 
-        // Get paths directly from the FileStorageService for consistency
-        Path rootLocation = fileStorageService.getRootLocation();
-        String maintenanceImagePath = rootLocation.resolve(thermalImage.getFileName()).toAbsolutePath().toString();
-
-        if (baselineFileName == null || baselineFileName.isEmpty()) {
-            throw new RuntimeException("Baseline Image file name is required for deference check.");
+    private AnomalyDetectionResult saveDetection(DetectionPlan plan, JsonNode output, Double tempThresholdPercentage,
+                                                 Long inferenceMillis) throws IOException {
+        Long inspectionId = plan.inspectionId;
+        // Guard: the image may have been replaced or another run may have stored a result while the model was running
+        Inspection inspection = inspectionRepository.findById(inspectionId)
+                .orElseThrow(() -> new IllegalStateException("Inspection " + inspectionId + " was deleted during detection."));
+        String currentImage = thermalImageRepository.findByInspectionId(inspectionId).map(ThermalImage::getFileName).orElse(null);
+        if (!plan.thermalImageFileName.equals(currentImage)) {
+            throw new IllegalStateException("The thermal image of inspection " + inspectionId + " changed during detection.");
+        }
+        Optional<AnomalyDetectionResult> existing = resultRepository.findByInspectionId(inspectionId);
+        LocalDateTime currentDetectedAt = existing.map(AnomalyDetectionResult::getDetectedTimestamp).orElse(null);
+        if (!Objects.equals(plan.previousDetectedAt, currentDetectedAt)) {
+            throw new IllegalStateException("Another detection result was stored for inspection " + inspectionId + " during this run.");
         }
-        String baselineImagePath = rootLocation.resolve("baseline-images").resolve(baselineFileName).toAbsolutePath().toString();
-        String outputSaveFolder = rootLocation.toAbsolutePath().toString();
 
-        // Normalize separators for Python
-        String pythonMaintenancePath = maintenanceImagePath.replace(File.separatorChar, '/');
-        String pythonBaselinePath = baselineImagePath.replace(File.separatorChar, '/');
-        String pythonOutputPath = outputSaveFolder.replace(File.separatorChar, '/');
+        String overallStatus = output.path("overall_status").asText(null);
+        String outputImageName = output.path("output_image_name").asText(null);
+        // The output was parsed once when it arrived; annotations are mapped from that tree directly
+        JsonNode anomalies = output.get("anomalies");
+        String detectionJson = objectMapper.writeValueAsString(anomalies);
 
-        logger.info("Executing Python script at: {}", PYTHON_SCRIPT_PATH);
-        logger.info("With maintenance image: {}", pythonMaintenancePath);
-        logger.info("With baseline image: {}", pythonBaselinePath);
+        // Before saving the new AI result, delete any old manual annotations for this inspection.
+        List<Annotation> previousAnnotations = annotationRepository.findByInspectionIdAndIsDeletedFalse(inspectionId);
+        annotationRepository.deleteByInspectionId(inspectionId);
 
-        Path modelPath = Paths.get(modelOutputDir, currentProductionModelName).toAbsolutePath();
-        String absoluteModelPath = modelPath.toString();
+        List<Annotation> aiAnnotations = detectionAnnotationMapper.toAnnotations(inspection, anomalies);
+        if (!aiAnnotations.isEmpty()) {
+            annotationRepository.saveAll(aiAnnotations);
+            annotationRepository.flush();
+            logger.info("Saved {} initial AI annotations for inspection ID: {}", aiAnnotations.size(), inspectionId);
+        }
+        annotationHistory.replaced(inspection, previousAnnotations, aiAnnotations, AnnotationHistory.CAUSE_DETECTION);
 
+        AnomalyDetectionResult result = existing.orElseGet(() -> {
+            AnomalyDetectionResult newResult = new AnomalyDetectionResult();
+            newResult.setInspection(inspection);
+            return newResult;
+        });
 
-        Path scriptPath = Paths.get(DETECTOR_SCRIPT_PATH).toAbsolutePath();
+        result.setOverallStatus(overallStatus);
+        result.setDetectionJsonOutput(detectionJson);
+        result.setOutputImageName(outputImageName);
+        result.setDetectedTimestamp(LocalDateTime.now());
+        result.setThresholdPercentage(tempThresholdPercentage);
+        result.setBaselineIntensity(output.path("baseline_intensity").asInt(plan.baselineIntensity));
+        result.setInferenceSkipped(!output.has("raw_detections"));
+        result.setModelVariant(plan.variant);
+        result.setModelName(plan.modelName);
+        result.setInferenceMs(inferenceMillis);
+
+        rawDetectionRepository.deleteByInspectionIdIn(List.of(inspectionId));
+        rawDetectionRepository.saveAll(buildRawDetections(inspection, output.path("raw_detections")));
+        return resultRepository.save(result);
+    }
 
-        ProcessBuilder pb = new ProcessBuilder("python", PYTHON_SCRIPT_PATH, pythonMaintenancePath, pythonBaselinePath, pythonOutputPath, String.valueOf(tempThresholdPercentage), absoluteModelPath);
-        Process p = pb.start();
+    // What the read phase resolved; plain values only, so nothing lazy is touched once its transaction has ended
+    private static class DetectionPlan {
+        private Long inspectionId;
+        private String thermalImageFileName;
+        private String maintenancePath;
+        private String baselineImageName;
+        private int baselineIntensity;
+        private String baselineSha256;
+        private String modelName;
+        private ModelVariant variant;
+        private String modelPath;
+        private LocalDateTime previousDetectedAt;
+    }
 
-        // Capture output and errors
-        BufferedReader reader = new BufferedReader(new InputStreamReader(p.getInputStream()));
-        StringBuilder output = new StringBuilder();
-        String line;
-        while ((line = reader.readLine()) != null) {
-            output.append(line);
+    @Override
+    @Transactional
+    public AnomalyDetectionResult rethreshold(Long inspectionId, Double tempThresholdPercentage) throws IOException {
+        if (tempThresholdPercentage == null) {
+            throw new IllegalArgumentException("tempThresholdPercentage is required.");
+        }
+        AnomalyDetectionResult result = resultRepository.findByInspectionId(inspectionId)
+                .orElseThrow(() -> new RuntimeException("Anomaly result not found for inspection ID: " + inspectionId));
+        if (result.getBaselineIntensity() == null) {
+            throw new IllegalStateException("This result predates stored raw detections; run detection again.");
         }
-        String outputString = output.toString();
-        int exitCode = p.waitFor();
-
-        if (exitCode != 0) {
-            BufferedReader errorReader = new BufferedReader(new InputStreamReader(p.getErrorStream()));
-            String errorOutput = errorReader.lines().reduce("", (a, b) -> a + "\n");
-            logger.error("Python script failed with exit code {}. Error:\n{}", exitCode, errorOutput);
-            throw new RuntimeException("Anomaly detection script failed. Check server logs for details from the Python script.");
+        // The gate only proved NORMAL for thresholds at least as strict as the one it was asked about
+        if (result.isInferenceSkipped()
+                && (result.getThresholdPercentage() == null || tempThresholdPercentage < result.getThresholdPercentage())) {
+            throw new IllegalStateException("The model did not run for this inspection; run detection to use a lower threshold.");
         }
+        Inspection inspection = result.getInspection();
+        List<RawDetection> rawDetections = rawDetectionRepository.findByInspectionIdOrderByBoxIndex(inspectionId);
+        ObjectNode filtered = anomalyThresholdFilter.apply(rawDetections, result.getBaselineIntensity(), tempThresholdPercentage);
+        JsonNode anomalies = filtered.get("anomalies");
 
-        logger.info("Python script executed successfully. Output: {}", outputString);
+        List<Annotation> previousAnnotations = annotationRepository.findByInspectionIdAndIsDeletedFalse(inspectionId);
+        annotationRepository.deleteByInspectionId(inspectionId);
+        List<Annotation> annotations = annotationRepository.saveAll(detectionAnnotationMapper.toAnnotations(inspection, anomalies));
+        annotationHistory.replaced(inspection, previousAnnotations, annotations, AnnotationHistory.CAUSE_RETHRESHOLD);
 
-        Map<String, Object> outputMap = objectMapper.readValue(outputString, new TypeReference<>() {});
-        String overallStatus = (String) outputMap.get("overall_status");
-        String outputImageName = (String) outputMap.get("output_image_name");
-        String detectionJson = objectMapper.writeValueAsString(outputMap.get("anomalies"));
-        Inspection inspection = inspectionRepository.findById(inspectionId).orElseThrow(() -> new RuntimeException("Inspection not found."));
+        // Without boxes the overlay is just the maintenance image (as for gated results)
+        String previousOverlay = result.getOutputImageName();
+        String maintenanceFileName = inspection.getThermalImage().getFileName();
+        Path rootLocation = fileStorageService.getRootLocation();
+        String outputImageName = anomalies.isEmpty()
+                ? maintenanceFileName
+                : overlayRenderer.render(rootLocation.resolve(maintenanceFileName), anomalies, rootLocation);
 
-        // Before saving the new AI result, delete any old manual annotations for this inspection.
-        annotationRepository.deleteByInspectionId(inspectionId);
+        result.setOverallStatus(filtered.path("overall_status").asText());
+        result.setDetectionJsonOutput(objectMapper.writeValueAsString(anomalies));
+        result.setOutputImageName(outputImageName);
+        result.setThresholdPercentage(tempThresholdPercentage);
+        AnomalyDetectionResult saved = resultRepository.saveAndFlush(result);
+        deleteOverlayIfUnused(previousOverlay, maintenanceFileName);
+        logger.info("Re-thresholded inspection {} at {}: {} of {} raw detections kept, status {}.",
+                inspectionId, tempThresholdPercentage, anomalies.size(), rawDetections.size(), saved.getOverallStatus());
+        return saved;
+    }
 
-        if (detectionJson != null && !detectionJson.trim().isEmpty()) {
-            // Check if anomalies is an array before processing
-            JsonNode detectionsNode = objectMapper.readTree(detectionJson);
-            logger.info("Detection JSON successfully parsed as an array with {} elements.", detectionsNode.size());
-            if (detectionsNode.isArray()) {
-                List<Annotation> aiAnnotations = new ArrayList<>();
+    // Overlays can be shared with other results and cache entries; only remove ones nothing points at anymore
+    private void deleteOverlayIfUnused(String overlay, String maintenanceFileName) {
+        if (overlay == null || overlay.equals(maintenanceFileName)
+                || resultRepository.existsByOutputImageName(overlay)
+                || detectionCacheEntryRepository.existsByOutputImageName(overlay)) {
+            return;
+        }
+        fileStorageService.delete(overlay);
+    }
+
+    /**
+     * Maps the detector's "raw_detections" array (every box before thresholding) to entities.
+     */
+    private List<RawDetection> buildRawDetections(Inspection inspection, JsonNode rawNodes) {
+        List<RawDetection> rawDetections = new ArrayList<>();
+        for (JsonNode node : rawNodes) {
+            JsonNode loc = node.path("location");
+            RawDetection raw = new RawDetection();
+            raw.setInspection(inspection);
+            raw.setBoxIndex(node.path("id").asInt());
+            raw.setClassLabel(node.path("type").asText("Faulty"));
+            raw.setSeverityScore(node.has("severity_score") ? node.get("severity_score").asInt() : null);
+            raw.setConfidence(node.path("confidence").asDouble());
+            raw.setXMin(loc.path("x_min").asInt());
+            raw.setYMin(loc.path("y_min").asInt());
+            raw.setXMax(loc.path("x_max").asInt());
+            raw.setYMax(loc.path("y_max").asInt());
+            raw.setHotIntensity(node.path("hot_intensity").asDouble());
+            rawDetections.add(raw);
+        }
+        return rawDetections;
+    }
 
-                for (JsonNode node : detectionsNode) {
-                    Annotation annotation = new Annotation();
+    /**
+     * Split into phases like single detection: a short transaction resolving every image and baseline, inference
+     * chunk by chunk with no transaction or connection held, and a short transaction writing the results of the
+     * inspections that did not change in between.
+     */
+    @Override
+    public BatchDetectionResponse runBatchDetection(BatchDetectionRequest request) throws Exception {
+        Double threshold = request.getTempThresholdPercentage() != null
+                ? request.getTempThresholdPercentage()
+                : DEFAULT_BATCH_THRESHOLD;
+        ModelVariant variant = ModelVariant.fromRequest(request.getVariant());
+        BatchPlan plan = transactionPhases.run("batch-detection", "read", () -> planBatch(request, variant));
+
+        BatchDetectionResponse response = new BatchDetectionResponse();
+        response.setRequested(plan.requested);
+        if (plan.requested == 0) {
+            return response;
+        }
 
-                    // Link to the inspection
-                    annotation.setInspection(inspection);
+        Path rootLocation = fileStorageService.getRootLocation();
+        Map<Long, BatchDetectionResponse.ItemResult> itemResults = plan.itemResults;
+        List<ObjectNode> items = new ArrayList<>();
+        List<ObjectNode> gatedOutputs = new ArrayList<>();
+        for (BatchItem batchItem : plan.items.values()) {
+            Path maintenancePath = rootLocation.resolve(batchItem.thermalImageFileName);
+            if (changeDetectionGate.canSkipInference(maintenancePath, batchItem.baselineIntensity, threshold)) {
+                gatedOutputs.add(gatedNormalOutput(batchItem.thermalImageFileName, batchItem.baselineIntensity).put("key", batchItem.key));
+                continue;
+            }
+            ObjectNode item = objectMapper.createObjectNode();
+            item.put("key", batchItem.key);
+            item.put("maintenance", toPythonPath(maintenancePath));
+            item.put("baseline_intensity", batchItem.baselineIntensity);
+            item.put("threshold", threshold);
+            items.add(item);
+        }
 
-                    // Set AI specific fields
-                    annotation.setCurrentStatus(node.has("type") ? node.get("type").asText() : "FAULTY");
-                    annotation.setOriginalSource("AI");
+        ArrayNode outputs = objectMapper.createArrayNode().addAll(gatedOutputs);
+        if (!items.isEmpty()) {
+            logger.info("Running batch detection over {} inspections ({} skipped by the change-detection gate).", items.size(), gatedOutputs.size());
+            // One scheduler slot per inference chunk, so interactive detections get in between chunks of a large batch
+            for (int start = 0; start < items.size(); start += batchChunkSize) {
+                List<ObjectNode> chunk = items.subList(start, Math.min(items.size(), start + batchChunkSize));
+                detectionScheduler.run(DetectionScheduler.Priority.BACKGROUND, chunk.size(),
+                        () -> detectionEngine.detectBatch(chunk, toPythonPath(rootLocation), plan.modelPath)).forEach(outputs::add);
+            }
+        }
+        if (!outputs.isEmpty()) {
+            transactionPhases.run("batch-detection", "write", () -> {
+                persistBatchOutputs(outputs, threshold, plan, itemResults);
+                return null;
+            });
+        }
 
+        for (BatchDetectionResponse.ItemResult item : itemResults.values()) {
+            if (item == null) {
+                continue;
+            }
+            response.getResults().add(item);
+            if (item.isSuccess()) {
+                response.setSucceeded(response.getSucceeded() + 1);
+            } else {
+                response.setFailed(response.getFailed() + 1);
+            }
+        }
+        return response;
+    }
 
-                    annotation.setAiConfidence(node.has("confidence") ? node.get("confidence").asDouble() : null);
+    private BatchPlan planBatch(BatchDetectionRequest request, ModelVariant variant) {
+        BatchPlan plan = new BatchPlan();
+        List<Inspection> inspections = resolveBatchInspections(request);
+        plan.requested = inspections.size();
+        String productionModel = modelRegistryService.getProductionModelName();
+        plan.modelName = modelRegistryService.resolveVariant(productionModel, variant).orElse(productionModel);
+        if (inspections.isEmpty()) {
+            return plan;
+        }
+        plan.modelPath = modelRegistryService.resolveModelPath(plan.modelName);
+
+        // Resolve every maintenance image and baseline up front with a couple of bulk queries
+        List<Long> inspectionIds = inspections.stream().map(Inspection::getId).collect(Collectors.toList());
+        Map<Long, ThermalImage> imagesByInspection = thermalImageRepository.findByInspectionIdIn(inspectionIds).stream()
+                .collect(Collectors.toMap(image -> image.getInspection().getId(), image -> image, (a, b) -> a));
+        Set<Long> transformerIds = inspections.stream()
+                .filter(inspection -> inspection.getTransformer() != null)
+                .map(inspection -> inspection.getTransformer().getId())
+                .collect(Collectors.toSet());
+        Map<Long, Transformer> transformersById = transformerRepository.findAllById(transformerIds).stream()
+                .collect(Collectors.toMap(Transformer::getId, transformer -> transformer));
+        Map<Long, List<BaselineProfile>> profilesByTransformer = baselineProfileRepository.findByTransformer_IdIn(transformerIds).stream()
+                .collect(Collectors.groupingBy(profile -> profile.getTransformer().getId()));
+        resultRepository.findByInspectionIdIn(inspectionIds)
+                .forEach(result -> plan.previousDetectedAt.put(result.getInspection().getId(), result.getDetectedTimestamp()));
+
+        for (Inspection inspection : inspections) {
+            ThermalImage image = imagesByInspection.get(inspection.getId());
+            Transformer transformer = inspection.getTransformer() != null
+                    ? transformersById.get(inspection.getTransformer().getId())
+                    : null;
+            if (image == null) {
+                plan.itemResults.put(inspection.getId(), BatchDetectionResponse.ItemResult.failure(inspection.getId(), "No maintenance image uploaded."));
+                continue;
+            }
+            Optional<BaselineProfile> baseline = transformer == null
+                    ? Optional.empty()
+                    : batchBaseline(transformer, image, profilesByTransformer.getOrDefault(transformer.getId(), List.of()));
+            if (baseline.isEmpty()) {
+                plan.itemResults.put(inspection.getId(), BatchDetectionResponse.ItemResult.failure(inspection.getId(), "Transformer has no baseline image."));
+                continue;
+            }
+            plan.itemResults.put(inspection.getId(), null);
+
+            BatchItem item = new BatchItem();
+            item.inspectionId = inspection.getId();
+            item.key = String.valueOf(inspection.getId());
+            item.thermalImageFileName = image.getFileName();
+            item.baselineIntensity = baseline.get().getMedianIntensity();
+            plan.items.put(item.key, item);
+        }
+        return plan;
+    }
 
-                    annotation.setAiSeverityScore(node.has("severity_score") ? node.get("severity_score").asInt() : null);
-                    annotation.setFaultType(node.has("type") ? node.get("type").asText() : "FAULTY");
+    // What the batch read phase resolved; plain values only, like DetectionPlan
+    private static class BatchPlan {
+        private int requested;
+        private String modelName;
+        private String modelPath;
+        private final Map<String, BatchItem> items = new LinkedHashMap<>();
+        // Every requested inspection in request order; null until the inspection has a result
+        private final Map<Long, BatchDetectionResponse.ItemResult> itemResults = new LinkedHashMap<>();
+        private final Map<Long, LocalDateTime> previousDetectedAt = new HashMap<>();
+    }
 
-                    // Map Bounding Box Coordinates
-                    if (node.has("location")) {
-                        JsonNode loc = node.get("location");
-                        double xMin = loc.has("x_min") ? loc.get("x_min").asDouble() : 0;
-                        double yMin = loc.has("y_min") ? loc.get("y_min").asDouble() : 0;
-                        double xMax = loc.has("x_max") ? loc.get("x_max").asDouble() : 0;
-                        double yMax = loc.has("y_max") ? loc.get("y_max").asDouble() : 0;
+    private static class BatchItem {
+        private Long inspectionId;
+        private String key;
+        private String thermalImageFileName;
+        private int baselineIntensity;
+    }
 
-                        annotation.setX(xMin);
-                        annotation.setY(yMin);
-                        annotation.setWidth(xMax - xMin);
-                        annotation.setHeight(yMax - yMin);
-                    }
+    // Uses the prefetched profiles when one matches the image's condition; otherwise falls back to the regular resolution
+    private Optional<BaselineProfile> batchBaseline(Transformer transformer, ThermalImage image, List<BaselineProfile> profiles) {
+        for (BaselineProfile profile : profiles) {
+            if (profile.getEnvironmentalCondition() == image.getEnvironmentalCondition()) {
+                return Optional.of(profile);
+            }
+        }
+        return baselineProfileService.resolveForDetection(transformer, image.getEnvironmentalCondition(), null);
+    }
 
-                    // Set default/required audit fields
-                    annotation.setComments(null);
-                    annotation.setUserId("AI");
-                    annotation.setDeleted(false);
+    private void persistBatchOutputs(JsonNode outputs, Double threshold, BatchPlan plan,
+                                     Map<Long, BatchDetectionResponse.ItemResult> itemResults) throws JsonProcessingException {
+        String modelName = plan.modelName;
+        List<Long> succeededIds = new ArrayList<>();
+        List<Inspection> succeededInspections = new ArrayList<>();
+        List<Annotation> aiAnnotations = new ArrayList<>();
+        List<AnomalyDetectionResult> results = new ArrayList<>();
+        List<RawDetection> rawDetections = new ArrayList<>();
+
+        // Re-read what inference depended on: inspections and images may have changed while no transaction was open
+        List<Long> plannedIds = plan.items.values().stream().map(item -> item.inspectionId).collect(Collectors.toList());
+        Map<Long, Inspection> inspectionsById = inspectionRepository.findAllById(plannedIds).stream()
+                .collect(Collectors.toMap(Inspection::getId, inspection -> inspection));
+        Map<Long, String> currentImages = thermalImageRepository.findByInspectionIdIn(plannedIds).stream()
+                .collect(Collectors.toMap(image -> image.getInspection().getId(), ThermalImage::getFileName, (a, b) -> a));
+        Map<Long, LocalDateTime> currentDetectedAt = new HashMap<>();
+        resultRepository.findByInspectionIdIn(plannedIds)
+                .forEach(result -> currentDetectedAt.put(result.getInspection().getId(), result.getDetectedTimestamp()));
+        Map<String, BatchItem> pending = new HashMap<>(plan.items);
+
+        for (JsonNode output : outputs) {
+            BatchItem item = pending.remove(output.path("key").asText());
+            if (item == null) {
+                continue;
+            }
+            Long inspectionId = item.inspectionId;
+            Inspection inspection = inspectionsById.get(inspectionId);
+            if (inspection == null) {
+                itemResults.put(inspectionId, BatchDetectionResponse.ItemResult.failure(inspectionId, "Inspection was deleted during detection."));
+                continue;
+            }
+            if (!item.thermalImageFileName.equals(currentImages.get(inspectionId))) {
+                itemResults.put(inspectionId, BatchDetectionResponse.ItemResult.failure(inspectionId, "The thermal image changed during detection."));
+                continue;
+            }
+            if (!Objects.equals(plan.previousDetectedAt.get(inspectionId), currentDetectedAt.get(inspectionId))) {
+                itemResults.put(inspectionId, BatchDetectionResponse.ItemResult.failure(inspectionId,
+                        "Another detection result was stored during this run."));
+                continue;
+            }
+            if (output.has("error")) {
+                itemResults.put(inspectionId, BatchDetectionResponse.ItemResult.failure(inspectionId, output.get("error").asText()));
+                continue;
+            }
+            JsonNode anomalies = output.path("anomalies");
+            aiAnnotations.addAll(detectionAnnotationMapper.toAnnotations(inspection, anomalies));
+
+            rawDetections.addAll(buildRawDetections(inspection, output.path("raw_detections")));
+
+            AnomalyDetectionResult result = new AnomalyDetectionResult();
+            result.setInspection(inspection);
+            result.setOverallStatus(output.path("overall_status").asText(null));
+            result.setDetectionJsonOutput(objectMapper.writeValueAsString(anomalies));
+            result.setOutputImageName(output.path("output_image_name").asText(null));
+            result.setDetectedTimestamp(LocalDateTime.now());
+            result.setThresholdPercentage(threshold);
+            result.setBaselineIntensity(output.path("baseline_intensity").asInt());
+            result.setInferenceSkipped(!output.has("raw_detections"));
+            result.setModelVariant(ModelVariant.ofModelName(modelName));
+            result.setModelName(modelName);
+            results.add(result);
+            succeededIds.add(inspection.getId());
+            succeededInspections.add(inspection);
+        }
+        // Anything the worker did not report back on counts as failed
+        pending.values().forEach(item -> itemResults.put(item.inspectionId,
+                BatchDetectionResponse.ItemResult.failure(item.inspectionId, "No output returned by the detector.")));
 
-                    aiAnnotations.add(annotation);
-                }
+        if (succeededIds.isEmpty()) {
+            return;
+        }
 
-                if (!aiAnnotations.isEmpty()) {
-                    annotationRepository.saveAll(aiAnnotations);
-                    annotationRepository.flush();
-                    logger.info("Saved {} initial AI annotations for inspection ID: {}", aiAnnotations.size(), inspectionId);
-                }
+        // Reuse existing result rows (one per inspection) and replace annotations in bulk
+        Map<Long, AnomalyDetectionResult> existingResults = resultRepository.findByInspectionIdIn(succeededIds).stream()
+                .collect(Collectors.toMap(result -> result.getInspection().getId(), result -> result));
+        for (AnomalyDetectionResult result : results) {
+            AnomalyDetectionResult existing = existingResults.get(result.getInspection().getId());
+            if (existing != null) {
+                result.setId(existing.getId());
             }
         }
+        List<Annotation> previousAnnotations = annotationRepository.findByInspectionIdInAndIsDeletedFalse(succeededIds);
+        annotationRepository.deleteByInspectionIdIn(succeededIds);
+        annotationRepository.saveAll(aiAnnotations);
+        annotationHistory.replacedAll(succeededInspections, previousAnnotations, aiAnnotations, AnnotationHistory.CAUSE_DETECTION);
+        rawDetectionRepository.deleteByInspectionIdIn(succeededIds);
+        rawDetectionRepository.saveAll(rawDetections);
+        List<AnomalyDetectionResult> saved = resultRepository.saveAll(results);
+        logger.info("Batch detection saved {} results and {} AI annotations.", saved.size(), aiAnnotations.size());
+
+        for (AnomalyDetectionResult result : saved) {
+            BatchDetectionResponse.ItemResult item = new BatchDetectionResponse.ItemResult();
+            item.setInspectionId(result.getInspection().getId());
+            item.setSuccess(true);
+            item.setOverallStatus(result.getOverallStatus());
+            item.setResultId(result.getId());
+            itemResults.put(item.getInspectionId(), item);
+        }
+    }
 
-        AnomalyDetectionResult result = resultRepository.findByInspectionId(inspectionId).orElseGet(() -> {
-            AnomalyDetectionResult newResult = new AnomalyDetectionResult();
-            newResult.setInspection(inspection);
-            return newResult;
-        });
+    private List<Inspection> resolveBatchInspections(BatchDetectionRequest request) {
+        if (request.getInspectionIds() != null && !request.getInspectionIds().isEmpty()) {
+            return inspectionRepository.findAllById(request.getInspectionIds());
+        }
+        if (request.getTransformerId() != null) {
+            return inspectionRepository.findByTransformer_Id(request.getTransformerId()).stream()
+                    .filter(inspection -> request.getRegion() == null
+                            || request.getRegion().equalsIgnoreCase(inspection.getTransformer().getRegion()))
+                    .collect(Collectors.toList());
+        }
+        if (request.getRegion() != null && !request.getRegion().isEmpty()) {
+            return inspectionRepository.findByTransformer_Region(request.getRegion());
+        }
+        throw new IllegalArgumentException("Provide inspectionIds, a transformerId or a region for batch detection.");
+    }
 
-        result.setOverallStatus(overallStatus);
-        result.setDetectionJsonOutput(detectionJson);
-        result.setOutputImageName(outputImageName);
-        result.setDetectedTimestamp(LocalDateTime.now());
-        return resultRepository.save(result);
+    /**
+     * Detector-shaped output for an image the change-detection gate cleared. Without boxes the overlay
+     * would be identical to the maintenance image, so that image is used as the result image.
+     */
+    private ObjectNode gatedNormalOutput(String maintenanceFileName, int baselineIntensity) {
+        ObjectNode output = objectMapper.createObjectNode();
+        output.put("overall_status", "NORMAL");
+        output.put("output_image_name", maintenanceFileName);
+        output.putArray("anomalies");
+        output.put("baseline_intensity", baselineIntensity);
+        output.putObject("metadata").put("source", "change-detection-gate");
+        return output;
+    }
+
+    // Normalize separators for Python
+    private static String toPythonPath(Path path) {
+        return path.toAbsolutePath().toString().replace(File.separatorChar, '/');
     }
 
     @Override
@@ -242,7 +724,7 @@ public class AnomalyDetectionServiceImpl implements AnomalyDetectionService {
         if (!Files.exists(originalImagePath)) {
             throw new FileNotFoundException("Image file not found at: " + originalImagePath);
         }
-        BufferedImage image = ImageIO.read(originalImagePath.toFile());
+        BufferedImage image = decodedFrameCache.read(originalImagePath);
         Graphics2D g2d = image.createGraphics();
         List<Annotation> annotations = annotationRepository.findByInspectionIdAndIsDeletedFalse(inspectionId);
         g2d.setColor(Color.RED);
@@ -0,0 +1,71 @@
+package com.university.transformer.oversight.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.university.transformer.oversight.model.RawDetection;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+/**
+ * Java version of the temperature-deference filter in detector.py:analyze_results.
+ * A raw box becomes an anomaly when (hot_intensity - baseline) / 255 * 100 >= threshold * 100.
+ */
+@Component
+public class AnomalyThresholdFilter {
+
+    private final ObjectMapper objectMapper;
+
+    public AnomalyThresholdFilter(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    public static boolean passes(double hotIntensity, int baselineIntensity, double thresholdPercentage) {
+        double deference = baselineIntensity > 0
+                ? (hotIntensity - baselineIntensity) / 255 * 100
+                : 100;
+        return deference >= thresholdPercentage * 100;
+    }
+
+    /**
+     * Filters the raw boxes and returns {"overall_status", "anomalies"} in the detector's JSON shape.
+     */
+    public ObjectNode apply(List<RawDetection> rawDetections, int baselineIntensity, double thresholdPercentage) {
+        ObjectNode output = objectMapper.createObjectNode();
+        ArrayNode anomalies = objectMapper.createArrayNode();
+        String overallStatus = "NORMAL";
+        String createdAt = LocalDateTime.now(ZoneOffset.UTC).toString();
+
+        for (RawDetection raw : rawDetections) {
+            if (!passes(raw.getHotIntensity(), baselineIntensity, thresholdPercentage)) {
+                continue;
+            }
+            int severity = raw.getSeverityScore() != null ? raw.getSeverityScore() : 0;
+            ObjectNode anomaly = anomalies.addObject();
+            anomaly.put("id", raw.getBoxIndex());
+            anomaly.put("type", raw.getClassLabel());
+            ObjectNode location = anomaly.putObject("location");
+            location.put("x_min", raw.getXMin());
+            location.put("y_min", raw.getYMin());
+            location.put("x_max", raw.getXMax());
+            location.put("y_max", raw.getYMax());
+            anomaly.put("severity_score", severity);
+            anomaly.put("confidence", raw.getConfidence());
+            anomaly.put("editable", true);
+            anomaly.put("created_at", createdAt);
+            anomaly.put("source", "model");
+
+            if (severity == 2) {
+                overallStatus = "FAULTY";
+            } else if (severity == 1 && !"FAULTY".equals(overallStatus)) {
+                overallStatus = "POTENTIALLY_FAULTY";
+            }
+        }
+        output.put("overall_status", overallStatus);
+        output.set("anomalies", anomalies);
+        return output;
+    }
+}
@@ -0,0 +1,95 @@
+package com.university.transformer.oversight.service.impl;
+
+import com.university.transformer.oversight.dto.DetectionRequest;
+import com.university.transformer.oversight.exception.DetectionQueueFullException;
+import com.university.transformer.oversight.service.DetectionJobService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Ingest pipeline: queues a detection job for every committed thermal image upload, against the transformer's
+ * current baseline and ml.detection.auto.threshold, so the result is usually there by the time an inspector opens
+ * the inspection.
+ * <p>
+ * Auto-detection is optional work and gives way to explicit requests. Its jobs have their own queue and threads
+ * and run as background inference, so they never sit ahead of an inspector's job or take the reserved interactive
+ * slot. It pauses once either job queue is pause-at-percent full and resumes when both have drained to
+ * resume-at-percent. Uploads during a pause are detected when someone asks for them.
+ */
+@Component
+@ConditionalOnProperty(name = "ml.detection.auto.enabled", havingValue = "true")
+public class AutoDetectionListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(AutoDetectionListener.class);
+
+    private final DetectionJobService detectionJobService;
+    private final double threshold;
+    private final int pauseAtPercent;
+    private final int resumeAtPercent;
+    private final Counter submitted;
+    private final Counter skipped;
+
+    private boolean paused = false;
+
+    public AutoDetectionListener(DetectionJobService detectionJobService,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${ml.detection.auto.threshold:0.5}") double threshold,
+                                 @Value("${ml.detection.auto.pause-at-percent:80}") int pauseAtPercent,
+                                 @Value("${ml.detection.auto.resume-at-percent:50}") int resumeAtPercent) {
+        this.detectionJobService = detectionJobService;
+        this.threshold = threshold;
+        this.pauseAtPercent = pauseAtPercent;
+        this.resumeAtPercent = Math.min(resumeAtPercent, pauseAtPercent);
+        this.submitted = Counter.builder("detection.auto.jobs").tag("outcome", "submitted")
+                .description("Detections queued automatically after a thermal image upload").register(meterRegistry);
+        this.skipped = Counter.builder("detection.auto.jobs").tag("outcome", "skipped")
+                .description("Uploads not auto-detected because the detection queue was saturated").register(meterRegistry);
+    }
+
+    // Runs on the uploading request's thread once the upload has committed; only queues, never waits for inference
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onThermalImageUploaded(ThermalImageUploadedEvent event) {
+        if (saturated()) {
+            skipped.increment();
+            logger.debug("Detection queue saturated; not auto-detecting inspection {}.", event.getInspectionId());
+            return;
+        }
+        DetectionRequest request = new DetectionRequest();
+        request.setTempThresholdPercentage(threshold); // No baseline file: the transformer's current baseline is used
+        try {
+            detectionJobService.submitBackground(event.getInspectionId(), request);
+            submitted.increment();
+            logger.info("Queued automatic detection for inspection {} ({}).", event.getInspectionId(), event.getFileName());
+        } catch (DetectionQueueFullException e) {
+            skipped.increment();
+            logger.warn("Background detection queue full; not auto-detecting inspection {}.", event.getInspectionId());
+        }
+    }
+
+    // Hysteresis between the two marks, so the pipeline does not flap around a single queue length
+    private synchronized boolean saturated() {
+        // Explicit jobs piling up also mean the inference capacity is needed elsewhere
+        int percent = Math.max(
+                percentFull(detectionJobService.getQueueDepth(), detectionJobService.getQueueCapacity()),
+                percentFull(detectionJobService.getBackgroundQueueDepth(), detectionJobService.getBackgroundQueueCapacity()));
+        if (!paused && percent >= pauseAtPercent) {
+            paused = true;
+            logger.warn("Detection queues are {}% full; pausing automatic detection of uploads.", percent);
+        } else if (paused && percent <= resumeAtPercent) {
+            paused = false;
+            logger.info("Detection queues drained to {}%; resuming automatic detection of uploads.", percent);
+        }
+        return paused;
+    }
+
+    private static int percentFull(int depth, int capacity) {
+        return 100 * depth / Math.max(1, capacity);
+    }
+}
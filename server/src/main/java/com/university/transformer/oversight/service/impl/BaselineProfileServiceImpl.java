@@ -0,0 +1,134 @@
+package com.university.transformer.oversight.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.university.transformer.oversight.model.BaselineProfile;
+import com.university.transformer.oversight.model.ThermalImage.EnvironmentalCondition;
+import com.university.transformer.oversight.model.Transformer;
+import com.university.transformer.oversight.repository.BaselineProfileRepository;
+import com.university.transformer.oversight.service.BaselineProfileService;
+import com.university.transformer.oversight.service.FileStorageService;
+import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Service
+public class BaselineProfileServiceImpl implements BaselineProfileService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BaselineProfileServiceImpl.class);
+
+    private final BaselineProfileRepository baselineProfileRepository;
+    private final ThermalImageAnalyzer thermalImageAnalyzer;
+    private final FileStorageService fileStorageService;
+    private final ObjectMapper objectMapper;
+
+    public BaselineProfileServiceImpl(BaselineProfileRepository baselineProfileRepository,
+                                      ThermalImageAnalyzer thermalImageAnalyzer,
+                                      FileStorageService fileStorageService,
+                                      ObjectMapper objectMapper) {
+        this.baselineProfileRepository = baselineProfileRepository;
+        this.thermalImageAnalyzer = thermalImageAnalyzer;
+        this.fileStorageService = fileStorageService;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    @Transactional
+    public BaselineProfile computeProfile(Transformer transformer, EnvironmentalCondition condition, String imageName) {
+        BaselineProfile profile = baselineProfileRepository
+                .findByTransformer_IdAndEnvironmentalCondition(transformer.getId(), condition)
+                .orElseGet(BaselineProfile::new);
+        profile.setTransformer(transformer);
+        profile.setEnvironmentalCondition(condition);
+        analyze(profile, imageName);
+        BaselineProfile saved = baselineProfileRepository.save(profile);
+        logger.info("Baseline profile for transformer {} ({}) computed from {}: intensity {}",
+                transformer.getId(), condition, imageName, saved.getMedianIntensity());
+        return saved;
+    }
+
+    @Override
+    @Transactional
+    public Optional<BaselineProfile> resolveForDetection(Transformer transformer, EnvironmentalCondition maintenanceCondition, String baselineFileName) {
+        if (transformer == null) {
+            return Optional.empty();
+        }
+        if (maintenanceCondition != null) {
+            Optional<BaselineProfile> matching = baselineProfileRepository
+                    .findByTransformer_IdAndEnvironmentalCondition(transformer.getId(), maintenanceCondition);
+            if (matching.isPresent()) {
+                return matching;
+            }
+        }
+
+        String imageName = baselineFileName != null && !baselineFileName.isEmpty()
+                ? baselineFileName
+                : transformer.getBaselineImageName();
+        if (imageName == null || imageName.isEmpty()) {
+            return Optional.empty();
+        }
+        for (BaselineProfile profile : baselineProfileRepository.findByTransformer_Id(transformer.getId())) {
+            if (imageName.equals(profile.getImageName())) {
+                return Optional.of(profile);
+            }
+        }
+        if (!Files.exists(baselineDirectory().resolve(imageName))) {
+            return Optional.empty();
+        }
+
+        // Baselines uploaded before profiles existed are backfilled the first time they are used
+        EnvironmentalCondition uploadCondition = parseCondition(transformer.getBaselineImageCondition());
+        if (imageName.equals(transformer.getBaselineImageName()) && uploadCondition != null) {
+            return Optional.of(computeProfile(transformer, uploadCondition, imageName));
+        }
+        BaselineProfile transientProfile = new BaselineProfile();
+        transientProfile.setTransformer(transformer);
+        analyze(transientProfile, imageName);
+        return Optional.of(transientProfile);
+    }
+
+    @Override
+    @Transactional
+    public void deleteProfilesForImage(Long transformerId, String imageName) {
+        baselineProfileRepository.deleteByTransformer_IdAndImageName(transformerId, imageName);
+    }
+
+    private void analyze(BaselineProfile profile, String imageName) {
+        try {
+            ThermalImageAnalyzer.BaselineStats stats = thermalImageAnalyzer.analyzeBaseline(baselineDirectory().resolve(imageName));
+            profile.setImageName(imageName);
+            profile.setImageSha256(stats.getSha256());
+            profile.setMedianIntensity(stats.getMedianIntensity());
+            profile.setHistogramJson(objectMapper.writeValueAsString(stats.getHistogram()));
+            profile.setWidth(stats.getWidth());
+            profile.setHeight(stats.getHeight());
+            profile.setComputedAt(LocalDateTime.now());
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Could not serialize baseline histogram: " + e.getMessage());
+        } catch (IOException e) {
+            throw new RuntimeException("Could not analyze baseline image " + imageName + ": " + e.getMessage());
+        }
+    }
+
+    private Path baselineDirectory() {
+        return fileStorageService.getRootLocation().resolve("baseline-images");
+    }
+
+    private static EnvironmentalCondition parseCondition(String condition) {
+        if (condition == null || condition.isEmpty()) {
+            return null;
+        }
+        try {
+            return EnvironmentalCondition.fromString(condition);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
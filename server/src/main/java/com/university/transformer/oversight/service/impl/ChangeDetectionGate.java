@@ -0,0 +1,77 @@
+package com.university.transformer.oversight.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Cheap pre-filter in front of YOLO. detector.py only reports a box when the 95th percentile of its
+ * LAB b channel exceeds the baseline by the threshold, and no box can be hotter than the hottest pixel
+ * of the image. So when even the image's peak stays clearly below the threshold, the result is
+ * NORMAL whatever the model finds, and inference can be skipped.
+ */
+@Component
+public class ChangeDetectionGate {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChangeDetectionGate.class);
+
+    private final ThermalImageAnalyzer thermalImageAnalyzer;
+    private final boolean enabled;
+    private final int subsampling;
+    private final double marginPercent;
+    private final Counter skipped;
+    private final Counter passed;
+
+    public ChangeDetectionGate(ThermalImageAnalyzer thermalImageAnalyzer,
+                               MeterRegistry meterRegistry,
+                               @Value("${ml.detection.gate.enabled:true}") boolean enabled,
+                               @Value("${ml.detection.gate.subsampling:4}") int subsampling,
+                               @Value("${ml.detection.gate.margin-percent:5}") double marginPercent) {
+        this.thermalImageAnalyzer = thermalImageAnalyzer;
+        this.enabled = enabled;
+        this.subsampling = subsampling;
+        this.marginPercent = marginPercent;
+        this.skipped = Counter.builder("detection.gate.skipped")
+                .description("Detections answered NORMAL by the change-detection gate without inference").register(meterRegistry);
+        this.passed = Counter.builder("detection.gate.passed")
+                .description("Detections the change-detection gate sent on to inference").register(meterRegistry);
+    }
+
+    /**
+     * Returns true when the maintenance image is NORMAL with high confidence for the given baseline and threshold
+     * (its subsampled peak plus the margin stays below the threshold).
+     * Any doubt (gate disabled, unreadable image) sends the image to inference.
+     */
+    public boolean canSkipInference(Path maintenanceImage, int baselineIntensity, Double thresholdPercentage) {
+        if (!enabled || thresholdPercentage == null || baselineIntensity <= 0) {
+            return false;
+        }
+        try {
+            BufferedImage image = thermalImageAnalyzer.decodeSubsampled(maintenanceImage, subsampling);
+            if (image == null) {
+                passed.increment();
+                return false;
+            }
+            int peak = thermalImageAnalyzer.peakLabB(image);
+            double peakDeference = (peak - baselineIntensity) / 255.0 * 100.0;
+            // The margin absorbs hot pixels the subsampled decode may have stepped over
+            boolean skip = peakDeference < thresholdPercentage * 100.0 - marginPercent;
+            (skip ? skipped : passed).increment();
+            logger.info("Change-detection gate for {}: peak deference {}% vs threshold {}% -> {}",
+                    maintenanceImage.getFileName(), String.format("%.1f", peakDeference),
+                    String.format("%.1f", thresholdPercentage * 100.0), skip ? "skip inference" : "run inference");
+            return skip;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Change-detection gate could not read {}: {}", maintenanceImage.getFileName(), e.getMessage());
+            passed.increment();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.university.transformer.oversight.service.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+/**
+ * Decoded pixels of stored thermal images, kept as memory-mapped files under <storage root>/decoded-frames
+ * so an image is decoded once instead of on every detection, overlay or re-threshold.
+ * <p>
+ * File layout ("<image file name>.bgr"): a 16-byte little-endian header (magic, width, height, channels = 3)
+ * followed by height x width x 3 bytes in OpenCV's BGR order, which matches {@link BufferedImage#TYPE_3BYTE_BGR}.
+ * The magic names the decoder: "TFRC" frames are written by detector.py from cv2.imread, "TFRM" frames by this class
+ * from ImageIO. The two decoders do not give the same pixels (EXIF orientation, alpha of RGBA PNGs, JPEG IDCT), and
+ * the detection cache keys on the encoded file only, so detector.py maps nothing but its own frames and replaces an
+ * ImageIO frame with a cv2 one. Java reads either, and so draws on the pixels the boxes were found in.
+ */
+@Component
+public class DecodedFrameCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(DecodedFrameCache.class);
+    private static final int IMAGEIO_MAGIC = 0x4D524654; // "TFRM" read as a little-endian int
+    private static final int OPENCV_MAGIC = 0x43524654; // "TFRC"
+    private static final int HEADER_BYTES = 16;
+    private static final String SUFFIX = ".bgr";
+
+    private final Path frameDir;
+    private final boolean enabled;
+
+    public DecodedFrameCache(@Value("${storage.root-location}") String rootPath,
+                             @Value("${storage.frame-cache.enabled:true}") boolean enabled) {
+        this.frameDir = Paths.get(rootPath).toAbsolutePath().normalize().resolve("decoded-frames");
+        this.enabled = enabled;
+    }
+
+    /**
+     * The frame file detector.py should use for an image, whether or not it exists yet: the detector maps it when it
+     * wrote it itself and otherwise decodes the image with cv2 and (re)writes it. Empty when the cache is disabled.
+     */
+    public Optional<Path> detectorFrame(Path imagePath) {
+        return enabled ? Optional.of(framePath(imagePath)) : Optional.empty();
+    }
+
+    /**
+     * Image pixels from the frame file, writing the frame first when there is none yet.
+     * Falls back to a plain decode when the cache is disabled or unusable. Returns null when the image cannot be read.
+     */
+    public BufferedImage read(Path imagePath) throws IOException {
+        if (!enabled) {
+            return ImageIO.read(imagePath.toFile());
+        }
+        Path frame = framePath(imagePath);
+        if (Files.isRegularFile(frame)) {
+            try {
+                return readFrame(frame);
+            } catch (IOException e) {
+                logger.warn("Discarding unreadable decoded frame {}: {}", frame.getFileName(), e.getMessage());
+                Files.deleteIfExists(frame);
+            }
+        }
+        BufferedImage image = ImageIO.read(imagePath.toFile());
+        if (image != null) {
+            try {
+                writeFrame(image, frame);
+            } catch (IOException e) {
+                logger.warn("Could not cache decoded frame of {}: {}", imagePath.getFileName(), e.getMessage());
+            }
+        }
+        return image;
+    }
+
+    public void delete(String fileName) {
+        try {
+            Files.deleteIfExists(frameDir.resolve(fileName + SUFFIX));
+        } catch (IOException e) {
+            logger.warn("Could not delete decoded frame of {}: {}", fileName, e.getMessage());
+        }
+    }
+
+    private Path framePath(Path imagePath) {
+        return frameDir.resolve(imagePath.getFileName().toString() + SUFFIX);
+    }
+
+    private void writeFrame(BufferedImage source, Path frame) throws IOException {
+        BufferedImage image = source;
+        if (image.getType() != BufferedImage.TYPE_3BYTE_BGR) {
+            image = new BufferedImage(source.getWidth(), source.getHeight(), BufferedImage.TYPE_3BYTE_BGR);
+            image.getGraphics().drawImage(source, 0, 0, null);
+        }
+        byte[] pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(IMAGEIO_MAGIC).putInt(image.getWidth()).putInt(image.getHeight()).putInt(3);
+        header.flip();
+
+        Files.createDirectories(frameDir);
+        // Written under a temporary name and moved into place, so readers never map a half-written frame
+        Path temp = Files.createTempFile(frameDir, "frame", ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.write(new ByteBuffer[]{header, ByteBuffer.wrap(pixels)});
+        }
+        Files.move(temp, frame, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private BufferedImage readFrame(Path frame) throws IOException {
+        try (FileChannel channel = FileChannel.open(frame, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+            if (channel.size() < HEADER_BYTES || (mapped.getInt(0) != IMAGEIO_MAGIC && mapped.getInt(0) != OPENCV_MAGIC)
+                    || mapped.getInt(12) != 3) {
+                throw new IOException("not a decoded frame");
+            }
+            int width = mapped.getInt(4);
+            int height = mapped.getInt(8);
+            if (width <= 0 || height <= 0 || channel.size() != HEADER_BYTES + (long) width * height * 3) {
+                throw new IOException("truncated frame");
+            }
+            // BufferedImage needs a heap array: one bulk copy out of the page cache, no decoding
+            BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+            byte[] pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+            mapped.get(HEADER_BYTES, pixels);
+            return image;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.university.transformer.oversight.service.impl;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.university.transformer.oversight.model.Annotation;
+import com.university.transformer.oversight.model.Inspection;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maps detector anomalies ({"type", "location", "severity_score", "confidence"}) to AI annotation entities.
+ * JSON text is streamed token by token straight into entities, without building a tree or intermediate strings.
+ */
+@Component
+public class DetectionAnnotationMapper {
+
+    private final JsonFactory jsonFactory;
+
+    public DetectionAnnotationMapper(ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    /**
+     * Maps an already parsed "anomalies" array; anything else gives no annotations.
+     */
+    public List<Annotation> toAnnotations(Inspection inspection, JsonNode anomalies) {
+        List<Annotation> annotations = new ArrayList<>();
+        if (anomalies == null || !anomalies.isArray()) {
+            return annotations;
+        }
+        for (JsonNode node : anomalies) {
+            JsonNode loc = node.path("location");
+            annotations.add(newAnnotation(inspection,
+                    node.has("type") ? node.get("type").asText() : null,
+                    node.has("confidence") ? node.get("confidence").asDouble() : null,
+                    node.has("severity_score") ? node.get("severity_score").asInt() : null,
+                    loc.path("x_min").asDouble(0), loc.path("y_min").asDouble(0),
+                    loc.path("x_max").asDouble(0), loc.path("y_max").asDouble(0)));
+        }
+        return annotations;
+    }
+
+    /**
+     * Streams JSON text into annotations in a single pass. Accepts either an anomalies array or a whole
+     * detector output object (its "anomalies" field is used). Lines before the first one that starts
+     * with '{' or '[' are treated as log output and skipped.
+     */
+    public List<Annotation> toAnnotations(Inspection inspection, Reader json) throws IOException {
+        BufferedReader reader = json instanceof BufferedReader ? (BufferedReader) json : new BufferedReader(json);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String trimmed = line.trim();
+            if (trimmed.startsWith("{") || trimmed.startsWith("[")) {
+                // Parse from this line on: the rest of the reader is appended to the line just consumed
+                try (JsonParser parser = jsonFactory.createParser(new PrefixedReader(line, reader))) {
+                    return readDocument(parser, inspection);
+                }
+            }
+        }
+        return new ArrayList<>();
+    }
+
+    private List<Annotation> readDocument(JsonParser parser, Inspection inspection) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.START_ARRAY) {
+            return readAnomalies(parser, inspection);
+        }
+        if (token == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("anomalies".equals(field) && value == JsonToken.START_ARRAY) {
+                    return readAnomalies(parser, inspection);
+                }
+                parser.skipChildren();
+            }
+        }
+        return new ArrayList<>();
+    }
+
+    // The parser is positioned on START_ARRAY
+    private List<Annotation> readAnomalies(JsonParser parser, Inspection inspection) throws IOException {
+        List<Annotation> annotations = new ArrayList<>();
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+            if (token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            String type = null;
+            Double confidence = null;
+            Integer severity = null;
+            double[] box = new double[4];
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "type" -> type = value == JsonToken.VALUE_NULL ? null : parser.getValueAsString();
+                    case "confidence" -> confidence = value == JsonToken.VALUE_NULL ? null : parser.getValueAsDouble();
+                    case "severity_score" -> severity = value == JsonToken.VALUE_NULL ? null : parser.getValueAsInt();
+                    case "location" -> readLocation(parser, box);
+                    default -> parser.skipChildren();
+                }
+            }
+            annotations.add(newAnnotation(inspection, type, confidence, severity, box[0], box[1], box[2], box[3]));
+        }
+        return annotations;
+    }
+
+    private static void readLocation(JsonParser parser, double[] box) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "x_min" -> box[0] = parser.getValueAsDouble();
+                case "y_min" -> box[1] = parser.getValueAsDouble();
+                case "x_max" -> box[2] = parser.getValueAsDouble();
+                case "y_max" -> box[3] = parser.getValueAsDouble();
+                default -> parser.skipChildren();
+            }
+        }
+    }
+
+    private static Annotation newAnnotation(Inspection inspection, String type, Double confidence, Integer severity,
+                                            double xMin, double yMin, double xMax, double yMax) {
+        Annotation annotation = new Annotation();
+        annotation.setInspection(inspection);
+
+        // AI specific fields
+        annotation.setCurrentStatus(type != null ? type : "FAULTY");
+        annotation.setOriginalSource("AI");
+        annotation.setAiConfidence(confidence);
+        annotation.setAiSeverityScore(severity);
+        annotation.setFaultType(type != null ? type : "FAULTY");
+
+        // Bounding box: detector corners to x/y/width/height
+        annotation.setX(xMin);
+        annotation.setY(yMin);
+        annotation.setWidth(xMax - xMin);
+        annotation.setHeight(yMax - yMin);
+
+        // Default/required audit fields
+        annotation.setComments(null);
+        annotation.setUserId("AI");
+        annotation.setDeleted(false);
+        return annotation;
+    }
+
+    // Replays an already consumed line before the remaining content of the reader
+    private static class PrefixedReader extends Reader {
+        private final String prefix;
+        private final Reader rest;
+        private int position;
+
+        PrefixedReader(String prefix, Reader rest) {
+            this.prefix = prefix + "\n";
+            this.rest = rest;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            if (position < prefix.length()) {
+                int count = Math.min(length, prefix.length() - position);
+                prefix.getChars(position, position + count, buffer, offset);
+                position += count;
+                return count;
+            }
+            return rest.read(buffer, offset, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            rest.close();
+        }
+    }
+}
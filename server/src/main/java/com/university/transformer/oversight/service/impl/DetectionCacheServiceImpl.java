@@ -0,0 +1,212 @@
+package com.university.transformer.oversight.service.impl;
+
+import com.university.transformer.oversight.model.DetectionCacheEntry;
+import com.university.transformer.oversight.repository.AnomalyDetectionResultRepository;
+import com.university.transformer.oversight.repository.DetectionCacheEntryRepository;
+import com.university.transformer.oversight.service.DetectionCacheService;
+import com.university.transformer.oversight.service.FileStorageService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+@Service
+public class DetectionCacheServiceImpl implements DetectionCacheService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DetectionCacheServiceImpl.class);
+    private static final int MAX_MEMOIZED_DIGESTS = 1024;
+
+    private final DetectionCacheEntryRepository cacheRepository;
+    private final AnomalyDetectionResultRepository resultRepository;
+    private final FileStorageService fileStorageService;
+    private final boolean enabled;
+    private final long maxEntries;
+    private final long maxSizeBytes;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    // Image hashes memoized by path; reused while size and modification time are unchanged
+    private final Map<Path, FileDigest> digests = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, FileDigest> eldest) {
+            return size() > MAX_MEMOIZED_DIGESTS;
+        }
+    };
+
+    public DetectionCacheServiceImpl(DetectionCacheEntryRepository cacheRepository,
+                                     AnomalyDetectionResultRepository resultRepository,
+                                     FileStorageService fileStorageService,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${ml.detection.cache.enabled:true}") boolean enabled,
+                                     @Value("${ml.detection.cache.max-entries:5000}") long maxEntries,
+                                     @Value("${ml.detection.cache.max-size-mb:512}") long maxSizeMb) {
+        this.cacheRepository = cacheRepository;
+        this.resultRepository = resultRepository;
+        this.fileStorageService = fileStorageService;
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+        this.maxSizeBytes = maxSizeMb * 1024 * 1024;
+
+        this.hits = Counter.builder("detection.cache.requests").tag("result", "hit")
+                .description("Detection cache lookups that skipped inference").register(meterRegistry);
+        this.misses = Counter.builder("detection.cache.requests").tag("result", "miss")
+                .description("Detection cache lookups that required inference").register(meterRegistry);
+        this.evictions = Counter.builder("detection.cache.evictions")
+                .description("Detection cache entries evicted to stay within the size limits").register(meterRegistry);
+        Gauge.builder("detection.cache.entries", cacheRepository, DetectionCacheEntryRepository::count)
+                .description("Detection cache entries currently stored").register(meterRegistry);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public CacheKey buildKey(Path maintenanceImage, String baselineSha, Double thresholdPercentage, String modelVersion) throws IOException {
+        String maintenanceSha = sha256(maintenanceImage);
+        String threshold = String.format(Locale.ROOT, "%.6f", thresholdPercentage);
+        String composite = maintenanceSha + "|" + baselineSha + "|" + threshold + "|" + modelVersion;
+        String key = HexFormat.of().formatHex(newDigest().digest(composite.getBytes(StandardCharsets.UTF_8)));
+        return new CacheKey(key, maintenanceSha, baselineSha, thresholdPercentage, modelVersion);
+    }
+
+    @Override
+    @Transactional
+    public Optional<DetectionCacheEntry> lookup(CacheKey key) {
+        Optional<DetectionCacheEntry> found = cacheRepository.findById(key.getValue());
+        if (found.isPresent()) {
+            DetectionCacheEntry entry = found.get();
+            String overlay = entry.getOutputImageName();
+            if (overlay != null && !Files.exists(fileStorageService.getRootLocation().resolve(overlay))) {
+                // The overlay was deleted together with its inspection; the entry is no longer usable
+                cacheRepository.delete(entry);
+                found = Optional.empty();
+            } else {
+                entry.setHitCount(entry.getHitCount() + 1);
+                entry.setLastAccessedAt(LocalDateTime.now());
+            }
+        }
+        (found.isPresent() ? hits : misses).increment();
+        return found;
+    }
+
+    @Override
+    @Transactional
+    public void store(CacheKey key, String detectorOutputJson, String overallStatus, String outputImageName) {
+        // A concurrent miss on the same inputs may have stored an entry first; its output is equally valid
+        cacheRepository.insertIfAbsent(key.getValue(), key.getMaintenanceSha256(), key.getBaselineSha256(),
+                key.getThresholdPercentage(), key.getModelVersion(), overallStatus, outputImageName, detectorOutputJson,
+                detectorOutputJson.length() + overlaySize(outputImageName), LocalDateTime.now());
+        evictIfNeeded();
+    }
+
+    private void evictIfNeeded() {
+        long count = cacheRepository.count();
+        long size = cacheRepository.sumSizeBytes();
+        while (count > maxEntries || size > maxSizeBytes) {
+            List<DetectionCacheEntry> oldest = cacheRepository.findTop100ByOrderByLastAccessedAtAsc();
+            if (oldest.isEmpty()) {
+                return;
+            }
+            for (DetectionCacheEntry entry : oldest) {
+                if (count <= maxEntries && size <= maxSizeBytes) {
+                    break;
+                }
+                cacheRepository.delete(entry);
+                cacheRepository.flush();
+                deleteOverlayIfUnreferenced(entry.getOutputImageName());
+                count--;
+                size -= entry.getSizeBytes();
+                evictions.increment();
+            }
+        }
+    }
+
+    private void deleteOverlayIfUnreferenced(String outputImageName) {
+        if (outputImageName == null
+                || resultRepository.existsByOutputImageName(outputImageName)
+                || cacheRepository.existsByOutputImageName(outputImageName)) {
+            return;
+        }
+        fileStorageService.delete(outputImageName);
+        logger.debug("Deleted unreferenced overlay {} while evicting the detection cache.", outputImageName);
+    }
+
+    private long overlaySize(String outputImageName) {
+        if (outputImageName == null) {
+            return 0;
+        }
+        try {
+            return Files.size(fileStorageService.getRootLocation().resolve(outputImageName));
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private String sha256(Path file) throws IOException {
+        Path key = file.toAbsolutePath().normalize();
+        long size = Files.size(key);
+        long modified = Files.getLastModifiedTime(key).toMillis();
+        synchronized (digests) {
+            FileDigest memo = digests.get(key);
+            if (memo != null && memo.size == size && memo.modified == modified) {
+                return memo.sha256;
+            }
+        }
+        MessageDigest digest = newDigest();
+        try (InputStream in = Files.newInputStream(key)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        String sha = HexFormat.of().formatHex(digest.digest());
+        synchronized (digests) {
+            digests.put(key, new FileDigest(size, modified, sha));
+        }
+        return sha;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static class FileDigest {
+        private final long size;
+        private final long modified;
+        private final String sha256;
+
+        FileDigest(long size, long modified, String sha256) {
+            this.size = size;
+            this.modified = modified;
+            this.sha256 = sha256;
+        }
+    }
+}
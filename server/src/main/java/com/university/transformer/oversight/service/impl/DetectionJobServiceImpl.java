@@ -0,0 +1,256 @@
+package com.university.transformer.oversight.service.impl;
+
+import com.university.transformer.oversight.dto.DetectionJobDTO;
+import com.university.transformer.oversight.dto.DetectionRequest;
+import com.university.transformer.oversight.exception.DetectionQueueFullException;
+import com.university.transformer.oversight.model.AnomalyDetectionResult;
+import com.university.transformer.oversight.model.ModelVariant;
+import com.university.transformer.oversight.service.AnomalyDetectionService;
+import com.university.transformer.oversight.service.DetectionJobService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service
+public class DetectionJobServiceImpl implements DetectionJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DetectionJobServiceImpl.class);
+
+    enum JobStatus { QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED }
+
+    private final AnomalyDetectionService anomalyDetectionService;
+    private final ThreadPoolExecutor executor;
+    private final ThreadPoolExecutor backgroundExecutor;
+    private final Map<String, DetectionJob> jobs = new ConcurrentHashMap<>();
+    private final long retentionMinutes;
+
+    public DetectionJobServiceImpl(AnomalyDetectionService anomalyDetectionService,
+                                   @Value("${ml.detection.jobs.threads:2}") int threads,
+                                   @Value("${ml.detection.jobs.max-queue:50}") int maxQueue,
+                                   @Value("${ml.detection.jobs.background-threads:1}") int backgroundThreads,
+                                   @Value("${ml.detection.jobs.background-max-queue:50}") int backgroundMaxQueue,
+                                   @Value("${ml.detection.jobs.retention-minutes:60}") long retentionMinutes) {
+        this.anomalyDetectionService = anomalyDetectionService;
+        this.retentionMinutes = retentionMinutes;
+        this.executor = newExecutor(threads, maxQueue, "detection-job-");
+        this.backgroundExecutor = newExecutor(backgroundThreads, backgroundMaxQueue, "background-detection-job-");
+    }
+
+    // Bounded queue + AbortPolicy gives us backpressure instead of an ever growing backlog
+    private static ThreadPoolExecutor newExecutor(int threads, int maxQueue, String threadNamePrefix) {
+        AtomicInteger threadIds = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxQueue),
+                runnable -> new Thread(runnable, threadNamePrefix + threadIds.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        backgroundExecutor.shutdownNow();
+    }
+
+    @Override
+    public DetectionJobDTO submit(Long inspectionId, DetectionRequest request) {
+        return submit(inspectionId, request, false);
+    }
+
+    @Override
+    public DetectionJobDTO submitBackground(Long inspectionId, DetectionRequest request) {
+        return submit(inspectionId, request, true);
+    }
+
+    private DetectionJobDTO submit(Long inspectionId, DetectionRequest request, boolean background) {
+        // Rejects an unknown variant now rather than as a failed job
+        ModelVariant variant = ModelVariant.fromRequest(request.getVariant());
+        ThreadPoolExecutor jobExecutor = background ? backgroundExecutor : executor;
+        DetectionJob job = new DetectionJob(UUID.randomUUID().toString(), inspectionId, jobExecutor);
+        JobTask task = new JobTask(job, request, variant, background);
+        job.task = task;
+        jobs.put(job.id, job);
+        try {
+            jobExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            throw new DetectionQueueFullException("Detection queue is full (" + jobExecutor.getQueue().size() + " jobs waiting). Please retry later.");
+        }
+        logger.info("Queued {}detection job {} for inspection {}", background ? "background " : "", job.id, inspectionId);
+        return toDTO(job);
+    }
+
+    @Override
+    public Optional<DetectionJobDTO> getJob(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId)).map(this::toDTO);
+    }
+
+    @Override
+    public boolean cancel(String jobId) {
+        DetectionJob job = jobs.get(jobId);
+        if (job == null || job.isFinished()) {
+            return false;
+        }
+        // Queued jobs are simply dropped; a running job is interrupted, which also recycles its detector worker
+        job.executor.remove(job.task);
+        job.task.cancel(true);
+        job.finish(JobStatus.CANCELLED, null);
+        logger.info("Cancelled detection job {}", jobId);
+        return true;
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    @Override
+    public int getQueueCapacity() {
+        return executor.getQueue().size() + executor.getQueue().remainingCapacity();
+    }
+
+    @Override
+    public int getBackgroundQueueDepth() {
+        return backgroundExecutor.getQueue().size();
+    }
+
+    @Override
+    public int getBackgroundQueueCapacity() {
+        return backgroundExecutor.getQueue().size() + backgroundExecutor.getQueue().remainingCapacity();
+    }
+
+    @Scheduled(fixedDelay = 60_000)
+    public void evictFinishedJobs() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(retentionMinutes);
+        jobs.values().removeIf(job -> job.isFinished() && job.finishedAt.isBefore(cutoff));
+    }
+
+    private Integer queuePosition(DetectionJob job) {
+        if (job.status != JobStatus.QUEUED) {
+            return null;
+        }
+        int position = 1;
+        for (Runnable queued : job.executor.getQueue()) {
+            if (queued == job.task) {
+                return position;
+            }
+            position++;
+        }
+        return null;
+    }
+
+    private DetectionJobDTO toDTO(DetectionJob job) {
+        DetectionJobDTO dto = new DetectionJobDTO();
+        dto.setJobId(job.id);
+        dto.setInspectionId(job.inspectionId);
+        dto.setStatus(job.status.name());
+        dto.setQueuePosition(queuePosition(job));
+        dto.setSubmittedAt(job.submittedAt);
+        dto.setStartedAt(job.startedAt);
+        dto.setFinishedAt(job.finishedAt);
+        dto.setErrorMessage(job.errorMessage);
+        dto.setResultId(job.resultId);
+        dto.setOverallStatus(job.overallStatus);
+        return dto;
+    }
+
+    /**
+     * Worker body: the same runDetection the synchronous endpoint uses (its background twin for background jobs),
+     * so finished jobs write AnomalyDetectionResult exactly as before.
+     */
+    private class JobTask extends FutureTask<AnomalyDetectionResult> {
+        private final DetectionJob job;
+
+        JobTask(DetectionJob job, DetectionRequest request, ModelVariant variant, boolean background) {
+            super(() -> {
+                job.start();
+                if (background) {
+                    return anomalyDetectionService.runBackgroundDetection(job.inspectionId, request.getBaselineFileName(),
+                            request.getTempThresholdPercentage(), variant);
+                }
+                return anomalyDetectionService.runDetection(job.inspectionId, request.getBaselineFileName(),
+                        request.getTempThresholdPercentage(), variant);
+            });
+            this.job = job;
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled()) {
+                job.finish(JobStatus.CANCELLED, null);
+                return;
+            }
+            try {
+                AnomalyDetectionResult result = get();
+                job.resultId = result.getId();
+                job.overallStatus = result.getOverallStatus();
+                job.finish(JobStatus.SUCCEEDED, null);
+            } catch (CancellationException e) {
+                job.finish(JobStatus.CANCELLED, null);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                job.finish(JobStatus.CANCELLED, null);
+            } catch (Exception e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                logger.error("Detection job {} for inspection {} failed.", job.id, job.inspectionId, cause);
+                job.finish(JobStatus.FAILED, cause.getMessage());
+            }
+        }
+    }
+
+    private static class DetectionJob {
+        private final String id;
+        private final Long inspectionId;
+        private final ThreadPoolExecutor executor;
+        private final LocalDateTime submittedAt = LocalDateTime.now();
+        private volatile JobStatus status = JobStatus.QUEUED;
+        private volatile LocalDateTime startedAt;
+        private volatile LocalDateTime finishedAt;
+        private volatile String errorMessage;
+        private volatile Long resultId;
+        private volatile String overallStatus;
+        private JobTask task;
+
+        DetectionJob(String id, Long inspectionId, ThreadPoolExecutor executor) {
+            this.id = id;
+            this.inspectionId = inspectionId;
+            this.executor = executor;
+        }
+
+        synchronized void start() {
+            if (status == JobStatus.QUEUED) {
+                status = JobStatus.RUNNING;
+                startedAt = LocalDateTime.now();
+            }
+        }
+
+        synchronized void finish(JobStatus finalStatus, String error) {
+            if (isFinished()) {
+                return;
+            }
+            status = finalStatus;
+            errorMessage = error;
+            finishedAt = LocalDateTime.now();
+        }
+
+        boolean isFinished() {
+            JobStatus current = status;
+            return current == JobStatus.SUCCEEDED || current == JobStatus.FAILED || current == JobStatus.CANCELLED;
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.university.transformer.oversight.service.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.university.transformer.oversight.service.DetectionEngine;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Groups single detections that arrive together into one batched inference call. The first request for a model
+ * becomes the batch leader: it keeps the batch open for up to ml.detection.micro-batch.window-millis (or until
+ * max-size requests have joined), then runs the batch in one scheduler slot on its own thread and hands every
+ * member its output.
+ * <p>
+ * The window is only spent when other detections are in progress; a request arriving on an idle server runs at once.
+ * Interactive and background detections are never batched together, so background work cannot hold an inspector's
+ * detection back.
+ */
+@Component
+public class DetectionMicroBatcher {
+
+    private final DetectionEngine detectionEngine;
+    private final DetectionScheduler detectionScheduler;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final Duration window;
+    private final int maxSize;
+    private final DistributionSummary batchSizes;
+    private final Timer windowTimer;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // Batches still accepting members, one per model and output directory
+    private final Map<String, Batch> open = new HashMap<>();
+    private final AtomicInteger active = new AtomicInteger();
+
+    public DetectionMicroBatcher(DetectionEngine detectionEngine,
+                                 DetectionScheduler detectionScheduler,
+                                 ObjectMapper objectMapper,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${ml.detection.micro-batch.enabled:true}") boolean enabled,
+                                 @Value("${ml.detection.micro-batch.window-millis:20}") long windowMillis,
+                                 @Value("${ml.detection.micro-batch.max-size:8}") int maxSize) {
+        this.detectionEngine = detectionEngine;
+        this.detectionScheduler = detectionScheduler;
+        this.objectMapper = objectMapper;
+        // Engines that run batch items one by one gain nothing from waiting for company
+        this.enabled = enabled && maxSize > 1 && detectionEngine.batchesInference();
+        this.window = Duration.ofMillis(Math.max(0, windowMillis));
+        this.maxSize = Math.max(1, maxSize);
+        this.batchSizes = DistributionSummary.builder("detection.microbatch.size")
+                .description("Single detections run together in one inference call")
+                .publishPercentiles(0.5, 0.95)
+                .register(meterRegistry);
+        this.windowTimer = Timer.builder("detection.microbatch.window")
+                .description("Time a batch leader kept its batch open for more requests")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs one detection, batched with concurrent ones of the same priority for the same model when possible, as a
+     * scheduler request of that priority. Failures (including this item's own error in a batch) are thrown as
+     * RuntimeException.
+     */
+    public Detection detect(DetectionScheduler.Priority priority, String maintenancePath, int baselineIntensity, String outputDir,
+                            Double thresholdPercentage, String modelPath) {
+        if (!enabled) {
+            return runSingle(priority, maintenancePath, baselineIntensity, outputDir, thresholdPercentage, modelPath);
+        }
+        active.incrementAndGet();
+        try {
+            Member member = new Member(maintenancePath, baselineIntensity, thresholdPercentage);
+            String bucket = priority + "|" + modelPath + "|" + outputDir;
+            Batch batch;
+            boolean leader;
+            lock.lock();
+            try {
+                batch = open.get(bucket);
+                leader = batch == null;
+                if (leader) {
+                    batch = new Batch(lock.newCondition());
+                    open.put(bucket, batch);
+                }
+                batch.members.add(member);
+                if (batch.members.size() >= maxSize) {
+                    open.remove(bucket, batch);
+                    batch.full.signal();
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (leader) {
+                lead(priority, bucket, batch, outputDir, modelPath);
+            }
+            return await(member.result);
+        } finally {
+            active.decrementAndGet();
+        }
+    }
+
+    private void lead(DetectionScheduler.Priority priority, String bucket, Batch batch, String outputDir, String modelPath) {
+        List<Member> members;
+        long started = System.nanoTime();
+        lock.lock();
+        try {
+            // Only worth waiting when there is concurrent traffic to batch with
+            if (active.get() > 1) {
+                long remaining = window.toNanos();
+                while (open.get(bucket) == batch && remaining > 0) {
+                    remaining = batch.full.awaitNanos(remaining);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            open.remove(bucket, batch);
+            members = new ArrayList<>(batch.members);
+            lock.unlock();
+        }
+        windowTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        batchSizes.record(members.size());
+
+        if (members.size() == 1) {
+            Member only = members.get(0);
+            try {
+                only.result.complete(runSingle(priority, only.maintenancePath, only.baselineIntensity, outputDir, only.thresholdPercentage, modelPath));
+            } catch (RuntimeException | Error e) {
+                only.result.completeExceptionally(e);
+            }
+            return;
+        }
+        runBatch(priority, members, outputDir, modelPath);
+    }
+
+    private Detection runSingle(DetectionScheduler.Priority priority, String maintenancePath, int baselineIntensity, String outputDir,
+                                Double thresholdPercentage, String modelPath) {
+        return detectionScheduler.run(priority, () -> {
+            long started = System.nanoTime();
+            JsonNode output = detectionEngine.detect(maintenancePath, baselineIntensity, outputDir, thresholdPercentage, modelPath);
+            return new Detection(output, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        });
+    }
+
+    private void runBatch(DetectionScheduler.Priority priority, List<Member> members, String outputDir, String modelPath) {
+        List<ObjectNode> items = new ArrayList<>();
+        for (int i = 0; i < members.size(); i++) {
+            Member member = members.get(i);
+            ObjectNode item = objectMapper.createObjectNode();
+            item.put("key", String.valueOf(i));
+            item.put("maintenance", member.maintenancePath);
+            item.put("baseline_intensity", member.baselineIntensity);
+            item.put("threshold", member.thresholdPercentage);
+            items.add(item);
+        }
+        try {
+            long[] inferenceNanos = new long[1];
+            JsonNode outputs = detectionScheduler.run(priority, items.size(), () -> {
+                long started = System.nanoTime();
+                JsonNode batchOutputs = detectionEngine.detectBatch(items, outputDir, modelPath);
+                inferenceNanos[0] = System.nanoTime() - started;
+                return batchOutputs;
+            });
+            long inferenceMillis = TimeUnit.NANOSECONDS.toMillis(inferenceNanos[0]);
+            for (JsonNode output : outputs) {
+                int index = output.path("key").asInt(-1);
+                if (index < 0 || index >= members.size()) {
+                    continue;
+                }
+                CompletableFuture<Detection> result = members.get(index).result;
+                if (output.has("error")) {
+                    result.completeExceptionally(new RuntimeException("Anomaly detection failed: " + output.get("error").asText()));
+                } else {
+                    // The key only routes the output back to its caller; single detections never carry one
+                    ((ObjectNode) output).remove("key");
+                    result.complete(new Detection(output, inferenceMillis));
+                }
+            }
+            // No effect on members already answered; the rest had no output in the batch
+            for (Member member : members) {
+                member.result.completeExceptionally(new RuntimeException("Batched detection returned no output for " + member.maintenancePath));
+            }
+        } catch (RuntimeException | Error e) {
+            members.forEach(member -> member.result.completeExceptionally(e));
+        }
+    }
+
+    private static Detection await(CompletableFuture<Detection> result) {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new RuntimeException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for a batched detection.", e);
+        }
+    }
+
+    /**
+     * Detector output for one request, with the time the inference call took (shared by all members of a batch).
+     */
+    public static class Detection {
+        private final JsonNode output;
+        private final long inferenceMillis;
+
+        Detection(JsonNode output, long inferenceMillis) {
+            this.output = output;
+            this.inferenceMillis = inferenceMillis;
+        }
+
+        public JsonNode getOutput() {
+            return output;
+        }
+
+        public long getInferenceMillis() {
+            return inferenceMillis;
+        }
+    }
+
+    private static class Member {
+        private final String maintenancePath;
+        private final int baselineIntensity;
+        private final Double thresholdPercentage;
+        private final CompletableFuture<Detection> result = new CompletableFuture<>();
+
+        Member(String maintenancePath, int baselineIntensity, Double thresholdPercentage) {
+            this.maintenancePath = maintenancePath;
+            this.baselineIntensity = baselineIntensity;
+            this.thresholdPercentage = thresholdPercentage;
+        }
+    }
+
+    private static class Batch {
+        private final Condition full;
+        private final List<Member> members = new ArrayList<>();
+
+        Batch(Condition full) {
+            this.full = full;
+        }
+    }
+}
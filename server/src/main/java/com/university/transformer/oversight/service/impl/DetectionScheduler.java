@@ -0,0 +1,293 @@
+package com.university.transformer.oversight.service.impl;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Admission control in front of the detection engine. Every inference call takes one of ml.detection.scheduler.capacity
+ * slots, handed out by class:
+ * <ul>
+ *   <li>weighted fair queuing (start-time fair queuing over the class weights) decides which class goes next;</li>
+ *   <li>background work never holds more than (current limit) - reserved-interactive slots, so an inspector always finds one free;</li>
+ *   <li>a background request that has waited longer than starvation-seconds goes next regardless of weights.</li>
+ * </ul>
+ * Within a class requests run in arrival order.
+ * <p>
+ * How many of the slots may be used at once adapts to inference latency (AIMD): when a call takes more than
+ * latency-tolerance times the fastest recent call of its class the cores are oversubscribed and the limit is cut by
+ * a quarter; when calls stay fast while requests are queued it grows by one, up to capacity. Requests beyond the
+ * limit queue, and are rejected after max-wait-seconds.
+ */
+@Component
+public class DetectionScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(DetectionScheduler.class);
+
+    public enum Priority {
+        INTERACTIVE, // Someone at the console is waiting: single detections and their async jobs
+        BACKGROUND   // Batch runs and shadow evaluation
+    }
+
+    private final int capacity;
+    private final int minLimit;
+    private final int reservedInteractive;
+    private final boolean adaptive;
+    private final double latencyTolerance;
+    private final Map<Priority, Double> costs = new EnumMap<>(Priority.class);
+    private final long starvationNanos;
+    private final Duration maxWait;
+    private final LongSupplier nanoTime;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Priority, Deque<Ticket>> queues = new EnumMap<>(Priority.class);
+    private final Map<Priority, Integer> running = new EnumMap<>(Priority.class);
+    private final Map<Priority, Double> finishTags = new EnumMap<>(Priority.class);
+    private final Map<Priority, Timer> waitTimers = new EnumMap<>(Priority.class);
+    // Fastest recent inference per class and batch size, the no-contention reference for latency samples
+    private final Map<String, Double> baselineNanos = new HashMap<>();
+    private double virtualTime = 0;
+    private int inUse = 0;
+    private int limit;
+    private long lastDecreaseAt = 0;
+
+    @Autowired
+    public DetectionScheduler(MeterRegistry meterRegistry,
+                              @Value("${ml.detection.scheduler.capacity:2}") int capacity,
+                              @Value("${ml.detection.scheduler.reserved-interactive:1}") int reservedInteractive,
+                              @Value("${ml.detection.scheduler.interactive-weight:4}") int interactiveWeight,
+                              @Value("${ml.detection.scheduler.background-weight:1}") int backgroundWeight,
+                              @Value("${ml.detection.scheduler.starvation-seconds:30}") long starvationSeconds,
+                              @Value("${ml.detection.scheduler.max-wait-seconds:300}") long maxWaitSeconds,
+                              @Value("${ml.detection.scheduler.adaptive:true}") boolean adaptive,
+                              @Value("${ml.detection.scheduler.min-capacity:1}") int minCapacity,
+                              @Value("${ml.detection.scheduler.latency-tolerance:2.0}") double latencyTolerance) {
+        this(meterRegistry, capacity, reservedInteractive, interactiveWeight, backgroundWeight, starvationSeconds,
+                maxWaitSeconds, adaptive, minCapacity, latencyTolerance, System::nanoTime);
+    }
+
+    // Takes the time source so tests can control call latencies and waiting times
+    DetectionScheduler(MeterRegistry meterRegistry, int capacity, int reservedInteractive, int interactiveWeight,
+                       int backgroundWeight, long starvationSeconds, long maxWaitSeconds, boolean adaptive,
+                       int minCapacity, double latencyTolerance, LongSupplier nanoTime) {
+        this.capacity = Math.max(1, capacity);
+        this.minLimit = Math.min(this.capacity, Math.max(1, minCapacity));
+        this.reservedInteractive = Math.max(0, reservedInteractive);
+        this.adaptive = adaptive;
+        this.latencyTolerance = Math.max(1.1, latencyTolerance);
+        this.limit = this.capacity;
+        this.costs.put(Priority.INTERACTIVE, 1.0 / Math.max(1, interactiveWeight));
+        this.costs.put(Priority.BACKGROUND, 1.0 / Math.max(1, backgroundWeight));
+        this.starvationNanos = TimeUnit.SECONDS.toNanos(starvationSeconds);
+        this.maxWait = Duration.ofSeconds(maxWaitSeconds);
+        this.nanoTime = nanoTime;
+
+        for (Priority priority : Priority.values()) {
+            Deque<Ticket> queue = new ArrayDeque<>();
+            queues.put(priority, queue);
+            running.put(priority, 0);
+            finishTags.put(priority, 0.0);
+            String tag = priority.name().toLowerCase();
+            waitTimers.put(priority, Timer.builder("detection.scheduler.wait")
+                    .description("Time detection requests wait for an inference slot")
+                    .tag("priority", tag)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry));
+            Gauge.builder("detection.scheduler.queued", () -> getQueuedCount(priority))
+                    .description("Detection requests waiting for an inference slot")
+                    .tag("priority", tag)
+                    .register(meterRegistry);
+        }
+        Gauge.builder("detection.scheduler.limit", this::getLimit)
+                .description("Inference slots currently allowed by the adaptive concurrency limit")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs the work once a slot is granted to this priority. Throws a RuntimeException when no slot
+     * becomes free within ml.detection.scheduler.max-wait-seconds.
+     */
+    public <T> T run(Priority priority, Supplier<T> work) {
+        return run(priority, 1, work);
+    }
+
+    /**
+     * Same as {@link #run(Priority, Supplier)} for work covering several images in one inference call; latency
+     * is only compared against calls of the same size.
+     */
+    public <T> T run(Priority priority, int images, Supplier<T> work) {
+        acquire(priority);
+        long started = nanoTime.getAsLong();
+        boolean completed = false;
+        try {
+            T result = work.get();
+            completed = true;
+            return result;
+        } finally {
+            release(priority, images, completed ? nanoTime.getAsLong() - started : -1);
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueuedCount(Priority priority) {
+        lock.lock();
+        try {
+            return queues.get(priority).size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void acquire(Priority priority) {
+        Ticket ticket = new Ticket(lock.newCondition(), nanoTime.getAsLong());
+        lock.lock();
+        try {
+            queues.get(priority).addLast(ticket);
+            dispatch();
+            long remaining = maxWait.toNanos();
+            while (!ticket.granted) {
+                if (remaining <= 0) {
+                    queues.get(priority).remove(ticket);
+                    throw new RuntimeException("No detection capacity became available within " + maxWait.toSeconds() + "s.");
+                }
+                remaining = ticket.signal.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            if (ticket.granted) {
+                releaseLocked(priority);
+            } else {
+                queues.get(priority).remove(ticket);
+            }
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for detection capacity.", e);
+        } finally {
+            lock.unlock();
+        }
+        waitTimers.get(priority).record(nanoTime.getAsLong() - ticket.enqueuedAt, TimeUnit.NANOSECONDS);
+    }
+
+    // Failed calls (latencyNanos < 0) say nothing about contention and leave the limit alone
+    private void release(Priority priority, int images, long latencyNanos) {
+        lock.lock();
+        try {
+            if (adaptive && latencyNanos >= 0) {
+                adjustLimit(priority.name() + "/" + images, latencyNanos);
+            }
+            releaseLocked(priority);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void adjustLimit(String sampleClass, long latencyNanos) {
+        // The reference drifts up slowly so it follows a slower model instead of pinning the limit low forever
+        double baseline = Math.min(latencyNanos, baselineNanos.getOrDefault(sampleClass, (double) latencyNanos) * 1.005);
+        baselineNanos.put(sampleClass, baseline);
+        long now = nanoTime.getAsLong();
+        if (latencyNanos > baseline * latencyTolerance) {
+            // At most one cut per call duration: calls that overlapped the congestion all report it
+            if (limit > minLimit && now - lastDecreaseAt > latencyNanos) {
+                limit = Math.max(minLimit, (int) (limit * 0.75));
+                lastDecreaseAt = now;
+                logger.debug("Detection latency {}ms is over {}x the {}ms reference; limiting inference to {} slots.",
+                        TimeUnit.NANOSECONDS.toMillis(latencyNanos), latencyTolerance,
+                        TimeUnit.NANOSECONDS.toMillis((long) baseline), limit);
+            }
+        } else if (limit < capacity && hasQueued()) {
+            limit++;
+            logger.debug("Detection latency is healthy with requests queued; raising the inference limit to {}.", limit);
+        }
+    }
+
+    private boolean hasQueued() {
+        for (Deque<Ticket> queue : queues.values()) {
+            if (!queue.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void releaseLocked(Priority priority) {
+        running.merge(priority, -1, Integer::sum);
+        inUse--;
+        dispatch();
+    }
+
+    // Hands free slots to waiting tickets; the lock must be held
+    private void dispatch() {
+        while (inUse < limit) {
+            Priority next = pickNext();
+            if (next == null) {
+                return;
+            }
+            Ticket ticket = queues.get(next).pollFirst();
+            double start = Math.max(virtualTime, finishTags.get(next));
+            finishTags.put(next, start + costs.get(next));
+            virtualTime = start;
+            running.merge(next, 1, Integer::sum);
+            inUse++;
+            ticket.granted = true;
+            ticket.signal.signal();
+        }
+    }
+
+    private Priority pickNext() {
+        boolean interactiveWaiting = !queues.get(Priority.INTERACTIVE).isEmpty();
+        Ticket backgroundHead = queues.get(Priority.BACKGROUND).peekFirst();
+        // With a single slot there is nothing to reserve; background still has to make progress
+        int backgroundLimit = Math.max(1, limit - reservedInteractive);
+        boolean backgroundEligible = backgroundHead != null && running.get(Priority.BACKGROUND) < backgroundLimit;
+        if (!backgroundEligible) {
+            return interactiveWaiting ? Priority.INTERACTIVE : null;
+        }
+        if (!interactiveWaiting) {
+            return Priority.BACKGROUND;
+        }
+        if (nanoTime.getAsLong() - backgroundHead.enqueuedAt > starvationNanos) {
+            logger.debug("Background detection waited over {}s; running it ahead of interactive work.",
+                    TimeUnit.NANOSECONDS.toSeconds(starvationNanos));
+            return Priority.BACKGROUND;
+        }
+        // The class whose next request would start earliest in virtual time; ties go to interactive
+        double interactiveStart = Math.max(virtualTime, finishTags.get(Priority.INTERACTIVE));
+        double backgroundStart = Math.max(virtualTime, finishTags.get(Priority.BACKGROUND));
+        return backgroundStart < interactiveStart ? Priority.BACKGROUND : Priority.INTERACTIVE;
+    }
+
+    private static class Ticket {
+        private final Condition signal;
+        private final long enqueuedAt;
+        private boolean granted;
+
+        Ticket(Condition signal, long enqueuedAt) {
+            this.signal = signal;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
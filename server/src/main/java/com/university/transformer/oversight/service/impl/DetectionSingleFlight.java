@@ -0,0 +1,203 @@
+package com.university.transformer.oversight.service.impl;
+
+import com.university.transformer.oversight.model.AnomalyDetectionResult;
+import com.university.transformer.oversight.model.DetectionClaim;
+import com.university.transformer.oversight.repository.AnomalyDetectionResultRepository;
+import com.university.transformer.oversight.repository.DetectionClaimRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * One detection per inspection at a time. A request arriving while the same inspection is being detected with the
+ * same baseline and threshold waits for that run and gets its result instead of running the model again; a request
+ * with other parameters waits for it to finish and then runs.
+ * <p>
+ * Within this node that is a map of in-flight runs. Across nodes the running node holds a row in detection_claims,
+ * committed on its own before the run starts; other nodes poll until the row is gone and then read the stored result.
+ */
+@Component
+public class DetectionSingleFlight {
+
+    private static final Logger logger = LoggerFactory.getLogger(DetectionSingleFlight.class);
+    private static final int CLAIM_ATTEMPTS = 3;
+
+    private final DetectionClaimRepository claimRepository;
+    private final AnomalyDetectionResultRepository resultRepository;
+    // Claims commit independently of the (long) detection transaction so other nodes see them immediately
+    private final TransactionTemplate claimTransaction;
+    private final String nodeId;
+    private final Duration claimTtl;
+    private final long pollMillis;
+    private final Counter coalescedLocal;
+    private final Counter coalescedRemote;
+
+    private final Map<Long, Flight> inFlight = new ConcurrentHashMap<>();
+
+    public DetectionSingleFlight(DetectionClaimRepository claimRepository,
+                                 AnomalyDetectionResultRepository resultRepository,
+                                 PlatformTransactionManager transactionManager,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${ml.node-id:}") String nodeId,
+                                 @Value("${ml.detection.claim-ttl-seconds:600}") long claimTtlSeconds,
+                                 @Value("${ml.detection.claim-poll-millis:500}") long pollMillis) {
+        this.claimRepository = claimRepository;
+        this.resultRepository = resultRepository;
+        this.claimTransaction = new TransactionTemplate(transactionManager);
+        this.claimTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        // pid@host plus a per-start suffix, so a restarted node never mistakes its predecessor's claims for its own
+        this.nodeId = (nodeId == null || nodeId.isBlank())
+                ? ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID().toString().substring(0, 8)
+                : nodeId;
+        this.claimTtl = Duration.ofSeconds(claimTtlSeconds);
+        this.pollMillis = Math.max(50, pollMillis);
+        this.coalescedLocal = Counter.builder("detection.singleflight.coalesced").tag("scope", "local")
+                .description("Detection requests answered by a run already in flight").register(meterRegistry);
+        this.coalescedRemote = Counter.builder("detection.singleflight.coalesced").tag("scope", "remote")
+                .description("Detection requests answered by a run already in flight").register(meterRegistry);
+    }
+
+    /**
+     * Runs the detection unless an identical one for the inspection is already running, in which case its result
+     * (or its failure) is returned. The detection must have committed its result when it returns.
+     */
+    public AnomalyDetectionResult run(Long inspectionId, String requestKey, Callable<AnomalyDetectionResult> detection) throws Exception {
+        while (true) {
+            Flight mine = new Flight(requestKey);
+            Flight running = inFlight.putIfAbsent(inspectionId, mine);
+            if (running != null) {
+                if (running.requestKey.equals(requestKey)) {
+                    logger.info("Detection for inspection {} is already running; waiting for its result.", inspectionId);
+                    coalescedLocal.increment();
+                    return await(running.result);
+                }
+                // Different baseline or threshold: never interleave two runs' annotation writes
+                running.result.handle((result, failure) -> null).join();
+                continue;
+            }
+            try {
+                AnomalyDetectionResult result = runClaimed(inspectionId, requestKey, detection);
+                mine.result.complete(result);
+                return result;
+            } catch (Exception | Error e) {
+                mine.result.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(inspectionId, mine);
+            }
+        }
+    }
+
+    private AnomalyDetectionResult runClaimed(Long inspectionId, String requestKey, Callable<AnomalyDetectionResult> detection) throws Exception {
+        while (true) {
+            DetectionClaim holder = tryClaim(inspectionId, requestKey);
+            if (holder == null) {
+                try {
+                    return detection.call();
+                } finally {
+                    release(inspectionId);
+                }
+            }
+            logger.info("Detection for inspection {} is running on node {}; waiting for it.", inspectionId, holder.getNodeId());
+            waitForRelease(inspectionId, holder);
+            if (holder.getRequestKey().equals(requestKey)) {
+                Optional<AnomalyDetectionResult> result = resultRepository.findByInspectionId(inspectionId)
+                        .filter(stored -> stored.getDetectedTimestamp() != null
+                                && !stored.getDetectedTimestamp().isBefore(holder.getClaimedAt()));
+                if (result.isPresent()) {
+                    coalescedRemote.increment();
+                    return result.get();
+                }
+            }
+            // Other parameters, or the other node failed without a result: run it here
+        }
+    }
+
+    // Null when this node now holds the claim, otherwise the current holder
+    private DetectionClaim tryClaim(Long inspectionId, String requestKey) {
+        for (int attempt = 0; attempt < CLAIM_ATTEMPTS; attempt++) {
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime expiresAt = now.plus(claimTtl);
+            try {
+                claimTransaction.executeWithoutResult(status ->
+                        claimRepository.insertClaim(inspectionId, nodeId, requestKey, now, expiresAt));
+                return null;
+            } catch (DataIntegrityViolationException e) {
+                // Held elsewhere; an expired claim belongs to a node that died mid-detection and can be taken over
+                Integer taken = claimTransaction.execute(status ->
+                        claimRepository.takeOverExpired(inspectionId, nodeId, requestKey, now, expiresAt));
+                if (Objects.equals(taken, 1)) {
+                    logger.warn("Took over the expired detection claim for inspection {}.", inspectionId);
+                    return null;
+                }
+                Optional<DetectionClaim> holder = claimRepository.findById(inspectionId);
+                if (holder.isPresent()) {
+                    return holder.get();
+                }
+                // Released in between (or the inspection does not exist); try again
+            }
+        }
+        // Let the detection itself report a missing inspection
+        return null;
+    }
+
+    private void waitForRelease(Long inspectionId, DetectionClaim holder) throws InterruptedException {
+        while (true) {
+            Optional<DetectionClaim> current = claimRepository.findById(inspectionId);
+            if (current.isEmpty() || !current.get().getNodeId().equals(holder.getNodeId())
+                    || current.get().getExpiresAt().isBefore(LocalDateTime.now())) {
+                return;
+            }
+            Thread.sleep(pollMillis);
+        }
+    }
+
+    private void release(Long inspectionId) {
+        try {
+            claimTransaction.executeWithoutResult(status -> claimRepository.release(inspectionId, nodeId));
+        } catch (RuntimeException e) {
+            // It expires on its own; other nodes only wait longer
+            logger.error("Could not release the detection claim for inspection {}: {}", inspectionId, e.getMessage());
+        }
+    }
+
+    private static AnomalyDetectionResult await(CompletableFuture<AnomalyDetectionResult> result) throws Exception {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception exception) {
+                throw exception;
+            }
+            throw (Error) cause;
+        }
+    }
+
+    private static class Flight {
+        private final String requestKey;
+        private final CompletableFuture<AnomalyDetectionResult> result = new CompletableFuture<>();
+
+        Flight(String requestKey) {
+            this.requestKey = requestKey;
+        }
+    }
+}
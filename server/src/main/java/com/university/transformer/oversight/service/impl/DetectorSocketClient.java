@@ -0,0 +1,230 @@
+package com.university.transformer.oversight.service.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Pooled client for "detector.py --serve" processes listening on Unix domain sockets.
+ * Keeps ml.detector.socket.connections open per server and sends each request over the least loaded one;
+ * requests are multiplexed, so a connection does not wait for the previous answer.
+ * The servers are not owned by this application: they keep running (with their models loaded) across
+ * redeploys. When spawn-if-missing is on, a server whose socket cannot be reached is started detached.
+ */
+@Component
+@ConditionalOnProperty(name = "ml.detector.backend", havingValue = "socket")
+public class DetectorSocketClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(DetectorSocketClient.class);
+
+    private final ObjectMapper objectMapper;
+    private final List<Path> servers;
+    private final int connectionsPerServer;
+    private final int maxFrameBytes;
+    private final boolean spawnIfMissing;
+    private final String pythonExecutable;
+    private final String scriptPath;
+    private final Duration startupTimeout;
+    private final Map<String, String> serverEnvironment;
+
+    private final Map<Path, List<DetectorSocketConnection>> connections = new ConcurrentHashMap<>();
+    // When a server was last spawned, so an unreachable socket is not respawned while the model is still loading
+    private final Map<Path, Long> spawnedAt = new ConcurrentHashMap<>();
+
+    // Model a spawned server starts with; changed by warmUp when production switches models
+    private volatile String currentModelPath;
+    private volatile boolean shuttingDown = false;
+
+    public DetectorSocketClient(ObjectMapper objectMapper,
+                                @Value("${ml.detector.socket.paths}") String socketPaths,
+                                @Value("${ml.detector.socket.connections:2}") int connectionsPerServer,
+                                @Value("${ml.detector.socket.max-frame-mb:64}") int maxFrameMb,
+                                @Value("${ml.detector.socket.spawn-if-missing:true}") boolean spawnIfMissing,
+                                @Value("${ml.detector.python-executable:python}") String pythonExecutable,
+                                @Value("${ml.detector.script-path}") String scriptPath,
+                                @Value("${ml.detector.startup-timeout-seconds:180}") long startupTimeoutSeconds,
+                                @Value("${ml.detector.threads-per-worker:0}") int threadsPerServer,
+                                @Value("${ml.model-output-dir}") String modelOutputDir,
+                                @Value("${ml.production-model-name}") String initialModelName) {
+        this.objectMapper = objectMapper;
+        this.servers = Arrays.stream(socketPaths.split(","))
+                .map(String::trim).filter(path -> !path.isEmpty())
+                .map(path -> Paths.get(path).toAbsolutePath()).toList();
+        if (servers.isEmpty()) {
+            throw new IllegalStateException("ml.detector.socket.paths must name at least one socket.");
+        }
+        this.connectionsPerServer = Math.max(1, connectionsPerServer);
+        this.maxFrameBytes = Math.max(1, maxFrameMb) * 1024 * 1024;
+        this.spawnIfMissing = spawnIfMissing;
+        this.pythonExecutable = pythonExecutable;
+        this.scriptPath = Paths.get(scriptPath).toAbsolutePath().toString();
+        this.startupTimeout = Duration.ofSeconds(startupTimeoutSeconds);
+        // Servers spawned here share this machine's cores; servers started elsewhere keep their own settings
+        this.serverEnvironment = DetectorThreads.environment(DetectorThreads.perProcess(threadsPerServer, servers.size()));
+        this.currentModelPath = Paths.get(modelOutputDir, initialModelName).toAbsolutePath().toString();
+        servers.forEach(server -> connections.put(server, new CopyOnWriteArrayList<>()));
+    }
+
+    @PostConstruct
+    public void start() {
+        logger.info("Using {} detector socket servers: {}", servers.size(), servers);
+        servers.forEach(this::fill);
+    }
+
+    // Only the connections are closed; the servers keep running for the next deployment
+    @PreDestroy
+    public void shutdown() {
+        shuttingDown = true;
+        connections.values().forEach(list -> list.forEach(DetectorSocketConnection::close));
+    }
+
+    /**
+     * Sends the request over the least loaded connection of any server.
+     * Returns the whole response object; callers check the "ok" flag.
+     */
+    public JsonNode request(ObjectNode payload, Duration timeout) {
+        DetectorSocketConnection connection = null;
+        for (Path server : servers) {
+            for (DetectorSocketConnection candidate : fill(server)) {
+                if (connection == null || candidate.inFlight() < connection.inFlight()) {
+                    connection = candidate;
+                }
+            }
+        }
+        if (connection == null) {
+            throw new RuntimeException("No detector socket server is reachable at " + servers + ".");
+        }
+        return send(connection, payload, timeout);
+    }
+
+    /**
+     * Sends the request to every server, e.g. to load a model everywhere. Throws when any server fails.
+     */
+    public void broadcast(ObjectNode payload, Duration timeout) {
+        for (Path server : servers) {
+            List<DetectorSocketConnection> open = fill(server);
+            if (open.isEmpty()) {
+                throw new RuntimeException("Detector socket server " + server + " is not reachable.");
+            }
+            JsonNode response = send(open.get(0), payload.deepCopy(), timeout);
+            if (!response.path("ok").asBoolean(false)) {
+                throw new RuntimeException("Detector socket server " + server + " failed: " + response.path("error").asText("unknown error"));
+            }
+        }
+    }
+
+    public void setCurrentModelPath(String modelPath) {
+        this.currentModelPath = modelPath;
+    }
+
+    private JsonNode send(DetectorSocketConnection connection, ObjectNode payload, Duration timeout) {
+        try {
+            return connection.request(payload, timeout);
+        } catch (TimeoutException e) {
+            throw new RuntimeException("Anomaly detection timed out on " + connection.getSocketPath() + ".", e);
+        } catch (IOException e) {
+            connection.close();
+            throw new RuntimeException("Detector socket failed: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the detector socket server.", e);
+        }
+    }
+
+    // Drops closed connections and opens new ones up to the configured count; returns the open ones
+    private List<DetectorSocketConnection> fill(Path server) {
+        List<DetectorSocketConnection> open = connections.get(server);
+        open.removeIf(connection -> !connection.isOpen());
+        if (open.size() >= connectionsPerServer || shuttingDown) {
+            return open;
+        }
+        synchronized (open) {
+            while (open.size() < connectionsPerServer) {
+                try {
+                    open.add(new DetectorSocketConnection(server, objectMapper, maxFrameBytes));
+                } catch (IOException e) {
+                    if (open.isEmpty()) {
+                        spawnIfAbsent(server, e);
+                    }
+                    break;
+                }
+            }
+        }
+        return open;
+    }
+
+    /**
+     * Starts a server for an unreachable socket. It is deliberately not run through ProcessSupervisor:
+     * the process must survive this JVM, so it is started detached with its output appended to <socket>.log.
+     */
+    private void spawnIfAbsent(Path server, IOException connectFailure) {
+        if (!spawnIfMissing) {
+            logger.warn("Detector socket server {} is not reachable: {}", server, connectFailure.getMessage());
+            return;
+        }
+        Long lastSpawn = spawnedAt.get(server);
+        if (lastSpawn != null && System.nanoTime() - lastSpawn < startupTimeout.toNanos()) {
+            return; // Still loading its model
+        }
+        try {
+            Files.createDirectories(server.getParent());
+            Path log = Paths.get(server + ".log");
+            ProcessBuilder builder = new ProcessBuilder(pythonExecutable, scriptPath, "--serve", server.toString(), currentModelPath)
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.appendTo(log.toFile()));
+            builder.environment().putAll(serverEnvironment);
+            builder.start();
+            spawnedAt.put(server, System.nanoTime());
+            logger.info("Started detector socket server {} with model {} (log: {})", server, currentModelPath, log);
+        } catch (IOException e) {
+            logger.error("Could not start detector socket server {}: {}", server, e.getMessage());
+        }
+    }
+
+    /**
+     * Pings every connection and closes those that do not answer; they are reopened on the next request.
+     */
+    @Scheduled(fixedDelayString = "${ml.detector.health-check-interval-ms:30000}")
+    public void checkHealth() {
+        if (shuttingDown) {
+            return;
+        }
+        Duration pingTimeout = Duration.ofSeconds(10);
+        for (Path server : servers) {
+            for (DetectorSocketConnection connection : fill(server)) {
+                if (!connection.ping(pingTimeout)) {
+                    logger.warn("Detector socket connection to {} failed its health check.", server);
+                    connection.close();
+                }
+            }
+        }
+    }
+
+    public int getServerCount() {
+        return servers.size();
+    }
+
+    public int getInFlightCount() {
+        return connections.values().stream().flatMap(List::stream).mapToInt(DetectorSocketConnection::inFlight).sum();
+    }
+}
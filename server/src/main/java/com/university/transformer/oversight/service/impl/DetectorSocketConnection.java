@@ -0,0 +1,168 @@
+package com.university.transformer.oversight.service.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One Unix domain socket connection to a "detector.py --serve" process.
+ * Frames are a 4-byte big-endian length followed by a UTF-8 JSON object. Many requests can be in flight at once;
+ * a reader thread hands each response to the caller waiting on its id.
+ */
+class DetectorSocketConnection {
+
+    private static final Logger logger = LoggerFactory.getLogger(DetectorSocketConnection.class);
+    private static final AtomicLong requestCounter = new AtomicLong();
+
+    private final Path socketPath;
+    private final SocketChannel channel;
+    private final ObjectMapper objectMapper;
+    private final int maxFrameBytes;
+    private final Map<String, CompletableFuture<JsonNode>> pending = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+    private volatile boolean open = true;
+
+    DetectorSocketConnection(Path socketPath, ObjectMapper objectMapper, int maxFrameBytes) throws IOException {
+        this.socketPath = socketPath;
+        this.objectMapper = objectMapper;
+        this.maxFrameBytes = maxFrameBytes;
+        this.channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            channel.connect(UnixDomainSocketAddress.of(socketPath));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        Thread reader = new Thread(this::readLoop, "detector-socket-" + socketPath.getFileName());
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    Path getSocketPath() {
+        return socketPath;
+    }
+
+    boolean isOpen() {
+        return open;
+    }
+
+    int inFlight() {
+        return pending.size();
+    }
+
+    /**
+     * Sends one request and waits for the response carrying the same id.
+     * Returns the whole response object; callers check the "ok" flag.
+     */
+    JsonNode request(ObjectNode payload, Duration timeout) throws IOException, TimeoutException, InterruptedException {
+        String requestId = "s" + requestCounter.incrementAndGet();
+        payload.put("id", requestId);
+        CompletableFuture<JsonNode> response = new CompletableFuture<>();
+        pending.put(requestId, response);
+        try {
+            writeFrame(objectMapper.writeValueAsBytes(payload));
+            return response.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        } finally {
+            pending.remove(requestId);
+        }
+    }
+
+    // Answered by the server's connection thread, so it is not delayed by inference running on other requests
+    boolean ping(Duration timeout) {
+        try {
+            ObjectNode payload = objectMapper.createObjectNode();
+            payload.put("op", "ping");
+            return request(payload, timeout).path("ok").asBoolean(false);
+        } catch (Exception e) {
+            logger.warn("Health check failed for detector socket {}: {}", socketPath, e.getMessage());
+            return false;
+        }
+    }
+
+    private void writeFrame(byte[] body) throws IOException {
+        if (!open) {
+            throw new IOException("Connection to " + socketPath + " is closed");
+        }
+        ByteBuffer frame = ByteBuffer.allocate(4 + body.length);
+        frame.putInt(body.length).put(body).flip();
+        synchronized (writeLock) {
+            while (frame.hasRemaining()) {
+                channel.write(frame);
+            }
+        }
+    }
+
+    private void readLoop() {
+        ByteBuffer header = ByteBuffer.allocate(4);
+        try {
+            while (open) {
+                header.clear();
+                if (!readFully(header)) {
+                    break;
+                }
+                int length = header.flip().getInt();
+                if (length < 0 || length > maxFrameBytes) {
+                    throw new IOException("Invalid frame length " + length);
+                }
+                ByteBuffer body = ByteBuffer.allocate(length);
+                if (!readFully(body)) {
+                    break;
+                }
+                JsonNode message = objectMapper.readTree(body.array());
+                CompletableFuture<JsonNode> waiter = pending.remove(message.path("id").asText(""));
+                if (waiter != null) {
+                    waiter.complete(message);
+                } else {
+                    logger.warn("Discarding response for unknown request {} from {}", message.path("id").asText(), socketPath);
+                }
+            }
+        } catch (IOException e) {
+            if (open) {
+                logger.warn("Detector socket {} failed: {}", socketPath, e.getMessage());
+            }
+        } finally {
+            close();
+        }
+    }
+
+    // False on end of stream
+    private boolean readFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void close() {
+        open = false;
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Already broken
+        }
+        IOException closed = new IOException("Connection to " + socketPath + " closed");
+        pending.values().forEach(waiter -> waiter.completeExceptionally(closed));
+        pending.clear();
+    }
+}
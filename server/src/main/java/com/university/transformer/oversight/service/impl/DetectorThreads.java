@@ -0,0 +1,32 @@
+package com.university.transformer.oversight.service.impl;
+
+import java.util.Map;
+
+/**
+ * Thread settings for detector processes. Left alone, PyTorch, OpenMP and OpenCV in every worker each start one
+ * thread per core, so N workers run N x cores threads and slow each other down; instead the cores are split
+ * between the workers.
+ */
+final class DetectorThreads {
+
+    private DetectorThreads() {
+    }
+
+    // A configured count wins; 0 splits the machine's cores evenly over the processes
+    static int perProcess(int configured, int processes) {
+        if (configured > 0) {
+            return configured;
+        }
+        return Math.max(1, Runtime.getRuntime().availableProcessors() / Math.max(1, processes));
+    }
+
+    // OMP/MKL/OpenBLAS read theirs at import time; detector.py applies DETECTOR_THREADS to torch and OpenCV
+    static Map<String, String> environment(int threads) {
+        String value = String.valueOf(threads);
+        return Map.of(
+                "OMP_NUM_THREADS", value,
+                "MKL_NUM_THREADS", value,
+                "OPENBLAS_NUM_THREADS", value,
+                "DETECTOR_THREADS", value);
+    }
+}
@@ -0,0 +1,139 @@
+package com.university.transformer.oversight.service.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One resident "detector.py --worker" process. Requests are written as single JSON lines
+ * to stdin and the matching response line is read back from stdout.
+ * A worker serves one request at a time; the pool makes sure of that.
+ */
+class DetectorWorker {
+
+    private static final Logger logger = LoggerFactory.getLogger(DetectorWorker.class);
+
+    private final int workerId;
+    private final SupervisedProcess process;
+    private final BufferedWriter stdin;
+    private final BlockingQueue<String> responses = new LinkedBlockingQueue<>();
+    private final ObjectMapper objectMapper;
+    private final AtomicLong requestCounter = new AtomicLong();
+    private volatile boolean ready = false;
+
+    DetectorWorker(int workerId, List<String> command, Map<String, String> environment, ObjectMapper objectMapper,
+                   ProcessSupervisor processSupervisor) throws IOException, InterruptedException {
+        this.workerId = workerId;
+        this.objectMapper = objectMapper;
+        // The supervisor drains both pipes on their own threads so a chatty stderr can never block the worker
+        this.process = processSupervisor.start("detector-worker-" + workerId, command, environment,
+                responses::offer,
+                line -> logger.debug("[Detector worker {} STDERR]: {}", workerId, line));
+        this.stdin = new BufferedWriter(new OutputStreamWriter(process.getStdin(), StandardCharsets.UTF_8));
+    }
+
+    int getWorkerId() {
+        return workerId;
+    }
+
+    boolean isAlive() {
+        return process.isAlive();
+    }
+
+    boolean isReady() {
+        return ready && process.isAlive();
+    }
+
+    /**
+     * Blocks until the worker reports that its model is loaded.
+     */
+    void awaitReady(Duration timeout) throws IOException, TimeoutException, InterruptedException {
+        if (ready) {
+            return;
+        }
+        JsonNode message = readMessage(null, timeout);
+        if (!"ready".equals(message.path("op").asText()) || !message.path("ok").asBoolean(false)) {
+            throw new IOException("Detector worker " + workerId + " failed to start: " + message.path("error").asText("unknown error"));
+        }
+        ready = true;
+        logger.info("Detector worker {} is ready with model {}", workerId, message.path("model").asText());
+    }
+
+    /**
+     * Sends one request and waits for the response carrying the same id.
+     * Returns the whole response object; callers check the "ok" flag.
+     */
+    JsonNode request(ObjectNode payload, Duration timeout) throws IOException, TimeoutException, InterruptedException {
+        String requestId = workerId + "-" + requestCounter.incrementAndGet();
+        payload.put("id", requestId);
+        synchronized (stdin) {
+            stdin.write(objectMapper.writeValueAsString(payload));
+            stdin.newLine();
+            stdin.flush();
+        }
+        return readMessage(requestId, timeout);
+    }
+
+    boolean ping(Duration timeout) {
+        try {
+            ObjectNode payload = objectMapper.createObjectNode();
+            payload.put("op", "ping");
+            return request(payload, timeout).path("ok").asBoolean(false);
+        } catch (Exception e) {
+            logger.warn("Health check failed for detector worker {}: {}", workerId, e.getMessage());
+            return false;
+        }
+    }
+
+    private JsonNode readMessage(String expectedId, Duration timeout) throws IOException, TimeoutException, InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (true) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new TimeoutException("Detector worker " + workerId + " did not answer within " + timeout.toSeconds() + "s");
+            }
+            String line = responses.poll(Math.min(remaining, TimeUnit.SECONDS.toNanos(1)), TimeUnit.NANOSECONDS);
+            if (line == null) {
+                if (!process.isAlive() && responses.isEmpty()) {
+                    throw new IOException("Detector worker " + workerId + " exited with code " + process.exitCode());
+                }
+                continue;
+            }
+            JsonNode message;
+            try {
+                message = objectMapper.readTree(line);
+            } catch (IOException e) {
+                logger.debug("Ignoring non-protocol output from detector worker {}: {}", workerId, line);
+                continue;
+            }
+            if (expectedId == null || expectedId.equals(message.path("id").asText(null))) {
+                return message;
+            }
+            logger.warn("Discarding stale response from detector worker {}: {}", workerId, message.path("id").asText());
+        }
+    }
+
+    SupervisedProcess getProcess() {
+        return process;
+    }
+
+    void destroy() {
+        ready = false;
+        process.destroy();
+    }
+}
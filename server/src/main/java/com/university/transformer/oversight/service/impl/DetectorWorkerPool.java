@@ -0,0 +1,333 @@
+package com.university.transformer.oversight.service.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps a fixed number of detector.py worker processes resident with the YOLO model already loaded,
+ * so a detection only pays for inference instead of interpreter start-up and model loading.
+ * Crashed, hung or unhealthy workers are replaced in the background.
+ * Not created when ml.detector.backend=onnx, so no Python processes are started then.
+ */
+@Component
+@ConditionalOnProperty(name = "ml.detector.backend", havingValue = "python", matchIfMissing = true)
+public class DetectorWorkerPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(DetectorWorkerPool.class);
+    private static final long RESTART_BACKOFF_SECONDS = 5;
+    private static final long WARM_UP_RETRY_MILLIS = 200;
+
+    private final ObjectMapper objectMapper;
+    private final ProcessSupervisor processSupervisor;
+    private final DecodedFrameCache decodedFrameCache;
+    private final String pythonExecutable;
+    private final String scriptPath;
+    private final int poolSize;
+    private final Duration requestTimeout;
+    private final Duration startupTimeout;
+    private final int batchSize;
+    // Thread counts that split the cores between workers
+    private final Map<String, String> workerEnvironment;
+
+    private final BlockingQueue<DetectorWorker> idleWorkers = new LinkedBlockingQueue<>();
+    private final Set<DetectorWorker> allWorkers = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger workerIds = new AtomicInteger();
+    private final ScheduledExecutorService lifecycleExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "detector-pool-lifecycle");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Model used when (re)starting a worker; changed by warmUp when production switches models
+    private volatile String currentModelPath;
+    private volatile boolean shuttingDown = false;
+
+    public DetectorWorkerPool(ObjectMapper objectMapper,
+                              ProcessSupervisor processSupervisor,
+                              DecodedFrameCache decodedFrameCache,
+                              @Value("${ml.detector.python-executable:python}") String pythonExecutable,
+                              @Value("${ml.detector.script-path}") String scriptPath,
+                              @Value("${ml.detector.workers:2}") int poolSize,
+                              @Value("${ml.detector.request-timeout-seconds:120}") long requestTimeoutSeconds,
+                              @Value("${ml.detector.startup-timeout-seconds:180}") long startupTimeoutSeconds,
+                              @Value("${ml.detector.batch-size:8}") int batchSize,
+                              @Value("${ml.detector.threads-per-worker:0}") int threadsPerWorker,
+                              @Value("${ml.model-output-dir}") String modelOutputDir,
+                              @Value("${ml.production-model-name}") String initialModelName) {
+        this.objectMapper = objectMapper;
+        this.processSupervisor = processSupervisor;
+        this.decodedFrameCache = decodedFrameCache;
+        this.pythonExecutable = pythonExecutable;
+        this.scriptPath = Paths.get(scriptPath).toAbsolutePath().toString();
+        this.poolSize = Math.max(1, poolSize);
+        this.requestTimeout = Duration.ofSeconds(requestTimeoutSeconds);
+        this.startupTimeout = Duration.ofSeconds(startupTimeoutSeconds);
+        this.batchSize = Math.max(1, batchSize);
+        this.workerEnvironment = DetectorThreads.environment(DetectorThreads.perProcess(threadsPerWorker, this.poolSize));
+        this.currentModelPath = Paths.get(modelOutputDir, initialModelName).toAbsolutePath().toString();
+    }
+
+    @PostConstruct
+    public void start() {
+        logger.info("Starting {} detector workers with script {} ({} threads each)", poolSize, scriptPath,
+                workerEnvironment.get("DETECTOR_THREADS"));
+        for (int i = 0; i < poolSize; i++) {
+            lifecycleExecutor.execute(this::spawnWorker);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        shuttingDown = true;
+        lifecycleExecutor.shutdownNow();
+        allWorkers.forEach(DetectorWorker::destroy);
+        allWorkers.clear();
+        idleWorkers.clear();
+    }
+
+    /**
+     * Runs one detection on an idle worker and returns the detector output object
+     * (overall_status, output_image_name, anomalies, metadata).
+     * The baseline is passed as its precomputed intensity, so the worker never decodes the baseline image.
+     */
+    public JsonNode detect(String maintenancePath, int baselineIntensity, String outputDir,
+                           Double thresholdPercentage, String modelPath) {
+        ObjectNode payload = objectMapper.createObjectNode();
+        payload.put("op", "detect");
+        payload.put("maintenance", maintenancePath);
+        payload.put("baseline_intensity", baselineIntensity);
+        payload.put("output_dir", outputDir);
+        payload.put("threshold", thresholdPercentage);
+        payload.put("model", modelPath);
+        // The worker maps the frame it decoded on an earlier run, or decodes the image and writes the frame
+        decodedFrameCache.detectorFrame(Paths.get(maintenancePath)).ifPresent(frame -> payload.put("maintenance_frame", frame.toString()));
+
+        JsonNode result = execute(payload, requestTimeout).path("result");
+        if (result.has("error")) {
+            throw new RuntimeException("Anomaly detection failed: " + result.get("error").asText());
+        }
+        return result;
+    }
+
+    /**
+     * Runs many images through one worker as batched inference (ml.detector.batch-size images per YOLO call).
+     * Each item needs "key", "maintenance", "baseline_intensity" and "threshold"; the returned array holds one output per
+     * item, tagged with its key. Per-item failures are reported in the item's "error" field.
+     */
+    public JsonNode detectBatch(List<ObjectNode> items, String outputDir, String modelPath) {
+        ObjectNode payload = objectMapper.createObjectNode();
+        payload.put("op", "detect_batch");
+        payload.put("output_dir", outputDir);
+        payload.put("model", modelPath);
+        payload.put("batch_size", batchSize);
+        for (ObjectNode item : items) {
+            decodedFrameCache.detectorFrame(Paths.get(item.path("maintenance").asText()))
+                    .ifPresent(frame -> item.put("maintenance_frame", frame.toString()));
+        }
+        payload.putArray("items").addAll(items);
+
+        // The time budget grows with the number of batched inference calls the worker has to make
+        long chunks = Math.max(1, (items.size() + batchSize - 1) / batchSize);
+        return execute(payload, requestTimeout.multipliedBy(chunks)).path("results");
+    }
+
+    /**
+     * Makes modelPath the model new workers start with and has every ready worker load it, one worker at a time
+     * so the others keep serving. Workers still starting up load it themselves once they are ready.
+     */
+    public void warmUp(String modelPath) {
+        currentModelPath = modelPath;
+        ObjectNode payload = objectMapper.createObjectNode();
+        payload.put("op", "load_model");
+        payload.put("model", modelPath);
+
+        Set<Integer> pending = allWorkers.stream().filter(DetectorWorker::isReady)
+                .map(DetectorWorker::getWorkerId).collect(Collectors.toCollection(HashSet::new));
+        long deadline = System.nanoTime() + startupTimeout.toNanos();
+        while (!pending.isEmpty()) {
+            if (System.nanoTime() > deadline) {
+                throw new RuntimeException("Warm-up of " + modelPath + " did not reach all detector workers within " + startupTimeout.toSeconds() + "s.");
+            }
+            DetectorWorker worker = borrow();
+            if (!pending.contains(worker.getWorkerId())) {
+                // Already warm (or started after the warm-up began); let traffic have it and wait for another one
+                idleWorkers.offer(worker);
+                sleepQuietly(WARM_UP_RETRY_MILLIS);
+                continue;
+            }
+            JsonNode response = sendTo(worker, payload, startupTimeout);
+            if (!response.path("ok").asBoolean(false)) {
+                throw new RuntimeException("Detector worker could not load " + modelPath + ": " + response.path("error").asText("unknown error"));
+            }
+            pending.remove(worker.getWorkerId());
+            pending.retainAll(allWorkers.stream().map(DetectorWorker::getWorkerId).collect(Collectors.toSet()));
+        }
+        logger.info("All detector workers have loaded {}", modelPath);
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted during model warm-up.", e);
+        }
+    }
+
+    private JsonNode execute(ObjectNode payload, Duration timeout) {
+        JsonNode response = send(payload, timeout);
+        if (!response.path("ok").asBoolean(false)) {
+            throw new RuntimeException("Detector worker reported an error: " + response.path("error").asText("unknown error"));
+        }
+        return response;
+    }
+
+    private JsonNode send(ObjectNode payload, Duration timeout) {
+        return sendTo(borrow(), payload, timeout);
+    }
+
+    // The worker must have been borrowed; it is returned to the idle queue or replaced afterwards
+    private JsonNode sendTo(DetectorWorker worker, ObjectNode payload, Duration timeout) {
+        boolean healthy = false;
+        try {
+            JsonNode response = worker.request(payload, timeout);
+            healthy = true;
+            return response;
+        } catch (TimeoutException e) {
+            throw new RuntimeException("Anomaly detection timed out. The detector worker will be restarted.", e);
+        } catch (IOException e) {
+            throw new RuntimeException("Detector worker failed: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the detector worker.", e);
+        } finally {
+            if (healthy && worker.isAlive()) {
+                idleWorkers.offer(worker);
+            } else {
+                replace(worker);
+            }
+        }
+    }
+
+    private DetectorWorker borrow() {
+        try {
+            DetectorWorker worker = idleWorkers.poll(requestTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            if (worker == null) {
+                throw new RuntimeException("No detector worker became available within " + requestTimeout.toSeconds() + "s.");
+            }
+            return worker;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for a detector worker.", e);
+        }
+    }
+
+    /**
+     * Pings every idle worker and replaces those that do not answer.
+     * Busy workers are covered by the request timeout instead.
+     */
+    @Scheduled(fixedDelayString = "${ml.detector.health-check-interval-ms:30000}")
+    public void checkHealth() {
+        if (shuttingDown) {
+            return;
+        }
+        Duration pingTimeout = Duration.ofSeconds(10);
+        for (int i = 0, n = idleWorkers.size(); i < n; i++) {
+            DetectorWorker worker = idleWorkers.poll();
+            if (worker == null) {
+                break;
+            }
+            if (worker.isAlive() && worker.ping(pingTimeout)) {
+                idleWorkers.offer(worker);
+            } else {
+                logger.warn("Detector worker {} failed its health check.", worker.getWorkerId());
+                replace(worker);
+            }
+        }
+    }
+
+    private void replace(DetectorWorker worker) {
+        allWorkers.remove(worker);
+        processSupervisor.recordExit("detector-worker", worker.getProcess(), false);
+        worker.destroy();
+        if (shuttingDown) {
+            return;
+        }
+        logger.info("Restarting detector worker {}", worker.getWorkerId());
+        lifecycleExecutor.execute(this::spawnWorker);
+    }
+
+    private void spawnWorker() {
+        if (shuttingDown) {
+            return;
+        }
+        int workerId = workerIds.incrementAndGet();
+        String modelPath = currentModelPath;
+        List<String> command = List.of(pythonExecutable, scriptPath, "--worker", modelPath);
+        DetectorWorker worker = null;
+        try {
+            worker = new DetectorWorker(workerId, command, workerEnvironment, objectMapper, processSupervisor);
+            allWorkers.add(worker);
+            worker.awaitReady(startupTimeout);
+            if (!modelPath.equals(currentModelPath)) {
+                // Production switched models while this worker was starting
+                ObjectNode payload = objectMapper.createObjectNode();
+                payload.put("op", "load_model");
+                payload.put("model", currentModelPath);
+                if (!worker.request(payload, startupTimeout).path("ok").asBoolean(false)) {
+                    throw new IOException("could not load " + currentModelPath);
+                }
+            }
+            idleWorkers.offer(worker);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (worker != null) {
+                allWorkers.remove(worker);
+                worker.destroy();
+            }
+        } catch (Exception e) {
+            logger.error("Detector worker {} failed to start: {}. Retrying in {}s.", workerId, e.getMessage(), RESTART_BACKOFF_SECONDS);
+            if (worker != null) {
+                allWorkers.remove(worker);
+                worker.destroy();
+            }
+            if (!shuttingDown) {
+                lifecycleExecutor.schedule(this::spawnWorker, RESTART_BACKOFF_SECONDS, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public int getIdleWorkerCount() {
+        return idleWorkers.size();
+    }
+}
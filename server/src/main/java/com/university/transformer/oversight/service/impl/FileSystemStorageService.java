@@ -25,11 +25,13 @@ import java.util.stream.Stream;
 public class FileSystemStorageService implements FileStorageService {
 
     private Path rootLocation;
+    private final DecodedFrameCache decodedFrameCache;
 
     @Autowired
-    public FileSystemStorageService(@Value("${storage.root-location}") String rootPath) {
+    public FileSystemStorageService(@Value("${storage.root-location}") String rootPath, DecodedFrameCache decodedFrameCache) {
         // Use the injected absolute path as storage root
         this.rootLocation = Paths.get(rootPath).toAbsolutePath().normalize();
+        this.decodedFrameCache = decodedFrameCache;
     }
 
     @Override
@@ -102,6 +104,7 @@ public class FileSystemStorageService implements FileStorageService {
         try {
             Path file = rootLocation.resolve(filename);
             Files.deleteIfExists(file);
+            decodedFrameCache.delete(filename);
         } catch (IOException e) {
             System.err.println("Could not delete the file: " + filename + ". Error: " + e.getMessage());
         }
@@ -1,14 +1,16 @@
 package com.university.transformer.oversight.service.impl;
 
 import com.university.transformer.oversight.model.Annotation;
+import com.university.transformer.oversight.model.ModelVariant;
+import com.university.transformer.oversight.model.ModelVersion;
 import com.university.transformer.oversight.model.ThermalImage;
 import com.university.transformer.oversight.repository.AnnotationRepository;
 import com.university.transformer.oversight.repository.ThermalImageRepository;
 import com.university.transformer.oversight.service.FineTuningService;
+import com.university.transformer.oversight.service.ModelRegistryService;
 import jakarta.persistence.EntityManager;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -19,8 +21,10 @@ import java.math.BigInteger;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.util.Objects;
 
 @Service
 public class FineTuningServiceImpl implements FineTuningService {
@@ -38,6 +42,18 @@ public class FineTuningServiceImpl implements FineTuningService {
     @Value("${ml.training-script-path}")
     private String trainingScriptPath;
 
+    @Value("${ml.detector.python-executable:python}")
+    private String pythonExecutable;
+
+    @Value("${ml.training.timeout-minutes:30}")
+    private long trainingTimeoutMinutes;
+
+    @Value("${ml.training.idle-timeout-minutes:10}")
+    private long trainingIdleTimeoutMinutes;
+
+    @Value("${ml.training.auto-promote:true}")
+    private boolean autoPromote;
+
     private static final String INITIAL_MODEL_PATH = "server/src/main/resources/best.pt";
 
     // Yolo Class Mapping
@@ -47,13 +63,22 @@ public class FineTuningServiceImpl implements FineTuningService {
     private final EntityManager entityManager;
     private final AnnotationRepository annotationRepository;
     private final ThermalImageRepository thermalImageRepository;
+    private final ProcessSupervisor processSupervisor;
+    private final ModelRegistryService modelRegistryService;
+    private final TransactionPhases transactionPhases;
 
     public FineTuningServiceImpl(EntityManager entityManager,
                                  AnnotationRepository annotationRepository,
-                                 ThermalImageRepository thermalImageRepository) {
+                                 ThermalImageRepository thermalImageRepository,
+                                 ProcessSupervisor processSupervisor,
+                                 ModelRegistryService modelRegistryService,
+                                 TransactionPhases transactionPhases) {
         this.entityManager = entityManager;
         this.annotationRepository = annotationRepository;
         this.thermalImageRepository = thermalImageRepository;
+        this.processSupervisor = processSupervisor;
+        this.modelRegistryService = modelRegistryService;
+        this.transactionPhases = transactionPhases;
     }
 
     /**
@@ -83,11 +108,19 @@ public class FineTuningServiceImpl implements FineTuningService {
         );
     }
 
+    /**
+     * Reads the user-corrected annotations in one short transaction, then builds the dataset and trains without
+     * holding a transaction or connection, and registers the model in a second short transaction.
+     */
     @Override
-    @Transactional
     public String generateDatasetAndFineTune() throws Exception {
         logger.info("Starting fine-tuning process...");
 
+        TrainingSnapshot snapshot = transactionPhases.run("fine_tune", "read", this::readTrainingSnapshot);
+        if (snapshot.images.isEmpty()) {
+            throw new RuntimeException("No images with user-modified annotations found to fine-tune.");
+        }
+
         Path datasetRoot = Paths.get(datasetDir).toAbsolutePath();
         Path imagesDir = datasetRoot.resolve("images");
         Path labelsDir = datasetRoot.resolve("labels");
@@ -99,34 +132,10 @@ public class FineTuningServiceImpl implements FineTuningService {
         Files.walk(imagesDir).skip(1).map(Path::toFile).forEach(File::delete);
         Files.walk(labelsDir).skip(1).map(Path::toFile).forEach(File::delete);
 
-        // Identify Target Images
-        // Find inspection_ids that have at least one USER_ADDED or USER_EDITED annotation.
-        String sql = "SELECT DISTINCT inspection_id FROM annotations " +
-                "WHERE annotation_type IN ('USER_ADDED', 'USER_EDITED') AND is_deleted = FALSE";
-
-        @SuppressWarnings("unchecked")
-        List<BigInteger> inspectionIds = entityManager.createNativeQuery(sql)
-                .getResultList();
-
-        if (inspectionIds.isEmpty()) {
-            throw new RuntimeException("No images with user-modified annotations found to fine-tune.");
-        }
-
         // Process each inspection
-        for (Object idObject : inspectionIds) {
-
-            Long inspectionId = ((Number) idObject).longValue();
-
-            // Get the Maintenance ThermalImage
-            ThermalImage maintenanceImage = thermalImageRepository.findByInspectionIdAndImageType(
-                    inspectionId, ThermalImage.ImageType.MAINTENANCE);
+        for (TrainingImage trainingImage : snapshot.images) {
 
-            if (maintenanceImage == null) {
-                logger.warn("No MAINTENANCE image found for inspection_id: {}", inspectionId);
-                continue;
-            }
-
-            Path sourceImagePath = Paths.get(imageUploadDir, maintenanceImage.getFileName());
+            Path sourceImagePath = Paths.get(imageUploadDir, trainingImage.fileName);
 
             if (!Files.exists(sourceImagePath)) {
                 logger.error("Image file not found at path: {}", sourceImagePath);
@@ -139,33 +148,29 @@ public class FineTuningServiceImpl implements FineTuningService {
             double imgHeight = dimensions[1];
 
             // Copy Image to Dataset/images
-            String newImageName = "insp_" + inspectionId + "_" + maintenanceImage.getFileName();
+            String newImageName = "insp_" + trainingImage.inspectionId + "_" + trainingImage.fileName;
             Path destinationImagePath = imagesDir.resolve(newImageName);
             Files.copy(sourceImagePath, destinationImagePath);
 
-            // Get All Annotations for this inspection, excluding soft deleted
-            List<Annotation> annotations = annotationRepository
-                    .findByInspectionIdAndIsDeletedFalse(inspectionId);
-
             // Generate YOLO Label File
             Path labelFilePath = labelsDir.resolve(
                     newImageName.substring(0, newImageName.lastIndexOf('.')) + ".txt");
 
             try (BufferedWriter writer = Files.newBufferedWriter(labelFilePath)) {
-                for (Annotation ann : annotations) {
+                for (TrainingBox ann : trainingImage.boxes) {
 
                     // Center coordinates (from top-left corner)
-                    double x_center = ann.getX() + ann.getWidth() / 2.0;
-                    double y_center = ann.getY() + ann.getHeight() / 2.0;
+                    double x_center = ann.x + ann.width / 2.0;
+                    double y_center = ann.y + ann.height / 2.0;
 
                     // Normalized coordinates
                     double x_center_norm = x_center / imgWidth;
                     double y_center_norm = y_center / imgHeight;
-                    double width_norm = ann.getWidth() / imgWidth;
-                    double height_norm = ann.getHeight() / imgHeight;
+                    double width_norm = ann.width / imgWidth;
+                    double height_norm = ann.height / imgHeight;
 
                     // Map fault_type to class_id
-                    String classId = ann.getFaultType() != null && ann.getFaultType().equalsIgnoreCase("Faulty")
+                    String classId = ann.faultType != null && ann.faultType.equalsIgnoreCase("Faulty")
                             ? FAULTY_CLASS_ID
                             : POTENTIALLY_FAULTY_CLASS_ID; // Default to 0 for potentially faulty
 
@@ -179,7 +184,7 @@ public class FineTuningServiceImpl implements FineTuningService {
             }
         }
 
-        logger.info("Dataset generation complete. Total images: {}", inspectionIds.size());
+        logger.info("Dataset generation complete. Total images: {}", snapshot.images.size());
 
         // Generate data.yaml for YOLO
         String yamlContent = generateYoloYaml(datasetRoot.toAbsolutePath().toString());
@@ -193,37 +198,105 @@ public class FineTuningServiceImpl implements FineTuningService {
 
         String initialModelPath = Paths.get(INITIAL_MODEL_PATH).toAbsolutePath().toString();
 
-        ProcessBuilder pb = new ProcessBuilder(
-                "python",
+        List<String> command = List.of(
+                pythonExecutable,
                 scriptPath.toString(),
                 "--data_yaml", dataYamlPath.toString(),
                 "--initial_model", initialModelPath,
                 "--output_path", outputModelPath.toString()
         );
 
-        Process process = pb.start();
+        // Both pipes are drained concurrently; a hung or silent training run is killed with its children
+        ProcessResult result = processSupervisor.run("yolo-finetune", command,
+                Duration.ofMinutes(trainingTimeoutMinutes),
+                Duration.ofMinutes(trainingIdleTimeoutMinutes),
+                line -> logger.info("[Python STDOUT]: {}", line),
+                line -> logger.error("[Python STDERR]: {}", line));
 
-        // Capture output for logging/debugging
-        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-        BufferedReader errorReader = new BufferedReader(new InputStreamReader(process.getErrorStream()));
-
-        String line;
-        while ((line = reader.readLine()) != null) {
-            logger.info("[Python STDOUT]: {}", line);
+        if (!result.isSuccess()) {
+            throw new RuntimeException("YOLO fine-tuning failed or timed out (" + result.getOutcome()
+                    + ", exit code " + result.getExitCode() + "). Check server logs for Python errors.");
         }
-        while ((line = errorReader.readLine()) != null) {
-            logger.error("[Python STDERR]: {}", line);
+        ModelVersion version = transactionPhases.run("fine_tune", "write", () -> modelRegistryService.registerModel(newModelName));
+        if (modelRegistryService.resolveVariant(newModelName, ModelVariant.FAST).isEmpty()) {
+            logger.warn("No INT8 variant was exported for {}; \"fast\" detections will run it at full precision.", newModelName);
         }
-
-        // Wait for the process to complete
-        boolean finished = process.waitFor(30, TimeUnit.MINUTES);
-
-        if (!finished || process.exitValue() != 0) {
-            throw new RuntimeException("YOLO fine-tuning failed or timed out. Check server logs for Python errors.");
+        // Guard: training takes minutes; if someone promoted or rolled back meanwhile, their choice stands
+        if (autoPromote) {
+            String production = modelRegistryService.getProductionModelName();
+            if (Objects.equals(production, snapshot.productionModelName)) {
+                modelRegistryService.promote(version.getId());
+            } else {
+                logger.warn("Production model changed from {} to {} during fine-tuning; leaving {} as a candidate.",
+                        snapshot.productionModelName, production, newModelName);
+            }
         }
-        AnomalyDetectionServiceImpl.setCurrentProductionModelName(newModelName);
 
         logger.info("Fine-tuning successful. New model saved to: {}", outputModelPath);
         return newModelName;
     }
-}
\ No newline at end of file
+
+    // Everything training needs from the database, copied out so nothing lazy is touched after the read transaction
+    private TrainingSnapshot readTrainingSnapshot() {
+        TrainingSnapshot snapshot = new TrainingSnapshot();
+        snapshot.productionModelName = modelRegistryService.getProductionModelName();
+
+        // Identify Target Images
+        // Find inspection_ids that have at least one USER_ADDED or USER_EDITED annotation.
+        String sql = "SELECT DISTINCT inspection_id FROM annotations " +
+                "WHERE annotation_type IN ('USER_ADDED', 'USER_EDITED') AND is_deleted = FALSE";
+
+        @SuppressWarnings("unchecked")
+        List<BigInteger> inspectionIds = entityManager.createNativeQuery(sql)
+                .getResultList();
+
+        for (Object idObject : inspectionIds) {
+
+            Long inspectionId = ((Number) idObject).longValue();
+
+            // Get the Maintenance ThermalImage
+            ThermalImage maintenanceImage = thermalImageRepository.findByInspectionIdAndImageType(
+                    inspectionId, ThermalImage.ImageType.MAINTENANCE);
+
+            if (maintenanceImage == null) {
+                logger.warn("No MAINTENANCE image found for inspection_id: {}", inspectionId);
+                continue;
+            }
+
+            TrainingImage trainingImage = new TrainingImage();
+            trainingImage.inspectionId = inspectionId;
+            trainingImage.fileName = maintenanceImage.getFileName();
+            // Get All Annotations for this inspection, excluding soft deleted
+            for (Annotation ann : annotationRepository.findByInspectionIdAndIsDeletedFalse(inspectionId)) {
+                TrainingBox box = new TrainingBox();
+                box.x = ann.getX();
+                box.y = ann.getY();
+                box.width = ann.getWidth();
+                box.height = ann.getHeight();
+                box.faultType = ann.getFaultType();
+                trainingImage.boxes.add(box);
+            }
+            snapshot.images.add(trainingImage);
+        }
+        return snapshot;
+    }
+
+    private static class TrainingSnapshot {
+        private String productionModelName;
+        private final List<TrainingImage> images = new ArrayList<>();
+    }
+
+    private static class TrainingImage {
+        private Long inspectionId;
+        private String fileName;
+        private final List<TrainingBox> boxes = new ArrayList<>();
+    }
+
+    private static class TrainingBox {
+        private double x;
+        private double y;
+        private double width;
+        private double height;
+        private String faultType;
+    }
+}
@@ -4,6 +4,7 @@ import com.university.transformer.oversight.dto.InspectionDTO;
 import com.university.transformer.oversight.model.Inspection;
 import com.university.transformer.oversight.model.ThermalImage;
 import com.university.transformer.oversight.repository.AnomalyDetectionResultRepository;
+import com.university.transformer.oversight.repository.DetectionCacheEntryRepository;
 import com.university.transformer.oversight.repository.InspectionRepository;
 import com.university.transformer.oversight.repository.ThermalImageRepository;
 import com.university.transformer.oversight.service.FileStorageService;
@@ -12,6 +13,7 @@ import jakarta.transaction.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
@@ -28,6 +30,8 @@ public class InspectionServiceImpl implements InspectionService {
     @Autowired private ThermalImageRepository thermalImageRepository;
     @Autowired private FileStorageService fileStorageService;
     @Autowired private AnomalyDetectionResultRepository anomalyDetectionResultRepository;
+    @Autowired private DetectionCacheEntryRepository detectionCacheEntryRepository;
+    @Autowired private ApplicationEventPublisher eventPublisher;
 
     private static final Logger logger = LoggerFactory.getLogger(InspectionServiceImpl.class);
 
@@ -55,9 +59,7 @@ public class InspectionServiceImpl implements InspectionService {
 
             // Delete anomaly result and annotated file if present
             anomalyDetectionResultRepository.findByInspectionId(id).ifPresent(result -> {
-                if (result.getOutputImageName() != null) {
-                    fileStorageService.delete(result.getOutputImageName());
-                }
+                deleteOverlayIfUnshared(result.getOutputImageName());
                 anomalyDetectionResultRepository.delete(result);
                 logger.info("Associated anomaly detection result and annotated file deleted.");
             });
@@ -133,6 +135,8 @@ public class InspectionServiceImpl implements InspectionService {
         thermalImage.setInspection(inspection);
 
         thermalImageRepository.save(thermalImage);
+        // Delivered after commit; starts detection when the ingest pipeline is enabled
+        eventPublisher.publishEvent(new ThermalImageUploadedEvent(inspectionId, filename));
     }
 
     @Override
@@ -146,9 +150,7 @@ public class InspectionServiceImpl implements InspectionService {
 
         // Remove associated anomaly result
         anomalyDetectionResultRepository.findByInspectionId(inspectionId).ifPresent(result -> {
-            if (result.getOutputImageName() != null) {
-                fileStorageService.delete(result.getOutputImageName());
-            }
+            deleteOverlayIfUnshared(result.getOutputImageName());
             anomalyDetectionResultRepository.delete(result);
             logger.info("Deleted anomaly detection result and annotated file for Inspection ID: {}", inspectionId);
         });
@@ -163,4 +165,16 @@ public class InspectionServiceImpl implements InspectionService {
         // Delete the ThermalImage entity
         thermalImageRepository.delete(thermalImage);
     }
+
+    // Cache hits reuse the overlay of the original run, so it can be shared by several results and cache entries
+    private void deleteOverlayIfUnshared(String outputImageName) {
+        if (outputImageName == null) {
+            return;
+        }
+        if (anomalyDetectionResultRepository.countByOutputImageName(outputImageName) > 1
+                || detectionCacheEntryRepository.existsByOutputImageName(outputImageName)) {
+            return;
+        }
+        fileStorageService.delete(outputImageName);
+    }
 }
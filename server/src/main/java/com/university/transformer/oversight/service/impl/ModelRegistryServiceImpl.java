@@ -0,0 +1,282 @@
+package com.university.transformer.oversight.service.impl;
+
+import com.university.transformer.oversight.exception.ResourceNotFoundException;
+import com.university.transformer.oversight.model.ModelVariant;
+import com.university.transformer.oversight.model.ModelVersion;
+import com.university.transformer.oversight.repository.ModelVersionRepository;
+import com.university.transformer.oversight.service.DetectionEngine;
+import com.university.transformer.oversight.service.ModelRegistryService;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@Service
+public class ModelRegistryServiceImpl implements ModelRegistryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModelRegistryServiceImpl.class);
+
+    private final ModelVersionRepository modelVersionRepository;
+    private final DetectionEngine detectionEngine;
+    private final Path modelDir;
+    private final String initialModelName;
+
+    // Swapped in one step after the new model is warm; readers never see a half-promoted state
+    private final AtomicReference<String> productionModelName = new AtomicReference<>();
+    private final Object promotionLock = new Object();
+
+    public ModelRegistryServiceImpl(ModelVersionRepository modelVersionRepository,
+                                    DetectionEngine detectionEngine,
+                                    @Value("${ml.model-output-dir}") String modelOutputDir,
+                                    @Value("${ml.production-model-name}") String initialModelName) {
+        this.modelVersionRepository = modelVersionRepository;
+        this.detectionEngine = detectionEngine;
+        this.modelDir = Paths.get(modelOutputDir).toAbsolutePath();
+        this.initialModelName = initialModelName;
+    }
+
+    /**
+     * Registers model files that are not in the registry yet and restores the persisted production version.
+     * ml.production-model-name only seeds the registry the very first time.
+     */
+    @PostConstruct
+    public void init() {
+        if (Files.isDirectory(modelDir)) {
+            try (Stream<Path> files = Files.list(modelDir)) {
+                files.filter(file -> file.getFileName().toString().endsWith(".pt"))
+                        .map(file -> file.getFileName().toString())
+                        .filter(name -> modelVersionRepository.findByModelName(name).isEmpty())
+                        .forEach(this::registerModel);
+            } catch (IOException e) {
+                logger.warn("Could not scan model directory {}: {}", modelDir, e.getMessage());
+            }
+        }
+
+        ModelVersion production = modelVersionRepository.findFirstByStatus(ModelVersion.Status.PRODUCTION).orElseGet(() -> {
+            ModelVersion initial = modelVersionRepository.findByModelName(initialModelName).orElseGet(() -> newVersion(initialModelName));
+            initial.setStatus(ModelVersion.Status.PRODUCTION);
+            initial.setPromotedAt(LocalDateTime.now());
+            return modelVersionRepository.save(initial);
+        });
+        productionModelName.set(production.getModelName());
+        if (!production.getModelName().equals(initialModelName)) {
+            // The backends start with ml.production-model-name; point them at the registered version instead
+            detectionEngine.warmUp(resolveModelPath(production.getModelName()));
+        }
+        logger.info("Production model is {} (version {}).", production.getModelName(), production.getId());
+    }
+
+    @Override
+    public String getProductionModelName() {
+        return productionModelName.get();
+    }
+
+    @Override
+    public String getProductionModelPath() {
+        return resolveModelPath(productionModelName.get());
+    }
+
+    @Override
+    public String resolveModelPath(String modelName) {
+        return modelDir.resolve(modelName).toString();
+    }
+
+    @Override
+    public Optional<String> resolveVariant(String modelName, ModelVariant variant) {
+        String variantName = variant.modelName(modelName);
+        return Files.isRegularFile(modelDir.resolve(variantName)) ? Optional.of(variantName) : Optional.empty();
+    }
+
+    @Override
+    public List<ModelVersion> listVersions() {
+        return modelVersionRepository.findAllByOrderByCreatedAtDesc();
+    }
+
+    @Override
+    public ModelVersion registerModel(String modelName) {
+        ModelVersion version = modelVersionRepository.findByModelName(modelName).orElseGet(() -> newVersion(modelName));
+        readMetrics(version);
+        ModelVersion saved = modelVersionRepository.save(version);
+        logger.info("Registered model {} as version {} (mAP50-95 {}).", modelName, saved.getId(), saved.getMap5095());
+        return saved;
+    }
+
+    @Override
+    public ModelVersion promote(Long versionId) {
+        synchronized (promotionLock) {
+            ModelVersion target = modelVersionRepository.findById(versionId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Model version not found with id: " + versionId));
+            if (target.getStatus() == ModelVersion.Status.PRODUCTION) {
+                return target;
+            }
+            ModelVersion current = modelVersionRepository.findFirstByStatus(ModelVersion.Status.PRODUCTION).orElse(null);
+            target.setPreviousVersionId(current != null ? current.getId() : null);
+            return swap(target, current, ModelVersion.Status.RETIRED);
+        }
+    }
+
+    @Override
+    public ModelVersion rollback() {
+        synchronized (promotionLock) {
+            ModelVersion current = modelVersionRepository.findFirstByStatus(ModelVersion.Status.PRODUCTION)
+                    .orElseThrow(() -> new IllegalStateException("No production model is registered."));
+            if (current.getPreviousVersionId() == null) {
+                throw new IllegalStateException("Model " + current.getModelName() + " has no previous version to roll back to.");
+            }
+            ModelVersion previous = modelVersionRepository.findById(current.getPreviousVersionId())
+                    .orElseThrow(() -> new IllegalStateException("Previous model version " + current.getPreviousVersionId() + " no longer exists."));
+            // previousVersionId of the restored version is kept, so repeated rollbacks walk further back
+            return swap(previous, current, ModelVersion.Status.ROLLED_BACK);
+        }
+    }
+
+    /**
+     * Checks the file, warms every backend with it and then switches production in one database save
+     * followed by one reference swap. Any failure before the swap leaves production untouched.
+     */
+    private ModelVersion swap(ModelVersion target, ModelVersion current, ModelVersion.Status currentStatus) {
+        String path = resolveModelPath(target.getModelName());
+        verifyChecksum(target, Paths.get(path));
+
+        long started = System.nanoTime();
+        detectionEngine.warmUp(path);
+        logger.info("Warmed up model {} in {} ms.", target.getModelName(), (System.nanoTime() - started) / 1_000_000);
+
+        LocalDateTime now = LocalDateTime.now();
+        target.setStatus(ModelVersion.Status.PRODUCTION);
+        target.setPromotedAt(now);
+        target.setRetiredAt(null);
+        if (current != null) {
+            current.setStatus(currentStatus);
+            current.setRetiredAt(now);
+            modelVersionRepository.saveAll(List.of(current, target));
+        } else {
+            modelVersionRepository.save(target);
+        }
+        productionModelName.set(target.getModelName());
+        logger.info("Production model switched from {} to {}.", current != null ? current.getModelName() : "none", target.getModelName());
+        return target;
+    }
+
+    private void verifyChecksum(ModelVersion version, Path file) {
+        if (!Files.exists(file)) {
+            throw new IllegalStateException("Model file " + version.getModelName() + " does not exist.");
+        }
+        try {
+            String sha256 = sha256(file);
+            if (version.getSha256() == null) {
+                version.setSha256(sha256);
+                version.setSizeBytes(Files.size(file));
+            } else if (!version.getSha256().equals(sha256)) {
+                throw new IllegalStateException("Model file " + version.getModelName() + " changed since it was registered (checksum mismatch).");
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read model file " + version.getModelName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private ModelVersion newVersion(String modelName) {
+        ModelVersion version = new ModelVersion();
+        version.setModelName(modelName);
+        version.setStatus(ModelVersion.Status.CANDIDATE);
+        version.setCreatedAt(LocalDateTime.now());
+        Path file = modelDir.resolve(modelName);
+        if (Files.exists(file)) {
+            try {
+                version.setSha256(sha256(file));
+                version.setSizeBytes(Files.size(file));
+            } catch (IOException e) {
+                logger.warn("Could not hash model file {}: {}", file, e.getMessage());
+            }
+        } else {
+            logger.warn("Model file {} does not exist; registered without a checksum.", file);
+        }
+        return version;
+    }
+
+    /**
+     * Reads the training run's results.csv (in the "<model name without .pt>" run directory finetune_yolo.py writes)
+     * and keeps the metrics of the epoch with the best Ultralytics fitness, which is the epoch saved as best.pt.
+     */
+    private void readMetrics(ModelVersion version) {
+        String stem = version.getModelName().replaceFirst("\\.pt$", "");
+        Path resultsCsv = modelDir.resolve(stem).resolve("results.csv");
+        if (!Files.exists(resultsCsv)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(resultsCsv)) {
+            String header = reader.readLine();
+            if (header == null) {
+                return;
+            }
+            Map<String, Integer> columns = new HashMap<>();
+            String[] names = header.split(",");
+            for (int i = 0; i < names.length; i++) {
+                columns.put(names[i].trim(), i);
+            }
+            double bestFitness = -1;
+            String[] best = null;
+            for (String line : reader.lines().collect(Collectors.toList())) {
+                String[] values = line.split(",");
+                double fitness = 0.1 * metric(values, columns, "metrics/mAP50(B)") + 0.9 * metric(values, columns, "metrics/mAP50-95(B)");
+                if (fitness > bestFitness) {
+                    bestFitness = fitness;
+                    best = values;
+                }
+            }
+            if (best != null) {
+                version.setEpochs((int) metric(best, columns, "epoch"));
+                version.setPrecision(metric(best, columns, "metrics/precision(B)"));
+                version.setRecall(metric(best, columns, "metrics/recall(B)"));
+                version.setMap50(metric(best, columns, "metrics/mAP50(B)"));
+                version.setMap5095(metric(best, columns, "metrics/mAP50-95(B)"));
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not read training metrics from {}: {}", resultsCsv, e.getMessage());
+        }
+    }
+
+    private static double metric(String[] values, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        if (index == null || index >= values.length) {
+            return 0;
+        }
+        return Double.parseDouble(values[index].trim());
+    }
+
+    private static String sha256(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
@@ -0,0 +1,474 @@
+package com.university.transformer.oversight.service.impl;
+
+import ai.onnxruntime.NodeInfo;
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import ai.onnxruntime.TensorInfo;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.university.transformer.oversight.model.RawDetection;
+import com.university.transformer.oversight.service.DetectionEngine;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs the exported YOLO model (model.onnx next to model.pt, written by finetune_yolo.py) inside the JVM
+ * with ONNX Runtime on CPU. Pre- and post-processing follow Ultralytics (letterbox, conf 0.5,
+ * per-class NMS) and the thresholding follows detector.py, so the output has the same JSON shape.
+ * Sessions are thread-safe, so concurrent detections simply run on the calling threads.
+ */
+@Component
+@ConditionalOnProperty(name = "ml.detector.backend", havingValue = "onnx")
+public class OnnxDetectionEngine implements DetectionEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(OnnxDetectionEngine.class);
+
+    // Same values detector.py passes to / inherits from Ultralytics
+    private static final float CONFIDENCE_THRESHOLD = 0.5f;
+    private static final float IOU_THRESHOLD = 0.7f;
+    private static final int MAX_DETECTIONS = 300;
+    private static final int LETTERBOX_FILL = 114;
+    private static final int MAX_CACHED_SESSIONS = 2;
+    private static final Pattern NAME_ENTRY = Pattern.compile("(\\d+)\\s*:\\s*['\"]([^'\"]*)['\"]");
+    private static final Map<String, Integer> SEVERITY_MAP = Map.of("Potentially Faulty", 1, "Faulty", 2);
+
+    private final ObjectMapper objectMapper;
+    private final ThermalImageAnalyzer thermalImageAnalyzer;
+    private final AnomalyThresholdFilter anomalyThresholdFilter;
+    private final OverlayRenderer overlayRenderer;
+    private final DecodedFrameCache decodedFrameCache;
+    private final DetectionScheduler detectionScheduler;
+    private final int defaultImageSize;
+    private final int intraOpThreads;
+    private final String initialModelPath;
+    // Detections the CPU can run side by side: each session call spreads over intraOpThreads cores (all by default)
+    private final int concurrentInferences;
+
+    private final OrtEnvironment environment = OrtEnvironment.getEnvironment();
+    // Loaded models keyed by .onnx path, oldest first, like detector.py's _MODEL_CACHE
+    private final Map<String, LoadedModel> sessions = new LinkedHashMap<>();
+    // detect and detectBatch calls running now
+    private final AtomicInteger inferences = new AtomicInteger();
+
+    public OnnxDetectionEngine(ObjectMapper objectMapper,
+                               ThermalImageAnalyzer thermalImageAnalyzer,
+                               AnomalyThresholdFilter anomalyThresholdFilter,
+                               OverlayRenderer overlayRenderer,
+                               DecodedFrameCache decodedFrameCache,
+                               DetectionScheduler detectionScheduler,
+                               @Value("${ml.detector.onnx.image-size:640}") int defaultImageSize,
+                               @Value("${ml.detector.onnx.intra-op-threads:0}") int intraOpThreads,
+                               @Value("${ml.model-output-dir}") String modelOutputDir,
+                               @Value("${ml.production-model-name}") String initialModelName) {
+        this.objectMapper = objectMapper;
+        this.thermalImageAnalyzer = thermalImageAnalyzer;
+        this.anomalyThresholdFilter = anomalyThresholdFilter;
+        this.overlayRenderer = overlayRenderer;
+        this.decodedFrameCache = decodedFrameCache;
+        this.detectionScheduler = detectionScheduler;
+        this.defaultImageSize = defaultImageSize;
+        this.intraOpThreads = intraOpThreads;
+        this.initialModelPath = Paths.get(modelOutputDir, initialModelName).toAbsolutePath().toString();
+        int cores = Runtime.getRuntime().availableProcessors();
+        this.concurrentInferences = Math.max(1, cores / (intraOpThreads > 0 ? intraOpThreads : cores));
+    }
+
+    @PostConstruct
+    public void warmUp() {
+        try {
+            release(acquire(initialModelPath));
+        } catch (RuntimeException e) {
+            // Not fatal: the model may be exported later; detections fail with the same message until then
+            logger.warn("ONNX model for {} could not be loaded at start-up: {}", initialModelPath, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        synchronized (sessions) {
+            sessions.values().forEach(LoadedModel::evict);
+            sessions.clear();
+        }
+    }
+
+    @Override
+    public JsonNode detect(String maintenancePath, int baselineIntensity, String outputDir, Double thresholdPercentage, String modelPath) {
+        inferences.incrementAndGet();
+        try {
+            LoadedModel model = acquire(modelPath);
+            try {
+                return run(model, Paths.get(maintenancePath), baselineIntensity, Paths.get(outputDir), thresholdPercentage, modelPath);
+            } catch (IOException | OrtException e) {
+                throw new RuntimeException("Anomaly detection failed: " + e.getMessage(), e);
+            } finally {
+                release(model);
+            }
+        } finally {
+            inferences.decrementAndGet();
+        }
+    }
+
+    /**
+     * Loads the session and runs one blank image through it, so ONNX Runtime's lazy allocations
+     * happen here instead of on the first real request.
+     */
+    @Override
+    public void warmUp(String modelPath) {
+        LoadedModel model = acquire(modelPath);
+        try {
+            infer(model, new BufferedImage(model.imageSize, model.imageSize, BufferedImage.TYPE_INT_RGB));
+        } catch (OrtException e) {
+            throw new RuntimeException("Warm-up of " + modelPath + " failed: " + e.getMessage(), e);
+        } finally {
+            release(model);
+        }
+    }
+
+    // Detections run on the callers' threads, so nothing else stops optional work from competing with production
+    // for the cores: spare only while fewer run than the CPU fits side by side and the scheduler currently allows
+    @Override
+    public boolean hasSpareCapacity() {
+        return inferences.get() < Math.min(concurrentInferences, detectionScheduler.getLimit());
+    }
+
+    @Override
+    public JsonNode detectBatch(List<ObjectNode> items, String outputDir, String modelPath) {
+        inferences.incrementAndGet();
+        try {
+            return runBatch(items, outputDir, modelPath);
+        } finally {
+            inferences.decrementAndGet();
+        }
+    }
+
+    private JsonNode runBatch(List<ObjectNode> items, String outputDir, String modelPath) {
+        ArrayNode outputs = objectMapper.createArrayNode();
+        LoadedModel model;
+        try {
+            model = acquire(modelPath);
+        } catch (RuntimeException e) {
+            items.forEach(item -> outputs.add(error(item, "Model or path setup failed: " + e.getMessage())));
+            return outputs;
+        }
+        try {
+            for (ObjectNode item : items) {
+                try {
+                    ObjectNode output = run(model, Paths.get(item.path("maintenance").asText()), item.path("baseline_intensity").asInt(),
+                            Paths.get(outputDir), item.path("threshold").asDouble(), modelPath);
+                    outputs.add(output.put("key", item.path("key").asText()));
+                } catch (IOException | OrtException | RuntimeException e) {
+                    outputs.add(error(item, e.getMessage()));
+                }
+            }
+        } finally {
+            release(model);
+        }
+        return outputs;
+    }
+
+    private ObjectNode error(ObjectNode item, String message) {
+        ObjectNode output = objectMapper.createObjectNode();
+        output.put("key", item.path("key").asText());
+        output.put("error", message);
+        output.put("overall_status", "UNCERTAIN");
+        return output;
+    }
+
+    private ObjectNode run(LoadedModel model, Path maintenance, int baselineIntensity, Path outputDir,
+                           double thresholdPercentage, String modelPath) throws IOException, OrtException {
+        BufferedImage image = decodedFrameCache.read(maintenance);
+        if (image == null) {
+            throw new IOException("Could not read maintenance image at " + maintenance);
+        }
+
+        List<RawDetection> rawDetections = new ArrayList<>();
+        List<Box> boxes = infer(model, image);
+        for (int i = 0; i < boxes.size(); i++) {
+            Box box = boxes.get(i);
+            // int() truncation as in detector.py; boxes are already clipped to the image
+            int xMin = (int) box.x1;
+            int yMin = (int) box.y1;
+            int xMax = (int) box.x2;
+            int yMax = (int) box.y2;
+            String label = model.names.getOrDefault(box.classId, String.valueOf(box.classId));
+
+            RawDetection raw = new RawDetection();
+            raw.setBoxIndex(i + 1);
+            raw.setClassLabel(label);
+            raw.setSeverityScore(SEVERITY_MAP.getOrDefault(label, 0));
+            raw.setConfidence(Math.round(box.score * 10000.0) / 10000.0);
+            raw.setXMin(xMin);
+            raw.setYMin(yMin);
+            raw.setXMax(xMax);
+            raw.setYMax(yMax);
+            raw.setHotIntensity(thermalImageAnalyzer.hotIntensity(image, xMin, yMin, xMax, yMax));
+            rawDetections.add(raw);
+        }
+
+        ObjectNode output = anomalyThresholdFilter.apply(rawDetections, baselineIntensity, thresholdPercentage);
+        output.put("output_image_name", overlayRenderer.render(maintenance, output.get("anomalies"), outputDir));
+        ArrayNode rawNodes = output.putArray("raw_detections");
+        for (RawDetection raw : rawDetections) {
+            ObjectNode node = rawNodes.addObject();
+            node.put("id", raw.getBoxIndex());
+            node.put("type", raw.getClassLabel());
+            ObjectNode location = node.putObject("location");
+            location.put("x_min", raw.getXMin());
+            location.put("y_min", raw.getYMin());
+            location.put("x_max", raw.getXMax());
+            location.put("y_max", raw.getYMax());
+            node.put("severity_score", raw.getSeverityScore());
+            node.put("confidence", raw.getConfidence());
+            node.put("hot_intensity", raw.getHotIntensity());
+        }
+        output.put("baseline_intensity", baselineIntensity);
+        ObjectNode metadata = output.putObject("metadata");
+        metadata.put("timestamp", LocalDateTime.now(ZoneOffset.UTC).toString());
+        metadata.put("image_width", image.getWidth());
+        metadata.put("image_height", image.getHeight());
+        metadata.put("model_version", Paths.get(modelPath).getFileName().toString());
+        metadata.put("backend", "onnx");
+        return output;
+    }
+
+    /**
+     * Letterboxes the image into the model input, runs it and returns the boxes in original image coordinates.
+     */
+    private List<Box> infer(LoadedModel model, BufferedImage image) throws OrtException {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int size = model.imageSize;
+        double gain = Math.min((double) size / height, (double) size / width);
+        int scaledWidth = (int) Math.round(width * gain);
+        int scaledHeight = (int) Math.round(height * gain);
+        int padLeft = (int) Math.round((size - scaledWidth) / 2.0 - 0.1);
+        int padTop = (int) Math.round((size - scaledHeight) / 2.0 - 0.1);
+
+        BufferedImage letterboxed = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = letterboxed.createGraphics();
+        g2d.setColor(new Color(LETTERBOX_FILL, LETTERBOX_FILL, LETTERBOX_FILL));
+        g2d.fillRect(0, 0, size, size);
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2d.drawImage(image, padLeft, padTop, scaledWidth, scaledHeight, null);
+        g2d.dispose();
+
+        // NCHW, RGB, scaled to 0..1
+        int plane = size * size;
+        float[] pixels = new float[3 * plane];
+        int[] rgb = letterboxed.getRGB(0, 0, size, size, null, 0, size);
+        for (int i = 0; i < plane; i++) {
+            pixels[i] = ((rgb[i] >> 16) & 0xFF) / 255f;
+            pixels[plane + i] = ((rgb[i] >> 8) & 0xFF) / 255f;
+            pixels[2 * plane + i] = (rgb[i] & 0xFF) / 255f;
+        }
+
+        float[][] predictions;
+        try (OnnxTensor input = OnnxTensor.createTensor(environment, FloatBuffer.wrap(pixels), new long[]{1, 3, size, size});
+             OrtSession.Result result = model.session.run(Map.of(model.inputName, input))) {
+            // YOLOv8 head: [1, 4 + classes, candidates] with rows cx, cy, w, h, class scores...
+            predictions = ((float[][][]) result.get(0).getValue())[0];
+        }
+
+        List<Box> candidates = new ArrayList<>();
+        int classes = predictions.length - 4;
+        for (int c = 0; c < predictions[0].length; c++) {
+            int best = 0;
+            for (int k = 1; k < classes; k++) {
+                if (predictions[4 + k][c] > predictions[4 + best][c]) {
+                    best = k;
+                }
+            }
+            float score = predictions[4 + best][c];
+            if (score <= CONFIDENCE_THRESHOLD) {
+                continue;
+            }
+            double cx = predictions[0][c];
+            double cy = predictions[1][c];
+            double w = predictions[2][c];
+            double h = predictions[3][c];
+            candidates.add(new Box(
+                    clip((cx - w / 2 - padLeft) / gain, width), clip((cy - h / 2 - padTop) / gain, height),
+                    clip((cx + w / 2 - padLeft) / gain, width), clip((cy + h / 2 - padTop) / gain, height),
+                    score, best));
+        }
+        return nonMaxSuppression(candidates);
+    }
+
+    // Greedy NMS within each class, highest confidence first
+    private static List<Box> nonMaxSuppression(List<Box> candidates) {
+        candidates.sort(Comparator.comparingDouble((Box box) -> box.score).reversed());
+        List<Box> kept = new ArrayList<>();
+        for (Box candidate : candidates) {
+            boolean suppressed = false;
+            for (Box box : kept) {
+                if (box.classId == candidate.classId && box.iou(candidate) > IOU_THRESHOLD) {
+                    suppressed = true;
+                    break;
+                }
+            }
+            if (!suppressed) {
+                kept.add(candidate);
+                if (kept.size() == MAX_DETECTIONS) {
+                    break;
+                }
+            }
+        }
+        return kept;
+    }
+
+    private static double clip(double value, int max) {
+        return Math.max(0, Math.min(max, value));
+    }
+
+    // Returns the loaded model with its in-flight count raised; every acquire must be paired with release
+    private LoadedModel acquire(String modelPath) {
+        Path onnxPath = onnxPathFor(modelPath);
+        String key = onnxPath.toString();
+        synchronized (sessions) {
+            LoadedModel model = sessions.get(key);
+            if (model != null) {
+                model.inFlight++;
+                return model;
+            }
+            if (!Files.exists(onnxPath)) {
+                throw new RuntimeException("No ONNX export found at " + onnxPath
+                        + "; export it with: python finetune_yolo.py --export_onnx " + modelPath);
+            }
+            try {
+                OrtSession.SessionOptions options = new OrtSession.SessionOptions();
+                options.setOptimizationLevel(OrtSession.SessionOptions.OptLevel.ALL_OPT);
+                if (intraOpThreads > 0) {
+                    options.setIntraOpNumThreads(intraOpThreads);
+                }
+                model = new LoadedModel(environment.createSession(key, options));
+            } catch (OrtException e) {
+                throw new RuntimeException("Could not load ONNX model " + onnxPath + ": " + e.getMessage(), e);
+            }
+            if (sessions.size() >= MAX_CACHED_SESSIONS) {
+                String oldest = sessions.keySet().iterator().next();
+                sessions.remove(oldest).evict();
+            }
+            sessions.put(key, model);
+            model.inFlight++;
+            logger.info("Loaded ONNX model {} ({}x{} input, classes {})", onnxPath.getFileName(), model.imageSize, model.imageSize, model.names);
+            return model;
+        }
+    }
+
+    private void release(LoadedModel model) {
+        synchronized (sessions) {
+            model.inFlight--;
+            if (model.evicted && model.inFlight == 0) {
+                model.close();
+            }
+        }
+    }
+
+    // best.pt -> best.onnx in the same directory, where Ultralytics' export writes it
+    static Path onnxPathFor(String modelPath) {
+        Path path = Paths.get(modelPath).toAbsolutePath();
+        String fileName = path.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        String stem = dot > 0 ? fileName.substring(0, dot) : fileName;
+        return path.resolveSibling(stem + ".onnx");
+    }
+
+    private class LoadedModel {
+        private final OrtSession session;
+        private final String inputName;
+        private final int imageSize;
+        private final Map<Integer, String> names = new HashMap<>();
+        // Guarded by the sessions lock; an evicted session is closed once no detection is using it
+        private int inFlight;
+        private boolean evicted;
+
+        LoadedModel(OrtSession session) throws OrtException {
+            this.session = session;
+            Map.Entry<String, NodeInfo> input = session.getInputInfo().entrySet().iterator().next();
+            this.inputName = input.getKey();
+            long[] shape = ((TensorInfo) input.getValue().getInfo()).getShape();
+            // Dynamic exports report -1 for the spatial dimensions
+            this.imageSize = shape.length == 4 && shape[3] > 0 ? (int) shape[3] : defaultImageSize;
+            // Ultralytics stores the class names as a Python dict literal, e.g. "{0: 'Faulty', 1: 'Potentially Faulty'}"
+            String rawNames = session.getMetadata().getCustomMetadata().getOrDefault("names", "");
+            Matcher matcher = NAME_ENTRY.matcher(rawNames);
+            while (matcher.find()) {
+                names.put(Integer.parseInt(matcher.group(1)), matcher.group(2));
+            }
+        }
+
+        void evict() {
+            evicted = true;
+            if (inFlight == 0) {
+                close();
+            }
+        }
+
+        void close() {
+            try {
+                session.close();
+            } catch (OrtException e) {
+                logger.warn("Closing ONNX session failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private static class Box {
+        private final double x1;
+        private final double y1;
+        private final double x2;
+        private final double y2;
+        private final float score;
+        private final int classId;
+
+        Box(double x1, double y1, double x2, double y2, float score, int classId) {
+            this.x1 = x1;
+            this.y1 = y1;
+            this.x2 = x2;
+            this.y2 = y2;
+            this.score = score;
+            this.classId = classId;
+        }
+
+        double iou(Box other) {
+            double w = Math.min(x2, other.x2) - Math.max(x1, other.x1);
+            double h = Math.min(y2, other.y2) - Math.max(y1, other.y1);
+            if (w <= 0 || h <= 0) {
+                return 0;
+            }
+            double intersection = w * h;
+            double union = (x2 - x1) * (y2 - y1) + (other.x2 - other.x1) * (other.y2 - other.y1) - intersection;
+            return union > 0 ? intersection / union : 0;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.university.transformer.oversight.service.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Draws anomaly boxes on a maintenance image the way detector.py does
+ * (red for Faulty, orange for Potentially Faulty, numbered labels).
+ */
+@Component
+public class OverlayRenderer {
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss_SSS");
+    private static final Color FAULTY = new Color(255, 0, 0);
+    private static final Color POTENTIALLY_FAULTY = new Color(255, 165, 0);
+    private static final Color OTHER = new Color(0, 255, 0);
+
+    private final DecodedFrameCache decodedFrameCache;
+
+    public OverlayRenderer(DecodedFrameCache decodedFrameCache) {
+        this.decodedFrameCache = decodedFrameCache;
+    }
+
+    /**
+     * Renders the overlay into outputDir and returns the file name,
+     * following detector.py's "{name}_annotated_{timestamp}{ext}" pattern.
+     */
+    public String render(Path maintenanceImage, JsonNode anomalies, Path outputDir) throws IOException {
+        BufferedImage source = decodedFrameCache.read(maintenanceImage);
+        if (source == null) {
+            throw new IOException("Could not read maintenance image: " + maintenanceImage.getFileName());
+        }
+        // Draw on an RGB copy so indexed or grayscale sources keep the box colours
+        BufferedImage image = new BufferedImage(source.getWidth(), source.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = image.createGraphics();
+        g2d.drawImage(source, 0, 0, null);
+        g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g2d.setStroke(new BasicStroke(2));
+        g2d.setFont(new Font("SansSerif", Font.BOLD, 16));
+        FontMetrics metrics = g2d.getFontMetrics();
+
+        for (JsonNode anomaly : anomalies) {
+            JsonNode location = anomaly.path("location");
+            int xMin = location.path("x_min").asInt();
+            int yMin = location.path("y_min").asInt();
+            int xMax = location.path("x_max").asInt();
+            int yMax = location.path("y_max").asInt();
+            int severity = anomaly.path("severity_score").asInt(0);
+            Color color = severity == 2 ? FAULTY : severity == 1 ? POTENTIALLY_FAULTY : OTHER;
+
+            g2d.setColor(color);
+            g2d.drawRect(xMin, yMin, xMax - xMin, yMax - yMin);
+
+            String text = anomaly.path("id").asText();
+            int textWidth = metrics.stringWidth(text);
+            int textHeight = metrics.getAscent();
+            int textY = yMin - 10;
+            if (textY < textHeight + 5) {
+                textY = yMin + textHeight + 5;
+            }
+            g2d.fillRect(xMin, textY - textHeight - 5, textWidth + 5, textHeight + 5 + metrics.getDescent());
+            g2d.setColor(Color.WHITE);
+            g2d.drawString(text, xMin + 2, textY - 2);
+        }
+        g2d.dispose();
+
+        String fileName = maintenanceImage.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        String name = dot > 0 ? fileName.substring(0, dot) : fileName;
+        String ext = dot > 0 ? fileName.substring(dot + 1).toLowerCase() : "png";
+        String format = ImageIO.getImageWritersBySuffix(ext).hasNext() ? ext : "png";
+        String outputName = name + "_annotated_" + LocalDateTime.now().format(TIMESTAMP) + "." + (format.equals(ext) ? ext : format);
+        if (!ImageIO.write(image, format, outputDir.resolve(outputName).toFile())) {
+            throw new IOException("No image writer available for " + format);
+        }
+        return outputName;
+    }
+}
@@ -0,0 +1,36 @@
+package com.university.transformer.oversight.service.impl;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Outcome of a one-shot run through {@link ProcessSupervisor#run}.
+ */
+public class ProcessResult {
+
+    public enum Outcome { SUCCEEDED, FAILED, TIMED_OUT, IDLE_TIMEOUT, CANCELLED }
+
+    private final Outcome outcome;
+    private final Integer exitCode;
+    private final Duration duration;
+    private final List<String> stdoutTail;
+    private final List<String> stderrTail;
+
+    ProcessResult(Outcome outcome, Integer exitCode, Duration duration, List<String> stdoutTail, List<String> stderrTail) {
+        this.outcome = outcome;
+        this.exitCode = exitCode;
+        this.duration = duration;
+        this.stdoutTail = stdoutTail;
+        this.stderrTail = stderrTail;
+    }
+
+    public boolean isSuccess() {
+        return outcome == Outcome.SUCCEEDED;
+    }
+
+    public Outcome getOutcome() { return outcome; }
+    public Integer getExitCode() { return exitCode; }
+    public Duration getDuration() { return duration; }
+    public List<String> getStdoutTail() { return stdoutTail; }
+    public List<String> getStderrTail() { return stderrTail; }
+}
@@ -0,0 +1,168 @@
+package com.university.transformer.oversight.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Starts and supervises every Python subprocess the server runs (detector workers, fine-tuning).
+ * Pipes are drained concurrently, the number of live subprocesses is capped, and
+ * one-shot runs are bounded by wall-clock and idle timeouts.
+ */
+@Component
+public class ProcessSupervisor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcessSupervisor.class);
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(500);
+    private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(5);
+
+    private final Semaphore permits;
+    private final Duration acquireTimeout;
+    private final int maxLineLength;
+    private final int tailLines;
+    private final MeterRegistry meterRegistry;
+    private final Set<SupervisedProcess> liveProcesses = ConcurrentHashMap.newKeySet();
+
+    public ProcessSupervisor(MeterRegistry meterRegistry,
+                             @Value("${ml.process.max-concurrent:4}") int maxConcurrent,
+                             @Value("${ml.process.acquire-timeout-seconds:60}") long acquireTimeoutSeconds,
+                             @Value("${ml.process.max-line-length:8388608}") int maxLineLength,
+                             @Value("${ml.process.tail-lines:200}") int tailLines) {
+        this.meterRegistry = meterRegistry;
+        this.permits = new Semaphore(Math.max(1, maxConcurrent), true);
+        this.acquireTimeout = Duration.ofSeconds(acquireTimeoutSeconds);
+        this.maxLineLength = maxLineLength;
+        this.tailLines = Math.max(1, tailLines);
+        Gauge.builder("process.active", liveProcesses, Set::size)
+                .description("Supervised subprocesses currently running").register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        liveProcesses.forEach(SupervisedProcess::destroy);
+    }
+
+    /**
+     * Starts a long-lived process. It holds one of the ml.process.max-concurrent slots until destroyed.
+     */
+    public SupervisedProcess start(String name, List<String> command,
+                                   Consumer<String> stdoutConsumer, Consumer<String> stderrConsumer) throws IOException, InterruptedException {
+        return start(name, command, Map.of(), stdoutConsumer, stderrConsumer);
+    }
+
+    /**
+     * Starts a long-lived process with extra environment variables on top of the server's own.
+     */
+    public SupervisedProcess start(String name, List<String> command, Map<String, String> environment,
+                                   Consumer<String> stdoutConsumer, Consumer<String> stderrConsumer) throws IOException, InterruptedException {
+        if (!permits.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+            throw new IOException("Too many subprocesses running; could not start " + name + " within " + acquireTimeout.toSeconds() + "s.");
+        }
+        Process process;
+        try {
+            ProcessBuilder builder = new ProcessBuilder(command);
+            builder.environment().putAll(environment);
+            process = builder.start();
+        } catch (IOException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+        SupervisedProcess[] holder = new SupervisedProcess[1];
+        holder[0] = new SupervisedProcess(name, process, stdoutConsumer, stderrConsumer, maxLineLength, tailLines, () -> {
+            liveProcesses.remove(holder[0]);
+            permits.release();
+        });
+        liveProcesses.add(holder[0]);
+        logger.debug("Started process {} (pid {})", name, process.pid());
+        return holder[0];
+    }
+
+    /**
+     * Runs a process to completion. It is killed (with its children) when it exceeds the wall-clock timeout,
+     * prints nothing for longer than the idle timeout, or the calling thread is interrupted.
+     * A zero timeout disables that check.
+     */
+    public ProcessResult run(String name, List<String> command, Duration wallClockTimeout, Duration idleTimeout,
+                             Consumer<String> stdoutConsumer, Consumer<String> stderrConsumer) throws IOException, InterruptedException {
+        SupervisedProcess process = start(name, command, stdoutConsumer, stderrConsumer);
+        ProcessResult.Outcome outcome = null;
+        try {
+            while (!process.waitFor(POLL_INTERVAL.toMillis(), TimeUnit.MILLISECONDS)) {
+                if (!wallClockTimeout.isZero() && process.getElapsed().compareTo(wallClockTimeout) > 0) {
+                    logger.warn("Process {} exceeded its {}s time limit; killing it.", name, wallClockTimeout.toSeconds());
+                    outcome = ProcessResult.Outcome.TIMED_OUT;
+                    break;
+                }
+                if (!idleTimeout.isZero() && process.getIdle().compareTo(idleTimeout) > 0) {
+                    logger.warn("Process {} produced no output for {}s; killing it.", name, idleTimeout.toSeconds());
+                    outcome = ProcessResult.Outcome.IDLE_TIMEOUT;
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            logger.warn("Process {} was cancelled; killing it.", name);
+            record(name, ProcessResult.Outcome.CANCELLED, null, process.getElapsed());
+            process.destroy();
+            throw e;
+        }
+
+        if (outcome != null) {
+            process.destroy();
+        } else {
+            process.awaitDrained(DRAIN_TIMEOUT);
+            process.release();
+        }
+        Integer exitCode = process.exitCode();
+        if (outcome == null) {
+            outcome = exitCode != null && exitCode == 0 ? ProcessResult.Outcome.SUCCEEDED : ProcessResult.Outcome.FAILED;
+        }
+        Duration duration = process.getElapsed();
+        record(name, outcome, exitCode, duration);
+        logger.info("Process {} finished: {} (exit code {}) after {} ms", name, outcome, exitCode, duration.toMillis());
+        return new ProcessResult(outcome, exitCode, duration, process.getStdoutTail(), process.getStderrTail());
+    }
+
+    /**
+     * Records how a resident process ended; used for processes started with {@link #start}.
+     */
+    public void recordExit(String metricName, SupervisedProcess process, boolean healthy) {
+        Integer exitCode = process.exitCode();
+        ProcessResult.Outcome outcome = healthy ? ProcessResult.Outcome.SUCCEEDED : ProcessResult.Outcome.FAILED;
+        record(metricName, outcome, exitCode, process.getElapsed());
+    }
+
+    private void record(String name, ProcessResult.Outcome outcome, Integer exitCode, Duration duration) {
+        Timer.builder("process.duration")
+                .description("Wall-clock duration of supervised subprocesses")
+                .tag("name", name)
+                .tag("outcome", outcome.name())
+                .register(meterRegistry)
+                .record(duration);
+        Counter.builder("process.exits")
+                .description("Supervised subprocess exits by exit code")
+                .tag("name", name)
+                .tag("exit_code", exitCode == null ? "none" : String.valueOf(exitCode))
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public int getActiveProcessCount() {
+        return liveProcesses.size();
+    }
+}
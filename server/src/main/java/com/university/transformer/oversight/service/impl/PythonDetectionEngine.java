@@ -0,0 +1,50 @@
+package com.university.transformer.oversight.service.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.university.transformer.oversight.service.DetectionEngine;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Default backend: inference runs in the resident detector.py workers.
+ */
+@Component
+@ConditionalOnProperty(name = "ml.detector.backend", havingValue = "python", matchIfMissing = true)
+public class PythonDetectionEngine implements DetectionEngine {
+
+    private final DetectorWorkerPool detectorWorkerPool;
+
+    public PythonDetectionEngine(DetectorWorkerPool detectorWorkerPool) {
+        this.detectorWorkerPool = detectorWorkerPool;
+    }
+
+    @Override
+    public JsonNode detect(String maintenancePath, int baselineIntensity, String outputDir, Double thresholdPercentage, String modelPath) {
+        return detectorWorkerPool.detect(maintenancePath, baselineIntensity, outputDir, thresholdPercentage, modelPath);
+    }
+
+    @Override
+    public JsonNode detectBatch(List<ObjectNode> items, String outputDir, String modelPath) {
+        return detectorWorkerPool.detectBatch(items, outputDir, modelPath);
+    }
+
+    @Override
+    public void warmUp(String modelPath) {
+        detectorWorkerPool.warmUp(modelPath);
+    }
+
+    // Keep at least one idle worker for production
+    @Override
+    public boolean hasSpareCapacity() {
+        return detectorWorkerPool.getIdleWorkerCount() > 1;
+    }
+
+    // detector.py feeds batch items to YOLO batch_size images at a time
+    @Override
+    public boolean batchesInference() {
+        return true;
+    }
+}
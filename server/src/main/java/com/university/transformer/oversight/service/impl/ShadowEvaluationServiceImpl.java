@@ -0,0 +1,358 @@
+package com.university.transformer.oversight.service.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.university.transformer.oversight.dto.ShadowReportDTO;
+import com.university.transformer.oversight.exception.ResourceNotFoundException;
+import com.university.transformer.oversight.model.Inspection;
+import com.university.transformer.oversight.model.ModelVariant;
+import com.university.transformer.oversight.model.ModelVersion;
+import com.university.transformer.oversight.model.ShadowDetectionResult;
+import com.university.transformer.oversight.repository.InspectionRepository;
+import com.university.transformer.oversight.repository.ModelVersionRepository;
+import com.university.transformer.oversight.repository.ShadowDetectionResultRepository;
+import com.university.transformer.oversight.service.DetectionEngine;
+import com.university.transformer.oversight.service.DetectionJobService;
+import com.university.transformer.oversight.service.FileStorageService;
+import com.university.transformer.oversight.service.ModelRegistryService;
+import com.university.transformer.oversight.service.ShadowEvaluationService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+@Service
+public class ShadowEvaluationServiceImpl implements ShadowEvaluationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShadowEvaluationServiceImpl.class);
+    private static final double MATCH_IOU = 0.5;
+    private static final String SHADOW_OUTPUT_DIR = "shadow";
+
+    private final ShadowDetectionResultRepository shadowRepository;
+    private final ModelVersionRepository modelVersionRepository;
+    private final InspectionRepository inspectionRepository;
+    private final ModelRegistryService modelRegistryService;
+    private final DetectionEngine detectionEngine;
+    private final DetectionScheduler detectionScheduler;
+    private final DetectionJobService detectionJobService;
+    private final FileStorageService fileStorageService;
+    private final ObjectMapper objectMapper;
+    private final ThreadPoolExecutor executor;
+    private final double variantComparisonRate;
+
+    private final AtomicReference<String> candidateModel = new AtomicReference<>();
+    private final AtomicLong shedSinceStart = new AtomicLong();
+    private final Counter completed;
+    private final Counter shed;
+    private final Counter failed;
+
+    public ShadowEvaluationServiceImpl(ShadowDetectionResultRepository shadowRepository,
+                                       ModelVersionRepository modelVersionRepository,
+                                       InspectionRepository inspectionRepository,
+                                       ModelRegistryService modelRegistryService,
+                                       DetectionEngine detectionEngine,
+                                       DetectionScheduler detectionScheduler,
+                                       // Lazy: the job service depends on AnomalyDetectionService, which depends on this service
+                                       @Lazy DetectionJobService detectionJobService,
+                                       FileStorageService fileStorageService,
+                                       ObjectMapper objectMapper,
+                                       MeterRegistry meterRegistry,
+                                       @Value("${ml.shadow.model-name:}") String initialCandidate,
+                                       @Value("${ml.shadow.threads:1}") int threads,
+                                       @Value("${ml.shadow.max-queue:10}") int maxQueue,
+                                       @Value("${ml.shadow.variant-comparison-rate:0.05}") double variantComparisonRate) {
+        this.shadowRepository = shadowRepository;
+        this.modelVersionRepository = modelVersionRepository;
+        this.inspectionRepository = inspectionRepository;
+        this.modelRegistryService = modelRegistryService;
+        this.detectionEngine = detectionEngine;
+        this.detectionScheduler = detectionScheduler;
+        this.detectionJobService = detectionJobService;
+        this.fileStorageService = fileStorageService;
+        this.objectMapper = objectMapper;
+        this.variantComparisonRate = variantComparisonRate;
+        if (!initialCandidate.isBlank()) {
+            candidateModel.set(initialCandidate);
+        }
+
+        this.completed = Counter.builder("detection.shadow.runs").tag("outcome", "completed")
+                .description("Shadow detections run on the candidate model").register(meterRegistry);
+        this.shed = Counter.builder("detection.shadow.runs").tag("outcome", "shed")
+                .description("Shadow detections dropped because production was busy").register(meterRegistry);
+        this.failed = Counter.builder("detection.shadow.runs").tag("outcome", "failed")
+                .description("Shadow detections that failed on the candidate model").register(meterRegistry);
+
+        AtomicInteger threadIds = new AtomicInteger();
+        // Small bounded queue; anything that does not fit is dropped rather than waiting behind production
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, maxQueue)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "shadow-detection-" + threadIds.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                },
+                (runnable, pool) -> recordShed());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public String startShadow(Long versionId) {
+        ModelVersion version = modelVersionRepository.findById(versionId)
+                .orElseThrow(() -> new ResourceNotFoundException("Model version not found with id: " + versionId));
+        if (version.getModelName().equals(modelRegistryService.getProductionModelName())) {
+            throw new IllegalStateException("Model " + version.getModelName() + " is already in production.");
+        }
+        if (!Files.exists(Path.of(modelRegistryService.resolveModelPath(version.getModelName())))) {
+            throw new IllegalStateException("Model file " + version.getModelName() + " does not exist.");
+        }
+        candidateModel.set(version.getModelName());
+        shedSinceStart.set(0);
+        logger.info("Shadow evaluation started for candidate model {}.", version.getModelName());
+        return version.getModelName();
+    }
+
+    @Override
+    public void stopShadow() {
+        String previous = candidateModel.getAndSet(null);
+        executor.getQueue().clear();
+        logger.info("Shadow evaluation stopped (candidate was {}).", previous);
+    }
+
+    @Override
+    public Optional<String> getCandidateModelName() {
+        return Optional.ofNullable(candidateModel.get());
+    }
+
+    @Override
+    public void submit(Long inspectionId, String maintenancePath, int baselineIntensity, Double thresholdPercentage,
+                       String productionModel, JsonNode productionOutput, Long productionLatencyMs) {
+        String candidate = candidateModel.get();
+        if (candidate != null && !candidate.equals(productionModel)) {
+            mirror(candidate, inspectionId, maintenancePath, baselineIntensity, thresholdPercentage,
+                    productionModel, productionOutput, productionLatencyMs);
+        }
+        // A sample of full-precision detections also runs on the INT8 variant, for the fast/accurate report
+        if (ModelVariant.ofModelName(productionModel) == ModelVariant.ACCURATE
+                && ThreadLocalRandom.current().nextDouble() < variantComparisonRate) {
+            modelRegistryService.resolveVariant(productionModel, ModelVariant.FAST).ifPresent(fast ->
+                    mirror(fast, inspectionId, maintenancePath, baselineIntensity, thresholdPercentage,
+                            productionModel, productionOutput, productionLatencyMs));
+        }
+    }
+
+    private void mirror(String candidate, Long inspectionId, String maintenancePath, int baselineIntensity, Double thresholdPercentage,
+                        String productionModel, JsonNode productionOutput, Long productionLatencyMs) {
+        if (productionBusy()) {
+            recordShed();
+            return;
+        }
+        executor.execute(() -> runShadow(candidate, inspectionId, maintenancePath, baselineIntensity, thresholdPercentage,
+                productionModel, productionOutput, productionLatencyMs));
+    }
+
+    // Production has priority: any queued detection job, interactive request waiting for a slot or no spare inference
+    // capacity means shadow work waits its turn by being dropped
+    private boolean productionBusy() {
+        return detectionJobService.getQueueDepth() > 0
+                || detectionScheduler.getQueuedCount(DetectionScheduler.Priority.INTERACTIVE) > 0
+                || !detectionEngine.hasSpareCapacity();
+    }
+
+    private void recordShed() {
+        shed.increment();
+        shedSinceStart.incrementAndGet();
+    }
+
+    private void runShadow(String candidate, Long inspectionId, String maintenancePath, int baselineIntensity, Double thresholdPercentage,
+                           String productionModel, JsonNode productionOutput, Long productionLatencyMs) {
+        // The situation may have changed while this was queued; variant comparisons do not depend on the candidate
+        if (!candidate.equals(candidateModel.get()) && ModelVariant.ofModelName(candidate) != ModelVariant.FAST) {
+            return;
+        }
+        if (productionBusy()) {
+            recordShed();
+            return;
+        }
+        try {
+            Path outputDir = fileStorageService.getRootLocation().resolve(SHADOW_OUTPUT_DIR).toAbsolutePath();
+            Files.createDirectories(outputDir);
+
+            String candidatePath = modelRegistryService.resolveModelPath(candidate);
+            // Latency is measured inside the slot so it compares inference with inference, not queueing
+            long[] inferenceNanos = new long[1];
+            JsonNode output = detectionScheduler.run(DetectionScheduler.Priority.BACKGROUND, () -> {
+                long started = System.nanoTime();
+                JsonNode detected = detectionEngine.detect(maintenancePath, baselineIntensity, outputDir.toString(),
+                        thresholdPercentage, candidatePath);
+                inferenceNanos[0] = System.nanoTime() - started;
+                return detected;
+            });
+            long candidateLatencyMs = inferenceNanos[0] / 1_000_000;
+            // Nobody looks at the candidate's overlay
+            String overlay = output.path("output_image_name").asText(null);
+            if (overlay != null) {
+                Files.deleteIfExists(outputDir.resolve(overlay));
+            }
+
+            Optional<Inspection> inspection = inspectionRepository.findById(inspectionId);
+            if (inspection.isEmpty()) {
+                return;
+            }
+            JsonNode productionAnomalies = productionOutput.path("anomalies");
+            JsonNode candidateAnomalies = output.path("anomalies");
+
+            ShadowDetectionResult result = new ShadowDetectionResult();
+            result.setInspection(inspection.get());
+            result.setProductionModel(productionModel);
+            result.setCandidateModel(candidate);
+            result.setProductionStatus(productionOutput.path("overall_status").asText(null));
+            result.setCandidateStatus(output.path("overall_status").asText(null));
+            result.setCandidateJsonOutput(objectMapper.writeValueAsString(candidateAnomalies));
+            result.setProductionBoxes(productionAnomalies.size());
+            result.setCandidateBoxes(candidateAnomalies.size());
+            result.setMatchedBoxes(matchBoxes(productionAnomalies, candidateAnomalies));
+            result.setStatusAgrees(Objects.equals(result.getProductionStatus(), result.getCandidateStatus()));
+            result.setProductionLatencyMs(productionLatencyMs);
+            result.setCandidateLatencyMs(candidateLatencyMs);
+            result.setCreatedAt(LocalDateTime.now());
+            shadowRepository.save(result);
+            completed.increment();
+        } catch (IOException | RuntimeException e) {
+            failed.increment();
+            logger.warn("Shadow detection with {} failed for inspection {}: {}", candidate, inspectionId, e.getMessage());
+        }
+    }
+
+    // Greedy one-to-one matching of boxes with the same type, best overlap first
+    private static int matchBoxes(JsonNode production, JsonNode candidate) {
+        List<double[]> pairs = new ArrayList<>();
+        for (int i = 0; i < production.size(); i++) {
+            for (int j = 0; j < candidate.size(); j++) {
+                if (!production.get(i).path("type").asText().equals(candidate.get(j).path("type").asText())) {
+                    continue;
+                }
+                double iou = iou(production.get(i).path("location"), candidate.get(j).path("location"));
+                if (iou >= MATCH_IOU) {
+                    pairs.add(new double[]{iou, i, j});
+                }
+            }
+        }
+        pairs.sort(Comparator.comparingDouble((double[] pair) -> pair[0]).reversed());
+        boolean[] productionUsed = new boolean[production.size()];
+        boolean[] candidateUsed = new boolean[candidate.size()];
+        int matched = 0;
+        for (double[] pair : pairs) {
+            int i = (int) pair[1];
+            int j = (int) pair[2];
+            if (!productionUsed[i] && !candidateUsed[j]) {
+                productionUsed[i] = true;
+                candidateUsed[j] = true;
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    private static double iou(JsonNode a, JsonNode b) {
+        double w = Math.min(a.path("x_max").asDouble(), b.path("x_max").asDouble()) - Math.max(a.path("x_min").asDouble(), b.path("x_min").asDouble());
+        double h = Math.min(a.path("y_max").asDouble(), b.path("y_max").asDouble()) - Math.max(a.path("y_min").asDouble(), b.path("y_min").asDouble());
+        if (w <= 0 || h <= 0) {
+            return 0;
+        }
+        double intersection = w * h;
+        double union = area(a) + area(b) - intersection;
+        return union > 0 ? intersection / union : 0;
+    }
+
+    private static double area(JsonNode location) {
+        return (location.path("x_max").asDouble() - location.path("x_min").asDouble())
+                * (location.path("y_max").asDouble() - location.path("y_min").asDouble());
+    }
+
+    @Override
+    public ShadowReportDTO report(String candidateModelName) {
+        String candidate = candidateModelName != null ? candidateModelName : candidateModel.get();
+        if (candidate == null) {
+            throw new IllegalStateException("No shadow candidate is active; pass the candidate model name.");
+        }
+        List<ShadowDetectionResult> results = shadowRepository.findByCandidateModel(candidate);
+
+        ShadowReportDTO report = new ShadowReportDTO();
+        report.setCandidateModel(candidate);
+        report.setActive(candidate.equals(candidateModel.get()));
+        report.setComparisons(results.size());
+        if (report.isActive()) {
+            report.setShedRequests(shedSinceStart.get());
+        }
+        if (results.isEmpty()) {
+            return report;
+        }
+
+        long statusAgreements = 0;
+        long matched = 0;
+        long boxes = 0;
+        List<Long> productionLatencies = new ArrayList<>();
+        List<Long> candidateLatencies = new ArrayList<>();
+        ShadowDetectionResult latest = results.get(0);
+        for (ShadowDetectionResult result : results) {
+            if (result.isStatusAgrees()) {
+                statusAgreements++;
+            }
+            matched += result.getMatchedBoxes();
+            boxes += result.getProductionBoxes() + result.getCandidateBoxes();
+            if (result.getProductionLatencyMs() != null) {
+                productionLatencies.add(result.getProductionLatencyMs());
+            }
+            candidateLatencies.add(result.getCandidateLatencyMs());
+            if (result.getCreatedAt().isAfter(latest.getCreatedAt())) {
+                latest = result;
+            }
+        }
+        report.setProductionModel(latest.getProductionModel());
+        report.setStatusAgreementRate((double) statusAgreements / results.size());
+        // Two empty detections agree perfectly
+        report.setBoxAgreementRate(boxes == 0 ? 1.0 : 2.0 * matched / boxes);
+        report.setProductionLatencyP50Ms(percentile(productionLatencies, 50));
+        report.setProductionLatencyP95Ms(percentile(productionLatencies, 95));
+        report.setCandidateLatencyP50Ms(percentile(candidateLatencies, 50));
+        report.setCandidateLatencyP95Ms(percentile(candidateLatencies, 95));
+        return report;
+    }
+
+    // Nearest-rank percentile; null for an empty sample
+    private static Double percentile(List<Long> values, int percent) {
+        if (values.isEmpty()) {
+            return null;
+        }
+        Collections.sort(values);
+        int rank = (int) Math.ceil(percent / 100.0 * values.size());
+        return values.get(Math.max(0, rank - 1)).doubleValue();
+    }
+}
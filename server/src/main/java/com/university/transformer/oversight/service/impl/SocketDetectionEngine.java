@@ -0,0 +1,108 @@
+package com.university.transformer.oversight.service.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.university.transformer.oversight.service.DetectionEngine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Inference in long-lived "detector.py --serve" processes reached over Unix domain sockets.
+ * Unlike the worker pool these processes are not restarted with the application, so models stay loaded across redeploys.
+ */
+@Component
+@ConditionalOnProperty(name = "ml.detector.backend", havingValue = "socket")
+public class SocketDetectionEngine implements DetectionEngine {
+
+    private final DetectorSocketClient detectorSocketClient;
+    private final ObjectMapper objectMapper;
+    private final DecodedFrameCache decodedFrameCache;
+    private final Duration requestTimeout;
+    private final Duration startupTimeout;
+    private final int batchSize;
+
+    public SocketDetectionEngine(DetectorSocketClient detectorSocketClient,
+                                 ObjectMapper objectMapper,
+                                 DecodedFrameCache decodedFrameCache,
+                                 @Value("${ml.detector.request-timeout-seconds:120}") long requestTimeoutSeconds,
+                                 @Value("${ml.detector.startup-timeout-seconds:180}") long startupTimeoutSeconds,
+                                 @Value("${ml.detector.batch-size:8}") int batchSize) {
+        this.detectorSocketClient = detectorSocketClient;
+        this.objectMapper = objectMapper;
+        this.decodedFrameCache = decodedFrameCache;
+        this.requestTimeout = Duration.ofSeconds(requestTimeoutSeconds);
+        this.startupTimeout = Duration.ofSeconds(startupTimeoutSeconds);
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    @Override
+    public JsonNode detect(String maintenancePath, int baselineIntensity, String outputDir, Double thresholdPercentage, String modelPath) {
+        ObjectNode payload = objectMapper.createObjectNode();
+        payload.put("op", "detect");
+        payload.put("maintenance", maintenancePath);
+        payload.put("baseline_intensity", baselineIntensity);
+        payload.put("output_dir", outputDir);
+        payload.put("threshold", thresholdPercentage);
+        payload.put("model", modelPath);
+        // The worker maps the frame it decoded on an earlier run, or decodes the image and writes the frame
+        decodedFrameCache.detectorFrame(Paths.get(maintenancePath)).ifPresent(frame -> payload.put("maintenance_frame", frame.toString()));
+
+        JsonNode result = execute(payload, requestTimeout).path("result");
+        if (result.has("error")) {
+            throw new RuntimeException("Anomaly detection failed: " + result.get("error").asText());
+        }
+        return result;
+    }
+
+    @Override
+    public JsonNode detectBatch(List<ObjectNode> items, String outputDir, String modelPath) {
+        ObjectNode payload = objectMapper.createObjectNode();
+        payload.put("op", "detect_batch");
+        payload.put("output_dir", outputDir);
+        payload.put("model", modelPath);
+        payload.put("batch_size", batchSize);
+        for (ObjectNode item : items) {
+            decodedFrameCache.detectorFrame(Paths.get(item.path("maintenance").asText()))
+                    .ifPresent(frame -> item.put("maintenance_frame", frame.toString()));
+        }
+        payload.putArray("items").addAll(items);
+
+        long chunks = Math.max(1, (items.size() + batchSize - 1) / batchSize);
+        return execute(payload, requestTimeout.multipliedBy(chunks)).path("results");
+    }
+
+    @Override
+    public void warmUp(String modelPath) {
+        detectorSocketClient.setCurrentModelPath(modelPath);
+        ObjectNode payload = objectMapper.createObjectNode();
+        payload.put("op", "load_model");
+        payload.put("model", modelPath);
+        detectorSocketClient.broadcast(payload, startupTimeout);
+    }
+
+    // Spare when fewer requests are in flight than there are servers
+    @Override
+    public boolean hasSpareCapacity() {
+        return detectorSocketClient.getInFlightCount() < detectorSocketClient.getServerCount();
+    }
+
+    // detector.py feeds batch items to YOLO batch_size images at a time
+    @Override
+    public boolean batchesInference() {
+        return true;
+    }
+
+    private JsonNode execute(ObjectNode payload, Duration timeout) {
+        JsonNode response = detectorSocketClient.request(payload, timeout);
+        if (!response.path("ok").asBoolean(false)) {
+            throw new RuntimeException("Detector socket server reported an error: " + response.path("error").asText("unknown error"));
+        }
+        return response;
+    }
+}
@@ -0,0 +1,195 @@
+package com.university.transformer.oversight.service.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * A subprocess started through {@link ProcessSupervisor}. Both pipes are drained concurrently
+ * on daemon threads; every line goes to the caller's consumer and only the last few lines are kept.
+ */
+public class SupervisedProcess {
+
+    private static final Logger logger = LoggerFactory.getLogger(SupervisedProcess.class);
+    private static final Duration KILL_GRACE = Duration.ofSeconds(5);
+
+    private final String name;
+    private final Process process;
+    private final int maxLineLength;
+    private final int tailLines;
+    private final Deque<String> stdoutTail = new ArrayDeque<>();
+    private final Deque<String> stderrTail = new ArrayDeque<>();
+    private final Thread stdoutDrainer;
+    private final Thread stderrDrainer;
+    private final long startedAt = System.nanoTime();
+    private final AtomicBoolean released = new AtomicBoolean();
+    private final Runnable onRelease;
+    private volatile long lastOutputAt = System.nanoTime();
+
+    SupervisedProcess(String name, Process process, Consumer<String> stdoutConsumer, Consumer<String> stderrConsumer,
+                      int maxLineLength, int tailLines, Runnable onRelease) {
+        this.name = name;
+        this.process = process;
+        this.maxLineLength = maxLineLength;
+        this.tailLines = tailLines;
+        this.onRelease = onRelease;
+        this.stdoutDrainer = drain("stdout", process.getInputStream(), stdoutConsumer, stdoutTail);
+        this.stderrDrainer = drain("stderr", process.getErrorStream(), stderrConsumer, stderrTail);
+    }
+
+    private Thread drain(String stream, InputStream input, Consumer<String> consumer, Deque<String> tail) {
+        Thread thread = new Thread(() -> {
+            try (Reader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = readLine(reader)) != null) {
+                    lastOutputAt = System.nanoTime();
+                    synchronized (tail) {
+                        if (tail.size() == tailLines) {
+                            tail.removeFirst();
+                        }
+                        tail.addLast(line);
+                    }
+                    try {
+                        consumer.accept(line);
+                    } catch (RuntimeException e) {
+                        logger.warn("Output consumer of process {} failed: {}", name, e.getMessage());
+                    }
+                }
+            } catch (IOException e) {
+                logger.debug("Process {} {} closed: {}", name, stream, e.getMessage());
+            }
+        }, "process-" + name + "-" + stream);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    // Like BufferedReader.readLine, but a single line can never grow past maxLineLength characters
+    private String readLine(Reader reader) throws IOException {
+        StringBuilder line = new StringBuilder();
+        boolean truncated = false;
+        int c;
+        while ((c = reader.read()) != -1) {
+            if (c == '\n') {
+                return finish(line, truncated);
+            }
+            if (line.length() < maxLineLength) {
+                line.append((char) c);
+            } else {
+                truncated = true;
+            }
+        }
+        return line.length() > 0 || truncated ? finish(line, truncated) : null;
+    }
+
+    private String finish(StringBuilder line, boolean truncated) {
+        int length = line.length();
+        if (length > 0 && line.charAt(length - 1) == '\r') {
+            line.setLength(length - 1);
+        }
+        if (truncated) {
+            logger.warn("Process {} wrote a line longer than {} characters; it was truncated.", name, maxLineLength);
+        }
+        return line.toString();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getPid() {
+        return process.pid();
+    }
+
+    public OutputStream getStdin() {
+        return process.getOutputStream();
+    }
+
+    public boolean isAlive() {
+        return process.isAlive();
+    }
+
+    public Duration getElapsed() {
+        return Duration.ofNanos(System.nanoTime() - startedAt);
+    }
+
+    Duration getIdle() {
+        return Duration.ofNanos(System.nanoTime() - lastOutputAt);
+    }
+
+    Integer exitCode() {
+        return process.isAlive() ? null : process.exitValue();
+    }
+
+    boolean waitFor(long timeout, TimeUnit unit) throws InterruptedException {
+        return process.waitFor(timeout, unit);
+    }
+
+    // Gives the drainers a moment to deliver output written right before the process exited
+    void awaitDrained(Duration timeout) throws InterruptedException {
+        stdoutDrainer.join(timeout.toMillis());
+        stderrDrainer.join(timeout.toMillis());
+    }
+
+    public List<String> getStdoutTail() {
+        synchronized (stdoutTail) {
+            return new ArrayList<>(stdoutTail);
+        }
+    }
+
+    public List<String> getStderrTail() {
+        synchronized (stderrTail) {
+            return new ArrayList<>(stderrTail);
+        }
+    }
+
+    /**
+     * Terminates the process and everything it spawned (e.g. dataloader workers),
+     * escalating to a forcible kill when it does not exit within the grace period.
+     */
+    public void destroy() {
+        try {
+            try {
+                process.getOutputStream().close();
+            } catch (IOException ignored) {
+                // The process is being torn down anyway
+            }
+            List<ProcessHandle> tree = new ArrayList<>();
+            process.descendants().forEach(tree::add);
+            tree.forEach(ProcessHandle::destroy);
+            process.destroy();
+            try {
+                if (!process.waitFor(KILL_GRACE.toMillis(), TimeUnit.MILLISECONDS)) {
+                    process.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+            tree.stream().filter(ProcessHandle::isAlive).forEach(ProcessHandle::destroyForcibly);
+        } finally {
+            release();
+        }
+    }
+
+    void release() {
+        if (released.compareAndSet(false, true)) {
+            onRelease.run();
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.university.transformer.oversight.service.impl;
+
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+
+/**
+ * Java port of the image statistics detector.py computes with OpenCV,
+ * so they can be computed once at upload time instead of on every detection.
+ * Colour conversion follows cv2.cvtColor(..., COLOR_BGR2LAB) for 8-bit images.
+ */
+@Component
+public class ThermalImageAnalyzer {
+
+    // Cool-colour bounds from detector.py:get_baseline_intensity (BGR order, passed to cv2.inRange)
+    private static final int[] COOL_LOWER_BGR = {133, 118, 162};
+    private static final int[] COOL_UPPER_BGR = {82, 207, 20};
+    private static final int MIN_BASELINE_INTENSITY = 50;
+
+    private static final double[] SRGB_TO_LINEAR = new double[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            double v = i / 255.0;
+            SRGB_TO_LINEAR[i] = v <= 0.04045 ? v / 12.92 : Math.pow((v + 0.055) / 1.055, 2.4);
+        }
+    }
+
+    /**
+     * Decodes a baseline image and computes its intensity proxy, L-channel histogram, size and content hash.
+     */
+    public BaselineStats analyzeBaseline(Path imagePath) throws IOException {
+        byte[] bytes = Files.readAllBytes(imagePath);
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(bytes));
+        if (image == null) {
+            throw new IOException("Unsupported or corrupt image: " + imagePath.getFileName());
+        }
+
+        int width = image.getWidth();
+        int height = image.getHeight();
+        long[] histogram = new long[256];
+        long[] maskedHistogram = new long[256];
+        long maskedCount = 0;
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int rgb = image.getRGB(x, y);
+                int l = labL(rgb);
+                histogram[l]++;
+                if (inCoolRange(rgb)) {
+                    maskedHistogram[l]++;
+                    maskedCount++;
+                }
+            }
+        }
+
+        int median = MIN_BASELINE_INTENSITY;
+        if (maskedCount > 0) {
+            median = Math.max((int) percentile(maskedHistogram, maskedCount, 50), MIN_BASELINE_INTENSITY);
+        }
+        return new BaselineStats(median, histogram, width, height, sha256(bytes));
+    }
+
+    private static boolean inCoolRange(int rgb) {
+        int[] bgr = {rgb & 0xFF, (rgb >> 8) & 0xFF, (rgb >> 16) & 0xFF};
+        for (int c = 0; c < 3; c++) {
+            if (bgr[c] < COOL_LOWER_BGR[c] || bgr[c] > COOL_UPPER_BGR[c]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // numpy.percentile with linear interpolation over the values summarised by a histogram
+    static double percentile(long[] histogram, long count, double percent) {
+        double rank = (count - 1) * percent / 100.0;
+        long lower = (long) Math.floor(rank);
+        long upper = (long) Math.ceil(rank);
+        int lowerValue = valueAtRank(histogram, lower);
+        int upperValue = valueAtRank(histogram, upper);
+        return lowerValue + (upperValue - lowerValue) * (rank - lower);
+    }
+
+    private static int valueAtRank(long[] histogram, long rank) {
+        long seen = 0;
+        for (int value = 0; value < histogram.length; value++) {
+            seen += histogram[value];
+            if (seen > rank) {
+                return value;
+            }
+        }
+        return histogram.length - 1;
+    }
+
+    /** 8-bit LAB L channel (0..255) of a packed RGB pixel, as OpenCV computes it. */
+    static int labL(int rgb) {
+        double y = luminance(rgb);
+        double l = y > 0.008856 ? 116.0 * Math.cbrt(y) - 16.0 : 903.3 * y;
+        return saturate(l * 255.0 / 100.0);
+    }
+
+    /**
+     * Decodes only every n-th pixel in each direction, which keeps memory and decode time
+     * roughly 1/n^2 of a full decode. Returns null when the format is not supported.
+     */
+    public BufferedImage decodeSubsampled(Path imagePath, int subsampling) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(imagePath.toFile())) {
+            if (input == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = Math.max(1, subsampling);
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Highest LAB b channel value in the image, i.e. the hottest spot by the
+     * proxy detector.py uses for maintenance images (LAB channel 2).
+     */
+    public int peakLabB(BufferedImage image) {
+        int peak = 0;
+        int width = image.getWidth();
+        int[] row = new int[width];
+        for (int y = 0; y < image.getHeight(); y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int rgb : row) {
+                int b = labB(rgb);
+                if (b > peak) {
+                    peak = b;
+                }
+            }
+        }
+        return peak;
+    }
+
+    /**
+     * 95th percentile of the LAB b channel inside a box, like detector.py's
+     * np.percentile(v_channel[y_min:y_max, x_min:x_max], 95). Returns 0 for an empty box.
+     */
+    public double hotIntensity(BufferedImage image, int xMin, int yMin, int xMax, int yMax) {
+        int x0 = Math.max(0, xMin);
+        int y0 = Math.max(0, yMin);
+        int x1 = Math.min(image.getWidth(), xMax);
+        int y1 = Math.min(image.getHeight(), yMax);
+        if (x1 <= x0 || y1 <= y0) {
+            return 0;
+        }
+        long[] histogram = new long[256];
+        int width = x1 - x0;
+        int[] row = new int[width];
+        for (int y = y0; y < y1; y++) {
+            image.getRGB(x0, y, width, 1, row, 0, width);
+            for (int rgb : row) {
+                histogram[labB(rgb)]++;
+            }
+        }
+        return percentile(histogram, (long) width * (y1 - y0), 95);
+    }
+
+    /** 8-bit LAB b channel (0..255, 128 = neutral) of a packed RGB pixel, as OpenCV computes it. */
+    static int labB(int rgb) {
+        double r = SRGB_TO_LINEAR[(rgb >> 16) & 0xFF];
+        double g = SRGB_TO_LINEAR[(rgb >> 8) & 0xFF];
+        double b = SRGB_TO_LINEAR[rgb & 0xFF];
+        double y = 0.212671 * r + 0.715160 * g + 0.072169 * b;
+        double z = (0.019334 * r + 0.119193 * g + 0.950227 * b) / 1.088754;
+        return saturate(200.0 * (f(y) - f(z)) + 128.0);
+    }
+
+    private static double f(double t) {
+        return t > 0.008856 ? Math.cbrt(t) : 7.787 * t + 16.0 / 116.0;
+    }
+
+    private static double luminance(int rgb) {
+        double r = SRGB_TO_LINEAR[(rgb >> 16) & 0xFF];
+        double g = SRGB_TO_LINEAR[(rgb >> 8) & 0xFF];
+        double b = SRGB_TO_LINEAR[rgb & 0xFF];
+        return 0.212671 * r + 0.715160 * g + 0.072169 * b;
+    }
+
+    private static int saturate(double value) {
+        return (int) Math.max(0, Math.min(255, Math.round(value)));
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    public static class BaselineStats {
+        private final int medianIntensity;
+        private final long[] histogram;
+        private final int width;
+        private final int height;
+        private final String sha256;
+
+        BaselineStats(int medianIntensity, long[] histogram, int width, int height, String sha256) {
+            this.medianIntensity = medianIntensity;
+            this.histogram = histogram;
+            this.width = width;
+            this.height = height;
+            this.sha256 = sha256;
+        }
+
+        public int getMedianIntensity() { return medianIntensity; }
+        public long[] getHistogram() { return histogram; }
+        public int getWidth() { return width; }
+        public int getHeight() { return height; }
+        public String getSha256() { return sha256; }
+    }
+}
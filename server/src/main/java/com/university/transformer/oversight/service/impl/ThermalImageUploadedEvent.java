@@ -0,0 +1,24 @@
+package com.university.transformer.oversight.service.impl;
+
+/**
+ * Published inside the upload transaction when a maintenance thermal image has been stored for an inspection;
+ * listeners that start work act only after that transaction commits.
+ */
+public class ThermalImageUploadedEvent {
+
+    private final Long inspectionId;
+    private final String fileName;
+
+    public ThermalImageUploadedEvent(Long inspectionId, String fileName) {
+        this.inspectionId = inspectionId;
+        this.fileName = fileName;
+    }
+
+    public Long getInspectionId() {
+        return inspectionId;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+}
@@ -0,0 +1,57 @@
+package com.university.transformer.oversight.service.impl;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Short transactions for long-running operations (detection, fine-tuning) that are split into a read phase,
+ * slow work without any transaction or JDBC connection, and a write phase. Each phase is timed as
+ * db.connection.hold{operation, phase}: with connections released after every transaction, that is how long
+ * the phase keeps a pooled connection checked out.
+ */
+@Component
+public class TransactionPhases {
+
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    public TransactionPhases(PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Runs the work in its own transaction, committed when it returns and rolled back on any exception,
+     * which is rethrown unchanged.
+     */
+    public <T> T run(String operation, String phase, Callable<T> work) throws Exception {
+        long started = System.nanoTime();
+        try {
+            return transactionTemplate.execute(status -> {
+                try {
+                    return work.call();
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new UndeclaredThrowableException(e);
+                }
+            });
+        } catch (UndeclaredThrowableException e) {
+            throw (Exception) e.getUndeclaredThrowable();
+        } finally {
+            Timer.builder("db.connection.hold")
+                    .description("Time a phase of a long-running operation holds a transaction and its JDBC connection")
+                    .tag("operation", operation)
+                    .tag("phase", phase)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+}
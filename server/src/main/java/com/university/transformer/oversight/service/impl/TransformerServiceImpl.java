@@ -1,13 +1,16 @@
 package com.university.transformer.oversight.service.impl;
 
+import com.university.transformer.oversight.model.ThermalImage.EnvironmentalCondition;
 import com.university.transformer.oversight.model.Transformer;
 import com.university.transformer.oversight.repository.TransformerRepository;
+import com.university.transformer.oversight.service.BaselineProfileService;
 import com.university.transformer.oversight.service.FileStorageService;
 import com.university.transformer.oversight.service.TransformerService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
@@ -28,6 +31,9 @@ public class TransformerServiceImpl implements TransformerService {
     @Autowired
     private FileStorageService fileStorageService;
 
+    @Autowired
+    private BaselineProfileService baselineProfileService;
+
     @Override
     public Transformer saveTransformer(Transformer transformer) {
         return transformerRepository.save(transformer);
@@ -65,10 +71,18 @@ public class TransformerServiceImpl implements TransformerService {
     }
 
     @Override
+    @Transactional
     public void saveBaselineImage(Long transformerId, MultipartFile file, String condition, String uploader) {
         Transformer transformer = transformerRepository.findById(transformerId)
                 .orElseThrow(() -> new RuntimeException("Transformer not found with ID: " + transformerId));
 
+        EnvironmentalCondition environmentalCondition;
+        try {
+            environmentalCondition = EnvironmentalCondition.fromString(condition);
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Unknown environmental condition: " + condition);
+        }
+
         try {
             String uploadDir = "uploads/baseline-images/";
             Path uploadPath = Paths.get(uploadDir);
@@ -84,12 +98,18 @@ public class TransformerServiceImpl implements TransformerService {
             transformer.setBaselineImageUploader(uploader);
             transformer.setBaselineImageUploadTimestamp(LocalDateTime.now());
             transformerRepository.save(transformer);
+
+            // Compute the baseline statistics once here so detection never has to decode this image
+            if (environmentalCondition != null) {
+                baselineProfileService.computeProfile(transformer, environmentalCondition, uniqueFileName);
+            }
         } catch (IOException e) {
             throw new RuntimeException("Could not store baseline image: " + e.getMessage());
         }
     }
 
     @Override
+    @Transactional
     public void deleteBaselineImage(Long transformerId) {
         Transformer transformer = transformerRepository.findById(transformerId)
                 .orElseThrow(() -> new RuntimeException("Transformer not found with ID: " + transformerId));
@@ -99,6 +119,7 @@ public class TransformerServiceImpl implements TransformerService {
             try {
                 Path filePath = Paths.get("uploads/baseline-images/").resolve(fileName);
                 Files.deleteIfExists(filePath);
+                baselineProfileService.deleteProfilesForImage(transformerId, fileName);
                 transformer.setBaselineImageName(null);
                 transformer.setBaselineImageCondition(null);
                 transformer.setBaselineImageUploader(null);
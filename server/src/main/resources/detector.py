@@ -5,10 +5,30 @@ import os
 import json
 from datetime import datetime
 import sys
+import socket
+import struct
+import threading
+import queue
+
+# Per-process thread budget set by the server (DETECTOR_THREADS), so parallel workers split the cores
+# instead of each starting one thread per core
+if os.environ.get("DETECTOR_THREADS"):
+    _threads = max(1, int(os.environ["DETECTOR_THREADS"]))
+    cv2.setNumThreads(_threads)
+    try:
+        import torch
+        torch.set_num_threads(_threads)
+        torch.set_num_interop_threads(1)
+    except (ImportError, RuntimeError):
+        pass
 
 # Configuration
 MODEL_PATH = r"./server/src/main/resources/best.pt"
 
+# Loaded models keyed by absolute path, so a resident worker only pays the load cost once.
+_MODEL_CACHE = {}
+MAX_CACHED_MODELS = 2
+
 SEVERITY_MAP = {
     'Potentially Faulty': 1,
     'Faulty': 2
@@ -37,8 +57,100 @@ def get_baseline_intensity(baseline_path):
     print(f"Calculated Baseline Intensity Proxy (median): {baseline:.2f}", file=sys.stderr)
     return int(baseline)
 
-def run_detection(maintenance_image_path, baseline_image_path, save_folder, threshold_percentage, model_path):
-    if not os.path.exists(maintenance_image_path) or not os.path.exists(baseline_image_path):
+def get_model(model_path):
+    key = os.path.abspath(model_path)
+    model = _MODEL_CACHE.get(key)
+    if model is None:
+        model = YOLO(model_path)
+        if len(_MODEL_CACHE) >= MAX_CACHED_MODELS:
+            # Drop the oldest entry (dicts keep insertion order)
+            _MODEL_CACHE.pop(next(iter(_MODEL_CACHE)))
+        _MODEL_CACHE[key] = model
+    return model
+
+# Decoded-frame files (see the server's DecodedFrameCache): a 16-byte little-endian header (magic, width, height,
+# channels) followed by BGR pixels. "TFRC" frames are written here from cv2.imread; the server's own "TFRM" frames come
+# from Java ImageIO, whose pixels differ (EXIF orientation, alpha of RGBA PNGs, JPEG IDCT), and are never used.
+FRAME_MAGIC = b"TFRC"
+FRAME_HEADER_BYTES = 16
+
+def load_frame(frame_path, image_path):
+    """
+    The image exactly as cv2.imread decodes it, as an HxWx3 BGR array. Maps the frame file when this script wrote it;
+    otherwise decodes the image and writes the frame for the next run, so the pixels YOLO sees never depend on whether
+    a frame existed. Returns None without a frame path or when the image cannot be decoded (the caller then uses
+    the path itself).
+    """
+    if not frame_path:
+        return None
+    frame = map_frame(frame_path)
+    if frame is not None:
+        return frame
+    image = cv2.imread(image_path)
+    if image is not None:
+        write_frame(frame_path, image)
+    return image
+
+def map_frame(frame_path):
+    if not os.path.exists(frame_path):
+        return None
+    try:
+        header = np.fromfile(frame_path, dtype=np.uint8, count=FRAME_HEADER_BYTES)
+        if header[:4].tobytes() != FRAME_MAGIC:
+            return None
+        width, height, channels = np.frombuffer(header[4:].tobytes(), dtype="<i4")
+        if os.path.getsize(frame_path) != FRAME_HEADER_BYTES + int(width) * int(height) * int(channels):
+            return None
+        return np.memmap(frame_path, dtype=np.uint8, mode="r", offset=FRAME_HEADER_BYTES,
+                         shape=(int(height), int(width), int(channels)))
+    except (OSError, ValueError) as e:
+        print(f"Ignoring decoded frame {frame_path}: {e}", file=sys.stderr)
+        return None
+
+def write_frame(frame_path, image):
+    # Written under a temporary name and moved into place, so no reader maps a half-written frame
+    temp_path = f"{frame_path}.{os.getpid()}.{threading.get_ident()}.tmp"
+    try:
+        os.makedirs(os.path.dirname(frame_path) or ".", exist_ok=True)
+        height, width = image.shape[:2]
+        with open(temp_path, "wb") as f:
+            f.write(FRAME_MAGIC + struct.pack("<iii", width, height, 3))
+            f.write(np.ascontiguousarray(image).tobytes())
+        os.replace(temp_path, frame_path)
+    except OSError as e:
+        print(f"Could not write decoded frame {frame_path}: {e}", file=sys.stderr)
+        if os.path.exists(temp_path):
+            os.remove(temp_path)
+
+def check_frames(frame_dir, image_paths):
+    """
+    Parity check: for each image, the pixels handed to YOLO on a first run (decoded and frame written) and on a later
+    run (frame mapped) must both equal cv2.imread. Returns one report per image.
+    """
+    reports = []
+    for image_path in image_paths:
+        expected = cv2.imread(image_path)
+        frame_path = os.path.join(frame_dir, os.path.basename(image_path) + ".bgr")
+        if os.path.exists(frame_path):
+            os.remove(frame_path)
+        first = load_frame(frame_path, image_path)
+        mapped = map_frame(frame_path)
+        ok = (expected is not None and first is not None and mapped is not None
+              and np.array_equal(expected, first) and np.array_equal(expected, mapped))
+        reports.append({"image": os.path.basename(image_path), "ok": bool(ok),
+                        "shape": list(expected.shape) if expected is not None else None})
+    return reports
+
+def run_detection(maintenance_image_path, baseline_image_path, save_folder, threshold_percentage, model_path,
+                  baseline_intensity=None, maintenance_frame=None):
+    """
+    baseline_intensity is the precomputed baseline profile value sent by the server.
+    When it is given the baseline image is not needed (and not decoded) at all.
+    maintenance_frame is the decoded-frame file of the maintenance image (see load_frame); once it exists neither
+    YOLO nor the overlay step decodes the image.
+    """
+    baseline_missing = baseline_intensity is None and (not baseline_image_path or not os.path.exists(baseline_image_path))
+    if not os.path.exists(maintenance_image_path) or baseline_missing:
         return {
             "error": f"Image not found. Maintenance: {maintenance_image_path}, Baseline: {baseline_image_path}",
             "overall_status": "UNCERTAIN"
@@ -46,19 +158,35 @@ def run_detection(maintenance_image_path, baseline_image_path, save_folder, thre
 
     try:
         os.makedirs(save_folder, exist_ok=True)
-        model = YOLO(model_path)
+        model = get_model(model_path)
     except Exception as e:
         return {"error": f"Model or path setup failed: {e}", "overall_status": "UNCERTAIN"}
 
-    baseline_intensity_B = get_baseline_intensity(baseline_image_path)
-
-    results = model(maintenance_image_path, conf=0.5, verbose=False)
-    im_bgr = cv2.imread(maintenance_image_path)
+    if baseline_intensity is not None:
+        baseline_intensity_B = int(baseline_intensity)
+    else:
+        baseline_intensity_B = get_baseline_intensity(baseline_image_path)
+
+    frame = load_frame(maintenance_frame, maintenance_image_path)
+    results = model(maintenance_image_path if frame is None else frame, conf=0.5, verbose=False)
+    return analyze_results(model, results, maintenance_image_path, baseline_intensity_B, save_folder, threshold_percentage,
+                           model_path, frame)
+
+def analyze_results(model, results, maintenance_image_path, baseline_intensity_B, save_folder, threshold_percentage, model_path,
+                    frame=None):
+    """
+    Applies the baseline-intensity threshold to the YOLO results of one image,
+    draws the overlay and builds the JSON returned to Java.
+    """
+    # The overlay is drawn in place, so a mapped frame is copied (a memcpy, not a decode)
+    im_bgr = np.array(frame) if frame is not None else cv2.imread(maintenance_image_path)
     if im_bgr is None:
         return {"error": f"Error: Could not read maintenance image at {maintenance_image_path}", "overall_status": "UNCERTAIN"}
 
     img_h, img_w = im_bgr.shape[:2]
     final_anomalies_data = []
+    # Every box the model produced, before thresholding, so the server can re-apply other thresholds later
+    raw_detections = []
     overall_status = "NORMAL"
 
     base_filename = os.path.basename(maintenance_image_path)
@@ -93,9 +221,18 @@ def run_detection(maintenance_image_path, baseline_image_path, save_folder, thre
 
             threshold_pct = threshold_percentage * 100
 
+            class_label = class_names[int(class_id)]
+            severity_score_int = SEVERITY_MAP.get(class_label, 0)
+            raw_detections.append({
+                "id": display_id,
+                "type": class_label,
+                "location": {"x_min": x_min, "y_min": y_min, "x_max": x_max, "y_max": y_max},
+                "severity_score": severity_score_int,
+                "confidence": round(float(score), 4),
+                "hot_intensity": float(max_intensity_M),
+            })
+
             if intensity_deference >= threshold_pct:
-                class_label = class_names[int(class_id)]
-                severity_score_int = SEVERITY_MAP.get(class_label, 0)
 
                 anomaly_data = {
                     "id": display_id,
@@ -154,6 +291,8 @@ def run_detection(maintenance_image_path, baseline_image_path, save_folder, thre
         "overall_status": overall_status,
         "output_image_name": output_image_filename,
         "anomalies": final_anomalies_data,
+        "raw_detections": raw_detections,
+        "baseline_intensity": int(baseline_intensity_B),
         "metadata": {
             "timestamp": datetime.utcnow().isoformat(),
             "image_width": img_w,
@@ -162,7 +301,226 @@ def run_detection(maintenance_image_path, baseline_image_path, save_folder, thre
         }
     }
 
+def run_batch_detection(items, save_folder, model_path, batch_size):
+    """
+    Runs one batched YOLO inference per chunk of images instead of one call per image.
+    Each item carries its own key, maintenance path, threshold and either a precomputed
+    "baseline_intensity" or a baseline path; failures are reported per item.
+    """
+    outputs = []
+    try:
+        os.makedirs(save_folder, exist_ok=True)
+        model = get_model(model_path)
+    except Exception as e:
+        return [{"key": item.get("key"), "error": f"Model or path setup failed: {e}", "overall_status": "UNCERTAIN"} for item in items]
+
+    runnable = []
+    for item in items:
+        baseline_missing = item.get("baseline_intensity") is None and not os.path.exists(item.get("baseline") or "")
+        if not os.path.exists(item["maintenance"]) or baseline_missing:
+            outputs.append({
+                "key": item.get("key"),
+                "error": f"Image not found. Maintenance: {item['maintenance']}, Baseline: {item.get('baseline')}",
+                "overall_status": "UNCERTAIN"
+            })
+        else:
+            runnable.append(item)
+
+    # Transformers share baselines across inspections, so only decode each baseline once per batch
+    baseline_intensities = {}
+    for start in range(0, len(runnable), batch_size):
+        chunk = runnable[start:start + batch_size]
+        frames = [load_frame(item.get("maintenance_frame"), item["maintenance"]) for item in chunk]
+        # YOLO takes either all arrays or all paths in one call
+        if all(frame is not None for frame in frames):
+            sources = frames
+        else:
+            sources = [item["maintenance"] for item in chunk]
+            frames = [None] * len(chunk)
+        try:
+            results = model(sources, conf=0.5, verbose=False)
+        except Exception as e:
+            outputs.extend({"key": item.get("key"), "error": f"Inference failed: {e}", "overall_status": "UNCERTAIN"} for item in chunk)
+            continue
+
+        for item, result, frame in zip(chunk, results, frames):
+            try:
+                if item.get("baseline_intensity") is not None:
+                    baseline_intensity_B = int(item["baseline_intensity"])
+                else:
+                    baseline_path = item["baseline"]
+                    if baseline_path not in baseline_intensities:
+                        baseline_intensities[baseline_path] = get_baseline_intensity(baseline_path)
+                    baseline_intensity_B = baseline_intensities[baseline_path]
+                output = analyze_results(model, [result], item["maintenance"], baseline_intensity_B,
+                                         save_folder, float(item["threshold"]), model_path, frame)
+            except Exception as e:
+                output = {"error": str(e), "overall_status": "UNCERTAIN"}
+            output["key"] = item.get("key")
+            outputs.append(output)
+    return outputs
+
+def handle_request(request, default_model):
+    op = request.get("op", "detect")
+    if op == "ping":
+        return {"op": "pong", "models": [os.path.basename(m) for m in _MODEL_CACHE]}
+    if op == "load_model":
+        get_model(request["model"])
+        return {"op": "loaded", "model": os.path.basename(request["model"])}
+    if op == "detect":
+        return {"result": run_detection(
+            request["maintenance"],
+            request.get("baseline"),
+            request["output_dir"],
+            float(request["threshold"]),
+            request.get("model") or default_model,
+            request.get("baseline_intensity"),
+            request.get("maintenance_frame"),
+        )}
+    if op == "detect_batch":
+        return {"results": run_batch_detection(
+            request["items"],
+            request["output_dir"],
+            request.get("model") or default_model,
+            int(request.get("batch_size", 8)),
+        )}
+    raise ValueError(f"Unknown op: {op}")
+
+def respond(request, default_model):
+    request_id = request.get("id")
+    try:
+        response = handle_request(request, default_model)
+        response.update({"id": request_id, "ok": True})
+    except Exception as e:
+        response = {"id": request_id, "ok": False, "error": str(e)}
+    return response
+
+def worker_main(model_path):
+    """
+    Resident worker mode. Requests and responses are single JSON lines on stdin/stdout.
+    Anything else the libraries print is pushed to stderr so the protocol channel stays clean.
+    """
+    protocol_out = sys.stdout
+    sys.stdout = sys.stderr
+
+    def send(message):
+        protocol_out.write(json.dumps(message) + "\n")
+        protocol_out.flush()
+
+    try:
+        get_model(model_path)
+    except Exception as e:
+        send({"op": "ready", "ok": False, "error": f"Model load failed: {e}"})
+        sys.exit(1)
+    send({"op": "ready", "ok": True, "model": os.path.basename(model_path)})
+
+    for line in sys.stdin:
+        line = line.strip()
+        if not line:
+            continue
+        try:
+            request = json.loads(line)
+        except Exception as e:
+            send({"id": None, "ok": False, "error": str(e)})
+            continue
+        send(respond(request, model_path))
+
+# Socket server mode: frames are a 4-byte big-endian length followed by a UTF-8 JSON object
+MAX_FRAME_BYTES = 64 * 1024 * 1024
+
+def read_frame(conn):
+    header = read_exact(conn, 4)
+    if header is None:
+        return None
+    (length,) = struct.unpack(">I", header)
+    if length > MAX_FRAME_BYTES:
+        raise ValueError(f"Frame of {length} bytes exceeds the limit")
+    payload = read_exact(conn, length)
+    if payload is None:
+        return None
+    return json.loads(payload.decode("utf-8"))
+
+def read_exact(conn, length):
+    chunks = []
+    while length > 0:
+        chunk = conn.recv(min(length, 1 << 16))
+        if not chunk:
+            return None
+        chunks.append(chunk)
+        length -= len(chunk)
+    return b"".join(chunks)
+
+def serve_connection(conn, jobs, model_path):
+    lock = threading.Lock()
+
+    def send(message):
+        data = json.dumps(message).encode("utf-8")
+        try:
+            with lock:
+                conn.sendall(struct.pack(">I", len(data)) + data)
+        except OSError:
+            pass  # Client went away; its pending responses are dropped
+
+    try:
+        while True:
+            request = read_frame(conn)
+            if request is None:
+                break
+            if request.get("op") == "ping":
+                # Answered out of band, never queued behind inference
+                send(respond(request, model_path))
+            else:
+                jobs.put((send, request))
+    except Exception as e:
+        print(f"Closing detector connection: {e}", file=sys.stderr)
+    finally:
+        conn.close()
+
+def serve_main(socket_path, model_path):
+    """
+    Socket server mode. Listens on a Unix domain socket so the process (and its loaded model) outlives the
+    application that talks to it. Any number of requests may be in flight per connection; responses carry the
+    request id and can come back in any order. Inference runs on one thread, in arrival order.
+    """
+    sys.stdout = sys.stderr
+    try:
+        get_model(model_path)
+    except Exception as e:
+        print(f"Model load failed: {e}", file=sys.stderr)
+        sys.exit(1)
+
+    # Only bind once the model is loaded: a successful connect means the server is ready
+    if os.path.exists(socket_path):
+        os.unlink(socket_path)
+    server = socket.socket(socket.AF_UNIX, socket.SOCK_STREAM)
+    server.bind(socket_path)
+    server.listen()
+    print(f"Detector serving {os.path.basename(model_path)} on {socket_path}", file=sys.stderr)
+
+    jobs = queue.Queue()
+
+    def inference_loop():
+        while True:
+            send, request = jobs.get()
+            send(respond(request, model_path))
+
+    threading.Thread(target=inference_loop, daemon=True).start()
+    while True:
+        conn, _ = server.accept()
+        threading.Thread(target=serve_connection, args=(conn, jobs, model_path), daemon=True).start()
+
 if __name__ == "__main__":
+    if len(sys.argv) == 3 and sys.argv[1] == "--worker":
+        worker_main(sys.argv[2])
+        sys.exit(0)
+    if len(sys.argv) == 4 and sys.argv[1] == "--serve":
+        serve_main(sys.argv[2], sys.argv[3])
+        sys.exit(0)
+    if len(sys.argv) >= 4 and sys.argv[1] == "--check-frames":
+        reports = check_frames(sys.argv[2], sys.argv[3:])
+        print(json.dumps(reports, indent=4))
+        sys.exit(0 if all(report["ok"] for report in reports) else 1)
+
     if len(sys.argv) < 5 or len(sys.argv) > 6:
         print(json.dumps({
             "error": "Usage: python detector.py <maintenance_img_path> <baseline_img_path> <output_save_folder_path> <temp_threshold_percentage>",
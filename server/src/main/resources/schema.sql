@@ -2,8 +2,13 @@
 --  DROP TABLES (Children First, Then Parents)
 -- =================================================================
 -- These tables depend on 'inspection', so they must be dropped first.
+DROP TABLE IF EXISTS annotation_snapshots;
 DROP TABLE IF EXISTS annotation_logs;
 DROP TABLE IF EXISTS annotations;             -- <-- NEW DEPENDENCY
+DROP TABLE IF EXISTS raw_detections;
+DROP TABLE IF EXISTS id_generators;
+DROP TABLE IF EXISTS shadow_detection_results;
+DROP TABLE IF EXISTS detection_claims;
 DROP TABLE IF EXISTS anomaly_detection_result;
 DROP TABLE IF EXISTS anomaly;
 
@@ -14,6 +19,7 @@ DROP TABLE IF EXISTS thermal_image;
 DROP TABLE IF EXISTS inspection;
 
 -- 3. Continue with the rest of the tables
+DROP TABLE IF EXISTS baseline_profile;
 DROP TABLE IF EXISTS transformer;
 
 
@@ -70,13 +76,27 @@ CREATE TABLE anomaly_detection_result (
   output_image_name VARCHAR(255) DEFAULT NULL,
   overall_status VARCHAR(255) DEFAULT NULL,
   inspection_id BIGINT DEFAULT NULL,
+  threshold_percentage DOUBLE DEFAULT NULL,
+  baseline_intensity INT DEFAULT NULL,
+  inference_skipped BOOLEAN NOT NULL DEFAULT FALSE,
+  model_variant VARCHAR(16) DEFAULT NULL,
+  model_name VARCHAR(255) DEFAULT NULL,
+  inference_ms BIGINT DEFAULT NULL,
   PRIMARY KEY (id),
   UNIQUE KEY UK_inspection_id (inspection_id),
   CONSTRAINT FK_anomaly_to_inspection FOREIGN KEY (inspection_id) REFERENCES inspection(id)
 );
 
+-- Id blocks handed out to the application for annotations and raw_detections (Hibernate pooled table generator),
+-- so their inserts can be batched. next_val is the last id of the next block of 50, so a row must start at
+-- (highest existing id + 50); data.sql seeds both rows to clear the seeded annotation ids
+CREATE TABLE id_generators (
+    sequence_name VARCHAR(255) NOT NULL PRIMARY KEY,
+    next_val BIGINT
+);
+
 CREATE TABLE annotations (
-    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    id BIGINT PRIMARY KEY,
     inspection_id BIGINT NOT NULL,
     x DOUBLE NOT NULL,
     y DOUBLE NOT NULL,
@@ -96,6 +116,157 @@ CREATE TABLE annotations (
     ai_severity_score INT,
     -- NEW: Soft Delete Flag
     is_deleted BOOLEAN NOT NULL DEFAULT FALSE,
+    -- Optimistic lock version (JPA @Version), bumped on every update
+    version BIGINT NOT NULL DEFAULT 0,
+
+    FOREIGN KEY (inspection_id) REFERENCES inspection(id) ON DELETE CASCADE
+);
 
+-- Append-only history of the boxes above: one row per add, edit or delete with the box before and after the change.
+-- annotation_id is deliberately not a foreign key, the history outlives boxes that a new detection replaces
+CREATE TABLE annotation_logs (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    inspection_id BIGINT NOT NULL,
+    annotation_id BIGINT NOT NULL,
+    action VARCHAR(16) NOT NULL,      -- 'ADDED', 'EDITED' or 'DELETED'
+    cause VARCHAR(32) NOT NULL,       -- 'USER', 'DETECTION' or 'RETHRESHOLD'
+    user_id VARCHAR(255),
+    created_at DATETIME(6) NOT NULL,
+    original_source VARCHAR(255),
+    ai_confidence DOUBLE,
+    ai_severity_score INT,
+    old_x DOUBLE,
+    old_y DOUBLE,
+    old_width DOUBLE,
+    old_height DOUBLE,
+    old_fault_type VARCHAR(50),
+    old_status VARCHAR(255),
+    old_comments TEXT,
+    new_x DOUBLE,
+    new_y DOUBLE,
+    new_width DOUBLE,
+    new_height DOUBLE,
+    new_fault_type VARCHAR(50),
+    new_status VARCHAR(255),
+    new_comments TEXT,
+    INDEX idx_annotation_logs_inspection (inspection_id, id),
     FOREIGN KEY (inspection_id) REFERENCES inspection(id) ON DELETE CASCADE
-);
\ No newline at end of file
+);
+
+-- Active boxes of an inspection right after event last_log_id, so past states are rebuilt from the nearest
+-- snapshot plus the events after it
+CREATE TABLE annotation_snapshots (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    inspection_id BIGINT NOT NULL,
+    last_log_id BIGINT NOT NULL,
+    box_count INT NOT NULL,
+    boxes_json MEDIUMTEXT NOT NULL,
+    created_at DATETIME(6) NOT NULL,
+    INDEX idx_annotation_snapshots_inspection (inspection_id, last_log_id),
+    FOREIGN KEY (inspection_id) REFERENCES inspection(id) ON DELETE CASCADE
+);
+
+-- Every box the model produced (before thresholding) with the intensity metric the threshold is applied to
+CREATE TABLE raw_detections (
+    id BIGINT PRIMARY KEY,
+    inspection_id BIGINT NOT NULL,
+    box_index INT NOT NULL,
+    class_label VARCHAR(50) NOT NULL,
+    severity_score INT,
+    confidence DOUBLE NOT NULL,
+    x_min INT NOT NULL,
+    y_min INT NOT NULL,
+    x_max INT NOT NULL,
+    y_max INT NOT NULL,
+    hot_intensity DOUBLE NOT NULL,
+    INDEX idx_raw_detections_inspection (inspection_id),
+    FOREIGN KEY (inspection_id) REFERENCES inspection(id) ON DELETE CASCADE
+);
+
+-- Candidate model output recorded in shadow mode; compared with production, never shown to users
+CREATE TABLE shadow_detection_results (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    inspection_id BIGINT NOT NULL,
+    production_model VARCHAR(255) NOT NULL,
+    candidate_model VARCHAR(255) NOT NULL,
+    production_status VARCHAR(255),
+    candidate_status VARCHAR(255),
+    candidate_json_output TEXT,
+    production_boxes INT NOT NULL,
+    candidate_boxes INT NOT NULL,
+    matched_boxes INT NOT NULL,
+    status_agrees BOOLEAN NOT NULL,
+    production_latency_ms BIGINT,
+    candidate_latency_ms BIGINT NOT NULL,
+    created_at DATETIME(6) NOT NULL,
+    INDEX idx_shadow_candidate_model (candidate_model),
+    FOREIGN KEY (inspection_id) REFERENCES inspection(id) ON DELETE CASCADE
+);
+
+-- Inspections whose detection is running on some node; deleted when the run ends, expired rows belong to dead nodes
+CREATE TABLE detection_claims (
+    inspection_id BIGINT PRIMARY KEY,
+    node_id VARCHAR(255) NOT NULL,
+    request_key VARCHAR(512) NOT NULL,
+    claimed_at DATETIME(6) NOT NULL,
+    expires_at DATETIME(6) NOT NULL,
+    FOREIGN KEY (inspection_id) REFERENCES inspection(id) ON DELETE CASCADE
+);
+
+-- Baseline statistics computed at upload time, one row per transformer and environmental condition
+CREATE TABLE baseline_profile (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    transformer_id BIGINT NOT NULL,
+    environmental_condition VARCHAR(20) NOT NULL,
+    image_name VARCHAR(255) NOT NULL,
+    image_sha256 VARCHAR(64) NOT NULL,
+    median_intensity INT NOT NULL,
+    histogram_json TEXT,
+    width INT NOT NULL,
+    height INT NOT NULL,
+    computed_at DATETIME(6),
+    UNIQUE KEY UK_baseline_profile_condition (transformer_id, environmental_condition),
+    FOREIGN KEY (transformer_id) REFERENCES transformer(id) ON DELETE CASCADE
+);
+
+
+-- =================================================================
+--  PERSISTENT TABLES (kept across restarts, never dropped)
+-- =================================================================
+
+-- Detector output cache keyed by content hashes; it references images by file name only
+CREATE TABLE IF NOT EXISTS detection_cache (
+    cache_key VARCHAR(64) NOT NULL PRIMARY KEY,
+    maintenance_sha256 VARCHAR(64) NOT NULL,
+    baseline_sha256 VARCHAR(64) NOT NULL,
+    threshold_percentage DOUBLE NOT NULL,
+    model_version VARCHAR(255) NOT NULL,
+    overall_status VARCHAR(255),
+    output_image_name VARCHAR(255),
+    detector_output MEDIUMTEXT NOT NULL,
+    size_bytes BIGINT NOT NULL,
+    hit_count BIGINT NOT NULL DEFAULT 0,
+    created_at DATETIME(6) NOT NULL,
+    last_accessed_at DATETIME(6) NOT NULL,
+    INDEX idx_detection_cache_last_accessed (last_accessed_at)
+);
+
+-- Registered YOLO model versions; exactly one row has status PRODUCTION
+CREATE TABLE IF NOT EXISTS model_versions (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    model_name VARCHAR(255) NOT NULL,
+    sha256 VARCHAR(64),
+    size_bytes BIGINT,
+    status VARCHAR(255) NOT NULL,
+    epochs INT,
+    metric_precision DOUBLE,
+    metric_recall DOUBLE,
+    map50 DOUBLE,
+    map50_95 DOUBLE,
+    previous_version_id BIGINT,
+    created_at DATETIME(6) NOT NULL,
+    promoted_at DATETIME(6),
+    retired_at DATETIME(6),
+    CONSTRAINT uk_model_versions_name UNIQUE (model_name),
+    INDEX idx_model_versions_status (status)
+);
@@ -2,6 +2,81 @@ import argparse
 import os
 from ultralytics import YOLO
 
+def export_onnx(model_path, imgsz=640):
+    """
+    Exports the model to ONNX next to it (best.pt -> best.onnx) for the server's in-JVM backend
+    (ml.detector.backend=onnx). A failed export does not fail the training run.
+    """
+    try:
+        exported = YOLO(model_path).export(format='onnx', imgsz=imgsz, simplify=True)
+        print(f"ONNX export saved to: {exported}")
+        return exported
+    except Exception as e:
+        print(f"Warning: ONNX export of {model_path} failed: {e}", flush=True)
+        return None
+
+class _CalibrationImages:
+    """
+    Feeds dataset images to ONNX Runtime's static quantization, preprocessed the way Ultralytics
+    does at inference time (letterbox to imgsz, RGB, 0-1, NCHW), so activation ranges match real inputs.
+    """
+
+    def __init__(self, input_name, image_paths, imgsz):
+        self.input_name = input_name
+        self.image_paths = iter(image_paths)
+        self.imgsz = imgsz
+
+    def get_next(self):
+        import cv2
+        import numpy as np
+        for path in self.image_paths:
+            image = cv2.imread(path)
+            if image is None:
+                continue
+            h, w = image.shape[:2]
+            scale = min(self.imgsz / h, self.imgsz / w)
+            nh, nw = round(h * scale), round(w * scale)
+            resized = cv2.resize(image, (nw, nh), interpolation=cv2.INTER_LINEAR)
+            canvas = np.full((self.imgsz, self.imgsz, 3), 114, dtype=np.uint8)
+            top, left = (self.imgsz - nh) // 2, (self.imgsz - nw) // 2
+            canvas[top:top + nh, left:left + nw] = resized
+            tensor = canvas[:, :, ::-1].transpose(2, 0, 1)[None].astype(np.float32) / 255.0
+            return {self.input_name: np.ascontiguousarray(tensor)}
+        return None
+
+
+def export_int8(model_path, calibration_dir=None, imgsz=640, max_calibration_images=64):
+    """
+    Writes the INT8 CPU variant next to the model (best.pt -> best.int8.onnx), the server's "fast" detection
+    variant. Static quantization calibrated on calibration_dir's images when there are any, otherwise
+    weight-only dynamic quantization. A failed export does not fail the training run.
+    """
+    stem = os.path.splitext(model_path)[0]
+    onnx_path = stem + ".onnx"
+    int8_path = stem + ".int8.onnx"
+    try:
+        if not os.path.exists(onnx_path) and not export_onnx(model_path, imgsz):
+            return None
+        from onnxruntime import InferenceSession
+        from onnxruntime.quantization import QuantFormat, QuantType, quantize_dynamic, quantize_static
+
+        images = []
+        if calibration_dir and os.path.isdir(calibration_dir):
+            images = sorted(os.path.join(calibration_dir, name) for name in os.listdir(calibration_dir)
+                            if name.lower().endswith((".jpg", ".jpeg", ".png", ".bmp")))[:max_calibration_images]
+        if images:
+            input_name = InferenceSession(onnx_path, providers=["CPUExecutionProvider"]).get_inputs()[0].name
+            quantize_static(onnx_path, int8_path, _CalibrationImages(input_name, images, imgsz),
+                            quant_format=QuantFormat.QDQ, per_channel=True,
+                            activation_type=QuantType.QUInt8, weight_type=QuantType.QInt8)
+        else:
+            quantize_dynamic(onnx_path, int8_path, weight_type=QuantType.QUInt8)
+        print(f"INT8 export saved to: {int8_path} ({'static, ' + str(len(images)) + ' calibration images' if images else 'dynamic'})")
+        return int8_path
+    except Exception as e:
+        print(f"Warning: INT8 export of {model_path} failed: {e}", flush=True)
+        return None
+
 def fine_tune_yolo_model(data_yaml_path, initial_model_path, output_path):
     """
     Runs the YOLO fine-tuning process.
@@ -37,6 +112,9 @@ def fine_tune_yolo_model(data_yaml_path, initial_model_path, output_path):
         # Save the best model to the exact path requested by Java
         os.rename(final_model_source, output_path)
         print(f"Training complete. Best model saved to: {output_path}")
+        export_onnx(output_path)
+        # Calibrated on the images the model was just trained on
+        export_int8(output_path, os.path.join(os.path.dirname(data_yaml_path), 'images'))
 
     else:
         raise FileNotFoundError(f"Trained model not found at expected path: {final_model_source}")
@@ -44,12 +122,22 @@ def fine_tune_yolo_model(data_yaml_path, initial_model_path, output_path):
 
 if __name__ == '__main__':
     parser = argparse.ArgumentParser(description="YOLO Model Fine-Tuning Script.")
-    parser.add_argument('--data_yaml', required=True, help="Path to the data.yaml file.")
-    parser.add_argument('--initial_model', required=True, help="Path to the initial .pt model file.")
-    parser.add_argument('--output_path', required=True, help="Full path where the final fine-tuned model (.pt) should be saved.")
+    parser.add_argument('--data_yaml', help="Path to the data.yaml file.")
+    parser.add_argument('--initial_model', help="Path to the initial .pt model file.")
+    parser.add_argument('--output_path', help="Full path where the final fine-tuned model (.pt) should be saved.")
+    parser.add_argument('--export_onnx', metavar='MODEL_PT', help="Only export an existing .pt model to ONNX and exit.")
+    parser.add_argument('--export_int8', metavar='MODEL_PT', help="Only export an existing .pt model to INT8 ONNX and exit.")
+    parser.add_argument('--calibration_dir', help="Images to calibrate the INT8 export with (with --export_int8).")
 
     args = parser.parse_args()
 
+    if args.export_onnx:
+        exit(0 if export_onnx(args.export_onnx) else 1)
+    if args.export_int8:
+        exit(0 if export_int8(args.export_int8, args.calibration_dir) else 1)
+    if not (args.data_yaml and args.initial_model and args.output_path):
+        parser.error("--data_yaml, --initial_model and --output_path are required for training.")
+
     try:
         fine_tune_yolo_model(args.data_yaml, args.initial_model, args.output_path)
     except Exception as e:
@@ -0,0 +1,99 @@
+package com.university.transformer.oversight;
+
+import com.university.transformer.oversight.model.Annotation;
+import com.university.transformer.oversight.model.Inspection;
+import com.university.transformer.oversight.model.Transformer;
+import com.university.transformer.oversight.repository.AnnotationRepository;
+import com.university.transformer.oversight.repository.InspectionRepository;
+import com.university.transformer.oversight.repository.TransformerRepository;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Round trips to MySQL for saving a detection's worth of annotations, one statement per row (what IDENTITY ids
+ * forced) against the configured JDBC batching. Counts the server's Questions status for the session, i.e.
+ * statements the client actually sent (id blocks are reserved on a separate connection): one per row unbatched,
+ * one per hibernate.jdbc.batch_size rows batched, since rewriteBatchedStatements sends each batch as one INSERT.
+ * Needs the configured MySQL database; run with -Dbenchmarks=true.
+ */
+@SpringBootTest
+@Transactional
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class AnnotationBatchInsertBenchmarkTests {
+
+	private static final Logger logger = LoggerFactory.getLogger(AnnotationBatchInsertBenchmarkTests.class);
+
+	private static final int ROWS = 2_000;
+
+	@Value("${spring.jpa.properties.hibernate.jdbc.batch_size}")
+	private int batchSize;
+
+	@Autowired private AnnotationRepository annotationRepository;
+	@Autowired private InspectionRepository inspectionRepository;
+	@Autowired private TransformerRepository transformerRepository;
+	@Autowired private EntityManager entityManager;
+
+	@Test
+	void batchedInsertsNeedFarFewerRoundTrips() {
+		Transformer transformer = new Transformer();
+		transformer.setTransformerId("BENCH-" + System.nanoTime());
+		transformer = transformerRepository.save(transformer);
+		Inspection inspection = new Inspection();
+		inspection.setInspectionNo("BENCH");
+		inspection.setTransformer(transformer);
+		inspection = inspectionRepository.saveAndFlush(inspection);
+
+		Session session = entityManager.unwrap(Session.class);
+		long unbatched = roundTrips(session, inspection, 1);
+		long batched = roundTrips(session, inspection, null);
+
+		logger.info("Saving {} annotations: {} round trips unbatched, {} batched", ROWS, unbatched, batched);
+		assertEquals(ROWS, unbatched);
+		assertEquals((ROWS + batchSize - 1) / batchSize, batched);
+	}
+
+	// jdbcBatchSize null means the configured hibernate.jdbc.batch_size
+	private long roundTrips(Session session, Inspection inspection, Integer jdbcBatchSize) {
+		session.setJdbcBatchSize(jdbcBatchSize);
+		List<Annotation> annotations = new ArrayList<>();
+		for (int i = 0; i < ROWS; i++) {
+			Annotation annotation = new Annotation();
+			annotation.setInspection(inspection);
+			annotation.setCurrentStatus("INITIAL_AI");
+			annotation.setOriginalSource("AI");
+			annotation.setX(i);
+			annotation.setY(i);
+			annotation.setWidth(10);
+			annotation.setHeight(10);
+			annotation.setFaultType("Faulty");
+			annotation.setTimestamp(LocalDateTime.now());
+			annotations.add(annotation);
+		}
+		long before = questions();
+		annotationRepository.saveAll(annotations);
+		annotationRepository.flush();
+		long after = questions();
+		annotations.forEach(entityManager::detach);
+		// The status query itself is one question
+		return after - before - 1;
+	}
+
+	private long questions() {
+		Object[] row = (Object[]) entityManager.createNativeQuery("SHOW SESSION STATUS LIKE 'Questions'").getSingleResult();
+		return Long.parseLong(row[1].toString());
+	}
+}
@@ -0,0 +1,220 @@
+package com.university.transformer.oversight.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.university.transformer.oversight.dto.AnnotationDTO;
+import com.university.transformer.oversight.model.Annotation;
+import com.university.transformer.oversight.model.AnnotationLog;
+import com.university.transformer.oversight.model.AnnotationSnapshot;
+import com.university.transformer.oversight.model.Inspection;
+import com.university.transformer.oversight.repository.AnnotationLogRepository;
+import com.university.transformer.oversight.repository.AnnotationRepository;
+import com.university.transformer.oversight.repository.AnnotationSnapshotRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Event log and snapshots over in-memory repositories. Five changes are made through the public API with a snapshot
+ * every three events, so some states rebuild from a snapshot plus later events and others from the log alone.
+ */
+class AnnotationHistoryTests {
+
+	private static final int SNAPSHOT_INTERVAL = 3;
+
+	private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+	private final AtomicLong nextLogId = new AtomicLong();
+	private List<AnnotationLog> log;
+	private List<AnnotationSnapshot> snapshots;
+	private AnnotationLogRepository logRepository;
+	private Inspection inspection;
+	// The inspection's active boxes, as the annotations table holds them
+	private Map<Long, Annotation> active;
+	private AtomicInteger activeReads;
+
+	@BeforeEach
+	void setUp() {
+		log = new ArrayList<>();
+		snapshots = new ArrayList<>();
+		logRepository = logRepository();
+		inspection = new Inspection();
+		inspection.setId(1L);
+		active = new TreeMap<>();
+		activeReads = new AtomicInteger();
+	}
+
+	@Test
+	void takesASnapshotOfTheActiveBoxesEveryIntervalEvents() {
+		AnnotationHistory history = history(SNAPSHOT_INTERVAL, snapshots);
+		add(history, box(1L, 10));
+		add(history, box(2L, 20));
+		assertEquals(List.of(), snapshots);
+		assertEquals(0, activeReads.get());
+
+		edit(history, 1L, 15);
+
+		assertEquals(1, snapshots.size());
+		AnnotationSnapshot snapshot = snapshots.get(0);
+		assertEquals(3L, snapshot.getLastLogId());
+		assertEquals(2, snapshot.getBoxCount());
+		assertEquals(1, activeReads.get());
+
+		delete(history, 2L);
+		add(history, box(3L, 30));
+		assertEquals(1, snapshots.size());
+		// One change replacing several boxes counts all of its events
+		history.replaced(inspection, List.of(active.get(1L)), List.of(box(4L, 40)), AnnotationHistory.CAUSE_DETECTION);
+		assertEquals(2, snapshots.size());
+		assertEquals(7L, snapshots.get(1).getLastLogId());
+	}
+
+	@Test
+	void rebuildsAnyEventWithOrWithoutASnapshot() {
+		AnnotationHistory history = history(SNAPSHOT_INTERVAL, snapshots);
+		add(history, box(1L, 10));   // 1
+		add(history, box(2L, 20));   // 2
+		edit(history, 1L, 15);       // 3, snapshot
+		delete(history, 2L);         // 4
+		add(history, box(3L, 30));   // 5
+		assertEquals(1, snapshots.size());
+
+		AnnotationHistory replayOnly = history(SNAPSHOT_INTERVAL, List.of());
+		for (long eventId = 1; eventId <= log.size(); eventId++) {
+			assertEquals(withoutTimestamps(replayOnly.rebuild(inspection.getId(), eventId)),
+					withoutTimestamps(history.rebuild(inspection.getId(), eventId)), "event " + eventId);
+		}
+
+		assertEquals(List.of("1@10.0", "2@20.0"), positions(history.rebuild(inspection.getId(), 2L)));
+		assertEquals(List.of("1@15.0", "2@20.0"), positions(history.rebuild(inspection.getId(), 3L)));
+		assertEquals(List.of("1@15.0"), positions(history.rebuild(inspection.getId(), 4L)));
+		assertEquals(List.of("1@15.0", "3@30.0"), positions(history.rebuild(inspection.getId(), null)));
+	}
+
+	@Test
+	void rebuiltBoxesCarryNoVersion() {
+		AnnotationHistory history = history(SNAPSHOT_INTERVAL, snapshots);
+		add(history, box(1L, 10));
+		add(history, box(2L, 20));
+		edit(history, 1L, 15);
+		add(history, box(3L, 30));
+
+		// Event 3 comes from the snapshot alone, event 4 adds a replayed box on top of it
+		for (long eventId : new long[] {3L, 4L}) {
+			for (AnnotationDTO box : history.rebuild(inspection.getId(), eventId)) {
+				assertNull(box.getVersion(), "box " + box.getId() + " at event " + eventId);
+			}
+		}
+	}
+
+	private AnnotationHistory history(int snapshotInterval, List<AnnotationSnapshot> stored) {
+		AnnotationSnapshotRepository snapshotRepository = mock(AnnotationSnapshotRepository.class);
+		when(snapshotRepository.save(any())).thenAnswer(invocation -> {
+			AnnotationSnapshot snapshot = invocation.getArgument(0);
+			snapshot.setId((long) stored.size() + 1);
+			stored.add(snapshot);
+			return snapshot;
+		});
+		when(snapshotRepository.findFirstByInspectionIdOrderByLastLogIdDesc(anyLong()))
+				.thenAnswer(invocation -> stored.stream().max(Comparator.comparing(AnnotationSnapshot::getLastLogId)));
+		when(snapshotRepository.findFirstByInspectionIdAndLastLogIdLessThanEqualOrderByLastLogIdDesc(anyLong(), anyLong()))
+				.thenAnswer(invocation -> {
+					long upTo = invocation.getArgument(1);
+					return stored.stream()
+							.filter(snapshot -> snapshot.getLastLogId() <= upTo)
+							.max(Comparator.comparing(AnnotationSnapshot::getLastLogId));
+				});
+		return new AnnotationHistory(logRepository, snapshotRepository, mock(AnnotationRepository.class), objectMapper,
+				snapshotInterval);
+	}
+
+	private AnnotationLogRepository logRepository() {
+		AnnotationLogRepository repository = mock(AnnotationLogRepository.class);
+		when(repository.saveAll(any())).thenAnswer(invocation -> {
+			List<AnnotationLog> events = invocation.getArgument(0);
+			for (AnnotationLog event : events) {
+				event.setId(nextLogId.incrementAndGet());
+				log.add(event);
+			}
+			return events;
+		});
+		when(repository.countByInspectionIdAndIdGreaterThan(eq(1L), anyLong())).thenAnswer(invocation -> {
+			long after = invocation.getArgument(1);
+			return log.stream().filter(event -> event.getId() > after).count();
+		});
+		when(repository.findByInspectionIdAndIdGreaterThanAndIdLessThanEqualOrderByIdAsc(eq(1L), anyLong(), anyLong()))
+				.thenAnswer(invocation -> {
+					long after = invocation.getArgument(1);
+					long upTo = invocation.getArgument(2);
+					return log.stream().filter(event -> event.getId() > after && event.getId() <= upTo).toList();
+				});
+		return repository;
+	}
+
+	private void add(AnnotationHistory history, Annotation annotation) {
+		active.put(annotation.getId(), annotation);
+		history.append(inspection, List.of(history.added(annotation, AnnotationHistory.CAUSE_USER)), activeBoxes());
+	}
+
+	private void edit(AnnotationHistory history, Long id, double x) {
+		Annotation annotation = active.get(id);
+		AnnotationLog event = history.editing(annotation);
+		annotation.setX(x);
+		annotation.setVersion(annotation.getVersion() + 1);
+		history.edited(event, annotation);
+		history.append(inspection, List.of(event), activeBoxes());
+	}
+
+	private void delete(AnnotationHistory history, Long id) {
+		Annotation annotation = active.remove(id);
+		history.append(inspection, List.of(history.deleted(annotation, AnnotationHistory.CAUSE_USER, "inspector")), activeBoxes());
+	}
+
+	private Supplier<List<Annotation>> activeBoxes() {
+		return () -> {
+			activeReads.incrementAndGet();
+			return new ArrayList<>(active.values());
+		};
+	}
+
+	private Annotation box(Long id, double x) {
+		Annotation annotation = new Annotation();
+		annotation.setId(id);
+		annotation.setInspection(inspection);
+		annotation.setCurrentStatus("USER_ADDED");
+		annotation.setOriginalSource("USER");
+		annotation.setX(x);
+		annotation.setY(5);
+		annotation.setWidth(8);
+		annotation.setHeight(6);
+		annotation.setFaultType("Loose Joint");
+		annotation.setUserId("inspector");
+		annotation.setVersion(0L);
+		return annotation;
+	}
+
+	// A snapshot keeps a box's own timestamp and an event its creation time; every other field must match
+	private static List<AnnotationDTO> withoutTimestamps(List<AnnotationDTO> boxes) {
+		boxes.forEach(box -> box.setTimestamp(null));
+		return boxes;
+	}
+
+	private static List<String> positions(List<AnnotationDTO> boxes) {
+		return boxes.stream().map(box -> box.getId() + "@" + box.getX()).collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,217 @@
+package com.university.transformer.oversight.service.impl;
+
+import com.university.transformer.oversight.dto.AnnotationDTO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks every R-tree query against a brute-force scan over the same boxes. Sizes around NODE_CAPACITY cover a
+ * single leaf, the first split and multi-level trees; boxes are snapped to a coarse grid so touching edges are common.
+ */
+class AnnotationRTreeTests {
+
+	private static final int QUERIES = 300;
+
+	@ParameterizedTest
+	@ValueSource(ints = {0, 1, 16, 17, 300, 700})
+	void intersectingMatchesBruteForce(int size) {
+		Random random = new Random(size);
+		List<AnnotationDTO> boxes = randomBoxes(random, size);
+		AnnotationRTree tree = AnnotationRTree.build(new ArrayList<>(boxes));
+		assertEquals(size, tree.size());
+
+		for (int i = 0; i < QUERIES; i++) {
+			double x = grid(random, 640);
+			double y = grid(random, 480);
+			// Negative sizes: the query rectangle is taken as drawn, like the boxes
+			double width = grid(random, 200) - 100;
+			double height = grid(random, 200) - 100;
+			Set<Long> expected = new HashSet<>();
+			for (AnnotationDTO box : boxes) {
+				if (intersects(box, Math.min(x, x + width), Math.min(y, y + height), Math.max(x, x + width), Math.max(y, y + height))) {
+					expected.add(box.getId());
+				}
+			}
+			assertEquals(expected, ids(tree.intersecting(x, y, width, height)));
+		}
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {0, 1, 16, 17, 300, 700})
+	void nearestMatchesBruteForce(int size) {
+		Random random = new Random(31L * size);
+		List<AnnotationDTO> boxes = randomBoxes(random, size);
+		AnnotationRTree tree = AnnotationRTree.build(new ArrayList<>(boxes));
+
+		for (int i = 0; i < QUERIES; i++) {
+			double x = random.nextDouble() * 700 - 30;
+			double y = random.nextDouble() * 540 - 30;
+			int count = 1 + random.nextInt(5);
+			List<Double> expected = boxes.stream().map(box -> distance(box, x, y)).sorted().limit(count).toList();
+			List<AnnotationDTO> nearest = tree.nearest(x, y, count);
+			assertEquals(expected.size(), nearest.size());
+			for (int k = 0; k < nearest.size(); k++) {
+				assertEquals(expected.get(k), distance(nearest.get(k), x, y), 1e-9);
+			}
+		}
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {0, 1, 16, 17, 300, 700})
+	void overlappingMatchesBruteForce(int size) {
+		Random random = new Random(17L * size + 1);
+		List<AnnotationDTO> boxes = randomBoxes(random, size);
+		AnnotationRTree tree = AnnotationRTree.build(new ArrayList<>(boxes));
+
+		for (double minIou : new double[]{0.0, 0.1, 0.5}) {
+			for (boolean crossSourceOnly : new boolean[]{false, true}) {
+				Set<String> expected = new HashSet<>();
+				for (int i = 0; i < boxes.size(); i++) {
+					for (int j = i + 1; j < boxes.size(); j++) {
+						AnnotationDTO a = boxes.get(i);
+						AnnotationDTO b = boxes.get(j);
+						if (crossSourceOnly && a.getOriginalSource().equals(b.getOriginalSource())) {
+							continue;
+						}
+						if (iou(a, b) > minIou) {
+							expected.add(pairKey(a, b));
+						}
+					}
+				}
+				List<AnnotationRTree.Overlap> overlaps = tree.overlapping(minIou, crossSourceOnly);
+				Set<String> actual = new HashSet<>();
+				for (AnnotationRTree.Overlap overlap : overlaps) {
+					assertEquals(iou(overlap.getFirst(), overlap.getSecond()), overlap.getIou(), 1e-12);
+					actual.add(pairKey(overlap.getFirst(), overlap.getSecond()));
+				}
+				// Each pair is reported exactly once
+				assertEquals(actual.size(), overlaps.size());
+				assertEquals(expected, actual, "minIou " + minIou + ", crossSourceOnly " + crossSourceOnly);
+			}
+		}
+	}
+
+	@Test
+	void touchingBoxesIntersectButDoNotOverlap() {
+		AnnotationDTO left = box(1, 0, 0, 10, 10, "AI");
+		AnnotationDTO right = box(2, 10, 0, 10, 10, "USER");
+		AnnotationDTO corner = box(3, 20, 10, 5, 5, "USER");
+		AnnotationRTree tree = AnnotationRTree.build(new ArrayList<>(List.of(left, right, corner)));
+
+		assertEquals(Set.of(1L, 2L), ids(tree.intersecting(10, 5, 0, 0)));
+		assertEquals(Set.of(2L, 3L), ids(tree.intersecting(20, 10, 0, 0)));
+		// Shared edges and corners have no area, so IoU is 0 and never above a threshold of 0
+		assertTrue(tree.overlapping(0.0, false).isEmpty());
+		assertEquals(0.0, distance(tree.nearest(10, 5, 1).get(0), 10, 5));
+	}
+
+	@Test
+	void negativeSizeBoxesAreTakenAsDrawn() {
+		// Dragged up and to the left from (50, 50): covers [20, 50] x [30, 50]
+		AnnotationDTO dragged = box(1, 50, 50, -30, -20, "USER");
+		AnnotationDTO same = box(2, 20, 30, 30, 20, "AI");
+		AnnotationRTree tree = AnnotationRTree.build(new ArrayList<>(List.of(dragged, same)));
+
+		assertEquals(Set.of(1L, 2L), ids(tree.intersecting(25, 35, 1, 1)));
+		assertTrue(tree.intersecting(51, 51, 5, 5).isEmpty());
+		List<AnnotationRTree.Overlap> overlaps = tree.overlapping(0.99, true);
+		assertEquals(1, overlaps.size());
+		assertEquals(1.0, overlaps.get(0).getIou(), 1e-12);
+	}
+
+	@Test
+	void identicalBoxesArePairedOnce() {
+		List<AnnotationDTO> boxes = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			boxes.add(box(i + 1, 100, 100, 40, 30, "AI"));
+		}
+		AnnotationRTree tree = AnnotationRTree.build(new ArrayList<>(boxes));
+
+		assertEquals(20 * 19 / 2, tree.overlapping(0.5, false).size());
+		assertTrue(tree.overlapping(0.5, true).isEmpty());
+	}
+
+	// Mostly small boxes on a 5 px grid, some of them with negative width or height
+	private static List<AnnotationDTO> randomBoxes(Random random, int size) {
+		List<AnnotationDTO> boxes = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			double width = 5 + grid(random, 60);
+			double height = 5 + grid(random, 60);
+			if (random.nextInt(8) == 0) {
+				width = -width;
+			}
+			if (random.nextInt(8) == 0) {
+				height = -height;
+			}
+			boxes.add(box(i + 1, grid(random, 600), grid(random, 450), width, height, random.nextBoolean() ? "AI" : "USER"));
+		}
+		return boxes;
+	}
+
+	private static double grid(Random random, int range) {
+		return 5 * random.nextInt(range / 5 + 1);
+	}
+
+	private static AnnotationDTO box(long id, double x, double y, double width, double height, String source) {
+		AnnotationDTO box = new AnnotationDTO();
+		box.setId(id);
+		box.setX(x);
+		box.setY(y);
+		box.setWidth(width);
+		box.setHeight(height);
+		box.setOriginalSource(source);
+		return box;
+	}
+
+	// {minX, minY, maxX, maxY} of a box as drawn
+	private static double[] bounds(AnnotationDTO box) {
+		return new double[]{
+				Math.min(box.getX(), box.getX() + box.getWidth()), Math.min(box.getY(), box.getY() + box.getHeight()),
+				Math.max(box.getX(), box.getX() + box.getWidth()), Math.max(box.getY(), box.getY() + box.getHeight())};
+	}
+
+	private static boolean intersects(AnnotationDTO box, double minX, double minY, double maxX, double maxY) {
+		double[] b = bounds(box);
+		return b[0] <= maxX && minX <= b[2] && b[1] <= maxY && minY <= b[3];
+	}
+
+	private static double distance(AnnotationDTO box, double x, double y) {
+		double[] b = bounds(box);
+		double dx = Math.max(0, Math.max(b[0] - x, x - b[2]));
+		double dy = Math.max(0, Math.max(b[1] - y, y - b[3]));
+		return Math.sqrt(dx * dx + dy * dy);
+	}
+
+	private static double iou(AnnotationDTO first, AnnotationDTO second) {
+		double[] a = bounds(first);
+		double[] b = bounds(second);
+		double width = Math.min(a[2], b[2]) - Math.max(a[0], b[0]);
+		double height = Math.min(a[3], b[3]) - Math.max(a[1], b[1]);
+		if (width <= 0 || height <= 0) {
+			return 0;
+		}
+		double intersection = width * height;
+		return intersection / ((a[2] - a[0]) * (a[3] - a[1]) + (b[2] - b[0]) * (b[3] - b[1]) - intersection);
+	}
+
+	private static Set<Long> ids(List<AnnotationDTO> boxes) {
+		Set<Long> ids = new HashSet<>();
+		boxes.forEach(box -> ids.add(box.getId()));
+		assertEquals(boxes.size(), ids.size(), "a box was returned twice");
+		return ids;
+	}
+
+	private static String pairKey(AnnotationDTO a, AnnotationDTO b) {
+		return Math.min(a.getId(), b.getId()) + "-" + Math.max(a.getId(), b.getId());
+	}
+}
@@ -0,0 +1,99 @@
+package com.university.transformer.oversight.service.impl;
+
+import com.university.transformer.oversight.exception.ResourceNotFoundException;
+import com.university.transformer.oversight.model.Annotation;
+import com.university.transformer.oversight.repository.AnnotationLogRepository;
+import com.university.transformer.oversight.repository.AnnotationRepository;
+import com.university.transformer.oversight.repository.InspectionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The per-image R-tree is rebuilt exactly when the inspection's annotation log count moves.
+ */
+class AnnotationSpatialServiceImplTests {
+
+	private AnnotationRepository annotationRepository;
+	private AnnotationLogRepository logRepository;
+	private InspectionRepository inspectionRepository;
+	private AnnotationSpatialServiceImpl service;
+
+	@BeforeEach
+	void setUp() {
+		annotationRepository = mock(AnnotationRepository.class);
+		logRepository = mock(AnnotationLogRepository.class);
+		inspectionRepository = mock(InspectionRepository.class);
+		when(inspectionRepository.existsById(anyLong())).thenReturn(true);
+		service = new AnnotationSpatialServiceImpl(annotationRepository, logRepository, inspectionRepository, new SimpleMeterRegistry(), 2);
+	}
+
+	@Test
+	void reusesTheTreeUntilTheLogCountChanges() {
+		when(logRepository.countByInspectionId(1L)).thenReturn(3L);
+		when(annotationRepository.findByInspectionIdAndIsDeletedFalse(1L)).thenReturn(List.of(annotation(10L, 0, 0)));
+
+		assertEquals(1, service.findIntersecting(1L, 0, 0, 5, 5).size());
+		assertEquals(1, service.findNearest(1L, 100, 100, 1).size());
+		verify(annotationRepository, times(1)).findByInspectionIdAndIsDeletedFalse(1L);
+
+		// Another write (on any node) appended to the log: the next query sees the new boxes
+		when(logRepository.countByInspectionId(1L)).thenReturn(4L);
+		when(annotationRepository.findByInspectionIdAndIsDeletedFalse(1L))
+				.thenReturn(List.of(annotation(10L, 0, 0), annotation(11L, 2, 2)));
+
+		assertEquals(2, service.findIntersecting(1L, 0, 0, 5, 5).size());
+		verify(annotationRepository, times(2)).findByInspectionIdAndIsDeletedFalse(1L);
+	}
+
+	@Test
+	void keepsOnlyTheMostRecentlyQueriedImages() {
+		for (long inspectionId = 1; inspectionId <= 3; inspectionId++) {
+			when(logRepository.countByInspectionId(inspectionId)).thenReturn(1L);
+			when(annotationRepository.findByInspectionIdAndIsDeletedFalse(inspectionId)).thenReturn(List.of(annotation(inspectionId, 0, 0)));
+			service.findIntersecting(inspectionId, 0, 0, 1, 1);
+		}
+		// Capacity 2: inspection 1 was evicted, 3 is still cached
+		service.findIntersecting(3L, 0, 0, 1, 1);
+		service.findIntersecting(1L, 0, 0, 1, 1);
+		verify(annotationRepository, times(1)).findByInspectionIdAndIsDeletedFalse(3L);
+		verify(annotationRepository, times(2)).findByInspectionIdAndIsDeletedFalse(1L);
+	}
+
+	@Test
+	void unknownInspectionIsNotFound() {
+		when(inspectionRepository.existsById(9L)).thenReturn(false);
+
+		assertThrows(ResourceNotFoundException.class, () -> service.findIntersecting(9L, 0, 0, 1, 1));
+		verify(annotationRepository, never()).findByInspectionIdAndIsDeletedFalse(9L);
+	}
+
+	@Test
+	void rejectsInvalidArguments() {
+		assertThrows(IllegalArgumentException.class, () -> service.findNearest(1L, 0, 0, 0));
+		assertThrows(IllegalArgumentException.class, () -> service.findOverlappingPairs(1L, 1.0, false));
+		assertThrows(IllegalArgumentException.class, () -> service.findOverlappingPairs(1L, -0.1, false));
+	}
+
+	private static Annotation annotation(Long id, double x, double y) {
+		Annotation annotation = new Annotation();
+		annotation.setId(id);
+		annotation.setX(x);
+		annotation.setY(y);
+		annotation.setWidth(3);
+		annotation.setHeight(3);
+		annotation.setOriginalSource("AI");
+		return annotation;
+	}
+}
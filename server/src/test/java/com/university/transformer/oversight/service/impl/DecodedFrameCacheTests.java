@@ -0,0 +1,144 @@
+package com.university.transformer.oversight.service.impl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Frames written by detector.py (cv2) are what Java reads back, and Java's own ImageIO frames are tagged so the
+ * detector never feeds them to YOLO. The parity check on the seeded images needs a Python with cv2 and ultralytics
+ * (-Dml.detector.python-executable, default python) and is skipped without one.
+ */
+class DecodedFrameCacheTests {
+
+	// Seeded by data.sql: an RGBA PNG (alpha is where ImageIO and cv2 disagree) and a JPEG
+	private static final List<String> SEEDED_IMAGES = List.of(
+			"467f7691-ac5e-4b35-8048-bd9dea5a848d_T2_faulty_001.png",
+			"185e265c-2d4c-4160-af75-3577f1141464_T12_faulty_001.jpg");
+
+	private Path root;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		root = Files.createTempDirectory("frames");
+	}
+
+	@AfterEach
+	void tearDown() throws IOException {
+		try (Stream<Path> paths = Files.walk(root)) {
+			for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+				Files.delete(path);
+			}
+		}
+	}
+
+	@Test
+	void readsTheDetectorsFrameInsteadOfDecoding() throws IOException {
+		DecodedFrameCache cache = new DecodedFrameCache(root.toString(), true);
+		Path image = root.resolve("not-decodable.png");
+		Files.writeString(image, "not an image");
+		// Two pixels, BGR: pure blue and pure red
+		byte[] pixels = {(byte) 255, 0, 0, 0, 0, (byte) 255};
+		writeFrame(cache.detectorFrame(image).orElseThrow(), "TFRC", 2, 1, pixels);
+
+		BufferedImage read = cache.read(image);
+
+		assertEquals(2, read.getWidth());
+		assertEquals(1, read.getHeight());
+		assertEquals(0x0000FF, read.getRGB(0, 0) & 0xFFFFFF);
+		assertEquals(0xFF0000, read.getRGB(1, 0) & 0xFFFFFF);
+	}
+
+	@Test
+	void tagsItsOwnFramesSoTheDetectorIgnoresThem() throws IOException {
+		DecodedFrameCache cache = new DecodedFrameCache(root.toString(), true);
+		Path image = root.resolve("rgba.png");
+		BufferedImage rgba = new BufferedImage(3, 2, BufferedImage.TYPE_INT_ARGB);
+		rgba.setRGB(0, 0, 0x80FF0000);
+		ImageIO.write(rgba, "png", image.toFile());
+
+		cache.read(image);
+
+		Path frame = cache.detectorFrame(image).orElseThrow();
+		assertTrue(Files.isRegularFile(frame));
+		byte[] magic = new byte[4];
+		System.arraycopy(Files.readAllBytes(frame), 0, magic, 0, 4);
+		assertArrayEquals("TFRM".getBytes(StandardCharsets.US_ASCII), magic);
+	}
+
+	@Test
+	void offersNoFrameWhenDisabled() {
+		DecodedFrameCache cache = new DecodedFrameCache(root.toString(), false);
+		assertEquals(Optional.empty(), cache.detectorFrame(root.resolve("image.jpg")));
+	}
+
+	@Test
+	void seededImagesGiveTheDetectorTheSamePixelsWithAndWithoutAFrame() throws Exception {
+		String python = System.getProperty("ml.detector.python-executable", "python");
+		List<Path> images = SEEDED_IMAGES.stream().map(name -> Paths.get("..", "uploads", name)).toList();
+		assumeTrue(images.stream().allMatch(Files::isRegularFile), "seeded images not checked out");
+		assumeTrue(succeeds(List.of(python, "-c", "import cv2, numpy, ultralytics")), "no Python with cv2 and ultralytics");
+
+		List<String> command = new ArrayList<>(List.of(python, "src/main/resources/detector.py", "--check-frames",
+				root.resolve("decoded-frames").toString()));
+		images.forEach(image -> command.add(image.toString()));
+		Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+		String report = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+		assertTrue(process.waitFor(2, TimeUnit.MINUTES));
+		assertEquals(0, process.exitValue(), report);
+
+		// And Java reads back exactly the frames the detector wrote
+		DecodedFrameCache cache = new DecodedFrameCache(root.toString(), true);
+		for (Path image : images) {
+			Path frame = cache.detectorFrame(image).orElseThrow();
+			byte[] header = Files.readAllBytes(frame);
+			assertEquals("TFRC", new String(header, 0, 4, StandardCharsets.US_ASCII));
+			BufferedImage read = cache.read(image);
+			BufferedImage decoded = ImageIO.read(image.toFile());
+			assertEquals(decoded.getWidth(), read.getWidth());
+			assertEquals(decoded.getHeight(), read.getHeight());
+		}
+	}
+
+	private static void writeFrame(Path frame, String magic, int width, int height, byte[] pixels) throws IOException {
+		Files.createDirectories(frame.getParent());
+		ByteBuffer buffer = ByteBuffer.allocate(16 + pixels.length).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.put(magic.getBytes(StandardCharsets.US_ASCII)).putInt(width).putInt(height).putInt(3).put(pixels);
+		Files.write(frame, buffer.array());
+	}
+
+	private static boolean succeeds(List<String> command) {
+		try {
+			Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+			process.getInputStream().transferTo(OutputStream.nullOutputStream());
+			return process.waitFor(1, TimeUnit.MINUTES) && process.exitValue() == 0;
+		} catch (IOException e) {
+			return false;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+}
@@ -0,0 +1,217 @@
+package com.university.transformer.oversight.service.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.university.transformer.oversight.service.DetectionEngine;
+import com.university.transformer.oversight.service.impl.DetectionScheduler.Priority;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Runs the batcher on real threads against a fake batching engine. Leaders only wait out the window while other
+ * detections are in progress, so tests that need a batch first park one detection on another model.
+ */
+class DetectionMicroBatcherTests {
+
+	private static final String MODEL = "model.pt";
+	private static final String BLOCKING_MODEL = "blocking.pt";
+	private static final long LONG_WINDOW_MS = 10_000;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private FakeEngine engine;
+	private ExecutorService executor;
+
+	@BeforeEach
+	void setUp() {
+		engine = new FakeEngine();
+		executor = Executors.newCachedThreadPool();
+	}
+
+	@AfterEach
+	void tearDown() {
+		engine.unblock.countDown();
+		executor.shutdownNow();
+	}
+
+	@Test
+	void concurrentCallersShareOneBatchAndEachGetsItsOwnOutput() throws Exception {
+		DetectionMicroBatcher batcher = batcher(LONG_WINDOW_MS, 3);
+		keepBusy(batcher);
+
+		List<Future<DetectionMicroBatcher.Detection>> results = new ArrayList<>();
+		for (String path : List.of("a.jpg", "b.jpg", "c.jpg")) {
+			results.add(submit(batcher, path));
+		}
+
+		for (int i = 0; i < results.size(); i++) {
+			JsonNode output = results.get(i).get(5, TimeUnit.SECONDS).getOutput();
+			assertEquals(List.of("a.jpg", "b.jpg", "c.jpg").get(i), output.get("maintenance").asText());
+			// The routing key never reaches the caller
+			assertFalse(output.has("key"));
+		}
+		assertEquals(List.of(3), engine.batchSizes);
+		assertEquals(1, engine.singleCalls.get());
+	}
+
+	@Test
+	void closesABatchAsSoonAsItReachesTheMaximumSize() throws Exception {
+		// The window would outlast the test; only the size cut-off can close these batches
+		DetectionMicroBatcher batcher = batcher(LONG_WINDOW_MS, 2);
+		keepBusy(batcher);
+
+		List<Future<DetectionMicroBatcher.Detection>> results = new ArrayList<>();
+		for (String path : List.of("a.jpg", "b.jpg", "c.jpg", "d.jpg")) {
+			results.add(submit(batcher, path));
+		}
+
+		for (Future<DetectionMicroBatcher.Detection> result : results) {
+			result.get(5, TimeUnit.SECONDS);
+		}
+		assertEquals(List.of(2, 2), engine.batchSizes);
+	}
+
+	@Test
+	void routesEachItemsErrorToItsOwnCaller() throws Exception {
+		DetectionMicroBatcher batcher = batcher(LONG_WINDOW_MS, 3);
+		keepBusy(batcher);
+
+		Future<DetectionMicroBatcher.Detection> ok = submit(batcher, "ok.jpg");
+		Future<DetectionMicroBatcher.Detection> failed = submit(batcher, "fail.jpg");
+		Future<DetectionMicroBatcher.Detection> lost = submit(batcher, "lost.jpg");
+
+		assertEquals("ok.jpg", ok.get(5, TimeUnit.SECONDS).getOutput().get("maintenance").asText());
+		assertEquals("Anomaly detection failed: cannot read fail.jpg", failure(failed).getMessage());
+		assertEquals("Batched detection returned no output for lost.jpg", failure(lost).getMessage());
+		assertEquals(List.of(3), engine.batchSizes);
+	}
+
+	@Test
+	void aRequestOnAnIdleServerDoesNotWaitForTheWindow() throws Exception {
+		DetectionMicroBatcher batcher = batcher(LONG_WINDOW_MS, 8);
+
+		long started = System.nanoTime();
+		JsonNode output = submit(batcher, "a.jpg").get(5, TimeUnit.SECONDS).getOutput();
+
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) < LONG_WINDOW_MS);
+		assertEquals("a.jpg", output.get("maintenance").asText());
+		assertEquals(1, engine.singleCalls.get());
+		assertEquals(List.of(), engine.batchSizes);
+	}
+
+	private DetectionMicroBatcher batcher(long windowMillis, int maxSize) {
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		DetectionScheduler scheduler = new DetectionScheduler(meterRegistry, 4, 0, 4, 1, 30, 300, false, 1, 2.0);
+		return new DetectionMicroBatcher(engine, scheduler, objectMapper, meterRegistry, true, windowMillis, maxSize);
+	}
+
+	// Parks one detection inside the engine so the batcher sees concurrent traffic and leaders wait for company
+	private void keepBusy(DetectionMicroBatcher batcher) {
+		executor.submit(() -> batcher.detect(Priority.INTERACTIVE, "busy.jpg", 0, "out", 50.0, BLOCKING_MODEL));
+		awaitTrue(() -> engine.singleCalls.get() == 1);
+	}
+
+	private Future<DetectionMicroBatcher.Detection> submit(DetectionMicroBatcher batcher, String path) {
+		return executor.submit(() -> batcher.detect(Priority.INTERACTIVE, path, 0, "out", 50.0, MODEL));
+	}
+
+	private static Throwable failure(Future<?> result) throws Exception {
+		try {
+			result.get(5, TimeUnit.SECONDS);
+		} catch (ExecutionException e) {
+			assertInstanceOf(RuntimeException.class, e.getCause());
+			return e.getCause();
+		}
+		return fail("Expected the detection to fail");
+	}
+
+	private static void awaitTrue(BooleanSupplier condition) {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!condition.getAsBoolean()) {
+			if (System.nanoTime() > deadline) {
+				fail("Condition not reached within 5s");
+			}
+			try {
+				Thread.sleep(1);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				fail("Interrupted");
+			}
+		}
+	}
+
+	/**
+	 * Echoes each item's path back. Items named fail.* report an error and lost.* get no output; single detections
+	 * on the blocking model wait until the test ends.
+	 */
+	private class FakeEngine implements DetectionEngine {
+
+		private final CountDownLatch unblock = new CountDownLatch(1);
+		private final AtomicInteger singleCalls = new AtomicInteger();
+		private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+
+		@Override
+		public JsonNode detect(String maintenancePath, int baselineIntensity, String outputDir, Double thresholdPercentage, String modelPath) {
+			singleCalls.incrementAndGet();
+			if (BLOCKING_MODEL.equals(modelPath)) {
+				try {
+					unblock.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			return objectMapper.createObjectNode().put("maintenance", maintenancePath);
+		}
+
+		@Override
+		public JsonNode detectBatch(List<ObjectNode> items, String outputDir, String modelPath) {
+			batchSizes.add(items.size());
+			ArrayNode outputs = objectMapper.createArrayNode();
+			for (ObjectNode item : items) {
+				String path = item.get("maintenance").asText();
+				ObjectNode output = objectMapper.createObjectNode().put("key", item.get("key").asText());
+				if (path.startsWith("fail")) {
+					outputs.add(output.put("error", "cannot read " + path));
+				} else if (!path.startsWith("lost")) {
+					outputs.add(output.put("maintenance", path));
+				}
+			}
+			return outputs;
+		}
+
+		@Override
+		public void warmUp(String modelPath) {
+		}
+
+		@Override
+		public boolean hasSpareCapacity() {
+			return true;
+		}
+
+		@Override
+		public boolean batchesInference() {
+			return true;
+		}
+	}
+}
@@ -0,0 +1,311 @@
+package com.university.transformer.oversight.service.impl;
+
+import com.university.transformer.oversight.service.impl.DetectionScheduler.Priority;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Drives the scheduler with a fake clock: each call's work advances the clock by the latency it should report,
+ * so the AIMD limit moves deterministically. Admission order is checked with calls parked on latches.
+ */
+class DetectionSchedulerTests {
+
+	private static final long BASELINE_MS = 10;
+	private static final long SLOW_MS = 100; // Over the 2x tolerance
+
+	private AtomicLong clock;
+	private AtomicInteger running;
+	private List<Object> admitted;
+	private ExecutorService executor;
+
+	@BeforeEach
+	void setUp() {
+		// Starts well after zero so the first slow call may cut the limit
+		clock = new AtomicLong(TimeUnit.SECONDS.toNanos(1));
+		running = new AtomicInteger();
+		admitted = Collections.synchronizedList(new ArrayList<>());
+		executor = Executors.newCachedThreadPool();
+	}
+
+	@AfterEach
+	void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	void cutsTheLimitByAQuarterOnASlowCall() {
+		DetectionScheduler scheduler = scheduler(8, 1, 1);
+		call(scheduler, Priority.INTERACTIVE, BASELINE_MS);
+		assertEquals(8, scheduler.getLimit());
+
+		call(scheduler, Priority.INTERACTIVE, SLOW_MS);
+		assertEquals(6, scheduler.getLimit());
+
+		// A second slow call within one call duration of the cut reports the same congestion
+		call(scheduler, Priority.INTERACTIVE, SLOW_MS);
+		assertEquals(6, scheduler.getLimit());
+
+		idle(2 * SLOW_MS);
+		call(scheduler, Priority.INTERACTIVE, SLOW_MS);
+		assertEquals(4, scheduler.getLimit());
+	}
+
+	@Test
+	void comparesLatencyOnlyWithinTheSameClassAndBatchSize() {
+		DetectionScheduler scheduler = scheduler(4, 0, 1);
+		call(scheduler, Priority.INTERACTIVE, BASELINE_MS);
+		// Slower, but the first sample of its own class: no reference to be slow against yet
+		scheduler.run(Priority.INTERACTIVE, 8, () -> clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(SLOW_MS)));
+		call(scheduler, Priority.BACKGROUND, SLOW_MS);
+		assertEquals(4, scheduler.getLimit());
+	}
+
+	@Test
+	void leavesTheLimitAloneWhenACallFails() {
+		DetectionScheduler scheduler = scheduler(4, 0, 1);
+		call(scheduler, Priority.INTERACTIVE, BASELINE_MS);
+		assertThrows(IllegalStateException.class, () -> scheduler.run(Priority.INTERACTIVE, () -> {
+			clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(SLOW_MS));
+			throw new IllegalStateException("Inference failed");
+		}));
+		// The slot is released without a latency sample
+		assertEquals(4, scheduler.getLimit());
+		call(scheduler, Priority.INTERACTIVE, BASELINE_MS);
+	}
+
+	@Test
+	void growsByOneOnlyWhileRequestsAreQueued() throws Exception {
+		DetectionScheduler scheduler = scheduler(4, 0, 1);
+		cutOnce(scheduler);
+		assertEquals(3, scheduler.getLimit());
+
+		// Fast calls with nobody waiting say nothing about spare capacity
+		for (int i = 0; i < 5; i++) {
+			call(scheduler, Priority.INTERACTIVE, BASELINE_MS);
+		}
+		assertEquals(3, scheduler.getLimit());
+
+		CountDownLatch first = new CountDownLatch(1);
+		CountDownLatch rest = new CountDownLatch(1);
+		Future<?> holder = hold(scheduler, Priority.INTERACTIVE, "first", first, BASELINE_MS);
+		awaitTrue(() -> running.get() == 1);
+		List<Future<?>> others = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			others.add(hold(scheduler, Priority.INTERACTIVE, "other", rest, 0));
+		}
+		awaitTrue(() -> running.get() == 3 && scheduler.getQueuedCount(Priority.INTERACTIVE) == 1);
+
+		// A fast call finishing while one request waits raises the limit
+		first.countDown();
+		holder.get(5, TimeUnit.SECONDS);
+		assertEquals(4, scheduler.getLimit());
+		awaitTrue(() -> running.get() == 3 && scheduler.getQueuedCount(Priority.INTERACTIVE) == 0);
+
+		rest.countDown();
+		for (Future<?> other : others) {
+			other.get(5, TimeUnit.SECONDS);
+		}
+		assertEquals(4, scheduler.getLimit());
+	}
+
+	@Test
+	void neverCutsBelowMinCapacity() {
+		DetectionScheduler scheduler = scheduler(4, 0, 2);
+		call(scheduler, Priority.INTERACTIVE, BASELINE_MS);
+		for (int i = 0; i < 5; i++) {
+			idle(2 * SLOW_MS);
+			call(scheduler, Priority.INTERACTIVE, SLOW_MS);
+		}
+		assertEquals(2, scheduler.getLimit());
+	}
+
+	@Test
+	void clampsMinCapacityToOneAndToCapacity() {
+		DetectionScheduler noFloor = scheduler(2, 0, 0);
+		call(noFloor, Priority.INTERACTIVE, BASELINE_MS);
+		for (int i = 0; i < 3; i++) {
+			idle(2 * SLOW_MS);
+			call(noFloor, Priority.INTERACTIVE, SLOW_MS);
+		}
+		assertEquals(1, noFloor.getLimit());
+
+		DetectionScheduler floorAboveCapacity = scheduler(2, 0, 5);
+		call(floorAboveCapacity, Priority.INTERACTIVE, BASELINE_MS);
+		idle(2 * SLOW_MS);
+		call(floorAboveCapacity, Priority.INTERACTIVE, SLOW_MS);
+		assertEquals(2, floorAboveCapacity.getLimit());
+
+		assertEquals(1, scheduler(0, 0, 1).getLimit());
+	}
+
+	@Test
+	void neverGrowsPastCapacity() throws Exception {
+		DetectionScheduler scheduler = scheduler(2, 0, 1);
+		call(scheduler, Priority.INTERACTIVE, BASELINE_MS);
+
+		CountDownLatch first = new CountDownLatch(1);
+		CountDownLatch rest = new CountDownLatch(1);
+		Future<?> holder = hold(scheduler, Priority.INTERACTIVE, "first", first, BASELINE_MS);
+		awaitTrue(() -> running.get() == 1);
+		Future<?> second = hold(scheduler, Priority.INTERACTIVE, "second", rest, 0);
+		Future<?> queued = hold(scheduler, Priority.INTERACTIVE, "queued", rest, 0);
+		awaitTrue(() -> running.get() == 2 && scheduler.getQueuedCount(Priority.INTERACTIVE) == 1);
+
+		first.countDown();
+		holder.get(5, TimeUnit.SECONDS);
+		assertEquals(2, scheduler.getLimit());
+
+		rest.countDown();
+		second.get(5, TimeUnit.SECONDS);
+		queued.get(5, TimeUnit.SECONDS);
+	}
+
+	@Test
+	void reservesTheInteractiveSlotOutOfTheCurrentLimit() throws Exception {
+		DetectionScheduler scheduler = scheduler(4, 1, 1);
+		cutOnce(scheduler);
+		assertEquals(3, scheduler.getLimit());
+
+		// Capacity would leave background three slots; the cut limit leaves it two
+		CountDownLatch release = new CountDownLatch(1);
+		List<Future<?>> background = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			background.add(hold(scheduler, Priority.BACKGROUND, "background", release, 0));
+		}
+		awaitTrue(() -> running.get() == 2 && scheduler.getQueuedCount(Priority.BACKGROUND) == 1);
+
+		// The remaining slot of the limit goes to an inspector while background still waits
+		AtomicInteger backgroundQueued = new AtomicInteger(-1);
+		executor.submit(() -> scheduler.run(Priority.INTERACTIVE,
+				() -> backgroundQueued.getAndSet(scheduler.getQueuedCount(Priority.BACKGROUND)))).get(5, TimeUnit.SECONDS);
+		assertEquals(1, backgroundQueued.get());
+
+		release.countDown();
+		for (Future<?> future : background) {
+			future.get(5, TimeUnit.SECONDS);
+		}
+	}
+
+	@Test
+	void letsBackgroundUseTheOnlySlot() throws Exception {
+		DetectionScheduler scheduler = scheduler(1, 1, 1);
+		executor.submit(() -> scheduler.run(Priority.BACKGROUND, () -> null)).get(5, TimeUnit.SECONDS);
+	}
+
+	@Test
+	void admitsQueuedClassesByWeightAndEachClassInArrivalOrder() throws Exception {
+		DetectionScheduler scheduler = scheduler(1, 0, 1);
+		CountDownLatch release = new CountDownLatch(1);
+		Future<?> holder = hold(scheduler, Priority.BACKGROUND, "B0", release, 0);
+		awaitTrue(() -> running.get() == 1);
+
+		List<Future<?>> queued = new ArrayList<>();
+		queued.add(enqueue(scheduler, Priority.BACKGROUND, "B1"));
+		for (int i = 1; i <= 6; i++) {
+			queued.add(enqueue(scheduler, Priority.INTERACTIVE, "I" + i));
+		}
+
+		release.countDown();
+		holder.get(5, TimeUnit.SECONDS);
+		for (Future<?> future : queued) {
+			future.get(5, TimeUnit.SECONDS);
+		}
+		// Interactive weight 4: four interactive requests per background one once their virtual start times meet
+		assertEquals(List.of("B0", "I1", "I2", "I3", "I4", "I5", "B1", "I6"), admitted);
+	}
+
+	@Test
+	void runsStarvedBackgroundWorkAheadOfInteractive() throws Exception {
+		DetectionScheduler scheduler = scheduler(1, 0, 1);
+		CountDownLatch release = new CountDownLatch(1);
+		Future<?> holder = hold(scheduler, Priority.INTERACTIVE, "I0", release, 0);
+		awaitTrue(() -> running.get() == 1);
+
+		Future<?> background = enqueue(scheduler, Priority.BACKGROUND, "B1");
+		Future<?> interactive = enqueue(scheduler, Priority.INTERACTIVE, "I1");
+		idle(TimeUnit.SECONDS.toMillis(31));
+
+		release.countDown();
+		holder.get(5, TimeUnit.SECONDS);
+		background.get(5, TimeUnit.SECONDS);
+		interactive.get(5, TimeUnit.SECONDS);
+		assertEquals(List.of("I0", "B1", "I1"), admitted);
+	}
+
+	private DetectionScheduler scheduler(int capacity, int reservedInteractive, int minCapacity) {
+		return new DetectionScheduler(new SimpleMeterRegistry(), capacity, reservedInteractive, 4, 1, 30, 300,
+				true, minCapacity, 2.0, clock::get);
+	}
+
+	// Records the baseline and then one slow call, which cuts the limit by a quarter
+	private void cutOnce(DetectionScheduler scheduler) {
+		call(scheduler, Priority.INTERACTIVE, BASELINE_MS);
+		call(scheduler, Priority.INTERACTIVE, SLOW_MS);
+	}
+
+	private void call(DetectionScheduler scheduler, Priority priority, long latencyMs) {
+		scheduler.run(priority, () -> clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(latencyMs)));
+	}
+
+	private void idle(long millis) {
+		clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+	}
+
+	// Runs a call on another thread that keeps its slot until the latch opens, then reports the latency
+	private Future<?> hold(DetectionScheduler scheduler, Priority priority, String label, CountDownLatch release,
+	                       long latencyMs) {
+		return executor.submit(() -> scheduler.run(priority, () -> {
+			admitted.add(label);
+			running.incrementAndGet();
+			try {
+				assertTrue(release.await(5, TimeUnit.SECONDS));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			running.decrementAndGet();
+			return clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(latencyMs));
+		}));
+	}
+
+	// Queues a call behind the current ones and waits until it is in the queue, so arrival order is fixed
+	private Future<?> enqueue(DetectionScheduler scheduler, Priority priority, String label) {
+		int before = scheduler.getQueuedCount(priority);
+		Future<?> future = executor.submit(() -> scheduler.run(priority, () -> admitted.add(label)));
+		awaitTrue(() -> scheduler.getQueuedCount(priority) == before + 1);
+		return future;
+	}
+
+	private static void awaitTrue(BooleanSupplier condition) {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!condition.getAsBoolean()) {
+			if (System.nanoTime() > deadline) {
+				fail("Condition not reached within 5s");
+			}
+			try {
+				Thread.sleep(1);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				fail("Interrupted");
+			}
+		}
+	}
+}
@@ -0,0 +1,312 @@
+package com.university.transformer.oversight.service.impl;
+
+import com.university.transformer.oversight.model.AnomalyDetectionResult;
+import com.university.transformer.oversight.model.DetectionClaim;
+import com.university.transformer.oversight.repository.AnomalyDetectionResultRepository;
+import com.university.transformer.oversight.repository.DetectionClaimRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Coalescing of concurrent detections, against an in-memory detection_claims table. Runs are latch-driven
+ * Callables, so each test decides exactly when the run in flight finishes.
+ */
+class DetectionSingleFlightTests {
+
+	private static final Long INSPECTION = 7L;
+	private static final String KEY = "baseline.jpg@0.5/ACCURATE";
+	private static final String OTHER_KEY = "baseline.jpg@0.8/ACCURATE";
+
+	private Map<Long, DetectionClaim> claims;
+	private AnomalyDetectionResultRepository resultRepository;
+	private SimpleMeterRegistry meterRegistry;
+	private DetectionSingleFlight singleFlight;
+	private ExecutorService executor;
+
+	@BeforeEach
+	void setUp() {
+		claims = new ConcurrentHashMap<>();
+		resultRepository = mock(AnomalyDetectionResultRepository.class);
+		when(resultRepository.findByInspectionId(anyLong())).thenReturn(Optional.empty());
+		PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+		when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+		meterRegistry = new SimpleMeterRegistry();
+		singleFlight = new DetectionSingleFlight(claimRepository(), resultRepository, transactionManager, meterRegistry,
+				"node-a", 600, 50);
+		executor = Executors.newCachedThreadPool();
+	}
+
+	@AfterEach
+	void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	void oneRunServesEveryCallerWithTheSameKey() throws Exception {
+		LatchedDetection detection = new LatchedDetection();
+		Future<AnomalyDetectionResult> first = submit(KEY, detection);
+		assertTrue(detection.started.await(5, TimeUnit.SECONDS));
+
+		List<Future<AnomalyDetectionResult>> attached = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			attached.add(submit(KEY, new LatchedDetection()));
+		}
+		awaitTrue(() -> coalesced("local") == 4);
+
+		detection.finish.countDown();
+		AnomalyDetectionResult result = first.get(5, TimeUnit.SECONDS);
+		for (Future<AnomalyDetectionResult> future : attached) {
+			assertSame(result, future.get(5, TimeUnit.SECONDS));
+		}
+		assertEquals(1, detection.calls.get());
+		assertTrue(claims.isEmpty());
+	}
+
+	@Test
+	void aCallerWithAnotherKeyRunsAfterTheRunInFlight() throws Exception {
+		LatchedDetection detection = new LatchedDetection();
+		Future<AnomalyDetectionResult> first = submit(KEY, detection);
+		assertTrue(detection.started.await(5, TimeUnit.SECONDS));
+
+		AtomicBoolean ranAfterFirst = new AtomicBoolean();
+		AtomicInteger otherCalls = new AtomicInteger();
+		Thread other = new Thread(() -> {
+			try {
+				singleFlight.run(INSPECTION, OTHER_KEY, () -> {
+					otherCalls.incrementAndGet();
+					ranAfterFirst.set(first.isDone());
+					return result(LocalDateTime.now());
+				});
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		other.start();
+		// Parked on the run in flight, not running its own
+		awaitTrue(() -> other.getState() == Thread.State.WAITING);
+		assertEquals(0, otherCalls.get());
+
+		detection.finish.countDown();
+		first.get(5, TimeUnit.SECONDS);
+		other.join(5_000);
+		assertEquals(1, otherCalls.get());
+		assertTrue(ranAfterFirst.get());
+		assertEquals(0.0, coalesced("local"));
+	}
+
+	@Test
+	void attachedCallersGetTheRunsFailureAndTheNextCallRunsAgain() throws Exception {
+		LatchedDetection detection = new LatchedDetection(new IllegalStateException("model crashed"));
+		Future<AnomalyDetectionResult> first = submit(KEY, detection);
+		assertTrue(detection.started.await(5, TimeUnit.SECONDS));
+		Future<AnomalyDetectionResult> attached = submit(KEY, new LatchedDetection());
+		awaitTrue(() -> coalesced("local") == 1);
+
+		detection.finish.countDown();
+		ExecutionException failure = assertThrows(ExecutionException.class, () -> attached.get(5, TimeUnit.SECONDS));
+		assertEquals("model crashed", failure.getCause().getMessage());
+		assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+
+		LatchedDetection retry = new LatchedDetection();
+		retry.finish.countDown();
+		singleFlight.run(INSPECTION, KEY, retry);
+		assertEquals(1, retry.calls.get());
+	}
+
+	@Test
+	void takesOverAnExpiredClaimAndRunsAtOnce() throws Exception {
+		claims.put(INSPECTION, claim("node-b", KEY, LocalDateTime.now().minusHours(1), LocalDateTime.now().minusMinutes(1)));
+		LatchedDetection detection = new LatchedDetection();
+		detection.finish.countDown();
+
+		singleFlight.run(INSPECTION, KEY, detection);
+
+		assertEquals(1, detection.calls.get());
+		assertTrue(claims.isEmpty());
+	}
+
+	@Test
+	void usesTheResultOfAnotherNodesRunWithTheSameKey() throws Exception {
+		LocalDateTime claimedAt = LocalDateTime.now().minusSeconds(1);
+		claims.put(INSPECTION, claim("node-b", KEY, claimedAt, LocalDateTime.now().plusMinutes(10)));
+		AnomalyDetectionResult remote = result(claimedAt.plusNanos(1_000));
+		when(resultRepository.findByInspectionId(INSPECTION)).thenReturn(Optional.of(remote));
+		LatchedDetection detection = new LatchedDetection();
+		detection.finish.countDown();
+
+		Future<AnomalyDetectionResult> waiting = submit(KEY, detection);
+		Thread.sleep(150); // A few polls while node-b still holds the claim
+		assertFalse(waiting.isDone());
+		claims.remove(INSPECTION);
+
+		assertSame(remote, waiting.get(5, TimeUnit.SECONDS));
+		assertEquals(0, detection.calls.get());
+		assertEquals(1.0, coalesced("remote"));
+	}
+
+	@Test
+	void ignoresAStoredResultOlderThanTheRemoteClaim() throws Exception {
+		LocalDateTime claimedAt = LocalDateTime.now().minusSeconds(1);
+		claims.put(INSPECTION, claim("node-b", KEY, claimedAt, LocalDateTime.now().plusMinutes(10)));
+		// Written by an earlier run: node-b ended without storing a new one
+		when(resultRepository.findByInspectionId(INSPECTION)).thenReturn(Optional.of(result(claimedAt.minusMinutes(5))));
+		LatchedDetection detection = new LatchedDetection();
+		detection.finish.countDown();
+
+		Future<AnomalyDetectionResult> waiting = submit(KEY, detection);
+		Thread.sleep(100);
+		claims.remove(INSPECTION);
+
+		assertSame(detection.result, waiting.get(5, TimeUnit.SECONDS));
+		assertEquals(1, detection.calls.get());
+		assertEquals(0.0, coalesced("remote"));
+	}
+
+	@Test
+	void runsHereAfterAnotherNodesRunWithAnotherKey() throws Exception {
+		LocalDateTime claimedAt = LocalDateTime.now().minusSeconds(1);
+		claims.put(INSPECTION, claim("node-b", OTHER_KEY, claimedAt, LocalDateTime.now().plusMinutes(10)));
+		when(resultRepository.findByInspectionId(INSPECTION)).thenReturn(Optional.of(result(LocalDateTime.now())));
+		LatchedDetection detection = new LatchedDetection();
+		detection.finish.countDown();
+
+		Future<AnomalyDetectionResult> waiting = submit(KEY, detection);
+		Thread.sleep(100);
+		assertEquals(0, detection.calls.get());
+		claims.remove(INSPECTION);
+
+		assertSame(detection.result, waiting.get(5, TimeUnit.SECONDS));
+		assertEquals(1, detection.calls.get());
+	}
+
+	private Future<AnomalyDetectionResult> submit(String requestKey, Callable<AnomalyDetectionResult> detection) {
+		return executor.submit(() -> singleFlight.run(INSPECTION, requestKey, detection));
+	}
+
+	private double coalesced(String scope) {
+		return meterRegistry.get("detection.singleflight.coalesced").tag("scope", scope).counter().count();
+	}
+
+	// detection_claims semantics: the primary key rejects a second claim, release only deletes this node's row
+	private DetectionClaimRepository claimRepository() {
+		DetectionClaimRepository repository = mock(DetectionClaimRepository.class);
+		when(repository.insertClaim(anyLong(), anyString(), anyString(), any(), any())).thenAnswer(call -> {
+			DetectionClaim claim = claim(call.getArgument(1), call.getArgument(2), call.getArgument(3), call.getArgument(4));
+			claim.setInspectionId(call.getArgument(0));
+			if (claims.putIfAbsent(claim.getInspectionId(), claim) != null) {
+				throw new DataIntegrityViolationException("Duplicate entry for key 'PRIMARY'");
+			}
+			return 1;
+		});
+		when(repository.takeOverExpired(anyLong(), anyString(), anyString(), any(), any())).thenAnswer(call -> {
+			Long inspectionId = call.getArgument(0);
+			LocalDateTime now = call.getArgument(3);
+			DetectionClaim taken = claim(call.getArgument(1), call.getArgument(2), now, call.getArgument(4));
+			taken.setInspectionId(inspectionId);
+			DetectionClaim current = claims.get(inspectionId);
+			return current != null && current.getExpiresAt().isBefore(now) && claims.replace(inspectionId, current, taken) ? 1 : 0;
+		});
+		when(repository.release(anyLong(), anyString())).thenAnswer(call -> {
+			DetectionClaim current = claims.get(call.<Long>getArgument(0));
+			return current != null && current.getNodeId().equals(call.getArgument(1))
+					&& claims.remove(call.<Long>getArgument(0), current) ? 1 : 0;
+		});
+		when(repository.findById(anyLong())).thenAnswer(call -> Optional.ofNullable(claims.get(call.<Long>getArgument(0))));
+		return repository;
+	}
+
+	private static DetectionClaim claim(String nodeId, String requestKey, LocalDateTime claimedAt, LocalDateTime expiresAt) {
+		DetectionClaim claim = new DetectionClaim();
+		claim.setInspectionId(INSPECTION);
+		claim.setNodeId(nodeId);
+		claim.setRequestKey(requestKey);
+		claim.setClaimedAt(claimedAt);
+		claim.setExpiresAt(expiresAt);
+		return claim;
+	}
+
+	private static AnomalyDetectionResult result(LocalDateTime detectedAt) {
+		AnomalyDetectionResult result = new AnomalyDetectionResult();
+		result.setDetectedTimestamp(detectedAt);
+		return result;
+	}
+
+	private static void awaitTrue(BooleanSupplier condition) {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!condition.getAsBoolean()) {
+			if (System.nanoTime() > deadline) {
+				fail("Condition not reached within 5s");
+			}
+			try {
+				Thread.sleep(1);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				fail("Interrupted");
+			}
+		}
+	}
+
+	// A detection that signals when it starts and finishes (or fails) once the test opens its latch
+	private static class LatchedDetection implements Callable<AnomalyDetectionResult> {
+		private final CountDownLatch started = new CountDownLatch(1);
+		private final CountDownLatch finish = new CountDownLatch(1);
+		private final AtomicInteger calls = new AtomicInteger();
+		private final AnomalyDetectionResult result = result(LocalDateTime.now());
+		private final Exception failure;
+
+		LatchedDetection() {
+			this(null);
+		}
+
+		LatchedDetection(Exception failure) {
+			this.failure = failure;
+		}
+
+		@Override
+		public AnomalyDetectionResult call() throws Exception {
+			calls.incrementAndGet();
+			started.countDown();
+			if (!finish.await(5, TimeUnit.SECONDS)) {
+				throw new IllegalStateException("Test never finished the detection");
+			}
+			if (failure != null) {
+				throw failure;
+			}
+			return result;
+		}
+	}
+}